@@ -0,0 +1,29 @@
+package br.com.food.insecutiry.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Same options as the JMH launcher, but results
+ * default to JSON in {@code target/jmh-result.json} and the GC profiler is on, so every
+ * run reports throughput and allocation rate in machine-readable form.
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<String> options = new ArrayList<>(List.of(args));
+    if (!options.contains("-rf")) {
+      options.addAll(List.of("-rf", "json"));
+    }
+    if (!options.contains("-rff")) {
+      options.addAll(List.of("-rff", "target/jmh-result.json"));
+    }
+    if (!options.contains("-prof")) {
+      options.addAll(List.of("-prof", "gc"));
+    }
+    org.openjdk.jmh.Main.main(options.toArray(String[]::new));
+  }
+}
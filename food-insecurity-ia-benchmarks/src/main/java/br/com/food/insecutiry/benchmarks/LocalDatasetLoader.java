@@ -0,0 +1,29 @@
+package br.com.food.insecutiry.benchmarks;
+
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.service.DatasetLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Reads the dataset named by the metadata filename from local disk instead of GridFS. */
+class LocalDatasetLoader extends DatasetLoader {
+
+  LocalDatasetLoader(FoodInsecurityMetrics metrics) {
+    super(null, null, null, metrics);
+  }
+
+  @Override
+  public LoadedDataset loadHistory(DatasetMetadata base) throws IOException {
+    Path file = Path.of(base.getFilename());
+    long length = Files.size(file);
+    return new LoadedDataset(SyntheticDataset.load(file), length, length);
+  }
+
+  @Override
+  public LoadedDataset load(DatasetMetadata datasetMeta) throws IOException {
+    return loadHistory(datasetMeta);
+  }
+}
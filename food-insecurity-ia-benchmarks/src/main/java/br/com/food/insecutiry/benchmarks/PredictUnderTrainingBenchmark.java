@@ -0,0 +1,131 @@
+package br.com.food.insecutiry.benchmarks;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import br.com.food.insecutiry.service.FoodInsecurityService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for the inference/training bulkhead: prediction latency percentiles from
+ * concurrent callers, idle and while full training runs loop on the training pool
+ * (sized as in the app, one core short of the machine). Each finished run publishes a
+ * new model, so predictions also cross snapshot swaps. The {@code trainingRuns} secondary
+ * result counts the runs that finished during each iteration.
+ *
+ * Predictions are called in process, through {@code FoodInsecurityService}: this measures
+ * contention for CPU and the snapshot swaps, not the HTTP layer (virtual threads and the
+ * 429 admission of training uploads), which {@link PredictUnderTrainingLoad} measures
+ * against a running instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 4)
+@Fork(1)
+@Threads(4)
+public class PredictUnderTrainingBenchmark {
+
+  private static final int REQUESTS = 4096; // potência de 2 para o índice circular
+
+  @Param({"false", "true"})
+  public boolean training;
+
+  @Param({"100000"})
+  public int trainingRows;
+
+  private FoodInsecurityService service;
+  private WekaModelConfig modelConfig;
+  private PredictionRequestDTO[] requests;
+  private Thread trainer;
+  private final AtomicBoolean stop = new AtomicBoolean();
+  private final AtomicInteger trainingRuns = new AtomicInteger();
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  /** Training runs finished in the current iteration; only thread 0 reports them, so the sum is not multiplied. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class TrainingCounters {
+    public long trainingRuns;
+    private boolean reporter;
+    private int runsBefore;
+
+    @Setup(Level.Iteration)
+    public void reset(PredictUnderTrainingBenchmark benchmark, ThreadParams thread) {
+      reporter = thread.getThreadIndex() == 0;
+      runsBefore = benchmark.trainingRuns.get();
+      trainingRuns = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Path file = SyntheticDataset.ensure(trainingRows);
+    Instances data = SyntheticDataset.load(file);
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+
+    FoodInsecurityMetrics metrics = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+    modelConfig = new WekaModelConfig(null, new LocalDatasetLoader(metrics), null, metrics, null, null);
+    // sem Mongo: a calibragem não tem onde ser gravada
+    Field calibration = WekaModelConfig.class.getDeclaredField("calibrationEnabled");
+    calibration.setAccessible(true);
+    calibration.setBoolean(modelConfig, false);
+    modelConfig.init();
+    modelConfig.setTrainedModel(tree, data);
+
+    service = new FoodInsecurityService(null, null, modelConfig, null, new ObjectMapper(), metrics, null);
+    requests = SyntheticDataset.requests(REQUESTS, 11);
+
+    if (training) {
+      DatasetMetadata meta = DatasetMetadata.builder().id("synthetic-" + trainingRows).filename(file.toString()).build();
+      trainer = new Thread(() -> {
+        while (!stop.get()) {
+          try {
+            modelConfig.trainModelFromDataset(meta, new TrainingJob(meta.getId()));
+            trainingRuns.incrementAndGet();
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }, "training-job");
+      trainer.start();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    stop.set(true);
+    if (trainer != null) {
+      trainer.join();
+    }
+    modelConfig.shutdown();
+  }
+
+  @Benchmark
+  public PredictionResponseDTO predict(Cursor cursor, TrainingCounters counters) throws Exception {
+    if (counters.reporter) {
+      counters.trainingRuns = trainingRuns.get() - counters.runsBefore;
+    }
+    return service.predict(requests[cursor.next++ & (REQUESTS - 1)]);
+  }
+}
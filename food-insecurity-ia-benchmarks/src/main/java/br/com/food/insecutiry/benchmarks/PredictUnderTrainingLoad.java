@@ -0,0 +1,179 @@
+package br.com.food.insecutiry.benchmarks;
+
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP load test of the inference/training bulkhead, against a running instance (with
+ * its MongoDB): {@code /predict} latency percentiles from concurrent clients, first
+ * idle, then while an uploader keeps posting full datasets to {@code /upload-dataset}.
+ * Unlike {@link PredictUnderTrainingBenchmark} this goes through Tomcat, the virtual
+ * threads and the 429 admission of training uploads; the report counts accepted and
+ * refused uploads next to the latencies.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar br.com.food.insecutiry.benchmarks.PredictUnderTrainingLoad \
+ *   [baseUrl=http://localhost:8080] [seconds=60] [clients=32] [uploadRows=1000000]
+ * </pre>
+ */
+public final class PredictUnderTrainingLoad {
+
+  private static final String API = "/api/food-insecurity";
+  private static final int REQUESTS = 4096; // potência de 2 para o índice circular
+
+  private final HttpClient client = HttpClient.newBuilder()
+    .version(HttpClient.Version.HTTP_1_1)
+    .connectTimeout(Duration.ofSeconds(5))
+    .build();
+  private final URI base;
+  private final byte[][] bodies;
+
+  private PredictUnderTrainingLoad(URI base) throws IOException {
+    this.base = base;
+    ObjectMapper mapper = new ObjectMapper();
+    PredictionRequestDTO[] requests = SyntheticDataset.requests(REQUESTS, 11);
+    bodies = new byte[REQUESTS][];
+    for (int i = 0; i < REQUESTS; i++) {
+      bodies[i] = mapper.writeValueAsBytes(requests[i]);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    URI base = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+    Duration phase = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 60);
+    int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+    int uploadRows = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+
+    PredictUnderTrainingLoad load = new PredictUnderTrainingLoad(base);
+    Path dataset = SyntheticDataset.ensure(uploadRows);
+    // aquecimento: JIT do servidor e conexões; não entra no relatório
+    load.run(Duration.ofSeconds(Math.min(15, phase.toSeconds())), clients, null);
+    System.out.println(load.run(phase, clients, null).format("idle"));
+    System.out.println(load.run(phase, clients, dataset).format("training"));
+  }
+
+  private Report run(Duration duration, int clients, Path uploads) throws Exception {
+    long deadline = System.nanoTime() + duration.toNanos();
+    AtomicBoolean stop = new AtomicBoolean();
+    AtomicInteger accepted = new AtomicInteger();
+    AtomicInteger refused = new AtomicInteger();
+    try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<?> uploader = uploads == null ? null : callers.submit(() -> upload(uploads, stop, accepted, refused));
+      List<Future<Latencies>> results = new ArrayList<>(clients);
+      for (int c = 0; c < clients; c++) {
+        int offset = c * (REQUESTS / clients);
+        results.add(callers.submit(() -> predict(offset, deadline)));
+      }
+      Latencies all = new Latencies();
+      for (Future<Latencies> result : results) {
+        all.addAll(result.get());
+      }
+      stop.set(true);
+      if (uploader != null) {
+        uploader.get();
+      }
+      return new Report(all, accepted.get(), refused.get());
+    }
+  }
+
+  private Latencies predict(int offset, long deadline) throws IOException, InterruptedException {
+    Latencies latencies = new Latencies();
+    for (int i = offset; System.nanoTime() < deadline; i++) {
+      HttpRequest request = HttpRequest.newBuilder(base.resolve(API + "/predict"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(bodies[i & (REQUESTS - 1)]))
+        .build();
+      long start = System.nanoTime();
+      HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+      if (response.statusCode() == 200) {
+        latencies.add(System.nanoTime() - start);
+      } else {
+        latencies.errors++;
+      }
+    }
+    return latencies;
+  }
+
+  /** Posts the dataset back to back; a 429 waits a second, as a well-behaved ETL would. */
+  private Void upload(Path dataset, AtomicBoolean stop, AtomicInteger accepted, AtomicInteger refused) throws Exception {
+    String boundary = UUID.randomUUID().toString();
+    String head = "--" + boundary + "\r\n"
+      + "Content-Disposition: form-data; name=\"file\"; filename=\"" + dataset.getFileName() + "\"\r\n"
+      + "Content-Type: application/octet-stream\r\n\r\n";
+    String tail = "\r\n--" + boundary + "--\r\n";
+    while (!stop.get()) {
+      HttpRequest request = HttpRequest.newBuilder(base.resolve(API + "/upload-dataset"))
+        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+        .POST(HttpRequest.BodyPublishers.concat(
+          HttpRequest.BodyPublishers.ofString(head),
+          HttpRequest.BodyPublishers.ofFile(dataset),
+          HttpRequest.BodyPublishers.ofString(tail)))
+        .build();
+      int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+      if (status == 202) {
+        accepted.incrementAndGet();
+      } else if (status == 429) {
+        refused.incrementAndGet();
+        TimeUnit.SECONDS.sleep(1);
+      } else {
+        throw new IllegalStateException("upload-dataset answered " + status);
+      }
+    }
+    return null;
+  }
+
+  private static final class Latencies {
+    private long[] nanos = new long[1 << 14];
+    private int size;
+    private int errors;
+
+    void add(long value) {
+      if (size == nanos.length) {
+        nanos = Arrays.copyOf(nanos, size * 2);
+      }
+      nanos[size++] = value;
+    }
+
+    void addAll(Latencies other) {
+      for (int i = 0; i < other.size; i++) {
+        add(other.nanos[i]);
+      }
+      errors += other.errors;
+    }
+  }
+
+  private record Report(Latencies latencies, int uploadsAccepted, int uploadsRefused) {
+
+    String format(String phase) {
+      long[] sorted = Arrays.copyOf(latencies.nanos, latencies.size);
+      Arrays.sort(sorted);
+      return String.format("%-8s requests=%d errors=%d p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms uploads=%d refused=%d",
+        phase, sorted.length, latencies.errors,
+        percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 0.999),
+        sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+        uploadsAccepted, uploadsRefused);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+      return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package br.com.food.insecutiry.benchmarks;
+
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Deterministic ARFF datasets with the training schema (salario, estado, cor,
+ * escolaridade, inseguranca). The label depends on salary band, schooling, color and
+ * state so the trees have real structure; ~3% of salario and escolaridade are missing.
+ * Files are generated once per size under {@code target/datasets} and reused.
+ */
+public final class SyntheticDataset {
+
+  public static final String[] SALARIOS = {
+    "422-999", "810-1300", "1500-3000", "0-499", "500-999",
+    "1000-1499", "1500-1999", "2000-2499", "2500-2999", "3000-50000"};
+  public static final String[] ESTADOS = {
+    "AC", "AL", "AP", "AM", "BA", "CE", "DF", "ES", "GO", "MA", "MT", "MS", "MG", "PA",
+    "PB", "PR", "PE", "PI", "RJ", "RN", "RS", "RO", "RR", "SC", "SP", "SE", "TO"};
+  public static final String[] CORES = {"Branca", "Preta", "Amarela", "Parda", "Indigena", "Desconhecido"};
+  private static final int[] ESCOLARIDADES = {0, 2, 4, 8, 11, 16};
+
+  private static final Path DIRECTORY = Path.of("target", "datasets");
+
+  private SyntheticDataset() {
+  }
+
+  public static Path ensure(int rows) throws IOException {
+    Path file = DIRECTORY.resolve("synthetic-" + rows + ".arff");
+    if (Files.exists(file)) {
+      return file;
+    }
+    Files.createDirectories(DIRECTORY);
+    Path tmp = Files.createTempFile(DIRECTORY, "synthetic-", ".tmp");
+    Random random = new Random(1);
+    try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      out.write("@relation food\n\n");
+      out.write("@attribute salario {" + String.join(",", SALARIOS) + "}\n");
+      out.write("@attribute estado {" + String.join(",", ESTADOS) + "}\n");
+      out.write("@attribute cor {" + String.join(",", CORES) + "}\n");
+      out.write("@attribute escolaridade numeric\n");
+      out.write("@attribute inseguranca {sim,nao}\n\n@data\n");
+      StringBuilder line = new StringBuilder(64);
+      for (int i = 0; i < rows; i++) {
+        int s = random.nextInt(SALARIOS.length);
+        int u = random.nextInt(ESTADOS.length);
+        int c = random.nextInt(CORES.length);
+        int e = ESCOLARIDADES[random.nextInt(ESCOLARIDADES.length)];
+        double p = 0.7 - 0.05 * s - 0.02 * e + (c == 1 || c == 3 ? 0.1 : 0) + (u < 10 ? 0.1 : 0);
+        String label = random.nextDouble() < p ? "sim" : "nao";
+        line.setLength(0);
+        line.append(random.nextDouble() < 0.03 ? "?" : SALARIOS[s]).append(',')
+          .append(ESTADOS[u]).append(',')
+          .append(CORES[c]).append(',')
+          .append(random.nextDouble() < 0.03 ? "?" : Integer.toString(e)).append(',')
+          .append(label).append('\n');
+        out.write(line.toString());
+      }
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return file;
+  }
+
+  /** Parses like {@code DatasetLoader}: incremental ARFF read, class set to the last attribute. */
+  public static Instances load(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      ArffReader arff = new ArffReader(reader, 1000);
+      Instances data = arff.getStructure();
+      Instance inst;
+      while ((inst = arff.readInstance(data)) != null) {
+        data.add(inst);
+      }
+      data.compactify();
+      data.setClassIndex(data.numAttributes() - 1);
+      return data;
+    }
+  }
+
+  /** Raw prediction requests, as a client would send them. */
+  public static PredictionRequestDTO[] requests(int count, long seed) {
+    Random random = new Random(seed);
+    PredictionRequestDTO[] requests = new PredictionRequestDTO[count];
+    for (int i = 0; i < count; i++) {
+      requests[i] = PredictionRequestDTO.builder()
+        .salario(random.nextInt(60) == 0 ? null : random.nextDouble() * 6000)
+        .estado(ESTADOS[random.nextInt(ESTADOS.length)])
+        .cor(CORES[random.nextInt(CORES.length)])
+        .escolaridade(random.nextInt(30) == 0 ? null : ESCOLARIDADES[random.nextInt(ESCOLARIDADES.length)])
+        .build();
+    }
+    return requests;
+  }
+}
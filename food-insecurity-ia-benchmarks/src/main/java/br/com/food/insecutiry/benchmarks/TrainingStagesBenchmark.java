@@ -0,0 +1,96 @@
+package br.com.food.insecutiry.benchmarks;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.training.ParallelCrossValidation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import weka.attributeSelection.InfoGainAttributeEval;
+import weka.classifiers.Evaluation;
+import weka.classifiers.trees.HoeffdingTree;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages of {@code WekaModelConfig.trainModelFromDataset} on synthetic datasets, and
+ * the whole pipeline end to end (reading the ARFF from local disk instead of GridFS).
+ * Each invocation is a single shot; 10M rows is not in the defaults because it needs a
+ * large heap: {@code -p rows=10000000 -jvmArgs -Xmx16g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TrainingStagesBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int rows;
+
+  private Path file;
+  private Instances data;
+  private ForkJoinPool pool;
+  private WekaModelConfig modelConfig;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    file = SyntheticDataset.ensure(rows);
+    data = SyntheticDataset.load(file);
+    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    FoodInsecurityMetrics metrics = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+    modelConfig = new WekaModelConfig(null, new LocalDatasetLoader(metrics), null, metrics, null, null);
+    modelConfig.init();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdownNow();
+    modelConfig.shutdown();
+  }
+
+  @Benchmark
+  public Instances parse() throws Exception {
+    return SyntheticDataset.load(file);
+  }
+
+  @Benchmark
+  public J48 fit() throws Exception {
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+    return tree;
+  }
+
+  @Benchmark
+  public Evaluation crossValidation() throws Exception {
+    return ParallelCrossValidation.run(new J48(), data, 10, new Random(42), pool, pool.getParallelism());
+  }
+
+  @Benchmark
+  public InfoGainAttributeEval infoGain() throws Exception {
+    InfoGainAttributeEval eval = new InfoGainAttributeEval();
+    eval.buildEvaluator(data);
+    return eval;
+  }
+
+  @Benchmark
+  public HoeffdingTree incremental() throws Exception {
+    HoeffdingTree tree = new HoeffdingTree();
+    tree.buildClassifier(data);
+    return tree;
+  }
+
+  @Benchmark
+  public ModelSnapshot fullPipeline() throws Exception {
+    DatasetMetadata meta = DatasetMetadata.builder().id("synthetic-" + rows).filename(file.toString()).build();
+    return modelConfig.trainModelFromDataset(meta, new TrainingJob(meta.getId()));
+  }
+}
@@ -0,0 +1,85 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import org.openjdk.jmh.annotations.*;
+import weka.classifiers.Classifier;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+import weka.core.Utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup load of a J48 trained on 200k synthetic rows, through each path: the
+ * serialized Weka model plus header, and the binary file mapped by
+ * {@link ModelBinaryFormat}. Each load ends with one scored row, so the mapped path pays
+ * for touching the tree pages. Files sit in the page cache after the first iteration,
+ * so this measures deserializing against mapping, not disk reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelLoadBenchmark {
+
+  private Path dir;
+  private Path modelFile;
+  private Path headerFile;
+  private Path binaryFile;
+  private double[] features;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Instances data = SyntheticDataset.load(SyntheticDataset.ensure(200_000));
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+    CompiledTree compiled = TreeCompiler.compile(tree, data).orElseThrow();
+    Instances header = new Instances(data, 0);
+    Map<String, Double> importances = new LinkedHashMap<>();
+    for (int a = 0; a < header.numAttributes(); a++) {
+      if (a != header.classIndex()) {
+        importances.put(header.attribute(a).name(), 1.0 / (a + 1));
+      }
+    }
+
+    dir = Files.createTempDirectory("model-load");
+    modelFile = dir.resolve("food_insecurity_model.model");
+    headerFile = dir.resolve("food_insecurity_structure.header");
+    binaryFile = dir.resolve("food_insecurity_model.bin");
+    SerializationHelper.write(modelFile.toString(), tree);
+    SerializationHelper.write(headerFile.toString(), header);
+    ModelBinaryFormat.write(binaryFile, 1, "synthetic", header, importances, compiled);
+
+    features = data.instance(0).toDoubleArray();
+    features[data.classIndex()] = Utils.missingValue();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public double[] serializedModel() throws Exception {
+    Classifier model = (Classifier) SerializationHelper.read(modelFile.toString());
+    Instances header = (Instances) SerializationHelper.read(headerFile.toString());
+    CompiledTree tree = TreeCompiler.compile(model, header).orElseThrow();
+    return tree.distribution(features);
+  }
+
+  @Benchmark
+  public double[] mappedBinary() throws Exception {
+    return ModelBinaryFormat.map(binaryFile).tree().distribution(features);
+  }
+}
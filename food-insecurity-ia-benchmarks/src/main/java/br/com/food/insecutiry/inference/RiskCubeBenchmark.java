@@ -0,0 +1,90 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import org.openjdk.jmh.annotations.*;
+import weka.core.Instances;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RiskCube} over the synthetic header: recording a scored row from one and from
+ * concurrent threads, and roll-ups from the cached stripe merge and from a fresh one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiskCubeBenchmark {
+
+  private static final int ROWS = 4096; // potência de 2 para o índice circular
+  private static final List<String> DIMENSIONS = List.of("estado", "cor", "escolaridade", "salario");
+
+  private RiskCube cube;
+  private double[] values;
+  private double[][] dists;
+  private int numAttributes;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Instances data = SyntheticDataset.load(SyntheticDataset.ensure(10_000));
+    cube = RiskCube.forHeader(new Instances(data, 0), DIMENSIONS, 21, 0, 2 * Runtime.getRuntime().availableProcessors(), 2_000_000,
+      Long.MAX_VALUE);
+    numAttributes = data.numAttributes();
+    values = new double[ROWS * numAttributes];
+    dists = new double[ROWS][];
+    Random random = new Random(5);
+    for (int i = 0; i < ROWS; i++) {
+      System.arraycopy(data.instance(i).toDoubleArray(), 0, values, i * numAttributes, numAttributes);
+      double p = random.nextDouble();
+      dists[i] = new double[]{p, 1 - p};
+    }
+    // cubo povoado antes das consultas, com todas as linhas do dataset
+    for (int i = 0; i < data.numInstances(); i++) {
+      cube.record(data.instance(i).toDoubleArray(), 0, dists[i & (ROWS - 1)]);
+    }
+  }
+
+  private void record(Cursor cursor) {
+    int i = cursor.next++ & (ROWS - 1);
+    cube.record(values, i * numAttributes, dists[i]);
+  }
+
+  @Benchmark
+  public void recordSingle(Cursor cursor) {
+    record(cursor);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void recordConcurrent(Cursor cursor) {
+    record(cursor);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public RiskCube.RollUp rollUpByEstadoCached() {
+    return cube.rollUp(cube.cells(Long.MAX_VALUE), List.of("estado"), Map.of());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public RiskCube.RollUp rollUpByCorFilteredCached() {
+    return cube.rollUp(cube.cells(Long.MAX_VALUE), List.of("cor", "salario"), Map.of("estado", SyntheticDataset.ESTADOS[0]));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public RiskCube.RollUp rollUpByEstadoFresh() {
+    return cube.rollUp(cube.cells(-1), List.of("estado"), Map.of());
+  }
+}
@@ -0,0 +1,80 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a whole dataset: {@link BulkScorer} over rows already parsed, writing the CSV
+ * to a discarding writer, against one {@link FoodInsecurityService#predict} per row as
+ * a client of {@code /predict} would do. Time per dataset of {@link #ROWS} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkScoringBenchmark {
+
+  private static final int ROWS = 100_000;
+
+  @Param({"1", "4"})
+  public int partitions;
+
+  private FoodInsecurityMetrics metrics;
+  private FoodInsecurityService service;
+  private ModelSnapshot snapshot;
+  private Instances data;
+  private PredictionRequestDTO[] requests;
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    data = SyntheticDataset.load(SyntheticDataset.ensure(ROWS));
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+
+    metrics = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+    WekaModelConfig modelConfig = new WekaModelConfig(null, null, null, metrics, null, null);
+    modelConfig.setTrainedModel(tree, data);
+    snapshot = modelConfig.getSnapshot();
+    service = new FoodInsecurityService(null, null, modelConfig, null, new ObjectMapper(), metrics, null);
+    requests = SyntheticDataset.requests(ROWS, 13);
+    pool = new ForkJoinPool(partitions);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Benchmark
+  public long bulkScorer() throws Exception {
+    BulkScorer scorer = new BulkScorer(snapshot, data, pool, partitions, 16_384, Writer.nullWriter(), metrics, rows -> { }, null);
+    for (Instance row : data) {
+      scorer.accept(row);
+    }
+    return scorer.finish();
+  }
+
+  @Benchmark
+  public void predictPerRow(Blackhole blackhole) throws Exception {
+    for (PredictionRequestDTO request : requests) {
+      blackhole.consume(service.predict(request));
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FoodInsecurityService#predict} from 8 concurrent callers, direct and through the
+ * coalescer with different windows, reporting latency percentiles. Throughput is the
+ * sample count per second of measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CoalescedPredictBenchmark {
+
+  private static final int REQUESTS = 4096; // potência de 2 para o índice circular
+
+  // -1 = sem coalescing; 0 = lota com o que já está na fila, sem esperar
+  @Param({"-1", "0", "250", "1000"})
+  public long windowMicros;
+
+  @Param({"64"})
+  public int maxBatch;
+
+  private FoodInsecurityService service;
+  private WekaModelConfig modelConfig;
+  private PredictionRequestDTO[] requests;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Instances data = SyntheticDataset.load(SyntheticDataset.ensure(100_000));
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+
+    FoodInsecurityMetrics metrics = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+    modelConfig = new WekaModelConfig(null, null, null, metrics, null, null);
+    modelConfig.setTrainedModel(tree, data);
+
+    service = new FoodInsecurityService(null, null, modelConfig, null, new ObjectMapper(), metrics, null);
+    set("coalescingEnabled", windowMicros >= 0);
+    set("coalescingWindowMicros", windowMicros);
+    set("coalescingMaxBatch", maxBatch);
+    set("coalescingDispatchers", 1);
+    set("coalescingQueueCapacity", 4096);
+    service.init();
+    requests = SyntheticDataset.requests(REQUESTS, 11);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    service.shutdown();
+  }
+
+  @Benchmark
+  public PredictionResponseDTO predict(Cursor cursor) throws Exception {
+    return service.predict(requests[cursor.next++ & (REQUESTS - 1)]);
+  }
+
+  private void set(String name, Object value) throws ReflectiveOperationException {
+    Field field = FoodInsecurityService.class.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(service, value);
+  }
+}
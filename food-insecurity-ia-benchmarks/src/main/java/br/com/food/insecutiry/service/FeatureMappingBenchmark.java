@@ -0,0 +1,83 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import br.com.food.insecutiry.inference.FeatureEncoder;
+import br.com.food.insecutiry.model.RangeAgeEstrategy;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import org.openjdk.jmh.annotations.*;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request feature mapping: salary and age banding, building a Weka instance the way
+ * predict did before the per-thread scorer buffers, and the header-compiled encoder that
+ * replaced both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureMappingBenchmark {
+
+  private static final int SIZE = 1024; // potência de 2 para o índice circular
+
+  private final double[] salaries = new double[SIZE];
+  private final Integer[] ages = new Integer[SIZE];
+  private Instances header;
+  private FeatureEncoder encoder;
+  private PredictionRequestDTO[] requests;
+  private double[] values;
+  private int cursor;
+
+  @Setup
+  public void setUp() throws IOException {
+    Random random = new Random(7);
+    for (int i = 0; i < SIZE; i++) {
+      salaries[i] = random.nextDouble() * 6000;
+      ages[i] = random.nextInt(90);
+    }
+    header = new Instances(SyntheticDataset.load(SyntheticDataset.ensure(10_000)), 0);
+    encoder = FeatureEncoder.compile(header);
+    requests = SyntheticDataset.requests(SIZE, 7);
+    values = new double[header.numAttributes()];
+  }
+
+  private int next() {
+    return cursor++ & (SIZE - 1);
+  }
+
+  @Benchmark
+  public String mapSalaryToRange() {
+    return FoodInsecurityService.mapSalaryToRange(salaries[next()]);
+  }
+
+  @Benchmark
+  public String rangeAgeFromAge() {
+    return RangeAgeEstrategy.fromAge(ages[next()]);
+  }
+
+  @Benchmark
+  public DenseInstance denseInstance() {
+    int i = next();
+    DenseInstance inst = new DenseInstance(header.numAttributes());
+    inst.setDataset(header);
+    inst.setValue(0, FoodInsecurityService.mapSalaryToRange(salaries[i]));
+    inst.setValue(1, SyntheticDataset.ESTADOS[i % SyntheticDataset.ESTADOS.length]);
+    inst.setValue(2, SyntheticDataset.CORES[i % SyntheticDataset.CORES.length]);
+    inst.setValue(3, ages[i] % 17);
+    inst.setMissing(header.classIndex());
+    return inst;
+  }
+
+  @Benchmark
+  public double[] featureEncoder() {
+    encoder.encode(requests[next()], values);
+    return values;
+  }
+}
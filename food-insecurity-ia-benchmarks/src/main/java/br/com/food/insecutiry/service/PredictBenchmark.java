@@ -0,0 +1,73 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FoodInsecurityService#predict} on a J48 trained on synthetic data, single
+ * threaded and with concurrent callers, with and without the precomputed lookup table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictBenchmark {
+
+  private static final int REQUESTS = 4096; // potência de 2 para o índice circular
+
+  @Param({"false", "true"})
+  public boolean lookupTable;
+
+  private FoodInsecurityService service;
+  private WekaModelConfig modelConfig;
+  private PredictionRequestDTO[] requests;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Instances data = SyntheticDataset.load(SyntheticDataset.ensure(100_000));
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+
+    FoodInsecurityMetrics metrics = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+    modelConfig = new WekaModelConfig(null, null, null, metrics, null, null);
+    Field enabled = WekaModelConfig.class.getDeclaredField("lookupTableEnabled");
+    enabled.setAccessible(true);
+    enabled.setBoolean(modelConfig, lookupTable);
+    Field maxCells = WekaModelConfig.class.getDeclaredField("lookupTableMaxCells");
+    maxCells.setAccessible(true);
+    maxCells.setLong(modelConfig, 1_000_000);
+    modelConfig.setTrainedModel(tree, data);
+
+    service = new FoodInsecurityService(null, null, modelConfig, null, new ObjectMapper(), metrics, null);
+    requests = SyntheticDataset.requests(REQUESTS, 11);
+  }
+
+  @Benchmark
+  public PredictionResponseDTO predict(Cursor cursor) throws Exception {
+    return service.predict(requests[cursor.next++ & (REQUESTS - 1)]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public PredictionResponseDTO predictConcurrent(Cursor cursor) throws Exception {
+    return service.predict(requests[cursor.next++ & (REQUESTS - 1)]);
+  }
+}
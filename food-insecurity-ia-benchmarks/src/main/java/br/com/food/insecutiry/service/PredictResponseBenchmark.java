@@ -0,0 +1,94 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.benchmarks.SyntheticDataset;
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link FoodInsecurityService#predict} plus the JSON encoding of its response, as the
+ * controller writes it: the full response with the pre-serialized importances, the lean
+ * one, and the full one re-serializing the importances map per request as before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictResponseBenchmark {
+
+  private static final int REQUESTS = 4096; // potência de 2 para o índice circular
+
+  // formato da resposta antes do payload memoizado
+  record MapResponse(String prediction, Map<String, Double> probabilities, String topAttributeName, Double topAttributeScore,
+                     Map<String, Double> attributeImportances) {
+  }
+
+  private FoodInsecurityService service;
+  private ModelSnapshot snapshot;
+  private ObjectMapper objectMapper;
+  private PredictionRequestDTO[] requests;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Instances data = SyntheticDataset.load(SyntheticDataset.ensure(100_000));
+    J48 tree = new J48();
+    tree.buildClassifier(data);
+
+    FoodInsecurityMetrics metrics = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+    WekaModelConfig modelConfig = new WekaModelConfig(null, null, null, metrics, null, null);
+    modelConfig.setTrainedModel(tree, data);
+    // setTrainedModel publica sem importâncias; as do treino (InfoGain) entram no mesmo snapshot
+    Method importances = WekaModelConfig.class.getDeclaredMethod("computeAttributeImportances", Instances.class);
+    importances.setAccessible(true);
+    Field current = WekaModelConfig.class.getDeclaredField("snapshot");
+    current.setAccessible(true);
+    @SuppressWarnings("unchecked")
+    AtomicReference<ModelSnapshot> reference = (AtomicReference<ModelSnapshot>) current.get(modelConfig);
+    @SuppressWarnings("unchecked")
+    Map<String, Double> infoGain = (Map<String, Double>) importances.invoke(modelConfig, data);
+    snapshot = modelConfig.getSnapshot().toBuilder().attributeImportances(infoGain).build();
+    reference.set(snapshot);
+
+    objectMapper = new ObjectMapper();
+    service = new FoodInsecurityService(null, null, modelConfig, null, objectMapper, metrics, null);
+    requests = SyntheticDataset.requests(REQUESTS, 11);
+  }
+
+  @Benchmark
+  public byte[] full(Cursor cursor) throws Exception {
+    return objectMapper.writeValueAsBytes(service.predict(requests[cursor.next++ & (REQUESTS - 1)]));
+  }
+
+  @Benchmark
+  public byte[] lean(Cursor cursor) throws Exception {
+    return objectMapper.writeValueAsBytes(service.predictSummary(requests[cursor.next++ & (REQUESTS - 1)]));
+  }
+
+  @Benchmark
+  public byte[] fullMapPerRequest(Cursor cursor) throws Exception {
+    PredictionResponseDTO response = service.predict(requests[cursor.next++ & (REQUESTS - 1)]);
+    Map.Entry<String, Double> top = snapshot.topAttribute().orElseThrow();
+    return objectMapper.writeValueAsBytes(new MapResponse(response.prediction(), response.probabilities(),
+      top.getKey(), top.getValue(), snapshot.attributeImportances()));
+  }
+}
@@ -0,0 +1,200 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.Application;
+import br.com.food.insecutiry.TestDatasets;
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.TrainingJob;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Two replicas of the service, each a full application context with its own instance-id,
+ * sharing one Mongo: only one trains at a time, the other picks the model up from the
+ * registry, and no replica ever goes back to an older version. The tests run in order
+ * and build on each other's state.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class TrainingCoordinationIT {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(120);
+  private static final long POLL_MS = 200;
+
+  @Container
+  static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+  private static ConfigurableApplicationContext replicaA;
+  private static ConfigurableApplicationContext replicaB;
+  private static DatasetMetadata dataset;
+
+  @BeforeAll
+  static void startReplicas() throws Exception {
+    System.setProperty("weka.test.maventest", "true");
+    replicaA = start("replica-a");
+    replicaB = start("replica-b");
+    awaitUntil("startup load", () -> config(replicaA).isStartupLoadComplete() && config(replicaB).isStartupLoadComplete());
+    try (InputStream in = TestDatasets.class.getResourceAsStream(TestDatasets.SAMPLE)) {
+      dataset = replicaB.getBean(DatasetStore.class).store(in, "sample.arff", "application/arff", IngestMode.FULL, null).metadata();
+    }
+  }
+
+  @AfterAll
+  static void stopReplicas() {
+    if (replicaB != null) replicaB.close();
+    if (replicaA != null) replicaA.close();
+  }
+
+  @Test
+  @Order(1)
+  void replicaWaitsForTheLeaseHeldByAnotherAndTrainsAfterIt() throws Exception {
+    TrainingLeaseService leaseA = replicaA.getBean(TrainingLeaseService.class);
+    TrainingLeaseService leaseB = replicaB.getBean(TrainingLeaseService.class);
+    assertThat(leaseA.getInstanceId()).isEqualTo("replica-a");
+    assertThat(leaseB.getInstanceId()).isEqualTo("replica-b");
+
+    TrainingJob job;
+    try (TrainingLeaseService.Lease held = leaseA.tryAcquire().orElseThrow()) {
+      assertThat(leaseB.tryAcquire()).isEmpty();
+      job = submit(replicaB);
+      // mais que o ttl: só continua de A porque o heartbeat renova
+      Thread.sleep(4_000);
+      assertThat(held.isLost()).isFalse();
+      assertThat(job.getStatus()).isEqualTo(TrainingJob.Status.RUNNING);
+      assertThat(job.getPhase()).isEqualTo("lease");
+    }
+
+    awaitUntil("training on replica-b", () -> job.getStatus() != TrainingJob.Status.RUNNING);
+    assertThat(job.getStatus()).as(job.getError()).isEqualTo(TrainingJob.Status.SUCCEEDED);
+    assertThat(job.getPhaseTimingsMs().get("lease")).isGreaterThanOrEqualTo(4_000L);
+    assertThat(config(replicaB).getSnapshot().version()).isEqualTo(job.getModelVersion());
+    // B liberou o lease ao terminar
+    try (TrainingLeaseService.Lease again = leaseA.tryAcquire().orElseThrow()) {
+      assertThat(again.isLost()).isFalse();
+    }
+  }
+
+  @Test
+  @Order(2)
+  void otherReplicaPicksUpTheNewVersionFromTheRegistry() throws Exception {
+    long trained = config(replicaB).getSnapshot().version();
+
+    awaitUntil("replica-a serving v" + trained, () -> version(replicaA) == trained);
+    assertThat(replicaA.getBean(ModelRegistryService.class).latestVersion()).contains(trained);
+  }
+
+  @Test
+  @Order(3)
+  void registryNeverReplacesANewerLocalModel() throws Exception {
+    ModelSnapshot registered = config(replicaA).getSnapshot();
+    // modelo publicado só em B: versão do contador, acima da registrada, sem entrada no registro
+    config(replicaB).setTrainedModel(registered.classifier(), registered.header());
+    long local = version(replicaB);
+    assertThat(local).isGreaterThan(registered.version());
+
+    Thread.sleep(10 * POLL_MS);
+    assertThat(config(replicaB).refreshFromRegistry()).isFalse();
+    assertThat(version(replicaB)).isEqualTo(local);
+  }
+
+  @Test
+  @Order(4)
+  void concurrentRefreshesPublishEachVersionOnceAndInOrder() throws Exception {
+    WekaModelConfig configA = config(replicaA);
+    List<Long> published = new CopyOnWriteArrayList<>();
+    configA.addPublishListener(snapshot -> published.add(snapshot.version()));
+    long before = version(replicaA);
+
+    AtomicBoolean stop = new AtomicBoolean();
+    ExecutorService refreshers = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 4; i++) {
+      refreshers.execute(() -> {
+        while (!stop.get()) {
+          try {
+            configA.refreshFromRegistry();
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+    }
+    try {
+      // mesmo dataset e parâmetros: B promove o modelo do cache do registro a uma versão nova
+      TrainingJob job = submit(replicaB);
+      awaitUntil("training on replica-b", () -> job.getStatus() != TrainingJob.Status.RUNNING);
+      assertThat(job.getStatus()).as(job.getError()).isEqualTo(TrainingJob.Status.SUCCEEDED);
+      assertThat(job.isModelCacheHit()).isTrue();
+      long promoted = job.getModelVersion();
+      assertThat(promoted).isGreaterThan(before);
+
+      awaitUntil("replica-a serving v" + promoted, () -> version(replicaA) == promoted);
+    } finally {
+      stop.set(true);
+      refreshers.shutdown();
+      assertThat(refreshers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    }
+
+    assertThat(published).containsExactly(version(replicaA));
+    assertThat(version(replicaB)).isEqualTo(version(replicaA));
+  }
+
+  private static ConfigurableApplicationContext start(String instanceId) {
+    return new SpringApplicationBuilder(Application.class).run(
+      "--server.port=0",
+      "--spring.data.mongodb.uri=" + MONGO.getReplicaSetUrl("food_insecurity_it"),
+      "--food-insecurity.instance-id=" + instanceId,
+      "--food-insecurity.registry.poll.interval-ms=" + POLL_MS,
+      "--food-insecurity.registry.warmup-rows=100",
+      "--food-insecurity.startup.prewarm.requests=0",
+      "--food-insecurity.training.lease.ttl-seconds=3",
+      "--food-insecurity.training.lease.retry-seconds=1");
+  }
+
+  private static TrainingJob submit(ConfigurableApplicationContext replica) {
+    TrainingJobService jobs = replica.getBean(TrainingJobService.class);
+    return jobs.submit(dataset, jobs.admit());
+  }
+
+  private static WekaModelConfig config(ConfigurableApplicationContext replica) {
+    return replica.getBean(WekaModelConfig.class);
+  }
+
+  private static long version(ConfigurableApplicationContext replica) {
+    ModelSnapshot snapshot = config(replica).getSnapshot();
+    return snapshot == null ? -1 : snapshot.version();
+  }
+
+  private static void awaitUntil(String what, BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TIMEOUT.toNanos();
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        fail("Timed out waiting for " + what);
+      }
+      Thread.sleep(50);
+    }
+  }
+}
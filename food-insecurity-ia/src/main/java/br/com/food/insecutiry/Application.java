@@ -3,12 +3,17 @@ package br.com.food.insecutiry;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoRepositories
+@EnableScheduling
 public class Application {
 
   public static void main(String[] args) {
+    // Weka 3.8.0 resolve nomes de classe (inclusive o -W interno do RandomForest) varrendo o
+    // classpath como URLClassLoader, o que quebra no Java 9+; esta flag troca por Class.forName
+    System.setProperty("weka.test.maventest", "true");
     SpringApplication.run(Application.class, args);
   }
 }
@@ -2,21 +2,62 @@
 package br.com.food.insecutiry.config;
 
 import jakarta.annotation.PostConstruct;
-import lombok.Getter;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
 import weka.core.Instance;
-import weka.core.converters.ConverterUtils.DataSource;
+import br.com.food.insecutiry.inference.CompiledTree;
+import br.com.food.insecutiry.inference.DecisionTree;
+import br.com.food.insecutiry.inference.FeatureEncoder;
+import br.com.food.insecutiry.inference.ModelBinaryFormat;
+import br.com.food.insecutiry.inference.PredictionLookupTable;
+import br.com.food.insecutiry.inference.TreeCompiler;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.CalibrationReport;
 import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.ModelArtifact;
+import br.com.food.insecutiry.model.ModelRegistryEntry;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.model.TrainingMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.mongodb.gridfs.GridFsTemplate;
-import org.springframework.data.mongodb.gridfs.GridFsResource;
 import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import br.com.food.insecutiry.service.CalibrationExportService;
+import br.com.food.insecutiry.service.DatasetLoader;
+import br.com.food.insecutiry.service.ModelRegistryService;
+import br.com.food.insecutiry.service.ModelStartupService;
+import br.com.food.insecutiry.service.TrainingLeaseService;
+import br.com.food.insecutiry.training.ClassifierSpec;
+import br.com.food.insecutiry.training.HoldoutPredictions;
+import br.com.food.insecutiry.training.ModelSelection;
+import br.com.food.insecutiry.training.ParallelCrossValidation;
+import br.com.food.insecutiry.training.ReliabilityDiagram;
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.trees.HoeffdingTree;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.attributeSelection.InfoGainAttributeEval;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,31 +67,137 @@ public class WekaModelConfig {
 
   private static final String MODEL_PATH = "food_insecurity_model.model";
   private static final String STRUCTURE_PATH = "food_insecurity_structure.header";
+  private static final String MODEL_BINARY_PATH = "food_insecurity_model.bin";
+  // com orçamento de heap o teste de vazamento usa 1 de cada LEAKAGE_FOLDS linhas da amostra
+  private static final int LEAKAGE_FOLDS = 5;
 
   private final DatasetMetadataRepository datasetMetadataRepository;
-  private final GridFsTemplate gridFsTemplate;
+  private final DatasetLoader datasetLoader;
+  private final ModelRegistryService modelRegistryService;
+  private final FoodInsecurityMetrics metrics;
+  private final CalibrationExportService calibrationExportService;
+  private final TrainingLeaseService trainingLeaseService;
 
-  @Getter
-  private volatile Classifier model;
+  private final AtomicReference<ModelSnapshot> snapshot = new AtomicReference<>();
+  private final AtomicLong versionSequence = new AtomicLong();
+  private final List<Consumer<ModelSnapshot>> publishListeners = new CopyOnWriteArrayList<>();
+  private volatile boolean startupLoadComplete;
 
-  @Getter
-  private volatile Instances structure;
+  @Value("${food-insecurity.training.parallelism:0}")
+  private int trainingParallelism;
 
-  @Getter
-  private volatile Map<String, Double> attributeImportances = Collections.emptyMap();
+  private ForkJoinPool trainingPool;
 
+  // > 0: treino amostrado e sequencial que cabe neste orçamento de heap
+  @Value("${food-insecurity.training.heap-budget-mb:0}")
+  private long heapBudgetMb;
+
+  @Value("${food-insecurity.model.retrain-on-startup:false}")
+  private boolean retrainOnStartup;
+
+  @Value("${food-insecurity.lookup-table.enabled:false}")
+  private boolean lookupTableEnabled;
+
+  @Value("${food-insecurity.lookup-table.max-cells:1000000}")
+  private long lookupTableMaxCells;
+
+  // linhas sintéticas pontuadas por um modelo vindo do registro antes de ele passar a servir
+  @Value("${food-insecurity.registry.warmup-rows:20000}")
+  private int registryWarmupRows;
+
+  @Value("${food-insecurity.training.algorithm:J48}")
+  private String algorithm = "J48";
+
+  @Value("${food-insecurity.training.model-selection.enabled:false}")
+  private boolean modelSelectionEnabled;
+
+  @Value("${food-insecurity.training.model-selection.candidates:J48 -C 0.25,J48 -C 0.1,J48 -C 0.5,RandomForest -I 50,NaiveBayes,Logistic}")
+  private List<String> modelSelectionCandidates;
+
+  @Value("${food-insecurity.training.model-selection.folds:5}")
+  private int modelSelectionFolds;
+
+  @Value("${food-insecurity.training.model-selection.metric:KAPPA}")
+  private ModelSelection.Metric modelSelectionMetric;
+
+  @Value("${food-insecurity.training.model-selection.time-budget-seconds:300}")
+  private long modelSelectionTimeBudgetSeconds;
+
+  @Value("${food-insecurity.training.model-selection.cpu-budget-seconds:1200}")
+  private long modelSelectionCpuBudgetSeconds;
+
+  // quanto da métrica um candidato precisa ganhar para cada vez que dobra a latência de predição
+  @Value("${food-insecurity.training.model-selection.latency-penalty:0.01}")
+  private double modelSelectionLatencyPenalty;
+
+  // mesmo dataset (por hash) e mesmos parâmetros reaproveitam o modelo registrado em vez de treinar
+  @Value("${food-insecurity.training.model-cache.enabled:true}")
+  private boolean modelCacheEnabled;
+
+  @Value("${food-insecurity.calibration.enabled:true}")
+  private boolean calibrationEnabled;
+
+  @Value("${food-insecurity.calibration.bins:10}")
+  private int calibrationBins = 10; // mesmo padrão do @Value, para instâncias criadas fora do Spring
+
+  private record HoldoutResult(weka.classifiers.Evaluation evaluation, HoldoutPredictions predictions,
+                               ReliabilityDiagram reliability) {
+  }
+
+  /** The model currently served, or null while none has been trained or loaded. */
+  public ModelSnapshot getSnapshot() {
+    return snapshot.get();
+  }
+
+  public Classifier getModel() {
+    ModelSnapshot current = snapshot.get();
+    return current == null ? null : current.classifier();
+  }
+
+  public Instances getStructure() {
+    ModelSnapshot current = snapshot.get();
+    return current == null ? null : current.header();
+  }
+
+  public Map<String, Double> getAttributeImportances() {
+    ModelSnapshot current = snapshot.get();
+    return current == null ? Collections.emptyMap() : current.attributeImportances();
+  }
 
   public Optional<Map.Entry<String, Double>> getTopAttribute() {
-    return attributeImportances.entrySet().stream().max(Map.Entry.comparingByValue());
+    ModelSnapshot current = snapshot.get();
+    return current == null ? Optional.empty() : current.topAttribute();
   }
 
   @PostConstruct
   public void init() {
+    // pool de CPU próprio do treino; por padrão deixa um core livre para as predições
+    int parallelism = trainingParallelism > 0 ? trainingParallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    trainingPool = new ForkJoinPool(parallelism, pool -> {
+      ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      worker.setName("training-worker-" + worker.getPoolIndex());
+      return worker;
+    }, null, false);
+    metrics.bindModelGauges(snapshot::get);
+  }
+
+  /**
+   * Loads the model to serve after a restart: the latest registered version, the local
+   * binary or serialized model, or a retrain when enabled. Called off the startup path by
+   * {@link ModelStartupService}, when uploads and the registry poller are already live, so
+   * it never replaces a newer model published meanwhile.
+   */
+  public void loadAtStartup() {
     try {
+      if (loadFromRegistry() || loadBinary(null)) {
+        return;
+      }
       File modelFile = new File(MODEL_PATH);
       if (modelFile.exists()) {
         log.info("Loading Weka model from disk...");
-        model = (Classifier) weka.core.SerializationHelper.read(MODEL_PATH);
+        long start = System.nanoTime();
+        Classifier model = (Classifier) weka.core.SerializationHelper.read(MODEL_PATH);
+        Instances structure = null;
 
         File structFile = new File(STRUCTURE_PATH);
         if (structFile.exists()) {
@@ -70,190 +217,613 @@ public class WekaModelConfig {
           log.warn("Structure file not found on disk.");
         }
 
-        if (structure == null) {
-          DatasetMetadata datasetMeta = datasetMetadataRepository.findTopByOrderByIdDesc();
+        if (structure != null) {
+          log.info("Loaded serialized model in {} ms.", (System.nanoTime() - start) / 1_000_000);
+          publishIfNewer(buildSnapshot(null, model, structure, Collections.emptyMap()));
+        } else if (retrainOnStartup) {
+          DatasetMetadata datasetMeta = datasetMetadataRepository.findTopByParentIdIsNullOrderByUploadedAtDescIdDesc();
           if (datasetMeta != null) {
             log.info("Retraining model to recover structure...");
-            trainModelFromDataset(datasetMeta);
-            log.info("Retrain complete.");
+            trainAtStartup(datasetMeta);
           } else {
             log.warn("No dataset available to recover structure.");
           }
+        } else {
+          log.warn("Structure missing and retrain on startup disabled; no model will serve until one is trained.");
         }
 
-      } else {
+      } else if (retrainOnStartup) {
         log.info("Model file not found. Will train when dataset is uploaded and requested.");
-        DatasetMetadata datasetMeta = datasetMetadataRepository.findTopByOrderByIdDesc();
+        DatasetMetadata datasetMeta = datasetMetadataRepository.findTopByParentIdIsNullOrderByUploadedAtDescIdDesc();
         if (datasetMeta != null) {
           log.info("Found dataset in database. Training model...");
-          trainModelFromDataset(datasetMeta);
-          log.info("Model training complete.");
+          trainAtStartup(datasetMeta);
         } else {
           log.warn("No dataset available for training. Prediction will not be available until a dataset is uploaded.");
-          model = null;
-          structure = null;
         }
+      } else {
+        log.warn("No registered model found. Prediction will not be available until a dataset is uploaded.");
       }
     } catch (Exception e) {
       log.error("Error initializing Weka model: {}", e.getMessage(), e);
-      model = null;
-      structure = null;
-      attributeImportances = Collections.emptyMap();
+    } finally {
+      startupLoadComplete = true;
     }
   }
 
-  public void trainModelFromDataset(DatasetMetadata datasetMeta) {
+  /** Whether {@link #loadAtStartup} has finished, with or without a model. */
+  public boolean isStartupLoadComplete() {
+    return startupLoadComplete;
+  }
+
+  /** Called with every snapshot that starts serving, on the publishing thread. */
+  public void addPublishListener(Consumer<ModelSnapshot> listener) {
+    publishListeners.add(listener);
+  }
+
+  // com várias réplicas só quem obtém o lease treina; as demais recebem o modelo pelo poller
+  private void trainAtStartup(DatasetMetadata datasetMeta) throws Exception {
+    Optional<TrainingLeaseService.Lease> lease = trainingLeaseService.tryAcquire();
+    if (lease.isEmpty()) {
+      log.info("Another instance is training; the model will be loaded from the registry.");
+      return;
+    }
+    try (TrainingLeaseService.Lease held = lease.get()) {
+      TrainingJob job = new TrainingJob(datasetMeta.getId(), metrics::phaseEnded);
+      held.onLost(() -> job.abort("lease de treino perdido para outra instância"));
+      trainModelFromDataset(datasetMeta, job);
+      log.info("Model training complete.");
+    }
+  }
+
+  // a última versão registrada volta a servir sem retreino: do binário local quando é a
+  // mesma versão, senão com um único read do artefato no GridFS
+  private boolean loadFromRegistry() {
     try {
-      GridFsResource resource = gridFsTemplate.getResource(datasetMeta.getFilename());
-      File tempArff = File.createTempFile("dataset", ".arff");
-      try (
-        InputStream is = resource.getInputStream();
-        FileOutputStream fos = new FileOutputStream(tempArff)
-      ) {
-        is.transferTo(fos);
+      Optional<ModelRegistryEntry> latest = modelRegistryService.latestEntry();
+      if (latest.isEmpty()) {
+        return false;
+      }
+      ModelRegistryEntry entry = latest.get();
+      if (loadBinary(entry.getVersion())) {
+        versionSequence.accumulateAndGet(entry.getVersion(), Math::max);
+        return true;
       }
+      publishIfNewer(fromRegistry(entry));
+      log.info("Loaded model version {} from the registry.", entry.getVersion());
+      return true;
+    } catch (Exception e) {
+      log.warn("Failed loading model from the registry: {}", e.getMessage());
+      return false;
+    }
+  }
 
-      DataSource source = new DataSource(tempArff.getAbsolutePath());
-      Instances data = source.getDataSet();
-      data.setClassIndex(data.numAttributes() - 1);
+  /**
+   * Serves the latest registered model when it is newer than the one being served, i.e.
+   * when another instance trained it. The check reads only the version number; the
+   * artifact is read once, warmed up, and swapped in only if no newer snapshot was
+   * published meanwhile. Returns whether the model changed.
+   */
+  public boolean refreshFromRegistry() throws Exception {
+    Optional<Long> latest = modelRegistryService.latestVersion();
+    ModelSnapshot current = snapshot.get();
+    if (latest.isEmpty() || (current != null && current.version() >= latest.get())) {
+      return false;
+    }
+    Optional<ModelRegistryEntry> entry = modelRegistryService.latestEntry();
+    if (entry.isEmpty()) {
+      return false;
+    }
+    log.info("Registry has model version {}, serving {}; reloading.", entry.get().getVersion(), current == null ? "none" : current.version());
+    ModelSnapshot next = fromRegistry(entry.get());
+    warmUp(next);
+    if (!publishIfNewer(next)) {
+      return false;
+    }
+    writeBinary(next);
+    return true;
+  }
 
-      log.info("=== Diagnósticos do Dataset ===");
-      log.info("Total de instâncias: {}", data.numInstances());
-      log.info("Total de atributos: {}", data.numAttributes());
-      log.info("Atributo classe: {}", data.classAttribute().name());
+  private ModelSnapshot fromRegistry(ModelRegistryEntry entry) throws Exception {
+    long start = System.nanoTime();
+    ModelArtifact artifact = modelRegistryService.readArtifact(entry);
+    log.info("Registry artifact deserialized in {} ms.", (System.nanoTime() - start) / 1_000_000);
+    versionSequence.accumulateAndGet(entry.getVersion(), Math::max);
+    return snapshotFor(entry.getVersion(), entry.getDatasetId(), artifact.classifier(), artifact.header(),
+      Collections.unmodifiableMap(artifact.attributeImportances()))
+      .toBuilder()
+      .trainedAt(entry.getCreatedAt())
+      .incrementalModel(artifact.incrementalModel())
+      .deltasApplied(entry.getDeltasApplied())
+      .build();
+  }
 
-      data.randomize(new Random(42));
-      int trainSize = (int) Math.round(data.numInstances() * 0.7);
-      int testSize = data.numInstances() - trainSize;
+  // pontua linhas aleatórias do header por todos os caminhos do snapshot (lookup, árvore
+  // compilada, Weka) para o JIT e as estruturas preguiçosas não caírem na primeira requisição
+  private void warmUp(ModelSnapshot candidate) throws Exception {
+    if (registryWarmupRows <= 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    Instances header = candidate.header();
+    double[] values = new double[header.numAttributes()];
+    DenseInstance instance = new DenseInstance(1.0, values);
+    instance.setDataset(header);
+    double[] dist = new double[header.numClasses()];
+    Random random = new Random(42);
+    for (int row = 0; row < registryWarmupRows; row++) {
+      for (int a = 0; a < values.length; a++) {
+        Attribute att = header.attribute(a);
+        values[a] = a == header.classIndex() ? Utils.missingValue()
+          : att.isNominal() ? random.nextInt(att.numValues()) : random.nextInt(20);
+      }
+      if (candidate.lookupTable() != null) {
+        candidate.lookupTable().lookup(values, dist);
+      }
+      if (candidate.compiledTree() != null) {
+        candidate.compiledTree().distribution(values, dist);
+      }
+      if (candidate.classifier() != null) {
+        candidate.classifier().distributionForInstance(instance);
+      }
+    }
+    log.info("Model version {} warmed up with {} rows in {} ms.", candidate.version(), registryWarmupRows,
+      (System.nanoTime() - start) / 1_000_000);
+  }
 
-      Instances trainData = new Instances(data, 0, trainSize);
-      Instances testData = new Instances(data, trainSize, testSize);
+  /**
+   * Maps the local model binary and serves from it. Such a snapshot scores on the mapped
+   * tree only: it has no Weka classifier nor incremental model, so an APPEND delta
+   * against it runs a full retrain. Returns false when the file is absent, unreadable or
+   * not {@code expectedVersion}.
+   */
+  private boolean loadBinary(Long expectedVersion) {
+    Path path = Path.of(MODEL_BINARY_PATH);
+    if (!Files.exists(path)) {
+      return false;
+    }
+    try {
+      long start = System.nanoTime();
+      ModelBinaryFormat.LoadedModel loaded = ModelBinaryFormat.map(path);
+      FeatureEncoder encoder = FeatureEncoder.compile(loaded.header());
+      if (expectedVersion != null && loaded.version() != expectedVersion) {
+        log.info("Model binary is version {}, registry has {}; ignoring it.", loaded.version(), expectedVersion);
+        return false;
+      }
+      versionSequence.accumulateAndGet(loaded.version(), Math::max);
+      publishIfNewer(ModelSnapshot.builder()
+        .version(loaded.version())
+        .datasetId(loaded.datasetId())
+        .trainedAt(Files.getLastModifiedTime(path).toInstant())
+        .header(loaded.header())
+        .encoder(encoder)
+        .compiledTree(loaded.tree())
+        .lookupTable(buildLookupTable(loaded.header(), encoder, loaded.tree()))
+        .attributeImportances(loaded.attributeImportances())
+        .build());
+      log.info("Loaded model binary version {} in {} ms (memory-mapped).", loaded.version(), (System.nanoTime() - start) / 1_000_000);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed loading model binary: {}", e.getMessage());
+      return false;
+    }
+  }
 
-      log.info("=== Divisão dos Dados ===");
-      log.info("Conjunto de treino: {} instâncias ({}%)", trainSize, 70.0);
-      log.info("Conjunto de teste: {} instâncias ({}%)", testSize, 30.0);
+  // sem hash (datasets gravados antes do hash) ou sem Mongo o job simplesmente treina
+  private ModelRegistryService.CacheKey cacheKey(DatasetMetadata datasetMeta) {
+    try {
+      return datasetLoader.historyHash(datasetMeta)
+        .map(hash -> new ModelRegistryService.CacheKey(hash, trainingParams()))
+        .orElse(null);
+    } catch (RuntimeException e) {
+      log.warn("Falha ao calcular o hash do dataset {}: {}", datasetMeta.getId(), e.getMessage());
+      return null;
+    }
+  }
 
-      Classifier newModel = new weka.classifiers.trees.J48();
-      long startTrain = System.currentTimeMillis();
-      newModel.buildClassifier(trainData);
-      long trainTime = System.currentTimeMillis() - startTrain;
+  // tudo o que muda o modelo treinado a partir do mesmo dataset; a seed do split e da CV é fixa
+  private String trainingParams() {
+    StringBuilder params = new StringBuilder()
+      .append("algorithm=").append(algorithm)
+      .append(";heapBudgetMb=").append(heapBudgetMb);
+    if (modelSelectionEnabled) {
+      params.append(";selection=").append(String.join("|", modelSelectionCandidates))
+        .append(";folds=").append(modelSelectionFolds)
+        .append(";metric=").append(modelSelectionMetric)
+        .append(";timeBudget=").append(modelSelectionTimeBudgetSeconds)
+        .append(";cpuBudget=").append(modelSelectionCpuBudgetSeconds)
+        .append(";latencyPenalty=").append(modelSelectionLatencyPenalty);
+    }
+    return params.toString();
+  }
 
-      log.info("Tempo de treinamento: {} ms", trainTime);
+  /**
+   * Serves the model already registered for the same dataset content and training
+   * parameters, or returns null when there is none or it cannot be read. The cached model
+   * is registered again under a new version, sharing its artifact, so it becomes the
+   * latest one for every instance; if it is the one being served nothing changes.
+   */
+  private ModelSnapshot serveCachedModel(DatasetMetadata datasetMeta, ModelRegistryService.CacheKey cacheKey, TrainingJob job) {
+    long phaseStart = job.beginPhase("cache");
+    try {
+      Optional<ModelRegistryEntry> hit = modelRegistryService.findCached(cacheKey);
+      metrics.recordModelCache(hit.isPresent());
+      if (hit.isEmpty()) {
+        return null;
+      }
+      ModelRegistryEntry entry = hit.get();
+      ModelSnapshot current = snapshot.get();
+      if (current != null && current.version() == entry.getVersion()) {
+        job.markModelCacheHit();
+        log.info("Dataset {} já treinado com os mesmos parâmetros; modelo v{} continua servindo.", datasetMeta.getId(), entry.getVersion());
+        return current;
+      }
+      ModelArtifact artifact = modelRegistryService.readArtifact(entry);
+      long version = nextVersion();
+      ModelSnapshot cached = snapshotFor(version, datasetMeta.getId(), artifact.classifier(), artifact.header(),
+        Collections.unmodifiableMap(artifact.attributeImportances()))
+        .toBuilder()
+        .incrementalModel(artifact.incrementalModel())
+        .deltasApplied(entry.getDeltasApplied())
+        .build();
+      modelRegistryService.promote(entry, version, datasetMeta.getId());
+      writeBinary(cached);
+      publishIfNewer(cached);
+      job.markModelCacheHit();
+      log.info("Dataset {} já treinado com os mesmos parâmetros; modelo v{} reaproveitado como v{}.",
+        datasetMeta.getId(), entry.getVersion(), version);
+      return cached;
+    } catch (Exception e) {
+      log.warn("Cache de modelos indisponível, treinando normalmente: {}", e.getMessage());
+      return null;
+    } finally {
+      job.endPhase("cache", phaseStart);
+    }
+  }
 
-      weka.classifiers.Evaluation evalTest = new weka.classifiers.Evaluation(trainData);
-      try {
-        File csv = new File("calibration_test.csv");
-        exportCalibrationCsv(testData, newModel, csv);
-        log.info("Calibration CSV gravado em: {}", csv.getAbsolutePath());
-      } catch (Exception e) {
-        log.warn("Falha ao exportar CSV de calibragem: {}", e.getMessage());
+  /**
+   * Trains a new model from the dataset and publishes it. The snapshot being served is
+   * left untouched until the new one is complete, and kept if training fails. When the
+   * registry already holds a model for the same dataset content and training parameters,
+   * that model is served instead and nothing is trained.
+   *
+   * With a heap budget the dataset is streamed into a stratified sample sized to the
+   * budget, the stages run one at a time, CV holds a single fold copy and the leakage
+   * test shuffles the sample's own labels instead of copying it.
+   */
+  public ModelSnapshot trainModelFromDataset(DatasetMetadata datasetMeta, TrainingJob job) throws Exception {
+    ModelRegistryService.CacheKey cacheKey = modelCacheEnabled ? cacheKey(datasetMeta) : null;
+    if (cacheKey != null) {
+      ModelSnapshot cached = serveCachedModel(datasetMeta, cacheKey, job);
+      if (cached != null) {
+        return cached;
       }
+    }
 
+    boolean budgeted = heapBudgetMb > 0;
+    // versão reservada no início: a calibragem é gravada com ela antes da publicação
+    long version = nextVersion();
+    long phaseStart = job.beginPhase("load");
+    DatasetLoader.LoadedDataset loaded = budgeted
+      ? datasetLoader.loadSample(datasetMeta, heapBudgetMb << 20, new Random(42))
+      : datasetLoader.loadHistory(datasetMeta);
+    Instances data = loaded.data();
+    // o caminho antigo baixava e relia o ARFF duas vezes: treino e teste de vazamento
+    recordIo(job, loaded.bytesRead(), 2 * loaded.legacyIoBytes());
+    job.endPhase("load", phaseStart);
+
+    // o teste de vazamento embaralha rótulos: recebe sua própria cópia, na ordem original;
+    // com orçamento de heap roda antes do split, só num fold do dataset;
+    // usa o algoritmo configurado, sem esperar a seleção de modelo
+    ClassifierSpec defaultSpec = ClassifierSpec.parse(algorithm);
+    CompletableFuture<Double> leakage = budgeted ? stage(job, "leakage", () -> testDataLeakageOnFold(defaultSpec, data)) : null;
+    Instances leakageData = budgeted ? null : new Instances(data);
+
+    log.info("=== Diagnósticos do Dataset ===");
+    log.info("Total de instâncias: {}", data.numInstances());
+    log.info("Total de atributos: {}", data.numAttributes());
+    log.info("Atributo classe: {}", data.classAttribute().name());
+
+    phaseStart = job.beginPhase("split");
+    data.randomize(new Random(42));
+    int trainSize = (int) Math.round(data.numInstances() * 0.7);
+    int testSize = data.numInstances() - trainSize;
+
+    Instances trainData = new Instances(data, 0, trainSize);
+    Instances testData = new Instances(data, trainSize, testSize);
+    job.endPhase("split", phaseStart);
+
+    log.info("=== Divisão dos Dados ===");
+    log.info("Conjunto de treino: {} instâncias ({}%)", trainSize, 70.0);
+    log.info("Conjunto de teste: {} instâncias ({}%)", testSize, 30.0);
+
+    ModelSelection.Result selection = null;
+    if (modelSelectionEnabled) {
+      phaseStart = job.beginPhase("selection");
+      selection = selectModel(trainData, budgeted);
+      job.endPhase("selection", phaseStart);
+    }
+    ClassifierSpec spec = selection == null ? defaultSpec : selection.winner().orElse(defaultSpec);
+    log.info("Algoritmo de treino: {}", spec);
+
+    // estágios independentes rodam em paralelo no pool de treino; a CV roda seus folds no mesmo pool
+    CompletableFuture<HoldoutResult> holdout = stage(job, "holdout", () -> evaluateHoldout(spec, trainData, testData));
+    // exportação da calibragem encadeada no holdout: roda junto com a CV e não segura a publicação
+    CompletableFuture<CalibrationReport> calibration = calibrationEnabled
+      ? holdout.thenCompose(result -> stage(job, "calibration", () -> calibrationExportService.export(
+          version, datasetMeta.getId(), testData, result.predictions(), result.reliability())))
+      : CompletableFuture.completedFuture(null);
+    CompletableFuture<Classifier> fit = stage(job, "fit", () -> {
+      // === SALVAR MODELO FINAL (treinado no conjunto COMPLETO para produção) ===
+      log.info("=== Treinando modelo final no dataset completo ===");
+      Classifier finalModel = spec.newClassifier();
+      finalModel.buildClassifier(data);
+      return finalModel;
+    });
+    CompletableFuture<Map<String, Double>> importances = stage(job, "infogain", () -> computeAttributeImportances(data));
+    CompletableFuture<HoeffdingTree> incremental = stage(job, "incremental", () -> {
+      HoeffdingTree tree = new HoeffdingTree();
+      tree.buildClassifier(data);
+      return tree;
+    });
+    if (leakage == null) {
+      leakage = stage(job, "leakage", () -> testDataLeakageWithShuffledLabels(defaultSpec, leakageData));
+    }
 
-      long startTest = System.currentTimeMillis();
-      evalTest.evaluateModel(newModel, testData);
-      long testTime = System.currentTimeMillis() - startTest;
-
-      log.info("=== Métricas no Conjunto de Teste (Holdout 70/30) ===");
-      log.info("Tempo de teste: {} ms", testTime);
-      log.info("Acurácia: {}%", evalTest.pctCorrect());
-      log.info("Instâncias corretas: {}", evalTest.correct());
-      log.info("Instâncias incorretas: {}", evalTest.incorrect());
-      log.info("Kappa statistic: {}", evalTest.kappa());
-      log.info("Erro médio absoluto: {}", evalTest.meanAbsoluteError());
-      log.info("Raiz do erro quadrático médio: {}", evalTest.rootMeanSquaredError());
-
-      // Métricas por classe (TESTE)
-      for (int i = 0; i < trainData.numClasses(); i++) {
-        log.info("=== Classe: {} (Teste) ===", trainData.classAttribute().value(i));
-        log.info("Precision: {}", evalTest.precision(i));
-        log.info("Recall: {}", evalTest.recall(i));
-        log.info("F-Measure: {}", evalTest.fMeasure(i));
-        try {
-          log.info("AUC: {}", evalTest.areaUnderROC(i));
-        } catch (Exception e) {
-          log.warn("AUC não disponível para classe {}", i);
-        }
-      }
+    log.info("=== Validação Cruzada 10-Fold (apenas no treino) ===");
+    phaseStart = job.beginPhase("cv");
+    weka.classifiers.Evaluation evalCV = ParallelCrossValidation.run(
+      spec.newClassifier(), trainData, 10, new Random(42), trainingPool, budgeted ? 1 : trainingPool.getParallelism());
+    job.endPhase("cv", phaseStart);
+
+    log.info("Acurácia (CV no treino): {}%", evalCV.pctCorrect());
+    log.info("Kappa (CV no treino): {}", evalCV.kappa());
+
+    Classifier finalModel = await(fit);
+    Map<String, Double> attributeImportances = await(importances);
+    HoeffdingTree incrementalModel = await(incremental);
+    weka.classifiers.Evaluation evalTest = await(holdout).evaluation();
+    Double shuffledAccuracy = await(leakage);
+    Instances header = new Instances(data, 0);
+    TrainingMetrics metrics = TrainingMetrics.builder()
+      .holdoutAccuracy(evalTest.pctCorrect())
+      .holdoutKappa(evalTest.kappa())
+      .cvAccuracy(evalCV.pctCorrect())
+      .cvKappa(evalCV.kappa())
+      .shuffledLabelAccuracy(shuffledAccuracy)
+      .numInstances(data.numInstances())
+      .algorithm(spec.name())
+      .candidates(selection == null ? null : selection.candidates())
+      .build();
+
+    phaseStart = job.beginPhase("publish");
+    ModelSnapshot trained = verifyCompiledTree(snapshotFor(version, datasetMeta.getId(), finalModel, header, attributeImportances), testData)
+      .toBuilder().incrementalModel(incrementalModel).build();
+    weka.core.SerializationHelper.write(MODEL_PATH, finalModel);
+    weka.core.SerializationHelper.write(STRUCTURE_PATH, header);
+    writeBinary(trained);
+    register(trained, metrics, cacheKey);
+    publishIfNewer(trained);
+    job.endPhase("publish", phaseStart);
 
-      log.info("=== Matriz de Confusão (Teste) ===");
-      log.info("\n{}", evalTest.toMatrixString());
+    try {
+      await(calibration);
+    } catch (Exception e) {
+      log.warn("Falha ao exportar a calibragem do modelo v{}: {}", version, e.getMessage());
+    }
 
-      log.info("=== Validação Cruzada 10-Fold (apenas no treino) ===");
-      weka.classifiers.Evaluation evalCV = new weka.classifiers.Evaluation(trainData);
-      Classifier modelCV = new weka.classifiers.trees.J48();
-      evalCV.crossValidateModel(modelCV, trainData, 10, new Random(42));
+    log.info("Model and structure trained and saved successfully.");
+    return trained;
+  }
 
-      log.info("Acurácia (CV no treino): {}%", evalCV.pctCorrect());
-      log.info("Kappa (CV no treino): {}", evalCV.kappa());
+  /**
+   * Applies an APPEND delta to the incremental model of the serving snapshot, at a cost
+   * proportional to the delta. The updated model serves until the next full rebuild.
+   * Falls back to a full retrain of the base history when there is nothing to update.
+   */
+  public ModelSnapshot applyDelta(DatasetMetadata delta, TrainingJob job) throws Exception {
+    ModelSnapshot current = snapshot.get();
+    if (current == null || current.incrementalModel() == null || !delta.getParentId().equals(current.datasetId())) {
+      log.info("No incremental model for base {}; running a full retrain instead.", delta.getParentId());
+      DatasetMetadata base = datasetMetadataRepository.findById(delta.getParentId())
+        .orElseThrow(() -> new IllegalStateException("Dataset base não encontrado: " + delta.getParentId()));
+      return trainModelFromDataset(base, job);
+    }
 
-      // === SALVAR MODELO FINAL (treinado no conjunto COMPLETO para produção) ===
-      log.info("=== Treinando modelo final no dataset completo ===");
-      Classifier finalModel = new weka.classifiers.trees.J48();
-      finalModel.buildClassifier(data);
-      weka.core.SerializationHelper.write(MODEL_PATH, finalModel);
-      this.model = finalModel;
+    long phaseStart = job.beginPhase("load");
+    DatasetLoader.LoadedDataset loaded = datasetLoader.load(delta);
+    Instances rows = loaded.data();
+    recordIo(job, loaded.bytesRead(), loaded.legacyIoBytes());
+    job.endPhase("load", phaseStart);
 
-      Instances header = new Instances(data, 0);
-      this.structure = header;
-      weka.core.SerializationHelper.write(STRUCTURE_PATH, header);
+    String mismatch = current.header().equalHeadersMsg(rows);
+    if (mismatch != null) {
+      throw new IllegalArgumentException("Delta incompatível com o modelo atual: " + mismatch);
+    }
 
-      try {
-        InfoGainAttributeEval evalAttr = new InfoGainAttributeEval();
-        evalAttr.buildEvaluator(data);
-        Map<String, Double> map = new LinkedHashMap<>();
-        for (int i = 0; i < data.numAttributes(); i++) {
-          if (i == data.classIndex()) continue;
-          String name = data.attribute(i).name();
-          double score = evalAttr.evaluateAttribute(i);
-          map.put(name, score);
-        }
-        this.attributeImportances = map.entrySet().stream()
-          .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
-          .collect(Collectors.toMap(
-            Map.Entry::getKey,
-            Map.Entry::getValue,
-            (a,b) -> a,
-            LinkedHashMap::new
-          ));
-
-        log.info("=== Top 5 Atributos Mais Importantes ===");
-        attributeImportances.entrySet().stream()
-          .limit(5)
-          .forEach(e -> log.info("{}: {}", e.getKey(), e.getValue()));
+    phaseStart = job.beginPhase("update");
+    // cópia: o snapshot publicado nunca é alterado
+    UpdateableClassifier updated = (UpdateableClassifier) AbstractClassifier.makeCopy((Classifier) current.incrementalModel());
+    for (int i = 0; i < rows.numInstances(); i++) {
+      updated.updateClassifier(rows.instance(i));
+    }
+    job.endPhase("update", phaseStart);
+
+    phaseStart = job.beginPhase("publish");
+    ModelSnapshot next = current.toBuilder()
+      .version(nextVersion())
+      .trainedAt(Instant.now())
+      .classifier((Classifier) updated)
+      .compiledTree(null)
+      .lookupTable(null)
+      .incrementalModel(updated)
+      .deltasApplied(current.deltasApplied() + 1)
+      .build();
+    register(next, TrainingMetrics.builder().numInstances(rows.numInstances()).build(), null);
+    publishIfNewer(next);
+    job.endPhase("publish", phaseStart);
+
+    log.info("Delta {} aplicado: {} instâncias, {} deltas desde o último J48.", delta.getId(), rows.numInstances(), next.deltasApplied());
+    return next;
+  }
 
+  // uma única passada de scoring alimenta a Evaluation, o diagrama de confiabilidade e o CSV de calibragem
+  private HoldoutResult evaluateHoldout(ClassifierSpec spec, Instances trainData, Instances testData) throws Exception {
+    Classifier newModel = spec.newClassifier();
+    long startTrain = System.currentTimeMillis();
+    newModel.buildClassifier(trainData);
+    long trainTime = System.currentTimeMillis() - startTrain;
+
+    log.info("Tempo de treinamento: {} ms", trainTime);
+
+    weka.classifiers.Evaluation evalTest = new weka.classifiers.Evaluation(trainData);
+    HoldoutPredictions predictions = new HoldoutPredictions(testData.numInstances(), testData.numClasses());
+    ReliabilityDiagram reliability = new ReliabilityDiagram(calibrationBins, CalibrationExportService.positiveClass(testData));
+
+    long startTest = System.currentTimeMillis();
+    for (int i = 0; i < testData.numInstances(); i++) {
+      Instance inst = testData.instance(i);
+      // como Evaluation.evaluateModel: o classificador não vê o rótulo
+      Instance classMissing = (Instance) inst.copy();
+      classMissing.setDataset(testData);
+      classMissing.setClassMissing();
+      double[] dist = newModel.distributionForInstance(classMissing);
+      evalTest.evaluateModelOnceAndRecordPrediction(dist, inst);
+      int label = inst.classIsMissing() ? -1 : (int) inst.classValue();
+      predictions.add(dist, label);
+      reliability.add(dist, label);
+    }
+    long testTime = System.currentTimeMillis() - startTest;
+
+    log.info("=== Métricas no Conjunto de Teste (Holdout 70/30) ===");
+    log.info("Tempo de teste: {} ms", testTime);
+    log.info("Acurácia: {}%", evalTest.pctCorrect());
+    log.info("Instâncias corretas: {}", evalTest.correct());
+    log.info("Instâncias incorretas: {}", evalTest.incorrect());
+    log.info("Kappa statistic: {}", evalTest.kappa());
+    log.info("Erro médio absoluto: {}", evalTest.meanAbsoluteError());
+    log.info("Raiz do erro quadrático médio: {}", evalTest.rootMeanSquaredError());
+
+    // Métricas por classe (TESTE)
+    for (int i = 0; i < trainData.numClasses(); i++) {
+      log.info("=== Classe: {} (Teste) ===", trainData.classAttribute().value(i));
+      log.info("Precision: {}", evalTest.precision(i));
+      log.info("Recall: {}", evalTest.recall(i));
+      log.info("F-Measure: {}", evalTest.fMeasure(i));
+      try {
+        log.info("AUC: {}", evalTest.areaUnderROC(i));
       } catch (Exception e) {
-        log.warn("Failed computing attribute importances: {}", e.getMessage());
-        this.attributeImportances = Collections.emptyMap();
+        log.warn("AUC não disponível para classe {}", i);
       }
+    }
 
-      testDataLeakageWithShuffledLabels(datasetMeta);
+    log.info("=== Matriz de Confusão (Teste) ===");
+    log.info("\n{}", evalTest.toMatrixString());
+    log.info("Brier score (classe {}): {}", testData.classAttribute().value(reliability.positiveClass()), reliability.brierScore());
+    log.info("Erro de calibragem esperado (ECE): {}", reliability.expectedCalibrationError());
+    return new HoldoutResult(evalTest, predictions, reliability);
+  }
 
-      tempArff.delete();
-      log.info("Model and structure trained and saved successfully.");
-    } catch (Exception e) {
-      log.error("Error training Weka model: {}", e.getMessage(), e);
-      model = null;
-      structure = null;
-      attributeImportances = Collections.emptyMap();
+  /**
+   * Cross-validates the configured candidates on the training split and returns the one
+   * with the best latency-weighted score; the default algorithm wins when none finishes
+   * within the budget. With a heap budget the folds train one at a time.
+   */
+  private ModelSelection.Result selectModel(Instances trainData, boolean budgeted) throws Exception {
+    List<ClassifierSpec> candidates = modelSelectionCandidates.stream().map(ClassifierSpec::parse).toList();
+    ModelSelection.Budget budget = new ModelSelection.Budget(
+      Duration.ofSeconds(modelSelectionTimeBudgetSeconds), Duration.ofSeconds(modelSelectionCpuBudgetSeconds));
+    ModelSelection.Result result = ModelSelection.run(candidates, trainData, modelSelectionFolds, new Random(42),
+      budgeted ? Runnable::run : trainingPool, budgeted ? 1 : trainingPool.getParallelism(),
+      budget, modelSelectionMetric, modelSelectionLatencyPenalty);
+    if (result.winner().isEmpty()) {
+      log.warn("Nenhum candidato completou a seleção dentro do orçamento; usando {}.", algorithm);
+    }
+    return result;
+  }
+
+  // com orçamento de heap os estágios rodam um por vez, na thread do chamador
+  private <T> CompletableFuture<T> stage(TrainingJob job, String phase, Callable<T> body) {
+    Supplier<T> run = () -> {
+      long start = job.beginPhase(phase);
+      try {
+        return body.call();
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      } finally {
+        job.endPhase(phase, start);
+      }
+    };
+    if (heapBudgetMb > 0) {
+      try {
+        return CompletableFuture.completedFuture(run.get());
+      } catch (CompletionException e) {
+        return CompletableFuture.failedFuture(e.getCause());
+      }
+    }
+    return CompletableFuture.supplyAsync(run, trainingPool);
+  }
+
+  private static <T> T await(CompletableFuture<T> stage) throws Exception {
+    try {
+      return stage.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof Exception cause ? cause : e;
     }
   }
 
-  public void testDataLeakageWithShuffledLabels(DatasetMetadata datasetMeta) {
+  private Map<String, Double> computeAttributeImportances(Instances data) {
     try {
-      GridFsResource resource = gridFsTemplate.getResource(datasetMeta.getFilename());
-      File tempArff = File.createTempFile("dataset_shuffled", ".arff");
-      try (
-        InputStream is = resource.getInputStream();
-        FileOutputStream fos = new FileOutputStream(tempArff)
-      ) {
-        is.transferTo(fos);
+      InfoGainAttributeEval evalAttr = new InfoGainAttributeEval();
+      evalAttr.buildEvaluator(data);
+      Map<String, Double> map = new LinkedHashMap<>();
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if (i == data.classIndex()) continue;
+        String name = data.attribute(i).name();
+        double score = evalAttr.evaluateAttribute(i);
+        map.put(name, score);
       }
+      Map<String, Double> sorted = map.entrySet().stream()
+        .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
+        .collect(Collectors.toMap(
+          Map.Entry::getKey,
+          Map.Entry::getValue,
+          (a,b) -> a,
+          LinkedHashMap::new
+        ));
+
+      log.info("=== Top 5 Atributos Mais Importantes ===");
+      sorted.entrySet().stream()
+        .limit(5)
+        .forEach(e -> log.info("{}: {}", e.getKey(), e.getValue()));
+
+      return Collections.unmodifiableMap(sorted);
+    } catch (Exception e) {
+      log.warn("Failed computing attribute importances: {}", e.getMessage());
+      return Collections.emptyMap();
+    }
+  }
 
-      DataSource source = new DataSource(tempArff.getAbsolutePath());
-      Instances data = source.getDataSet();
-      data.setClassIndex(data.numAttributes() - 1);
+  /**
+   * Leakage test on every {@link #LEAKAGE_FOLDS}-th row of {@code data}, which leaves
+   * {@code data} untouched. Shuffling labels gives each shuffled row its own value array
+   * (Weka copies rows copy-on-write), so a fold bounds that to a fraction of the sample.
+   * The sample is grouped by class, so the stride keeps the class proportions.
+   */
+  private Double testDataLeakageOnFold(ClassifierSpec spec, Instances data) {
+    Instances fold = new Instances(data, data.numInstances() / LEAKAGE_FOLDS + 1);
+    for (int i = 0; i < data.numInstances(); i += LEAKAGE_FOLDS) {
+      fold.add(data.instance(i));
+    }
+    return testDataLeakageWithShuffledLabels(spec, fold);
+  }
 
+  /**
+   * Shuffles the class labels of {@code data} in place, so callers pass their own copy.
+   * Returns the accuracy with shuffled labels, or null when the test fails to run.
+   */
+  public Double testDataLeakageWithShuffledLabels(ClassifierSpec spec, Instances data) {
+    try {
       log.info("=== TESTE DE VAZAMENTO: Embaralhando Rótulos ===");
 
       Random rand = new Random(42);
@@ -279,7 +849,7 @@ public class WekaModelConfig {
       Instances trainData = new Instances(data, 0, trainSize);
       Instances testData = new Instances(data, trainSize, data.numInstances() - trainSize);
 
-      Classifier testModel = new weka.classifiers.trees.J48();
+      Classifier testModel = spec.newClassifier();
       testModel.buildClassifier(trainData);
 
       weka.classifiers.Evaluation eval = new weka.classifiers.Evaluation(trainData);
@@ -297,66 +867,126 @@ public class WekaModelConfig {
       } else {
         log.info("✓ Teste de vazamento OK: acurácia dentro do esperado para rótulos aleatórios.");
       }
-
-      tempArff.delete();
+      return eval.pctCorrect();
     } catch (Exception e) {
       log.error("Erro no teste de vazamento: {}", e.getMessage(), e);
+      return null;
     }
   }
 
 
+  @PreDestroy
+  public void shutdown() {
+    trainingPool.shutdownNow();
+  }
+
   public void setTrainedModel(Classifier trainedModel, Instances datasetStructure) {
-    this.model = trainedModel;
-    if (datasetStructure != null) {
-      this.structure = new Instances(datasetStructure, 0);
-      try {
-        weka.core.SerializationHelper.write(STRUCTURE_PATH, this.structure);
-      } catch (Exception e) {
-        log.warn("Failed to persist structure to disk: {}", e.getMessage());
-      }
-    } else {
-      this.structure = null;
+    if (trainedModel == null || datasetStructure == null) {
+      snapshot.set(null);
+      return;
     }
-    if (trainedModel != null) {
-      try {
-        weka.core.SerializationHelper.write(MODEL_PATH, trainedModel);
-      } catch (Exception e) {
-        log.warn("Failed to persist model to disk: {}", e.getMessage());
-      }
+    Instances header = new Instances(datasetStructure, 0);
+    try {
+      weka.core.SerializationHelper.write(STRUCTURE_PATH, header);
+    } catch (Exception e) {
+      log.warn("Failed to persist structure to disk: {}", e.getMessage());
+    }
+    try {
+      weka.core.SerializationHelper.write(MODEL_PATH, trainedModel);
+    } catch (Exception e) {
+      log.warn("Failed to persist model to disk: {}", e.getMessage());
     }
+    publishIfNewer(buildSnapshot(null, trainedModel, header, Collections.emptyMap()));
   }
 
-  public void exportCalibrationCsv(Instances testData, Classifier classifier, File outFile) throws IOException {
-    try (BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))) {
-      // Cabeçalho
-      StringBuilder header = new StringBuilder();
-      header.append("instance_index,true_label");
-      for (int c = 0; c < testData.numClasses(); c++) {
-        String clsName = testData.classAttribute().value(c).replaceAll("[,\\n\\r]", "_");
-        header.append(",prob_class_").append(clsName);
-      }
-      bw.write(header.toString());
-      bw.newLine();
-
-      // Linhas por instância
-      for (int i = 0; i < testData.numInstances(); i++) {
-        Instance inst = testData.instance(i);
-        double[] probs;
-        try {
-          probs = classifier.distributionForInstance(inst);
-        } catch (Exception e) {
-          // se distribution falhar, escreve zeros
-          probs = new double[testData.numClasses()];
-        }
-        String trueLabel = testData.classAttribute().value((int) inst.classValue());
-        StringBuilder line = new StringBuilder();
-        line.append(i).append(",").append(trueLabel);
-        for (double p : probs) {
-          line.append(",").append(p);
-        }
-        bw.write(line.toString());
-        bw.newLine();
-      }
+  private ModelSnapshot buildSnapshot(String datasetId, Classifier classifier, Instances header, Map<String, Double> importances) {
+    return snapshotFor(nextVersion(), datasetId, classifier, header, importances);
+  }
+
+  private ModelSnapshot snapshotFor(long version, String datasetId, Classifier classifier, Instances header,
+                                    Map<String, Double> importances) {
+    CompiledTree compiled = TreeCompiler.compile(classifier, header).orElse(null);
+    FeatureEncoder encoder = FeatureEncoder.compile(header);
+    return ModelSnapshot.builder()
+      .version(version)
+      .datasetId(datasetId)
+      .trainedAt(Instant.now())
+      .classifier(classifier)
+      .header(header)
+      .encoder(encoder)
+      .compiledTree(compiled)
+      .lookupTable(buildLookupTable(header, encoder, compiled))
+      .attributeImportances(importances)
+      .build();
+  }
+
+  // árvore compilada só é usada se reproduzir as distribuições do Weka no holdout
+  private ModelSnapshot verifyCompiledTree(ModelSnapshot trained, Instances holdout) throws Exception {
+    if (trained.compiledTree() == null || TreeCompiler.isEquivalent(trained.compiledTree(), trained.classifier(), holdout)) {
+      return trained;
+    }
+    log.warn("Compiled tree diverges from Weka model on holdout; serving through Weka.");
+    return trained.toBuilder().compiledTree(null).lookupTable(null).build();
+  }
+
+  // versões vêm do contador do registro, compartilhado entre instâncias; sem Mongo segue a
+  // sequência local (só modelos carregados do disco: o treino exige o lease, que exige Mongo)
+  private long nextVersion() {
+    try {
+      long allocated = modelRegistryService.nextVersion(versionSequence.get());
+      versionSequence.accumulateAndGet(allocated, Math::max);
+      return allocated;
+    } catch (RuntimeException e) {
+      log.warn("Model registry unavailable, using local version sequence: {}", e.getMessage());
+      return versionSequence.incrementAndGet();
+    }
+  }
+
+  private void recordIo(TrainingJob job, long bytesRead, long legacyIoBytes) {
+    job.recordIo(bytesRead, legacyIoBytes);
+    metrics.recordLegacyIoBytes(legacyIoBytes);
+    log.info("I/O do carregamento: {} bytes lidos; o caminho antigo (download, cópia temporária e releitura) moveria {} bytes.",
+      bytesRead, legacyIoBytes);
+  }
+
+  private void writeBinary(ModelSnapshot trained) {
+    if (!(trained.compiledTree() instanceof CompiledTree compiled)) {
+      return;
+    }
+    try {
+      ModelBinaryFormat.write(Path.of(MODEL_BINARY_PATH), trained.version(), trained.datasetId(), trained.header(),
+        trained.attributeImportances(), compiled);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed writing model binary: {}", e.getMessage());
+    }
+  }
+
+  private void register(ModelSnapshot trained, TrainingMetrics metrics, ModelRegistryService.CacheKey cacheKey) {
+    try {
+      modelRegistryService.register(trained, metrics, cacheKey);
+    } catch (Exception e) {
+      log.warn("Failed registering model version {}: {}", trained.version(), e.getMessage());
+    }
+  }
+
+  // toda publicação passa por aqui: troca atômica que nunca volta para uma versão mais antiga,
+  // seja de um artefato que carregava ou de um treino concorrente que terminou depois
+  private boolean publishIfNewer(ModelSnapshot next) {
+    ModelSnapshot previous = snapshot.getAndAccumulate(next, (cur, candidate) ->
+      cur == null || candidate.version() > cur.version() ? candidate : cur);
+    if (previous != null && previous.version() >= next.version()) {
+      log.info("Model version {} not published: version {} is already serving.", next.version(), previous.version());
+      return false;
+    }
+    log.info("Model version {} is now serving.", next.version());
+    publishListeners.forEach(listener -> listener.accept(next));
+    return true;
+  }
+
+  private PredictionLookupTable buildLookupTable(Instances header, FeatureEncoder encoder, DecisionTree tree) {
+    if (!lookupTableEnabled || tree == null) {
+      return null;
     }
+    return PredictionLookupTable.build(header, tree, encoder.inputAttributes(), lookupTableMaxCells).orElse(null);
   }
 }
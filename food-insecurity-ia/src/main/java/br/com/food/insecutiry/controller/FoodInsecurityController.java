@@ -1,14 +1,36 @@
 package br.com.food.insecutiry.controller;
 
+import br.com.food.insecutiry.model.CalibrationReport;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.dto.BulkScoringJobDTO;
 import br.com.food.insecutiry.model.dto.DatasetInfoDTO;
 import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
-import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import br.com.food.insecutiry.model.dto.RiskCubeRollUpDTO;
+import br.com.food.insecutiry.model.dto.TrainingJobDTO;
+import br.com.food.insecutiry.service.BulkScoringService;
+import br.com.food.insecutiry.service.CalibrationExportService;
 import br.com.food.insecutiry.service.FoodInsecurityService;
+import br.com.food.insecutiry.service.ImportancesPayload;
 import br.com.food.insecutiry.service.LocalFileIngestService;
+import br.com.food.insecutiry.service.RiskCubeService;
+import br.com.food.insecutiry.service.TrainingJobService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/food-insecurity")
@@ -17,20 +39,126 @@ public class FoodInsecurityController {
 
   private final FoodInsecurityService service;
   private final LocalFileIngestService localFileIngestService;
+  private final TrainingJobService trainingJobService;
+  private final CalibrationExportService calibrationExportService;
+  private final BulkScoringService bulkScoringService;
+  private final RiskCubeService riskCubeService;
+
+  public static final String LEAN_MEDIA_TYPE = "application/vnd.food-insecurity.lean+json";
 
+  /**
+   * Full response by default; {@code ?view=lean} or {@code Accept: }{@value #LEAN_MEDIA_TYPE}
+   * answer only the prediction, probabilities and model version.
+   */
   @PostMapping("/predict")
-  public ResponseEntity<PredictionResponseDTO> predict(@RequestBody PredictionRequestDTO dto) throws Exception {
+  public ResponseEntity<?> predict(@RequestBody PredictionRequestDTO dto,
+                                   @RequestParam(value = "view", required = false) String view,
+                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws Exception {
+    if (accept != null && accept.contains(LEAN_MEDIA_TYPE)) {
+      return ResponseEntity.ok().contentType(MediaType.parseMediaType(LEAN_MEDIA_TYPE)).body(service.predictSummary(dto));
+    }
+    if ("lean".equals(view)) {
+      return ResponseEntity.ok(service.predictSummary(dto));
+    }
     return ResponseEntity.ok(service.predict(dto));
   }
 
+  @PostMapping(value = "/predict/batch",
+    consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+    produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public void predictBatch(HttpServletRequest request, HttpServletResponse response) throws Exception {
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+    service.predictBatch(request.getInputStream(), response.getOutputStream());
+  }
+
   @PostMapping("/upload-dataset")
-  public ResponseEntity<DatasetInfoDTO> uploadDataset(@RequestParam("file") MultipartFile file) throws Exception {
-    DatasetInfoDTO info = service.uploadDataset(file);
+  public ResponseEntity<DatasetInfoDTO> uploadDataset(@RequestParam("file") MultipartFile file,
+                                                      @RequestParam(value = "mode", defaultValue = "FULL") IngestMode mode) throws Exception {
+    DatasetInfoDTO info = service.uploadDataset(file, mode);
     return ResponseEntity.accepted().body(info);
   }
 
   @PostMapping("/ingest-local-file")
-  public void ingestLocalFile(@RequestParam("filePath") String filePath) throws Exception {
-    localFileIngestService.saveLocalFileToDb(filePath);
+  public ResponseEntity<DatasetInfoDTO> ingestLocalFile(@RequestParam("filePath") String filePath,
+                                                        @RequestParam(value = "mode", defaultValue = "FULL") IngestMode mode) throws Exception {
+    return ResponseEntity.accepted().body(localFileIngestService.saveLocalFileToDb(filePath, mode));
+  }
+
+  @GetMapping("/training-jobs/{id}")
+  public ResponseEntity<TrainingJobDTO> getTrainingJob(@PathVariable("id") String id) {
+    return ResponseEntity.ok(trainingJobService.getJob(id));
+  }
+
+  @PostMapping("/datasets/{id}/score")
+  public ResponseEntity<BulkScoringJobDTO> scoreDataset(@PathVariable("id") String datasetId) {
+    return ResponseEntity.accepted().body(bulkScoringService.submit(datasetId));
+  }
+
+  @GetMapping("/scoring-jobs/{id}")
+  public ResponseEntity<BulkScoringJobDTO> getScoringJob(@PathVariable("id") String id) {
+    return ResponseEntity.ok(bulkScoringService.getJob(id));
+  }
+
+  @GetMapping("/scoring-jobs/{id}/result")
+  public void downloadScoringResult(@PathVariable("id") String id, HttpServletResponse response) throws Exception {
+    GridFsResource result = bulkScoringService.openResult(id);
+    response.setContentType(BulkScoringService.CSV_CONTENT_TYPE);
+    response.setContentLengthLong(result.contentLength());
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + result.getFilename() + "\"");
+    try (InputStream in = result.getInputStream()) {
+      in.transferTo(response.getOutputStream());
+    }
+  }
+
+  /**
+   * Predicted insecurity of {@code source} (live predictions or a bulk-scored dataset id)
+   * grouped by the {@code groupBy} dimensions, over the cells matching every
+   * {@code filter=dimension:label}; e.g. {@code ?groupBy=estado&filter=cor:Parda}.
+   */
+  @GetMapping("/risk-cube")
+  public ResponseEntity<RiskCubeRollUpDTO> rollUpRiskCube(
+    @RequestParam(value = "source", defaultValue = RiskCubeService.PREDICT_SOURCE) String source,
+    @RequestParam(value = "groupBy", required = false) List<String> groupBy,
+    @RequestParam(value = "filter", required = false) List<String> filter) {
+    Map<String, String> filters = new LinkedHashMap<>();
+    for (String entry : filter == null ? List.<String>of() : filter) {
+      int sep = entry.indexOf(':');
+      if (sep <= 0) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Filtro inválido (esperado dimensão:rótulo): " + entry);
+      }
+      filters.put(entry.substring(0, sep), entry.substring(sep + 1));
+    }
+    return ResponseEntity.ok(riskCubeService.rollUp(source, groupBy == null ? List.of() : groupBy, filters));
+  }
+
+  /**
+   * Importances of the serving model, from bytes serialized once per model. Revalidated
+   * by ETag: a matching {@code If-None-Match} is answered with 304 and no body.
+   */
+  @GetMapping("/models/current/importances")
+  public ResponseEntity<byte[]> getCurrentImportances() {
+    ImportancesPayload importances = service.currentImportances();
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .eTag(importances.etag())
+      .cacheControl(CacheControl.noCache())
+      .body(importances.body());
+  }
+
+  @GetMapping("/models/{version}/calibration")
+  public ResponseEntity<CalibrationReport> getCalibration(@PathVariable("version") long version) {
+    return ResponseEntity.ok(calibrationExportService.getReport(version));
+  }
+
+  @GetMapping("/models/{version}/calibration/csv")
+  public void downloadCalibrationCsv(@PathVariable("version") long version, HttpServletResponse response) throws Exception {
+    GridFsResource csv = calibrationExportService.openCsv(version);
+    response.setContentType(CalibrationExportService.CSV_CONTENT_TYPE);
+    response.setContentLengthLong(csv.contentLength());
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + csv.getFilename() + "\"");
+    // copia em blocos do GridFS para a resposta, sem materializar o arquivo
+    try (InputStream in = csv.getInputStream()) {
+      in.transferTo(response.getOutputStream());
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,237 @@
+package br.com.food.insecutiry.dataset;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary, column-oriented copy of a parsed dataset, so repeated loads skip ARFF text
+ * parsing. Nominal columns hold dictionary indexes as bytes (up to 127 values) or
+ * shorts, -1 for missing; numeric columns hold packed doubles, NaN for missing. The
+ * header carries the attribute names and nominal dictionaries.
+ *
+ * Layout (big-endian): magic, format version, class index, relation, attributes, row
+ * count, weights flag, then each column in attribute order and the weights column
+ * when any row weight differs from 1.
+ */
+public final class ColumnarDataset {
+
+  private static final int MAGIC = 0x46494344; // "FICD"
+  private static final int FORMAT_VERSION = 1;
+  private static final byte NUMERIC = 0;
+  private static final byte NOMINAL_BYTE = 1;
+  private static final byte NOMINAL_SHORT = 2;
+  private static final int IO_CHUNK = 1 << 16;
+
+  private final Instances header;
+  private final int numRows;
+  private final Object[] columns; // byte[], short[] ou double[] por atributo
+  private final double[] weights; // null quando todos os pesos são 1
+
+  private ColumnarDataset(Instances header, int numRows, Object[] columns, double[] weights) {
+    this.header = header;
+    this.numRows = numRows;
+    this.columns = columns;
+    this.weights = weights;
+  }
+
+  public Instances header() {
+    return header;
+  }
+
+  public int numRows() {
+    return numRows;
+  }
+
+  /** Writes the encoded attribute values of {@code row} into {@code out}, as in {@link Instance#toDoubleArray}. */
+  public void features(int row, double[] out) {
+    for (int a = 0; a < columns.length; a++) {
+      out[a] = value(columns[a], row);
+    }
+  }
+
+  public Instances toInstances() {
+    Instances data = new Instances(header, numRows);
+    for (int row = 0; row < numRows; row++) {
+      double[] values = new double[columns.length];
+      features(row, values);
+      data.add(new DenseInstance(weights == null ? 1.0 : weights[row], values));
+    }
+    return data;
+  }
+
+  private static double value(Object column, int row) {
+    if (column instanceof double[] d) {
+      return d[row];
+    }
+    int idx = column instanceof byte[] b ? b[row] : ((short[]) column)[row];
+    return idx < 0 ? Utils.missingValue() : idx;
+  }
+
+  /**
+   * Encodes {@code data} column by column. Throws {@link IllegalArgumentException} for
+   * attributes the format does not hold (string, date, relational, or nominal with more
+   * than {@link Short#MAX_VALUE} values).
+   */
+  public static void write(Instances data, OutputStream target) throws IOException {
+    DataOutputStream out = new DataOutputStream(target);
+    byte[] kinds = new byte[data.numAttributes()];
+    for (int a = 0; a < kinds.length; a++) {
+      kinds[a] = kind(data.attribute(a));
+    }
+
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(data.classIndex());
+    out.writeUTF(data.relationName());
+    out.writeInt(data.numAttributes());
+    for (int a = 0; a < kinds.length; a++) {
+      Attribute att = data.attribute(a);
+      out.writeByte(kinds[a]);
+      out.writeUTF(att.name());
+      if (kinds[a] != NUMERIC) {
+        out.writeInt(att.numValues());
+        for (int v = 0; v < att.numValues(); v++) {
+          out.writeUTF(att.value(v));
+        }
+      }
+    }
+
+    int numRows = data.numInstances();
+    boolean weighted = false;
+    for (int row = 0; row < numRows && !weighted; row++) {
+      weighted = data.instance(row).weight() != 1.0;
+    }
+    out.writeInt(numRows);
+    out.writeBoolean(weighted);
+
+    ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK);
+    for (int a = 0; a < kinds.length; a++) {
+      for (int row = 0; row < numRows; row++) {
+        if (chunk.remaining() < Double.BYTES) {
+          flush(chunk, out);
+        }
+        double v = data.instance(row).value(a);
+        switch (kinds[a]) {
+          case NUMERIC -> chunk.putDouble(v);
+          case NOMINAL_BYTE -> chunk.put(Utils.isMissingValue(v) ? -1 : (byte) v);
+          default -> chunk.putShort(Utils.isMissingValue(v) ? -1 : (short) v);
+        }
+      }
+    }
+    if (weighted) {
+      for (int row = 0; row < numRows; row++) {
+        if (chunk.remaining() < Double.BYTES) {
+          flush(chunk, out);
+        }
+        chunk.putDouble(data.instance(row).weight());
+      }
+    }
+    flush(chunk, out);
+    out.flush();
+  }
+
+  public static ColumnarDataset read(InputStream source) throws IOException {
+    DataInputStream in = new DataInputStream(source);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Conteúdo não é um dataset colunar.");
+    }
+    int format = in.readInt();
+    if (format != FORMAT_VERSION) {
+      throw new IOException("Versão de formato colunar não suportada: " + format);
+    }
+    int classIndex = in.readInt();
+    String relation = in.readUTF();
+    int numAttributes = in.readInt();
+    ArrayList<Attribute> attributes = new ArrayList<>(numAttributes);
+    byte[] kinds = new byte[numAttributes];
+    for (int a = 0; a < numAttributes; a++) {
+      kinds[a] = in.readByte();
+      String name = in.readUTF();
+      if (kinds[a] == NUMERIC) {
+        attributes.add(new Attribute(name));
+      } else {
+        int numValues = in.readInt();
+        List<String> values = new ArrayList<>(numValues);
+        for (int v = 0; v < numValues; v++) {
+          values.add(in.readUTF());
+        }
+        attributes.add(new Attribute(name, values));
+      }
+    }
+    Instances header = new Instances(relation, attributes, 0);
+    header.setClassIndex(classIndex);
+
+    int numRows = in.readInt();
+    boolean weighted = in.readBoolean();
+    Object[] columns = new Object[numAttributes];
+    for (int a = 0; a < numAttributes; a++) {
+      columns[a] = switch (kinds[a]) {
+        case NUMERIC -> readDoubles(in, numRows);
+        case NOMINAL_BYTE -> readBytes(in, numRows);
+        default -> readShorts(in, numRows);
+      };
+    }
+    double[] weights = weighted ? readDoubles(in, numRows) : null;
+    return new ColumnarDataset(header, numRows, columns, weights);
+  }
+
+  private static byte kind(Attribute att) {
+    if (att.type() == Attribute.NUMERIC) {
+      return NUMERIC;
+    }
+    if (att.isNominal() && att.numValues() <= Byte.MAX_VALUE) {
+      return NOMINAL_BYTE;
+    }
+    if (att.isNominal() && att.numValues() <= Short.MAX_VALUE) {
+      return NOMINAL_SHORT;
+    }
+    throw new IllegalArgumentException("Atributo não suportado no formato colunar: " + att.name());
+  }
+
+  private static void flush(ByteBuffer chunk, DataOutputStream out) throws IOException {
+    out.write(chunk.array(), 0, chunk.position());
+    chunk.clear();
+  }
+
+  private static byte[] readBytes(DataInputStream in, int n) throws IOException {
+    byte[] column = new byte[n];
+    in.readFully(column);
+    return column;
+  }
+
+  private static short[] readShorts(DataInputStream in, int n) throws IOException {
+    short[] column = new short[n];
+    byte[] chunk = new byte[IO_CHUNK];
+    for (int done = 0; done < n; ) {
+      int count = Math.min(n - done, IO_CHUNK / Short.BYTES);
+      in.readFully(chunk, 0, count * Short.BYTES);
+      ByteBuffer.wrap(chunk, 0, count * Short.BYTES).asShortBuffer().get(column, done, count);
+      done += count;
+    }
+    return column;
+  }
+
+  private static double[] readDoubles(DataInputStream in, int n) throws IOException {
+    double[] column = new double[n];
+    byte[] chunk = new byte[IO_CHUNK];
+    for (int done = 0; done < n; ) {
+      int count = Math.min(n - done, IO_CHUNK / Double.BYTES);
+      in.readFully(chunk, 0, count * Double.BYTES);
+      ByteBuffer.wrap(chunk, 0, count * Double.BYTES).asDoubleBuffer().get(column, done, count);
+      done += count;
+    }
+    return column;
+  }
+}
@@ -0,0 +1,308 @@
+package br.com.food.insecutiry.dataset;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader.ArffReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a local ARFF file on several threads. The header is read once with Weka's
+ * {@link ArffReader}; the {@code @data} section is memory-mapped, cut into byte ranges
+ * at line boundaries and each range is parsed into the value arrays of its rows. Those
+ * arrays become the instances' own (a {@link DenseInstance} keeps the array it is given),
+ * so the parse holds nothing beyond the final dataset but one list of rows per range.
+ * Ranges are merged into {@link Instances} in file order, so the result matches a
+ * sequential read.
+ *
+ * Handles dense rows of nominal and numeric attributes, quoted values, comments and
+ * missing values. Sparse rows, instance weights and other attribute types raise
+ * {@link UnsupportedArffException}, and the caller falls back to {@link ArffReader}.
+ */
+public final class ParallelArffParser {
+
+  private static final long MIN_CHUNK_BYTES = 1 << 20;
+  private static final long MAX_CHUNK_BYTES = 1 << 30; // cada chunk cabe num MappedByteBuffer
+  private static final int HEADER_WINDOW = 1 << 16;
+
+  /** The file uses ARFF features this parser does not handle. */
+  public static class UnsupportedArffException extends IOException {
+    public UnsupportedArffException(String message) {
+      super(message);
+    }
+  }
+
+  private ParallelArffParser() {
+  }
+
+  private record Chunk(List<double[]> rows) {
+  }
+
+  /** Parses {@code file} on {@code parallelism} threads; the class is set to the last attribute. */
+  public static Instances parse(Path file, int parallelism) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long dataStart = dataSectionStart(channel, size);
+      Instances header = readHeader(channel, dataStart);
+      List<Map<String, Integer>> dictionaries = dictionaries(header);
+
+      long[] bounds = chunkBounds(channel, dataStart, size, parallelism);
+      ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> new Thread(r, "arff-parser"));
+      try {
+        List<Future<Chunk>> chunks = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i + 1 < bounds.length; i++) {
+          long start = bounds[i];
+          long length = bounds[i + 1] - bounds[i];
+          chunks.add(pool.submit(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, start, length), header, dictionaries)));
+        }
+        return merge(header, chunks);
+      } finally {
+        pool.shutdownNow();
+      }
+    }
+  }
+
+  private static Instances merge(Instances header, List<Future<Chunk>> chunks) throws IOException {
+    List<Chunk> parsed = new ArrayList<>(chunks.size());
+    int total = 0;
+    for (Future<Chunk> future : chunks) {
+      try {
+        Chunk chunk = future.get();
+        parsed.add(chunk);
+        total = Math.addExact(total, chunk.rows().size());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Parse interrompido", e);
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause().getMessage(), e.getCause());
+      }
+    }
+    Instances data = new Instances(header, total);
+    for (int c = 0; c < parsed.size(); c++) {
+      for (double[] values : parsed.get(c).rows()) {
+        data.add(new DenseInstance(1.0, values));
+      }
+      parsed.set(c, null); // libera a lista do chunk já incorporado
+    }
+    return data;
+  }
+
+  // posição logo após a linha "@data"
+  private static long dataSectionStart(FileChannel channel, long size) throws IOException {
+    long lineStart = 0;
+    ByteBuffer window = ByteBuffer.allocate(HEADER_WINDOW);
+    StringBuilder line = new StringBuilder();
+    long pos = 0;
+    while (pos < size) {
+      window.clear();
+      int n = channel.read(window, pos);
+      if (n <= 0) break;
+      for (int i = 0; i < n; i++) {
+        byte b = window.get(i);
+        if (b == '\n') {
+          if (line.toString().trim().toLowerCase().startsWith("@data")) {
+            return pos + i + 1;
+          }
+          line.setLength(0);
+          lineStart = pos + i + 1;
+        } else if (line.length() < 16) {
+          line.append((char) (b & 0xff));
+        }
+      }
+      pos += n;
+    }
+    if (line.toString().trim().toLowerCase().startsWith("@data")) {
+      return size;
+    }
+    throw new IOException("Seção @data não encontrada (última linha em " + lineStart + ")");
+  }
+
+  private static Instances readHeader(FileChannel channel, long dataStart) throws IOException {
+    if (dataStart > Integer.MAX_VALUE) {
+      throw new UnsupportedArffException("Cabeçalho ARFF grande demais");
+    }
+    ByteBuffer bytes = ByteBuffer.allocate((int) dataStart);
+    while (bytes.hasRemaining() && channel.read(bytes, bytes.position()) > 0) {
+      // lê até o início da seção @data
+    }
+    String text = new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+    Instances header = new ArffReader(new StringReader(text), 0).getStructure();
+    header.setClassIndex(header.numAttributes() - 1);
+    for (int a = 0; a < header.numAttributes(); a++) {
+      Attribute att = header.attribute(a);
+      if (!att.isNominal() && att.type() != Attribute.NUMERIC) {
+        throw new UnsupportedArffException("Tipo de atributo não suportado: " + att.name());
+      }
+    }
+    return header;
+  }
+
+  private static List<Map<String, Integer>> dictionaries(Instances header) {
+    List<Map<String, Integer>> dictionaries = new ArrayList<>(header.numAttributes());
+    for (int a = 0; a < header.numAttributes(); a++) {
+      Attribute att = header.attribute(a);
+      Map<String, Integer> dictionary = null;
+      if (att.isNominal()) {
+        dictionary = new HashMap<>(att.numValues() * 2);
+        for (int v = 0; v < att.numValues(); v++) {
+          dictionary.put(att.value(v), v);
+        }
+      }
+      dictionaries.add(dictionary);
+    }
+    return dictionaries;
+  }
+
+  // limites dos chunks, cada um começando no início de uma linha
+  private static long[] chunkBounds(FileChannel channel, long dataStart, long size, int parallelism) throws IOException {
+    long dataBytes = size - dataStart;
+    long chunks = Math.max(1, Math.min(parallelism * 4L, dataBytes / MIN_CHUNK_BYTES));
+    chunks = Math.max(chunks, (dataBytes + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(dataStart);
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    for (long k = 1; k < chunks; k++) {
+      long pos = Math.max(dataStart + dataBytes * k / chunks, bounds.get(bounds.size() - 1));
+      pos = nextLineStart(channel, pos, size, probe);
+      if (pos > bounds.get(bounds.size() - 1) && pos < size) {
+        bounds.add(pos);
+      }
+    }
+    bounds.add(size);
+    return bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static long nextLineStart(FileChannel channel, long pos, long size, ByteBuffer probe) throws IOException {
+    while (pos < size) {
+      probe.clear();
+      int n = channel.read(probe, pos);
+      if (n <= 0) break;
+      for (int i = 0; i < n; i++) {
+        if (probe.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += n;
+    }
+    return size;
+  }
+
+  private static Chunk parseChunk(ByteBuffer buf, Instances header, List<Map<String, Integer>> dictionaries) throws IOException {
+    int numAttributes = header.numAttributes();
+    List<double[]> rows = new ArrayList<>();
+    byte[] token = new byte[256];
+    int end = buf.limit();
+    int pos = 0;
+    while (pos < end) {
+      int lineEnd = pos;
+      while (lineEnd < end && buf.get(lineEnd) != '\n') lineEnd++;
+      int p = skipBlanks(buf, pos, lineEnd);
+      if (p < lineEnd && buf.get(p) != '%') {
+        if (buf.get(p) == '{') {
+          throw new UnsupportedArffException("Linhas esparsas não são suportadas");
+        }
+        double[] values = new double[numAttributes];
+        for (int a = 0; a < numAttributes; a++) {
+          p = skipBlanks(buf, p, lineEnd);
+          int length;
+          boolean quoted = p < lineEnd && (buf.get(p) == '\'' || buf.get(p) == '"');
+          if (quoted) {
+            byte quote = buf.get(p++);
+            length = 0;
+            while (p < lineEnd && buf.get(p) != quote) {
+              byte b = buf.get(p++);
+              if (b == '\\' && p < lineEnd) b = buf.get(p++);
+              token = put(token, length++, b);
+            }
+            if (p >= lineEnd) {
+              throw new IOException("Aspas não fechadas no atributo " + header.attribute(a).name());
+            }
+            p++;
+          } else {
+            int start = p;
+            while (p < lineEnd && buf.get(p) != ',') p++;
+            int stop = p;
+            while (stop > start && isBlank(buf.get(stop - 1))) stop--;
+            length = 0;
+            for (int i = start; i < stop; i++) {
+              token = put(token, length++, buf.get(i));
+            }
+          }
+          values[a] = value(header, dictionaries, a, token, length, quoted);
+
+          p = skipBlanks(buf, p, lineEnd);
+          if (a < numAttributes - 1) {
+            if (p >= lineEnd || buf.get(p) != ',') {
+              throw new IOException("Linha com " + (a + 1) + " valores, esperados " + numAttributes);
+            }
+            p++;
+          } else if (p < lineEnd) {
+            // o peso vem depois de uma vírgula: "v1,...,vn,{peso}"
+            int weight = buf.get(p) == ',' ? skipBlanks(buf, p + 1, lineEnd) : p;
+            throw weight < lineEnd && buf.get(weight) == '{'
+              ? new UnsupportedArffException("Pesos de instância não são suportados")
+              : new IOException("Linha com mais de " + numAttributes + " valores");
+          }
+        }
+        rows.add(values);
+      }
+      pos = lineEnd + 1;
+    }
+    return new Chunk(rows);
+  }
+
+  private static double value(Instances header, List<Map<String, Integer>> dictionaries, int a,
+                              byte[] token, int length, boolean quoted) throws IOException {
+    if (!quoted && length == 1 && token[0] == '?') {
+      return Utils.missingValue();
+    }
+    String text = new String(token, 0, length, StandardCharsets.UTF_8);
+    Map<String, Integer> dictionary = dictionaries.get(a);
+    if (dictionary != null) {
+      Integer index = dictionary.get(text);
+      if (index == null) {
+        throw new IOException("Valor nominal '" + text + "' não declarado para o atributo " + header.attribute(a).name());
+      }
+      return index;
+    }
+    try {
+      return Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw new IOException("Valor numérico inválido '" + text + "' no atributo " + header.attribute(a).name());
+    }
+  }
+
+  private static byte[] put(byte[] token, int index, byte b) {
+    if (index == token.length) {
+      token = Arrays.copyOf(token, token.length * 2);
+    }
+    token[index] = b;
+    return token;
+  }
+
+  private static int skipBlanks(ByteBuffer buf, int pos, int end) {
+    while (pos < end && isBlank(buf.get(pos))) pos++;
+    return pos;
+  }
+
+  private static boolean isBlank(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+}
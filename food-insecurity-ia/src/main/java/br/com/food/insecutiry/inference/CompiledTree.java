@@ -0,0 +1,113 @@
+package br.com.food.insecutiry.inference;
+
+import java.util.stream.IntStream;
+
+/**
+ * Flat, array-based form of a trained J48 tree.
+ *
+ * Node 0 is the root; the children of a split node are stored contiguously starting at
+ * {@code firstChild[node]}. Features are the encoded attribute values of an instance
+ * (nominal index or numeric value, {@code NaN} for missing), laid out as in the header.
+ *
+ * The walk mirrors {@code ClassifierTree.getProbs}: a missing split value spreads the
+ * weight over the non-empty children according to the training bag sizes, and an empty
+ * child answers with the parent's per-bag distribution (precomputed into its slot).
+ */
+public final class CompiledTree implements DecisionTree {
+
+  // mesmo epsilon de weka.core.Utils.smOrEq usado por C45Split
+  private static final double SMALL = 1e-6;
+
+  // visíveis no pacote para ModelBinaryFormat
+  final int numClasses;
+  final int[] attribute;      // -1 para folhas
+  final boolean[] numeric;
+  final double[] splitPoint;
+  final int[] firstChild;
+  final int[] numChildren;
+  final boolean[] empty;
+  final double[] missingWeight; // peso do filho quando o valor do pai está ausente
+  final double[] probs;         // node * numClasses + classe
+
+  CompiledTree(int numClasses, int[] attribute, boolean[] numeric, double[] splitPoint, int[] firstChild,
+               int[] numChildren, boolean[] empty, double[] missingWeight, double[] probs) {
+    this.numClasses = numClasses;
+    this.attribute = attribute;
+    this.numeric = numeric;
+    this.splitPoint = splitPoint;
+    this.firstChild = firstChild;
+    this.numChildren = numChildren;
+    this.empty = empty;
+    this.missingWeight = missingWeight;
+    this.probs = probs;
+  }
+
+  @Override
+  public int numClasses() {
+    return numClasses;
+  }
+
+  @Override
+  public int numNodes() {
+    return attribute.length;
+  }
+
+  /**
+   * Sorted, distinct split points used on the given numeric attribute. Two values that
+   * fall between the same pair of split points follow the same path through the tree.
+   */
+  @Override
+  public double[] splitPoints(int attIndex) {
+    return IntStream.range(0, attribute.length)
+      .filter(n -> attribute[n] == attIndex && numeric[n])
+      .mapToDouble(n -> splitPoint[n])
+      .distinct()
+      .sorted()
+      .toArray();
+  }
+
+  /**
+   * Writes the class distribution for the given features into {@code out}. Does not
+   * allocate unless a missing split value is met on the path.
+   */
+  @Override
+  public void distribution(double[] features, double[] out) {
+    int node = 0;
+    while (attribute[node] >= 0) {
+      double v = features[attribute[node]];
+      if (Double.isNaN(v)) {
+        for (int c = 0; c < numClasses; c++) {
+          out[c] = probsWithMissing(node, features, c, 1.0);
+        }
+        return;
+      }
+      node = firstChild[node] + branch(node, v);
+    }
+    System.arraycopy(probs, node * numClasses, out, 0, numClasses);
+  }
+
+  private int branch(int node, double v) {
+    if (numeric[node]) {
+      return v - splitPoint[node] < SMALL ? 0 : 1;
+    }
+    return (int) v;
+  }
+
+  private double probsWithMissing(int node, double[] features, int c, double weight) {
+    if (attribute[node] < 0) {
+      return weight * probs[node * numClasses + c];
+    }
+    double v = features[attribute[node]];
+    if (Double.isNaN(v)) {
+      double prob = 0;
+      for (int i = 0; i < numChildren[node]; i++) {
+        int child = firstChild[node] + i;
+        if (!empty[child]) {
+          prob += probsWithMissing(child, features, c, missingWeight[child] * weight);
+        }
+      }
+      return prob;
+    }
+    return probsWithMissing(firstChild[node] + branch(node, v), features, c, weight);
+  }
+}
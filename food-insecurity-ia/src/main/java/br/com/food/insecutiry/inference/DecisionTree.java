@@ -0,0 +1,25 @@
+package br.com.food.insecutiry.inference;
+
+/**
+ * Read-only decision tree used for scoring, whether it lives on the heap
+ * ({@link CompiledTree}) or in a memory-mapped model file ({@link MappedCompiledTree}).
+ * Features are the encoded attribute values of an instance, laid out as in the header.
+ */
+public interface DecisionTree {
+
+  int numClasses();
+
+  int numNodes();
+
+  /** Sorted, distinct split points used on the given numeric attribute. */
+  double[] splitPoints(int attIndex);
+
+  /** Writes the class distribution for the given features into {@code out}. */
+  void distribution(double[] features, double[] out);
+
+  default double[] distribution(double[] features) {
+    double[] out = new double[numClasses()];
+    distribution(features, out);
+    return out;
+  }
+}
@@ -0,0 +1,151 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a prediction request into a model's value array. Compiled once from the model
+ * header: request fields are bound to attributes by name, nominal values are resolved
+ * through a plain hash map per attribute instead of Weka's synchronized table, and the
+ * salary is banded by {@link #SALARY_RANGES} with one binary search. Encoding allocates
+ * nothing and works for any column order.
+ *
+ * Only the bound attributes are written; the caller keeps the others missing. A field
+ * without an attribute of its name in the header is ignored.
+ */
+public final class FeatureEncoder {
+
+  public static final String SALARIO = "salario";
+  public static final String ESTADO = "estado";
+  public static final String COR = "cor";
+  public static final String ESCOLARIDADE = "escolaridade";
+
+  /**
+   * Salary bands of the training data, in the priority the original mapping checked
+   * them. They overlap: 500-999 and the 1500-2999 bands are never reached, and a salary
+   * in (1499, 1500) or outside every band falls into 3000-50000.
+   */
+  public static final RangeBinning SALARY_RANGES = RangeBinning.of(List.of(
+    new RangeBinning.Range(422, 999, "422-999"),
+    new RangeBinning.Range(810, 1300, "810-1300"),
+    new RangeBinning.Range(1500, 3000, "1500-3000"),
+    new RangeBinning.Range(0, 499, "0-499"),
+    new RangeBinning.Range(500, 999, "500-999"),
+    new RangeBinning.Range(1000, 1499, "1000-1499"),
+    new RangeBinning.Range(1500, 1999, "1500-1999"),
+    new RangeBinning.Range(2000, 2499, "2000-2499"),
+    new RangeBinning.Range(2500, 2999, "2500-2999")), "3000-50000");
+
+  private final Instances header;
+  private final int salario;
+  private final RangeBinning.Indexed salarioBands; // null quando o atributo é numérico
+  private final int estado;
+  private final Map<String, Integer> estadoValues;
+  private final int cor;
+  private final Map<String, Integer> corValues;
+  private final int escolaridade;
+  private final Map<String, Integer> escolaridadeValues; // null quando o atributo é numérico
+  private final int[] inputAttributes;
+
+  private FeatureEncoder(Instances header) {
+    this.header = header;
+    this.salario = indexOf(header, SALARIO);
+    this.salarioBands = salario >= 0 && header.attribute(salario).isNominal()
+      ? SALARY_RANGES.indexed(header.attribute(salario)::indexOfValue)
+      : null;
+    this.estado = indexOf(header, ESTADO);
+    this.estadoValues = nominalValues(header, estado);
+    this.cor = indexOf(header, COR);
+    this.corValues = nominalValues(header, cor);
+    this.escolaridade = indexOf(header, ESCOLARIDADE);
+    this.escolaridadeValues = nominalValues(header, escolaridade);
+    this.inputAttributes = Arrays.stream(new int[]{salario, estado, cor, escolaridade}).filter(i -> i >= 0).toArray();
+  }
+
+  public static FeatureEncoder compile(Instances header) {
+    return new FeatureEncoder(header);
+  }
+
+  /** Header positions written by {@link #encode}, for the lookup table. */
+  public int[] inputAttributes() {
+    return inputAttributes.clone();
+  }
+
+  public void encode(PredictionRequestDTO req, double[] values) {
+    if (salario >= 0) {
+      values[salario] = encodeSalario(req.salario());
+    }
+    if (estado >= 0) {
+      values[estado] = nominal(estado, estadoValues, req.estado());
+    }
+    if (cor >= 0) {
+      values[cor] = nominal(cor, corValues, req.cor());
+    }
+    if (escolaridade >= 0) {
+      values[escolaridade] = encodeEscolaridade(req.escolaridade());
+    }
+  }
+
+  private double encodeSalario(Double value) {
+    if (value == null) {
+      return Utils.missingValue();
+    }
+    if (salarioBands == null) {
+      return value;
+    }
+    int idx = salarioBands.index(value);
+    if (idx < 0) {
+      throw undefined(salario, SALARY_RANGES.label(value));
+    }
+    return idx;
+  }
+
+  private double encodeEscolaridade(Integer value) {
+    if (value == null) {
+      return Utils.missingValue();
+    }
+    return escolaridadeValues == null ? value : nominal(escolaridade, escolaridadeValues, value.toString());
+  }
+
+  private double nominal(int attIndex, Map<String, Integer> values, String value) {
+    if (value == null) {
+      return Utils.missingValue();
+    }
+    if (values == null) {
+      throw new IllegalArgumentException("Attribute " + header.attribute(attIndex).name() + " is not nominal");
+    }
+    Integer idx = values.get(value);
+    if (idx == null) {
+      throw undefined(attIndex, value);
+    }
+    return idx;
+  }
+
+  private IllegalArgumentException undefined(int attIndex, String value) {
+    return new IllegalArgumentException("Value '" + value + "' not defined for nominal attribute " + header.attribute(attIndex).name());
+  }
+
+  private static int indexOf(Instances header, String name) {
+    Attribute att = header.attribute(name);
+    return att == null || att.index() == header.classIndex() ? -1 : att.index();
+  }
+
+  private static Map<String, Integer> nominalValues(Instances header, int attIndex) {
+    if (attIndex < 0 || !header.attribute(attIndex).isNominal()) {
+      return null;
+    }
+    Attribute att = header.attribute(attIndex);
+    Map<String, Integer> values = new HashMap<>(att.numValues() * 2);
+    for (int v = 0; v < att.numValues(); v++) {
+      values.put(att.value(v), v);
+    }
+    return values;
+  }
+}
@@ -0,0 +1,77 @@
+package br.com.food.insecutiry.inference;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copies rows of one dataset into the value layout of a model header. Attributes are
+ * matched by name and nominal values by label, through index tables built once, so a
+ * stored dataset whose columns or dictionaries are ordered differently from the training
+ * data scores correctly. Model attributes absent from the dataset, labels the model does
+ * not know, and the class are written as missing.
+ */
+public final class HeaderMapping {
+
+  private final int numAttributes;
+  private final int[] sourceIndex; // por atributo do modelo; -1 quando ausente
+  private final int[][] nominalRemap; // índice do valor na origem -> no modelo; null para numéricos
+  private final List<String> unmapped;
+
+  private HeaderMapping(int numAttributes, int[] sourceIndex, int[][] nominalRemap, List<String> unmapped) {
+    this.numAttributes = numAttributes;
+    this.sourceIndex = sourceIndex;
+    this.nominalRemap = nominalRemap;
+    this.unmapped = unmapped;
+  }
+
+  public static HeaderMapping between(Instances source, Instances target) {
+    int n = target.numAttributes();
+    int[] sourceIndex = new int[n];
+    int[][] nominalRemap = new int[n][];
+    List<String> unmapped = new ArrayList<>();
+    for (int a = 0; a < n; a++) {
+      Attribute att = target.attribute(a);
+      Attribute src = a == target.classIndex() ? null : source.attribute(att.name());
+      if (src == null || src.isNominal() != att.isNominal()) {
+        sourceIndex[a] = -1;
+        if (a != target.classIndex()) {
+          unmapped.add(att.name());
+        }
+        continue;
+      }
+      sourceIndex[a] = src.index();
+      if (att.isNominal()) {
+        int[] remap = new int[src.numValues()];
+        for (int v = 0; v < remap.length; v++) {
+          remap[v] = att.indexOfValue(src.value(v));
+        }
+        nominalRemap[a] = remap;
+      }
+    }
+    return new HeaderMapping(n, sourceIndex, nominalRemap, Collections.unmodifiableList(unmapped));
+  }
+
+  /** Model attributes the dataset does not provide; they are always scored as missing. */
+  public List<String> unmapped() {
+    return unmapped;
+  }
+
+  /** Writes {@code row} into {@code out[offset, offset + numAttributes)} in model order. */
+  public void map(Instance row, double[] out, int offset) {
+    for (int a = 0; a < numAttributes; a++) {
+      int src = sourceIndex[a];
+      double value = src < 0 ? Utils.missingValue() : row.value(src);
+      if (nominalRemap[a] != null && !Utils.isMissingValue(value)) {
+        int idx = nominalRemap[a][(int) value];
+        value = idx < 0 ? Utils.missingValue() : idx;
+      }
+      out[offset + a] = value;
+    }
+  }
+}
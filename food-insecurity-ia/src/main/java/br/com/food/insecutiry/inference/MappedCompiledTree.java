@@ -0,0 +1,128 @@
+package br.com.food.insecutiry.inference;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * {@link CompiledTree} read in place from the tree section of a model file written by
+ * {@link ModelBinaryFormat}. Nodes are fixed-size records, so scoring walks the mapped
+ * bytes with absolute reads and nothing is copied onto the heap.
+ *
+ * Node record: attribute (int, -1 for leaves), first child (int), child count (int),
+ * flags (byte: numeric, empty), padding, split point (double), weight when the parent
+ * value is missing (double), then one double per class.
+ */
+public final class MappedCompiledTree implements DecisionTree {
+
+  static final int NODE_HEADER_BYTES = 32;
+  static final int ATTRIBUTE = 0;
+  static final int FIRST_CHILD = 4;
+  static final int NUM_CHILDREN = 8;
+  static final int FLAGS = 12;
+  static final int SPLIT_POINT = 16;
+  static final int MISSING_WEIGHT = 24;
+  static final byte FLAG_NUMERIC = 1;
+  static final byte FLAG_EMPTY = 2;
+
+  // mesmo epsilon de CompiledTree / weka.core.Utils.smOrEq
+  private static final double SMALL = 1e-6;
+
+  // somente leituras absolutas: o buffer é compartilhado entre threads
+  private final ByteBuffer buffer;
+  private final int base;
+  private final int numClasses;
+  private final int numNodes;
+  private final int stride;
+
+  MappedCompiledTree(ByteBuffer buffer, int base, int numClasses, int numNodes) {
+    this.buffer = buffer;
+    this.base = base;
+    this.numClasses = numClasses;
+    this.numNodes = numNodes;
+    this.stride = recordBytes(numClasses);
+  }
+
+  static int recordBytes(int numClasses) {
+    return NODE_HEADER_BYTES + numClasses * Double.BYTES;
+  }
+
+  @Override
+  public int numClasses() {
+    return numClasses;
+  }
+
+  @Override
+  public int numNodes() {
+    return numNodes;
+  }
+
+  @Override
+  public double[] splitPoints(int attIndex) {
+    return IntStream.range(0, numNodes)
+      .filter(n -> attribute(n) == attIndex && (flags(n) & FLAG_NUMERIC) != 0)
+      .mapToDouble(n -> buffer.getDouble(offset(n) + SPLIT_POINT))
+      .distinct()
+      .sorted()
+      .toArray();
+  }
+
+  @Override
+  public void distribution(double[] features, double[] out) {
+    int node = 0;
+    int att;
+    while ((att = attribute(node)) >= 0) {
+      double v = features[att];
+      if (Double.isNaN(v)) {
+        for (int c = 0; c < numClasses; c++) {
+          out[c] = probsWithMissing(node, features, c, 1.0);
+        }
+        return;
+      }
+      node = buffer.getInt(offset(node) + FIRST_CHILD) + branch(node, v);
+    }
+    int probs = offset(node) + NODE_HEADER_BYTES;
+    for (int c = 0; c < numClasses; c++) {
+      out[c] = buffer.getDouble(probs + c * Double.BYTES);
+    }
+  }
+
+  private int offset(int node) {
+    return base + node * stride;
+  }
+
+  private int attribute(int node) {
+    return buffer.getInt(offset(node) + ATTRIBUTE);
+  }
+
+  private byte flags(int node) {
+    return buffer.get(offset(node) + FLAGS);
+  }
+
+  private int branch(int node, double v) {
+    if ((flags(node) & FLAG_NUMERIC) != 0) {
+      return v - buffer.getDouble(offset(node) + SPLIT_POINT) < SMALL ? 0 : 1;
+    }
+    return (int) v;
+  }
+
+  private double probsWithMissing(int node, double[] features, int c, double weight) {
+    int att = attribute(node);
+    if (att < 0) {
+      return weight * buffer.getDouble(offset(node) + NODE_HEADER_BYTES + c * Double.BYTES);
+    }
+    int first = buffer.getInt(offset(node) + FIRST_CHILD);
+    double v = features[att];
+    if (Double.isNaN(v)) {
+      double prob = 0;
+      int count = buffer.getInt(offset(node) + NUM_CHILDREN);
+      for (int i = 0; i < count; i++) {
+        int child = first + i;
+        if ((flags(child) & FLAG_EMPTY) == 0) {
+          prob += probsWithMissing(child, features, c, buffer.getDouble(offset(child) + MISSING_WEIGHT) * weight);
+        }
+      }
+      return prob;
+    }
+    return probsWithMissing(first + branch(node, v), features, c, weight);
+  }
+}
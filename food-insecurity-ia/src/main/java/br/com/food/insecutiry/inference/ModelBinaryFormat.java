@@ -0,0 +1,196 @@
+package br.com.food.insecutiry.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned file holding what serving needs from a trained J48: the compiled
+ * tree, the header (attribute names and nominal dictionaries) and the attribute
+ * importances. Loading maps the file and scores on the mapped tree section directly,
+ * instead of deserializing Weka objects.
+ *
+ * Layout (big-endian): magic, format version, model version, tree section offset,
+ * dataset id, header, importances, padding to 8 bytes, then the tree section: class
+ * count, node count and one fixed-size record per node (see {@link MappedCompiledTree}).
+ * Strings are an int byte length (-1 for null) followed by UTF-8 bytes.
+ */
+@Slf4j
+public final class ModelBinaryFormat {
+
+  private static final int MAGIC = 0x46494D42; // "FIMB"
+  private static final int FORMAT_VERSION = 1;
+  private static final int TREE_OFFSET_POSITION = 16;
+  private static final byte NOMINAL = 0;
+  private static final byte NUMERIC = 1;
+
+  private ModelBinaryFormat() {
+  }
+
+  /** Contents of a mapped model file. The Weka classifier itself is not stored. */
+  public record LoadedModel(long version, String datasetId, Instances header, Map<String, Double> attributeImportances,
+                            DecisionTree tree) {
+  }
+
+  /**
+   * Writes the model to {@code file}, through a temporary file moved into place so a
+   * concurrent reader never maps a partial file.
+   */
+  public static void write(Path file, long version, String datasetId, Instances header,
+                           Map<String, Double> importances, CompiledTree tree) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeLong(version);
+    out.writeLong(0); // offset da árvore, preenchido abaixo
+    writeString(out, datasetId);
+
+    out.writeInt(header.classIndex());
+    writeString(out, header.relationName());
+    out.writeInt(header.numAttributes());
+    for (int i = 0; i < header.numAttributes(); i++) {
+      Attribute att = header.attribute(i);
+      if (att.isNominal()) {
+        out.writeByte(NOMINAL);
+        writeString(out, att.name());
+        out.writeInt(att.numValues());
+        for (int v = 0; v < att.numValues(); v++) {
+          writeString(out, att.value(v));
+        }
+      } else if (att.isNumeric()) {
+        out.writeByte(NUMERIC);
+        writeString(out, att.name());
+      } else {
+        throw new IllegalArgumentException("Tipo de atributo não suportado no formato binário: " + att.name());
+      }
+    }
+
+    out.writeInt(importances.size());
+    for (Map.Entry<String, Double> e : importances.entrySet()) {
+      writeString(out, e.getKey());
+      out.writeDouble(e.getValue());
+    }
+
+    while (out.size() % Long.BYTES != 0) {
+      out.writeByte(0);
+    }
+    long treeOffset = out.size();
+    out.writeInt(tree.numClasses);
+    out.writeInt(tree.numNodes());
+    for (int n = 0; n < tree.numNodes(); n++) {
+      out.writeInt(tree.attribute[n]);
+      out.writeInt(tree.firstChild[n]);
+      out.writeInt(tree.numChildren[n]);
+      out.writeByte((tree.numeric[n] ? MappedCompiledTree.FLAG_NUMERIC : 0) | (tree.empty[n] ? MappedCompiledTree.FLAG_EMPTY : 0));
+      out.write(new byte[3]);
+      out.writeDouble(tree.splitPoint[n]);
+      out.writeDouble(tree.missingWeight[n]);
+      for (int c = 0; c < tree.numClasses; c++) {
+        out.writeDouble(tree.probs[n * tree.numClasses + c]);
+      }
+    }
+    out.flush();
+
+    byte[] content = bytes.toByteArray();
+    ByteBuffer.wrap(content).putLong(TREE_OFFSET_POSITION, treeOffset);
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(tmp, content);
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    log.info("Model binary gravado em {}: {} bytes, {} nós.", file, content.length, tree.numNodes());
+  }
+
+  /** Maps {@code file} read-only; the tree is scored on the mapped bytes. */
+  public static LoadedModel map(Path file) throws IOException {
+    MappedByteBuffer mapped;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // o mapeamento continua válido depois que o canal é fechado
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    ByteBuffer in = mapped.duplicate();
+    if (in.remaining() < TREE_OFFSET_POSITION + Long.BYTES || in.getInt() != MAGIC) {
+      throw new IOException("Arquivo não é um modelo binário: " + file);
+    }
+    int format = in.getInt();
+    if (format != FORMAT_VERSION) {
+      throw new IOException("Versão de formato não suportada: " + format);
+    }
+    long version = in.getLong();
+    long treeOffset = in.getLong();
+    String datasetId = readString(in);
+
+    int classIndex = in.getInt();
+    String relation = readString(in);
+    int numAttributes = in.getInt();
+    ArrayList<Attribute> attributes = new ArrayList<>(numAttributes);
+    for (int i = 0; i < numAttributes; i++) {
+      byte type = in.get();
+      String name = readString(in);
+      if (type == NOMINAL) {
+        int numValues = in.getInt();
+        List<String> values = new ArrayList<>(numValues);
+        for (int v = 0; v < numValues; v++) {
+          values.add(readString(in));
+        }
+        attributes.add(new Attribute(name, values));
+      } else {
+        attributes.add(new Attribute(name));
+      }
+    }
+    Instances header = new Instances(relation, attributes, 0);
+    header.setClassIndex(classIndex);
+
+    int numImportances = in.getInt();
+    Map<String, Double> importances = new LinkedHashMap<>();
+    for (int i = 0; i < numImportances; i++) {
+      importances.put(readString(in), in.getDouble());
+    }
+
+    in.position((int) treeOffset);
+    int numClasses = in.getInt();
+    int numNodes = in.getInt();
+    long expectedEnd = in.position() + (long) numNodes * MappedCompiledTree.recordBytes(numClasses);
+    if (numClasses != header.numClasses() || expectedEnd > in.limit()) {
+      throw new IOException("Seção da árvore inconsistente em " + file);
+    }
+    DecisionTree tree = new MappedCompiledTree(mapped, in.position(), numClasses, numNodes);
+    return new LoadedModel(version, datasetId, header, Collections.unmodifiableMap(importances), tree);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] utf8 = new byte[length];
+    in.get(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+}
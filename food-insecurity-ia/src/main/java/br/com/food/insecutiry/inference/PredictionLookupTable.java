@@ -0,0 +1,171 @@
+package br.com.food.insecutiry.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Dense table holding the class distribution for every combination of the request
+ * attributes, indexed by mixed-radix encoding.
+ *
+ * Nominal attributes contribute one slot per value plus one for missing. Numeric
+ * attributes cannot be enumerated from the header, so they are bucketed by the split
+ * points the compiled tree uses on them: values in the same bucket take the same path,
+ * which keeps the table exact. Attributes outside {@code inputs} are assumed missing,
+ * as the scorer leaves them.
+ */
+@Slf4j
+public final class PredictionLookupTable {
+
+  // mesmo epsilon de CompiledTree / weka.core.Utils.smOrEq
+  private static final double SMALL = 1e-6;
+
+  private final int[] inputs;
+  private final boolean[] numeric;
+  private final int[] radix;
+  private final int[] stride;
+  private final double[][] thresholds;
+  private final int numClasses;
+  private final double[] table;
+
+  private PredictionLookupTable(int[] inputs, boolean[] numeric, int[] radix, int[] stride, double[][] thresholds,
+                                int numClasses, double[] table) {
+    this.inputs = inputs;
+    this.numeric = numeric;
+    this.radix = radix;
+    this.stride = stride;
+    this.thresholds = thresholds;
+    this.numClasses = numClasses;
+    this.table = table;
+  }
+
+  /**
+   * Scores every combination through the compiled tree. Returns empty when the cartesian
+   * product exceeds {@code maxCells}.
+   */
+  public static Optional<PredictionLookupTable> build(Instances header, DecisionTree tree, int[] inputs, long maxCells) {
+    int n = inputs.length;
+    int numClasses = tree.numClasses();
+    boolean[] numeric = new boolean[n];
+    int[] radix = new int[n];
+    int[] stride = new int[n];
+    double[][] thresholds = new double[n][];
+
+    long cells = 1;
+    for (int i = n - 1; i >= 0; i--) {
+      Attribute att = header.attribute(inputs[i]);
+      if (att.isNominal()) {
+        radix[i] = att.numValues() + 1;
+      } else if (att.isNumeric()) {
+        numeric[i] = true;
+        thresholds[i] = tree.splitPoints(inputs[i]);
+        radix[i] = thresholds[i].length + 2;
+      } else {
+        log.info("Lookup table disabled: attribute {} is neither nominal nor numeric.", att.name());
+        return Optional.empty();
+      }
+      stride[i] = (int) Math.min(cells, Integer.MAX_VALUE);
+      cells *= radix[i];
+      if (cells > maxCells || cells * numClasses > Integer.MAX_VALUE - 8) {
+        log.info("Lookup table disabled: cartesian product exceeds {} cells.", maxCells);
+        return Optional.empty();
+      }
+    }
+
+    double[] table = new double[(int) cells * numClasses];
+    double[] features = new double[header.numAttributes()];
+    Arrays.fill(features, Utils.missingValue());
+    double[] out = new double[numClasses];
+    int[] digits = new int[n];
+
+    for (int cell = 0; cell < cells; cell++) {
+      for (int i = 0; i < n; i++) {
+        features[inputs[i]] = representative(numeric[i], radix[i], thresholds[i], digits[i]);
+      }
+      tree.distribution(features, out);
+      System.arraycopy(out, 0, table, cell * numClasses, numClasses);
+
+      // incrementa o contador misto (o último atributo varia mais rápido)
+      for (int i = n - 1; i >= 0 && ++digits[i] == radix[i]; i--) {
+        digits[i] = 0;
+      }
+    }
+
+    PredictionLookupTable lookup = new PredictionLookupTable(inputs, numeric, radix, stride, thresholds, numClasses, table);
+    if (!lookup.representativesRoundTrip()) {
+      log.warn("Lookup table disabled: split points too close to bucket reliably.");
+      return Optional.empty();
+    }
+    log.info("Lookup table built: {} células, {} bytes.", cells, table.length * 8L);
+    return Optional.of(lookup);
+  }
+
+  /**
+   * Copies the distribution for the encoded features into {@code out}. Returns false,
+   * leaving {@code out} untouched, when a nominal value falls outside the header.
+   */
+  public boolean lookup(double[] features, double[] out) {
+    int cell = 0;
+    for (int i = 0; i < inputs.length; i++) {
+      int digit = digit(i, features[inputs[i]]);
+      if (digit < 0) {
+        return false;
+      }
+      cell += digit * stride[i];
+    }
+    System.arraycopy(table, cell * numClasses, out, 0, numClasses);
+    return true;
+  }
+
+  private int digit(int i, double v) {
+    int missingSlot = radix[i] - 1;
+    if (Double.isNaN(v)) {
+      return missingSlot;
+    }
+    if (numeric[i]) {
+      return bucket(thresholds[i], v);
+    }
+    int idx = (int) v;
+    return idx >= 0 && idx < missingSlot ? idx : -1;
+  }
+
+  // quantidade de pontos de corte em que o valor vai para o ramo direito
+  private static int bucket(double[] t, double v) {
+    int lo = 0;
+    int hi = t.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (v - t[mid] < SMALL) hi = mid; else lo = mid + 1;
+    }
+    return lo;
+  }
+
+  private static double representative(boolean numeric, int radix, double[] t, int digit) {
+    if (digit == radix - 1) {
+      return Utils.missingValue();
+    }
+    if (!numeric) {
+      return digit;
+    }
+    if (t.length == 0) {
+      return 0;
+    }
+    return digit < t.length ? t[digit] : t[t.length - 1] + 1;
+  }
+
+  private boolean representativesRoundTrip() {
+    for (int i = 0; i < inputs.length; i++) {
+      if (!numeric[i]) continue;
+      for (int d = 0; d < radix[i] - 1; d++) {
+        if (bucket(thresholds[i], representative(true, radix[i], thresholds[i], d)) != d) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,96 @@
+package br.com.food.insecutiry.inference;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.ToIntFunction;
+
+/**
+ * Maps a number to a label through closed ranges checked in priority order, the way a
+ * chain of {@code if (v >= lo && v <= hi) return label;} does, but by binary search.
+ *
+ * Ranges may overlap: the real line is cut at every range edge into pieces on which the
+ * first matching range cannot change, and each piece is labelled once, at build time,
+ * by evaluating the ranges in order. Values matched by no range, and NaN, get the
+ * fallback label.
+ */
+public final class RangeBinning {
+
+  public record Range(double lower, double upper, String label) {
+  }
+
+  // starts[i] é o início (inclusivo) da peça i + 1; a peça 0 vai de -inf até starts[0]
+  private final double[] starts;
+  private final String[] labels;
+  private final String fallback;
+
+  private RangeBinning(double[] starts, String[] labels, String fallback) {
+    this.starts = starts;
+    this.labels = labels;
+    this.fallback = fallback;
+  }
+
+  public static RangeBinning of(List<Range> ranges, String fallback) {
+    TreeSet<Double> edges = new TreeSet<>();
+    for (Range range : ranges) {
+      edges.add(range.lower());
+      // [lo, hi] fechado vira [lo, nextUp(hi)) semiaberto
+      edges.add(Math.nextUp(range.upper()));
+    }
+    double[] starts = edges.stream().mapToDouble(Double::doubleValue).toArray();
+    String[] labels = new String[starts.length + 1];
+    labels[0] = firstMatch(ranges, Math.nextDown(starts.length == 0 ? 0 : starts[0]), fallback);
+    for (int i = 0; i < starts.length; i++) {
+      labels[i + 1] = firstMatch(ranges, starts[i], fallback);
+    }
+    return new RangeBinning(starts, labels, fallback);
+  }
+
+  private static String firstMatch(List<Range> ranges, double value, String fallback) {
+    for (Range range : ranges) {
+      if (value >= range.lower() && value <= range.upper()) {
+        return range.label();
+      }
+    }
+    return fallback;
+  }
+
+  public String label(double value) {
+    return Double.isNaN(value) ? fallback : labels[piece(value)];
+  }
+
+  /**
+   * Resolves every piece to the position of its label in {@code indexOf}, so encoding a
+   * value is one binary search and one array read.
+   */
+  public Indexed indexed(ToIntFunction<String> indexOf) {
+    int[] indices = new int[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      indices[i] = indexOf.applyAsInt(labels[i]);
+    }
+    return new Indexed(indices, indexOf.applyAsInt(fallback));
+  }
+
+  /** Label positions per piece; -1 where the label is not in the target. */
+  public final class Indexed {
+
+    private final int[] indices;
+    private final int fallbackIndex;
+
+    private Indexed(int[] indices, int fallbackIndex) {
+      this.indices = indices;
+      this.fallbackIndex = fallbackIndex;
+    }
+
+    public int index(double value) {
+      return Double.isNaN(value) ? fallbackIndex : indices[piece(value)];
+    }
+  }
+
+  private int piece(double value) {
+    // binarySearch distingue -0.0 de 0.0; somar 0.0 normaliza para o mesmo resultado dos ifs
+    int pos = Arrays.binarySearch(starts, value + 0.0);
+    // achado: a peça começa exatamente no valor; senão, a peça à esquerda do ponto de inserção
+    return pos >= 0 ? pos + 1 : -pos - 1;
+  }
+}
@@ -0,0 +1,432 @@
+package br.com.food.insecutiry.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Prediction counts and positive-class probability sums per cell of the cross product
+ * of some attributes of a model header (estado × cor × ...). A nominal dimension has one
+ * bucket per label of the header's dictionary; a numeric one (escolaridade) has integer
+ * levels {@code <0, 0, 1, ..., L-1, >=L}, fixed so cubes of different models line up.
+ * Both have a last bucket for missing values, so a row's cell is computed from its
+ * encoded values with a few multiply-adds.
+ *
+ * Writers add into one of several stripes of primitive atomic arrays, picked by thread,
+ * so concurrent predictions rarely touch the same cache lines. Probability sums are kept
+ * in fixed point ({@link #PROB_SCALE}) to stay in a long array. Readers roll up a merge
+ * of the stripes, cached for a bounded staleness. Every stripe holds all cells, so a cube
+ * takes {@code cells × stripes × }{@link #BYTES_PER_CELL} bytes; the stripe count is
+ * halved until that fits the cube's byte budget.
+ */
+@Slf4j
+public final class RiskCube {
+
+  public static final String MISSING_LABEL = "?";
+
+  // 2^30: precisão de ~1e-9 por linha e até ~8.6e9 linhas por célula antes de estourar o long
+  static final double PROB_SCALE = 1L << 30;
+
+  /** Bytes of one cell in one stripe: count, positives and probability sum. */
+  public static final int BYTES_PER_CELL = 3 * Long.BYTES;
+
+  public record Dimension(String name, List<String> labels) {
+    int buckets() {
+      return labels.size() + 1;
+    }
+
+    String label(int bucket) {
+      return bucket == labels.size() ? MISSING_LABEL : labels.get(bucket);
+    }
+  }
+
+  /** Merged totals per cell; {@code probSums} in fixed point. */
+  public record Cells(long[] counts, long[] positives, long[] probSums, long totalCount) {
+  }
+
+  public record Group(List<String> labels, long count, long predictedPositive, double probabilitySum) {
+    public double positiveRate() {
+      return count == 0 ? 0.0 : (double) predictedPositive / count;
+    }
+
+    public double meanProbability() {
+      return count == 0 ? 0.0 : probabilitySum / count;
+    }
+  }
+
+  public record RollUp(List<String> groupBy, long totalCount, List<Group> groups) {
+  }
+
+  /** Scores a row in the model's value layout; used to re-derive probabilities per cell. */
+  @FunctionalInterface
+  public interface CellScorer {
+    double[] score(double[] values) throws Exception;
+  }
+
+  private static final class Stripe {
+    final AtomicLongArray counts;
+    final AtomicLongArray positives;
+    final AtomicLongArray probSums;
+
+    Stripe(int cells) {
+      counts = new AtomicLongArray(cells);
+      positives = new AtomicLongArray(cells);
+      probSums = new AtomicLongArray(cells);
+    }
+  }
+
+  private final Instances header;
+  private final List<Dimension> dimensions;
+  private final int[] attIndex; // atributo do header de cada dimensão
+  private final int[] levels; // níveis inteiros das dimensões numéricas; 0 nas nominais
+  private final int[] buckets; // rótulos + 1; o último é o de ausentes
+  private final int[] strides;
+  private final int cells;
+  private final int positiveClass;
+  private final Stripe[] stripes;
+  private final int stripeMask;
+
+  private volatile Cells merged;
+  private volatile long mergedAtNanos;
+
+  private RiskCube(Instances header, List<Dimension> dimensions, int[] attIndex, int[] levels, int cells, int positiveClass,
+                   int stripes) {
+    this.header = header;
+    this.dimensions = dimensions;
+    this.attIndex = attIndex;
+    this.levels = levels;
+    this.cells = cells;
+    this.positiveClass = positiveClass;
+    this.buckets = dimensions.stream().mapToInt(Dimension::buckets).toArray();
+    this.strides = new int[dimensions.size()];
+    int stride = 1;
+    for (int d = dimensions.size() - 1; d >= 0; d--) {
+      strides[d] = stride;
+      stride *= buckets[d];
+    }
+    this.stripes = new Stripe[stripes];
+    for (int s = 0; s < stripes; s++) {
+      this.stripes[s] = new Stripe(cells);
+    }
+    this.stripeMask = stripes - 1;
+  }
+
+  /**
+   * Cube over the attributes of {@code header} named in {@code dimensionNames}: nominal
+   * ones by their labels, numeric ones by {@code numericLevels} integer levels (0 leaves
+   * them out). Names that are absent, of another type or the class are skipped with a
+   * warning. {@code stripes} is rounded up to a power of two, then halved while the cube
+   * exceeds {@code maxBytes}. Fails when the cube would exceed {@code maxCells}, or when
+   * a single stripe does not fit {@code maxBytes}.
+   */
+  public static RiskCube forHeader(Instances header, List<String> dimensionNames, int numericLevels, int positiveClass,
+                                   int stripes, long maxCells, long maxBytes) {
+    List<Dimension> dimensions = new ArrayList<>();
+    List<Integer> indices = new ArrayList<>();
+    List<Integer> levels = new ArrayList<>();
+    long cells = 1;
+    for (String name : dimensionNames) {
+      Attribute att = header.attribute(name.trim());
+      List<String> labels;
+      if (att == null || att.index() == header.classIndex()) {
+        log.warn("Risk cube dimension {} skipped: {}.", name.trim(), att == null ? "not in the model header" : "it is the class");
+        continue;
+      } else if (att.isNominal()) {
+        labels = new ArrayList<>(att.numValues());
+        for (int v = 0; v < att.numValues(); v++) {
+          labels.add(att.value(v));
+        }
+        levels.add(0);
+      } else if (att.isNumeric() && numericLevels > 0) {
+        labels = new ArrayList<>(numericLevels + 2);
+        labels.add("<0");
+        for (int v = 0; v < numericLevels; v++) {
+          labels.add(Integer.toString(v));
+        }
+        labels.add(">=" + numericLevels);
+        levels.add(numericLevels);
+      } else {
+        log.warn("Risk cube dimension {} skipped: {} attribute{}.", att.name(), Attribute.typeToString(att),
+          att.isNumeric() ? " and numeric-levels is 0" : "");
+        continue;
+      }
+      dimensions.add(new Dimension(att.name(), Collections.unmodifiableList(labels)));
+      indices.add(att.index());
+      cells *= labels.size() + 1;
+      if (cells > maxCells) {
+        throw new IllegalArgumentException("Risk cube over " + dimensionNames + " exceeds " + maxCells + " cells");
+      }
+    }
+    long stripeBytes = cells * BYTES_PER_CELL;
+    if (stripeBytes > maxBytes) {
+      throw new IllegalArgumentException("Risk cube over " + dimensionNames + " needs " + stripeBytes
+        + " bytes per stripe, over the " + maxBytes + " bytes budget");
+    }
+    int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    while (stripeCount > 1 && stripeCount * stripeBytes > maxBytes) {
+      stripeCount >>= 1;
+    }
+    return new RiskCube(header, List.copyOf(dimensions), indices.stream().mapToInt(Integer::intValue).toArray(),
+      levels.stream().mapToInt(Integer::intValue).toArray(), (int) cells, positiveClass, stripeCount);
+  }
+
+  public Instances header() {
+    return header;
+  }
+
+  public List<Dimension> dimensions() {
+    return dimensions;
+  }
+
+  public int cells() {
+    return cells;
+  }
+
+  public int stripes() {
+    return stripes.length;
+  }
+
+  /** Heap held by the stripes' arrays. */
+  public long bytes() {
+    return (long) cells * stripes.length * BYTES_PER_CELL;
+  }
+
+  /** Adds one scored row, read from {@code values[offset, offset + numAttributes)}. */
+  public void record(double[] values, int offset, double[] dist) {
+    int cell = 0;
+    for (int d = 0; d < attIndex.length; d++) {
+      double value = values[offset + attIndex[d]];
+      int bucket = Utils.isMissingValue(value) ? buckets[d] - 1 : levels[d] == 0 ? (int) value : level(value, levels[d]);
+      cell += bucket * strides[d];
+    }
+    int best = 0;
+    for (int c = 1; c < dist.length; c++) {
+      if (dist[c] > dist[best]) {
+        best = c;
+      }
+    }
+    Stripe stripe = stripes[stripeIndex()];
+    stripe.counts.getAndIncrement(cell);
+    if (best == positiveClass) {
+      stripe.positives.getAndIncrement(cell);
+    }
+    stripe.probSums.getAndAdd(cell, Math.round(dist[positiveClass] * PROB_SCALE));
+  }
+
+  // <0, 0 .. levels-1 (parte inteira), >=levels
+  private static int level(double value, int levels) {
+    return value < 0 ? 0 : value >= levels ? levels + 1 : 1 + (int) value;
+  }
+
+  // valor que cai no nível: o próprio inteiro, -1 abaixo de zero, levels acima do último
+  private static double representative(int bucket, int levels) {
+    return bucket == 0 ? -1 : bucket == levels + 1 ? levels : bucket - 1;
+  }
+
+  // threads distintas caem em stripes distintos; o hash espalha ids sequenciais
+  private int stripeIndex() {
+    long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+    return (int) (id >>> 32) & stripeMask;
+  }
+
+  /** Sum of the stripes, recomputed when the cached one is older than {@code maxStalenessNanos}. */
+  public Cells cells(long maxStalenessNanos) {
+    Cells cached = merged;
+    long now = System.nanoTime();
+    if (cached != null && now - mergedAtNanos <= maxStalenessNanos) {
+      return cached;
+    }
+    long[] counts = new long[cells];
+    long[] positives = new long[cells];
+    long[] probSums = new long[cells];
+    long total = 0;
+    for (Stripe stripe : stripes) {
+      for (int c = 0; c < cells; c++) {
+        long count = stripe.counts.get(c);
+        if (count != 0) {
+          counts[c] += count;
+          positives[c] += stripe.positives.get(c);
+          probSums[c] += stripe.probSums.get(c);
+          total += count;
+        }
+      }
+    }
+    Cells fresh = new Cells(counts, positives, probSums, total);
+    merged = fresh;
+    mergedAtNanos = now;
+    return fresh;
+  }
+
+  /**
+   * Adds the totals of one cell of another cube, located by its labels in
+   * {@code sourceDimensions} order. Labels this header does not know, and dimensions it
+   * does not have, fall into the missing bucket or are summed over. Safe while the cube
+   * takes writes: each total is added atomically.
+   */
+  public void absorb(List<Dimension> sourceDimensions, int sourceCell, long count, long positives, long probSum) {
+    int cell = 0;
+    int remainder = sourceCell;
+    int[] sourceBuckets = new int[sourceDimensions.size()];
+    for (int d = sourceDimensions.size() - 1; d >= 0; d--) {
+      int buckets = sourceDimensions.get(d).buckets();
+      sourceBuckets[d] = remainder % buckets;
+      remainder /= buckets;
+    }
+    for (int d = 0; d < dimensions.size(); d++) {
+      Dimension target = dimensions.get(d);
+      int bucket = target.labels().size();
+      for (int s = 0; s < sourceDimensions.size(); s++) {
+        Dimension source = sourceDimensions.get(s);
+        if (source.name().equals(target.name()) && sourceBuckets[s] < source.labels().size()) {
+          int idx = target.labels().indexOf(source.labels().get(sourceBuckets[s]));
+          bucket = idx < 0 ? bucket : idx;
+        }
+      }
+      cell += bucket * strides[d];
+    }
+    Stripe stripe = stripes[0];
+    stripe.counts.getAndAdd(cell, count);
+    stripe.positives.getAndAdd(cell, positives);
+    stripe.probSums.getAndAdd(cell, probSum);
+    merged = null;
+  }
+
+  /**
+   * Re-derives predicted positives and probability sums of every occupied cell from one
+   * score of the cell's coordinates, the other attributes missing. Exact for rows whose
+   * only model inputs are the cube dimensions, as with /predict; an approximation for
+   * rows that carried other attributes. Not for use while the cube takes writes.
+   */
+  public void rescore(CellScorer scorer) throws Exception {
+    Cells totals = cells(-1);
+    double[] values = new double[header.numAttributes()];
+    Arrays.fill(values, Utils.missingValue());
+    for (Stripe stripe : stripes) {
+      for (int c = 0; c < cells; c++) {
+        stripe.positives.set(c, 0);
+        stripe.probSums.set(c, 0);
+      }
+    }
+    Stripe target = stripes[0];
+    for (int c = 0; c < cells; c++) {
+      long count = totals.counts()[c];
+      if (count == 0) {
+        continue;
+      }
+      for (int d = 0; d < attIndex.length; d++) {
+        int bucket = (c / strides[d]) % buckets[d];
+        values[attIndex[d]] = bucket == buckets[d] - 1 ? Utils.missingValue()
+          : levels[d] == 0 ? bucket : representative(bucket, levels[d]);
+      }
+      double[] dist = scorer.score(values);
+      int best = 0;
+      for (int k = 1; k < dist.length; k++) {
+        if (dist[k] > dist[best]) {
+          best = k;
+        }
+      }
+      target.positives.set(c, best == positiveClass ? count : 0);
+      target.probSums.set(c, Math.round(dist[positiveClass] * PROB_SCALE * count));
+    }
+    merged = null;
+  }
+
+  /**
+   * Totals of {@code cells} grouped by the dimensions in {@code groupBy}, over the cells
+   * matching every {@code filters} entry (dimension name → label, {@link #MISSING_LABEL}
+   * for missing). Only non-empty groups are returned.
+   */
+  public RollUp rollUp(Cells cells, List<String> groupBy, Map<String, String> filters) {
+    int[] groupDims = new int[groupBy.size()];
+    int[] groupStrides = new int[groupBy.size()];
+    int groups = 1;
+    for (int g = groupBy.size() - 1; g >= 0; g--) {
+      groupDims[g] = dimensionIndex(groupBy.get(g));
+      groupStrides[g] = groups;
+      groups *= buckets[groupDims[g]];
+    }
+    // -1 = sem filtro; -2 = rótulo desconhecido, nenhuma célula passa
+    int[] required = new int[dimensions.size()];
+    Arrays.fill(required, -1);
+    filters.forEach((name, label) -> {
+      Dimension dim = dimensions.get(dimensionIndex(name));
+      int bucket = MISSING_LABEL.equals(label) ? dim.labels().size() : dim.labels().indexOf(label);
+      required[dimensionIndex(name)] = bucket < 0 ? -2 : bucket;
+    });
+
+    int[] groupStrideByDim = new int[dimensions.size()]; // 0 nas dimensões fora do groupBy
+    for (int g = 0; g < groupDims.length; g++) {
+      groupStrideByDim[groupDims[g]] += groupStrides[g];
+    }
+
+    long[] counts = new long[groups];
+    long[] positives = new long[groups];
+    long[] probSums = new long[groups];
+    long[] cellCounts = cells.counts();
+    long[] cellPositives = cells.positives();
+    long[] cellProbSums = cells.probSums();
+    long total = 0;
+    // odômetro sobre as coordenadas (a última dimensão varia mais rápido, como no índice da
+    // célula), com o grupo e o número de filtros violados atualizados a cada passo
+    int[] coords = new int[dimensions.size()];
+    int group = 0;
+    int mismatches = 0;
+    for (int d = 0; d < required.length; d++) {
+      mismatches += mismatch(required[d], 0);
+    }
+    for (int c = 0; c < this.cells; c++) {
+      long count = cellCounts[c];
+      if (count != 0 && mismatches == 0) {
+        counts[group] += count;
+        positives[group] += cellPositives[c];
+        probSums[group] += cellProbSums[c];
+        total += count;
+      }
+      for (int d = coords.length - 1; d >= 0; d--) {
+        int old = coords[d];
+        int next = old + 1 == buckets[d] ? 0 : old + 1;
+        coords[d] = next;
+        group += (next - old) * groupStrideByDim[d];
+        mismatches += mismatch(required[d], next) - mismatch(required[d], old);
+        if (next != 0) {
+          break;
+        }
+      }
+    }
+
+    List<Group> result = new ArrayList<>();
+    for (int k = 0; k < groups; k++) {
+      if (counts[k] == 0) {
+        continue;
+      }
+      List<String> labels = new ArrayList<>(groupDims.length);
+      for (int g = 0; g < groupDims.length; g++) {
+        labels.add(dimensions.get(groupDims[g]).label((k / groupStrides[g]) % buckets[groupDims[g]]));
+      }
+      result.add(new Group(labels, counts[k], positives[k], probSums[k] / PROB_SCALE));
+    }
+    return new RollUp(List.copyOf(groupBy), total, result);
+  }
+
+  private static int mismatch(int required, int coord) {
+    return required == -1 || required == coord ? 0 : 1;
+  }
+
+  private int dimensionIndex(String name) {
+    for (int d = 0; d < dimensions.size(); d++) {
+      if (dimensions.get(d).name().equals(name)) {
+        return d;
+      }
+    }
+    throw new IllegalArgumentException("Unknown risk cube dimension: " + name + "; available: "
+      + dimensions.stream().map(Dimension::name).toList());
+  }
+}
@@ -0,0 +1,196 @@
+package br.com.food.insecutiry.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import weka.classifiers.Classifier;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierSplitModel;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.Distribution;
+import weka.classifiers.trees.j48.NoSplit;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compiles a trained {@link J48} into a {@link CompiledTree} and checks that both
+ * produce the same distributions.
+ *
+ * Weka 3.8 keeps the tree nodes in protected fields without accessors, so they are read
+ * through reflection. Anything the compiled walk does not reproduce exactly (Laplace
+ * smoothing, binary nominal splits, other classifiers) yields an empty result and the
+ * caller keeps scoring through Weka.
+ */
+@Slf4j
+public final class TreeCompiler {
+
+  private static final double TOLERANCE = 1e-9;
+
+  private TreeCompiler() {
+  }
+
+  public static Optional<CompiledTree> compile(Classifier classifier, Instances header) {
+    if (!(classifier instanceof J48 j48) || j48.getUseLaplace()) {
+      return Optional.empty();
+    }
+    try {
+      ClassifierTree root = (ClassifierTree) field(J48.class, "m_root").get(j48);
+      if (root == null) {
+        return Optional.empty();
+      }
+      return Optional.ofNullable(new Builder(header).build(root));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("Failed compiling J48 tree: {}", e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns true when the compiled tree reproduces the classifier's distribution on
+   * every instance of {@code data}.
+   */
+  public static boolean isEquivalent(DecisionTree tree, Classifier classifier, Instances data) throws Exception {
+    double[] features = new double[data.numAttributes()];
+    double[] out = new double[tree.numClasses()];
+    double maxDiff = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      for (int a = 0; a < features.length; a++) {
+        features[a] = inst.value(a);
+      }
+      features[data.classIndex()] = weka.core.Utils.missingValue();
+      tree.distribution(features, out);
+      double[] expected = classifier.distributionForInstance(inst);
+      for (int c = 0; c < expected.length; c++) {
+        maxDiff = Math.max(maxDiff, Math.abs(expected[c] - out[c]));
+      }
+    }
+    log.info("Compiled tree: {} nós, diferença máxima vs Weka em {} instâncias: {}", tree.numNodes(), data.numInstances(), maxDiff);
+    return maxDiff <= TOLERANCE;
+  }
+
+  private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+    Field f = type.getDeclaredField(name);
+    f.setAccessible(true);
+    return f;
+  }
+
+  private static final class Builder {
+    private final Instances header;
+    private final int numClasses;
+    private final Field localModelField;
+    private final Field sonsField;
+    private final Field isLeafField;
+    private final Field isEmptyField;
+
+    private final List<Integer> attribute = new ArrayList<>();
+    private final List<Boolean> numeric = new ArrayList<>();
+    private final List<Double> splitPoint = new ArrayList<>();
+    private final List<Integer> firstChild = new ArrayList<>();
+    private final List<Integer> numChildren = new ArrayList<>();
+    private final List<Boolean> empty = new ArrayList<>();
+    private final List<Double> missingWeight = new ArrayList<>();
+    private final List<double[]> probs = new ArrayList<>();
+
+    Builder(Instances header) throws NoSuchFieldException {
+      this.header = header;
+      this.numClasses = header.numClasses();
+      this.localModelField = field(ClassifierTree.class, "m_localModel");
+      this.sonsField = field(ClassifierTree.class, "m_sons");
+      this.isLeafField = field(ClassifierTree.class, "m_isLeaf");
+      this.isEmptyField = field(ClassifierTree.class, "m_isEmpty");
+    }
+
+    CompiledTree build(ClassifierTree root) throws IllegalAccessException {
+      int rootId = addNode(1.0);
+      if (!fill(rootId, root)) {
+        return null;
+      }
+      int n = attribute.size();
+      int[] att = new int[n];
+      boolean[] num = new boolean[n];
+      double[] split = new double[n];
+      int[] first = new int[n];
+      int[] count = new int[n];
+      boolean[] emp = new boolean[n];
+      double[] missW = new double[n];
+      double[] p = new double[n * numClasses];
+      for (int i = 0; i < n; i++) {
+        att[i] = attribute.get(i);
+        num[i] = numeric.get(i);
+        split[i] = splitPoint.get(i);
+        first[i] = firstChild.get(i);
+        count[i] = numChildren.get(i);
+        emp[i] = empty.get(i);
+        missW[i] = missingWeight.get(i);
+        System.arraycopy(probs.get(i), 0, p, i * numClasses, numClasses);
+      }
+      return new CompiledTree(numClasses, att, num, split, first, count, emp, missW, p);
+    }
+
+    private int addNode(double weightWhenMissing) {
+      attribute.add(-1);
+      numeric.add(false);
+      splitPoint.add(0.0);
+      firstChild.add(-1);
+      numChildren.add(0);
+      empty.add(false);
+      missingWeight.add(weightWhenMissing);
+      probs.add(new double[numClasses]);
+      return attribute.size() - 1;
+    }
+
+    private boolean fill(int id, ClassifierTree node) throws IllegalAccessException {
+      ClassifierSplitModel localModel = (ClassifierSplitModel) localModelField.get(node);
+      Distribution dist = localModel.distribution();
+      empty.set(id, isEmptyField.getBoolean(node));
+
+      if (isLeafField.getBoolean(node)) {
+        if (!(localModel instanceof NoSplit)) {
+          return false;
+        }
+        double[] p = probs.get(id);
+        for (int c = 0; c < numClasses; c++) {
+          p[c] = dist.prob(c);
+        }
+        return true;
+      }
+
+      if (localModel.getClass() != C45Split.class) {
+        return false;
+      }
+      C45Split split = (C45Split) localModel;
+      ClassifierTree[] sons = (ClassifierTree[]) sonsField.get(node);
+      attribute.set(id, split.attIndex());
+      numeric.set(id, !header.attribute(split.attIndex()).isNominal());
+      splitPoint.set(id, split.splitPoint());
+
+      // filhos contíguos: reserva os slots antes de descer na árvore
+      int first = attribute.size();
+      for (int i = 0; i < sons.length; i++) {
+        addNode(dist.perBag(i) / dist.total());
+      }
+      firstChild.set(id, first);
+      numChildren.set(id, sons.length);
+
+      for (int i = 0; i < sons.length; i++) {
+        int childId = first + i;
+        if (isEmptyField.getBoolean(sons[i])) {
+          // filho vazio responde com a distribuição do pai para o ramo (C45Split.classProb)
+          empty.set(childId, true);
+          double[] p = probs.get(childId);
+          for (int c = 0; c < numClasses; c++) {
+            p[c] = weka.core.Utils.gr(dist.perBag(i), 0) ? dist.prob(c, i) : dist.prob(c);
+          }
+        } else if (!fill(childId, sons[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
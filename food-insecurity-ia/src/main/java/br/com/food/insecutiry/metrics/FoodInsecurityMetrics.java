@@ -0,0 +1,169 @@
+package br.com.food.insecutiry.metrics;
+
+import br.com.food.insecutiry.model.ModelSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the prediction and training hot paths, exposed through the actuator
+ * Prometheus endpoint. Meters recorded per request are created once up front.
+ */
+@Component
+public class FoodInsecurityMetrics {
+
+  /** Which implementation answered a prediction. */
+  public enum ScoringPath { LOOKUP, COMPILED, WEKA }
+
+  private final MeterRegistry registry;
+  private final Timer encodeTimer;
+  private final Map<ScoringPath, Timer> classifyTimers = new EnumMap<>(ScoringPath.class);
+  private final DistributionSummary batchSize;
+  private final Counter gridFsBytesRead;
+  private final Counter legacyIoBytes;
+  private final Counter trainingRejected;
+  private final Counter modelCacheHits;
+  private final Counter bulkRows;
+  private final Counter modelCacheMisses;
+  private final DistributionSummary coalescedBatchSize;
+  private final Timer coalescerWait;
+
+  public FoodInsecurityMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.encodeTimer = Timer.builder("food.insecurity.predict.encode")
+      .description("Feature encoding of a prediction request")
+      .register(registry);
+    for (ScoringPath path : ScoringPath.values()) {
+      classifyTimers.put(path, Timer.builder("food.insecurity.predict.classify")
+        .description("Class distribution computation for an encoded request")
+        .tag("path", path.name().toLowerCase())
+        .register(registry));
+    }
+    this.batchSize = DistributionSummary.builder("food.insecurity.predict.batch.size")
+      .description("Rows per batch prediction request")
+      .baseUnit("rows")
+      .register(registry);
+    this.gridFsBytesRead = Counter.builder("food.insecurity.gridfs.bytes.read")
+      .description("Dataset bytes streamed from GridFS")
+      .baseUnit("bytes")
+      .register(registry);
+    this.legacyIoBytes = Counter.builder("food.insecurity.training.io.legacy")
+      .description("Bytes the former download, temp file and re-read path would have moved for the same training loads")
+      .baseUnit("bytes")
+      .register(registry);
+    this.coalescedBatchSize = DistributionSummary.builder("food.insecurity.predict.coalesced.batch.size")
+      .description("Single predictions scored together by the coalescer")
+      .baseUnit("rows")
+      .register(registry);
+    this.coalescerWait = Timer.builder("food.insecurity.predict.coalesced.wait")
+      .description("Time a single prediction waited in the coalescer queue")
+      .register(registry);
+    this.trainingRejected = Counter.builder("food.insecurity.training.rejected")
+      .description("Dataset uploads refused with 429 because the training queue was full")
+      .register(registry);
+    this.bulkRows = Counter.builder("food.insecurity.bulk.rows")
+      .description("Rows scored by bulk scoring jobs over stored datasets")
+      .baseUnit("rows")
+      .register(registry);
+    this.modelCacheHits = Counter.builder("food.insecurity.training.model.cache")
+      .description("Training jobs answered by a registered model for the same dataset and parameters")
+      .tag("result", "hit")
+      .register(registry);
+    this.modelCacheMisses = Counter.builder("food.insecurity.training.model.cache")
+      .description("Training jobs answered by a registered model for the same dataset and parameters")
+      .tag("result", "miss")
+      .register(registry);
+  }
+
+  public void recordPredict(long encodeNanos, long classifyNanos, ScoringPath path) {
+    encodeTimer.record(encodeNanos, TimeUnit.NANOSECONDS);
+    classifyTimers.get(path).record(classifyNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordBatchSize(long rows) {
+    batchSize.record(rows);
+  }
+
+  public void recordGridFsBytesRead(long bytes) {
+    gridFsBytesRead.increment(bytes);
+  }
+
+  public void recordLegacyIoBytes(long bytes) {
+    legacyIoBytes.increment(bytes);
+  }
+
+  public void recordCoalescedBatch(int rows) {
+    coalescedBatchSize.record(rows);
+  }
+
+  public void recordCoalescerWait(long nanos) {
+    coalescerWait.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordTrainingRejected() {
+    trainingRejected.increment();
+  }
+
+  public void recordBulkRows(long rows) {
+    bulkRows.increment(rows);
+  }
+
+  public void recordModelCache(boolean hit) {
+    (hit ? modelCacheHits : modelCacheMisses).increment();
+  }
+
+  /** Training jobs running or waiting in the queue. */
+  public void bindTrainingQueue(Supplier<Number> inUse) {
+    Gauge.builder("food.insecurity.training.queue", inUse, s -> s.get().doubleValue())
+      .description("Training jobs running or waiting for the training executor")
+      .register(registry);
+  }
+
+  /**
+   * Duration of one training phase and peak heap while it ran; {@code shared} peaks were
+   * taken while other phases of the same job were running too.
+   */
+  public void phaseEnded(String phase, long nanos, long peakHeapBytes, boolean shared) {
+    Timer.builder("food.insecurity.training.phase")
+      .description("Duration of a training phase")
+      .tag("phase", phase)
+      .register(registry)
+      .record(nanos, TimeUnit.NANOSECONDS);
+    DistributionSummary.builder("food.insecurity.training.heap.peak")
+      .description("Peak heap during a training phase")
+      .baseUnit("bytes")
+      .tag("phase", phase)
+      .tag("shared", Boolean.toString(shared))
+      .register(registry)
+      .record(peakHeapBytes);
+  }
+
+  /** Gauges on whatever snapshot is serving when scraped; NaN while none is. */
+  public void bindModelGauges(Supplier<ModelSnapshot> current) {
+    Gauge.builder("food.insecurity.model.version", current, s -> {
+        ModelSnapshot snapshot = s.get();
+        return snapshot == null ? Double.NaN : snapshot.version();
+      })
+      .description("Version of the model being served")
+      .register(registry);
+    Gauge.builder("food.insecurity.model.age", current, s -> {
+        ModelSnapshot snapshot = s.get();
+        return snapshot == null || snapshot.trainedAt() == null
+          ? Double.NaN
+          : Duration.between(snapshot.trainedAt(), Instant.now()).toMillis() / 1000.0;
+      })
+      .description("Time since the served model was trained")
+      .baseUnit("seconds")
+      .register(registry);
+  }
+}
@@ -0,0 +1,78 @@
+package br.com.food.insecutiry.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of one bulk scoring run over a stored dataset. Updated by the scoring thread
+ * and read by the status endpoint, hence the volatile fields.
+ */
+@Getter
+public class BulkScoringJob {
+
+  public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+  private final String id = UUID.randomUUID().toString();
+  private final String datasetId;
+  private final Instant createdAt = Instant.now();
+
+  private volatile Status status = Status.QUEUED;
+  private volatile Long modelVersion;
+  private volatile long totalBytes;
+  private volatile long bytesRead;
+  private volatile long rowsScored;
+  private volatile List<String> unmappedAttributes = List.of();
+  private volatile String resultGridFsId;
+  private volatile long resultBytes;
+  private volatile String error;
+  private volatile Instant startedAt;
+  private volatile Instant finishedAt;
+
+  public BulkScoringJob(String datasetId) {
+    this.datasetId = datasetId;
+  }
+
+  public void start(long modelVersion, long totalBytes) {
+    this.modelVersion = modelVersion;
+    this.totalBytes = totalBytes;
+    startedAt = Instant.now();
+    status = Status.RUNNING;
+  }
+
+  public void setBytesRead(long bytesRead) {
+    this.bytesRead = bytesRead;
+  }
+
+  public void setRowsScored(long rowsScored) {
+    this.rowsScored = rowsScored;
+  }
+
+  public void setUnmappedAttributes(List<String> unmappedAttributes) {
+    this.unmappedAttributes = List.copyOf(unmappedAttributes);
+  }
+
+  public void succeed(String resultGridFsId, long resultBytes) {
+    this.resultGridFsId = resultGridFsId;
+    this.resultBytes = resultBytes;
+    bytesRead = totalBytes;
+    finishedAt = Instant.now();
+    status = Status.SUCCEEDED;
+  }
+
+  public void fail(Throwable cause) {
+    error = cause.getMessage();
+    finishedAt = Instant.now();
+    status = Status.FAILED;
+  }
+
+  /** Fraction of the dataset read so far, by bytes; rows scored trail it by at most two chunks. */
+  public double progress() {
+    if (status == Status.SUCCEEDED) {
+      return 1.0;
+    }
+    return totalBytes <= 0 ? 0.0 : Math.min(1.0, (double) bytesRead / totalBytes);
+  }
+}
@@ -0,0 +1,42 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "calibration_reports")
+public class CalibrationReport {
+  @Id
+  private String id;
+  @Indexed(unique = true)
+  private long modelVersion;
+  private String datasetId;
+  private String csvGridFsId; // CSV gzip com as probabilidades do holdout
+  private long csvBytes;
+  private int rows;
+  private String positiveClass;
+  private Double brierScore;
+  private Double expectedCalibrationError;
+  private List<ReliabilityBin> bins;
+  private Instant createdAt;
+
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class ReliabilityBin {
+    private double lower;
+    private double upper;
+    private long count;
+    private Double meanPredicted;
+    private Double observedRate;
+  }
+}
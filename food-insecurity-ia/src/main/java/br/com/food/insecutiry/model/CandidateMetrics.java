@@ -0,0 +1,18 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandidateMetrics {
+  private String algorithm;
+  private String status; // COMPLETE, OVER_BUDGET ou FAILED
+  private Double accuracy;
+  private Double kappa;
+  private Double fMeasure;
+  private Double latencyNanos; // por linha, no caminho que serviria o modelo
+  private long trainCpuMs;
+  private Double score;
+}
@@ -2,16 +2,29 @@ package br.com.food.insecutiry.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "datasets_metadata")
+// um documento por conteúdo e papel; datasets anteriores ao hash ficam fora do índice
+@CompoundIndex(name = "content_dedup", def = "{'contentHash': 1, 'mode': 1, 'parentId': 1}", unique = true,
+  partialFilter = "{'contentHash': {'$exists': true}}")
 public class DatasetMetadata {
   @Id
   private String id;
   private String filename;
   private String gridFsId; // reference to GridFS file
+  private IngestMode mode;
+  private String parentId; // base dataset of an APPEND delta
+  private String columnarGridFsId; // ColumnarDataset gerado na primeira carga pelo treino
+  private String contentHash; // SHA-256 do ARFF, calculado enquanto o upload é gravado
+  private Instant uploadedAt; // último upload deste conteúdo, inclusive reenvios descartados como duplicata
+  private String localPath; // arquivo de origem da ingestão local; o treino o lê direto enquanto não mudar
+  private Instant localModifiedAt; // data de modificação do arquivo local quando foi ingerido
 }
@@ -0,0 +1,8 @@
+package br.com.food.insecutiry.model;
+
+public enum IngestMode {
+  /** New base dataset: replaces the history and triggers a full retrain. */
+  FULL,
+  /** Delta of new rows for the latest base dataset: updates the incremental model only. */
+  APPEND
+}
@@ -0,0 +1,24 @@
+package br.com.food.insecutiry.model;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Instances;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+
+/**
+ * What the registry stores for one model version: the trained classifier, the header
+ * it expects, the importances and the incremental model. Compiled inference structures
+ * are rebuilt from these on load.
+ */
+public record ModelArtifact(
+  Classifier classifier,
+  Instances header,
+  LinkedHashMap<String, Double> attributeImportances,
+  UpdateableClassifier incrementalModel) implements Serializable {
+
+  @Serial
+  private static final long serialVersionUID = 1L;
+}
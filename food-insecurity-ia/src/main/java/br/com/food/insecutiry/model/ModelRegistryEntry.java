@@ -0,0 +1,31 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "model_registry")
+@CompoundIndex(name = "training_cache", def = "{'datasetHash': 1, 'trainingParams': 1, 'version': -1}")
+public class ModelRegistryEntry {
+  @Id
+  private String id;
+  @Indexed(unique = true)
+  private long version;
+  private String datasetId;
+  private String algorithm;
+  private String artifactGridFsId; // ModelArtifact serializado no GridFS
+  private TrainingMetrics metrics;
+  private int deltasApplied;
+  // chave do cache de modelos: só em treinos completos de datasets com hash
+  private String datasetHash;
+  private String trainingParams;
+  private Instant createdAt;
+}
@@ -0,0 +1,39 @@
+package br.com.food.insecutiry.model;
+
+import br.com.food.insecutiry.inference.DecisionTree;
+import br.com.food.insecutiry.inference.FeatureEncoder;
+import br.com.food.insecutiry.inference.PredictionLookupTable;
+import lombok.Builder;
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Instances;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Everything serving needs from one training run. Built completely before it is
+ * published, and never mutated afterwards, so a reader that grabs the current snapshot
+ * always sees a model, header and importances that belong together.
+ */
+@Builder(toBuilder = true)
+public record ModelSnapshot(
+  long version,
+  String datasetId,
+  Instant trainedAt,
+  Classifier classifier,
+  Instances header,
+  // compilado do header junto com o modelo: posições e tabelas de valores por nome de atributo
+  FeatureEncoder encoder,
+  DecisionTree compiledTree,
+  PredictionLookupTable lookupTable,
+  Map<String, Double> attributeImportances,
+  // modelo atualizável mantido ao lado do J48 para absorver deltas APPEND
+  UpdateableClassifier incrementalModel,
+  int deltasApplied) {
+
+  public Optional<Map.Entry<String, Double>> topAttribute() {
+    return attributeImportances.entrySet().stream().max(Map.Entry.comparingByValue());
+  }
+}
@@ -0,0 +1,15 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "model_version_counter")
+public class ModelVersionCounter {
+  @Id
+  private String id; // um documento só: a sequência de versões do registro
+  private long value; // última versão alocada; só cresce, por $inc ou $max
+}
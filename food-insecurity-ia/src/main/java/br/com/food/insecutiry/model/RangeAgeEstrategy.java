@@ -2,30 +2,34 @@ package br.com.food.insecutiry.model;
 
 import lombok.Getter;
 
-import java.util.function.Predicate;
+import java.util.Arrays;
 
 public enum RangeAgeEstrategy {
-  FAIXA_0_17("0-17", age -> age != null && age <= 17),
-  FAIXA_18_29("18-29", age -> age != null && age <= 29),
-  FAIXA_30_44("30-44", age -> age != null && age <= 44),
-  FAIXA_45_59("45-59", age -> age != null && age <= 59),
-  FAIXA_60_MAIS("60+", age -> age != null && age > 59);
+  FAIXA_0_17("0-17", 17),
+  FAIXA_18_29("18-29", 29),
+  FAIXA_30_44("30-44", 44),
+  FAIXA_45_59("45-59", 59),
+  FAIXA_60_MAIS("60+", Integer.MAX_VALUE);
+
+  // limites superiores (inclusivos) em ordem crescente, alinhados com values()
+  private static final int[] MAX_AGES = Arrays.stream(values()).mapToInt(r -> r.maxAge).toArray();
+  private static final RangeAgeEstrategy[] RANGES = values();
 
   @Getter
   private final String value;
-  private final Predicate<Integer> predicate;
+  private final int maxAge;
 
-  RangeAgeEstrategy(String value, Predicate<Integer> predicate) {
+  RangeAgeEstrategy(String value, int maxAge) {
     this.value = value;
-    this.predicate = predicate;
+    this.maxAge = maxAge;
   }
 
   public static String fromAge(Integer age) {
-    for (RangeAgeEstrategy range : values()) {
-      if (range.predicate.test(age)) {
-        return range.getValue();
-      }
+    if (age == null) {
+      return FAIXA_0_17.getValue();
     }
-    return "0-17";
+    int pos = Arrays.binarySearch(MAX_AGES, age);
+    // fora da tabela: o ponto de inserção é a primeira faixa cujo limite é maior que a idade
+    return RANGES[pos >= 0 ? pos : -pos - 1].getValue();
   }
 }
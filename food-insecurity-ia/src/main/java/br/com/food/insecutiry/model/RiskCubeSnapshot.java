@@ -0,0 +1,41 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "risk_cube_snapshots")
+public class RiskCubeSnapshot {
+  @Id
+  private String id; // instanceId + ":" + source
+  @Indexed
+  private String instanceId;
+  private String source; // "predict" ou o id do dataset pontuado em lote
+  private long modelVersion;
+  private List<DimensionLabels> dimensions;
+  // só as células ocupadas, em arrays paralelos; probSums em ponto fixo (RiskCube.PROB_SCALE)
+  private int[] cells;
+  private long[] counts;
+  private long[] positives;
+  private long[] probSums;
+  private long totalCount;
+  @Indexed(expireAfter = "30d") // snapshots de réplicas que não voltaram (instance-id gerado) expiram
+  private Instant savedAt;
+
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class DimensionLabels {
+    private String name;
+    private List<String> labels;
+  }
+}
@@ -0,0 +1,194 @@
+package br.com.food.insecutiry.model;
+
+import lombok.Getter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one asynchronous training run. Updated by the training thread and read by
+ * the status endpoint, hence the volatile fields and the synchronized timings map.
+ *
+ * The peak heap of a phase is the highest total heap in use seen while it was open,
+ * sampled every {@link #HEAP_SAMPLE_MS} ms and at its start and end. Phases that run at
+ * the same time see the same heap, so each of them is listed in
+ * {@link #getPhasesSharingHeapPeak()} and its peak covers all of them.
+ */
+@Getter
+public class TrainingJob {
+
+  public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+  /**
+   * Notified as each phase ends, with its duration, the peak heap while it ran and whether
+   * another phase of the job overlapped it.
+   */
+  @FunctionalInterface
+  public interface PhaseListener {
+    void phaseEnded(String phase, long nanos, long peakHeapBytes, boolean shared);
+  }
+
+  static final long HEAP_SAMPLE_MS = 20;
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+  private static final Set<OpenPhase> OPEN_PHASES = ConcurrentHashMap.newKeySet();
+  private static final ScheduledExecutorService HEAP_SAMPLER = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "training-heap-sampler");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static ScheduledFuture<?> sampling;
+
+  private static final class OpenPhase {
+    private final AtomicLong peak = new AtomicLong();
+    private volatile boolean shared;
+
+    private void sample(long used) {
+      peak.accumulateAndGet(used, Math::max);
+    }
+  }
+
+  private final String id = UUID.randomUUID().toString();
+  private final String datasetId;
+  private final Instant createdAt = Instant.now();
+  private final Map<String, Long> phaseTimingsMs = Collections.synchronizedMap(new LinkedHashMap<>());
+  private final Map<String, Long> phasePeakHeapMb = Collections.synchronizedMap(new LinkedHashMap<>());
+  private final Set<String> phasesSharingHeapPeak = ConcurrentHashMap.newKeySet();
+  @Getter(lombok.AccessLevel.NONE)
+  private final Map<String, OpenPhase> openPhases = new HashMap<>(); // guardado por ele mesmo
+
+  private volatile Status status = Status.QUEUED;
+  private volatile String phase;
+  private volatile Instant startedAt;
+  private volatile Instant finishedAt;
+  private volatile long bytesRead;
+  private volatile long legacyIoBytes;
+  private volatile Long modelVersion;
+  private volatile String error;
+  private volatile boolean modelCacheHit;
+  @Getter(lombok.AccessLevel.NONE)
+  private volatile String abortReason;
+
+  @Getter(lombok.AccessLevel.NONE)
+  private final PhaseListener phaseListener;
+
+  public TrainingJob(String datasetId) {
+    this(datasetId, (phase, nanos, heap, shared) -> { });
+  }
+
+  public TrainingJob(String datasetId, PhaseListener phaseListener) {
+    this.datasetId = datasetId;
+    this.phaseListener = phaseListener;
+  }
+
+  public void start() {
+    startedAt = Instant.now();
+    status = Status.RUNNING;
+  }
+
+  /**
+   * Marks {@code name} as the current phase and returns its start time for {@link #endPhase}.
+   * Throws {@link CancellationException} once the job was {@linkplain #abort aborted}.
+   */
+  public long beginPhase(String name) {
+    if (abortReason != null) {
+      throw new CancellationException("Treino abortado antes da fase " + name + ": " + abortReason);
+    }
+    phase = name;
+    OpenPhase open = new OpenPhase();
+    open.sample(MEMORY.getHeapMemoryUsage().getUsed());
+    synchronized (openPhases) {
+      if (!openPhases.isEmpty()) {
+        open.shared = true;
+        openPhases.values().forEach(other -> other.shared = true);
+      }
+      openPhases.put(name, open);
+    }
+    startSampling(open);
+    return System.nanoTime();
+  }
+
+  /** Records the phase duration and its peak heap, marking it shared if another phase overlapped it. */
+  public void endPhase(String name, long startNanos) {
+    long nanos = System.nanoTime() - startNanos;
+    OpenPhase open;
+    synchronized (openPhases) {
+      open = openPhases.remove(name);
+    }
+    if (open == null) {
+      return;
+    }
+    stopSampling(open);
+    open.sample(MEMORY.getHeapMemoryUsage().getUsed());
+    long peakHeap = open.peak.get();
+    phaseTimingsMs.put(name, nanos / 1_000_000);
+    phasePeakHeapMb.put(name, peakHeap >> 20);
+    if (open.shared) {
+      phasesSharingHeapPeak.add(name);
+    }
+    phaseListener.phaseEnded(name, nanos, peakHeap, open.shared);
+  }
+
+  // um único timer para todas as fases abertas; só roda enquanto houver alguma
+  private static synchronized void startSampling(OpenPhase open) {
+    OPEN_PHASES.add(open);
+    if (sampling == null) {
+      sampling = HEAP_SAMPLER.scheduleAtFixedRate(() -> {
+        long used = MEMORY.getHeapMemoryUsage().getUsed();
+        OPEN_PHASES.forEach(p -> p.sample(used));
+      }, HEAP_SAMPLE_MS, HEAP_SAMPLE_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static synchronized void stopSampling(OpenPhase open) {
+    OPEN_PHASES.remove(open);
+    if (OPEN_PHASES.isEmpty() && sampling != null) {
+      sampling.cancel(false);
+      sampling = null;
+    }
+  }
+
+  /**
+   * Bytes the load streamed, and the bytes the former download → temp file → re-read path
+   * would have moved for the same run.
+   */
+  public void recordIo(long bytesRead, long legacyIoBytes) {
+    this.bytesRead = bytesRead;
+    this.legacyIoBytes = legacyIoBytes;
+  }
+
+  /** Stops the job at its next phase; the phase running now finishes, nothing is published after it. */
+  public void abort(String reason) {
+    abortReason = reason;
+  }
+
+  public void markModelCacheHit() {
+    modelCacheHit = true;
+  }
+
+  public void succeed(long version) {
+    modelVersion = version;
+    phase = null;
+    finishedAt = Instant.now();
+    status = Status.SUCCEEDED;
+  }
+
+  public void fail(Throwable cause) {
+    error = cause.getMessage();
+    finishedAt = Instant.now();
+    status = Status.FAILED;
+  }
+}
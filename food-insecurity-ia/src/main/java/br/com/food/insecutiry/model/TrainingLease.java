@@ -0,0 +1,20 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "training_lease")
+public class TrainingLease {
+  @Id
+  private String id; // um documento só: o lease de treino do cluster
+  private String owner;
+  private Instant acquiredAt;
+  private Instant expiresAt; // renovado pelo dono enquanto treina
+}
@@ -0,0 +1,20 @@
+package br.com.food.insecutiry.model;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrainingMetrics {
+  private Double holdoutAccuracy;
+  private Double holdoutKappa;
+  private Double cvAccuracy;
+  private Double cvKappa;
+  private Double shuffledLabelAccuracy; // teste de vazamento
+  private Integer numInstances;
+  private String algorithm;
+  private List<CandidateMetrics> candidates; // seleção de modelo, quando ativa
+}
@@ -0,0 +1,7 @@
+package br.com.food.insecutiry.model.dto;
+
+import lombok.Builder;
+
+@Builder(toBuilder = true)
+public record BatchPredictionResultDTO(long index, PredictionResponseDTO result, String error) {
+}
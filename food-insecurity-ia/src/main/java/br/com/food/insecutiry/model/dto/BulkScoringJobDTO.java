@@ -0,0 +1,26 @@
+package br.com.food.insecutiry.model.dto;
+
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.List;
+
+@Builder(toBuilder = true)
+public record BulkScoringJobDTO(
+  String id,
+  String datasetId,
+  String status,
+  Long modelVersion,
+  double progress,
+  long rowsScored,
+  long bytesRead,
+  long totalBytes,
+  Double rowsPerSecond,
+  List<String> unmappedAttributes,
+  String resultGridFsId,
+  long resultBytes,
+  String error,
+  Instant createdAt,
+  Instant startedAt,
+  Instant finishedAt) {
+}
@@ -3,5 +3,5 @@ package br.com.food.insecutiry.model.dto;
 import lombok.Builder;
 
 @Builder(toBuilder = true)
-public record DatasetInfoDTO(String id, String filename) {
+public record DatasetInfoDTO(String id, String filename, String trainingJobId) {
 }
@@ -0,0 +1,9 @@
+package br.com.food.insecutiry.model.dto;
+
+import lombok.Builder;
+
+import java.util.Map;
+
+@Builder(toBuilder = true)
+public record ModelImportancesDTO(long modelVersion, String topAttributeName, Double topAttributeScore, Map<String, Double> attributeImportances) {
+}
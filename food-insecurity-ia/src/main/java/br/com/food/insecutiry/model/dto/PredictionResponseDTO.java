@@ -1,9 +1,14 @@
 package br.com.food.insecutiry.model.dto;
 
+import com.fasterxml.jackson.databind.util.RawValue;
 import lombok.Builder;
 
 import java.util.Map;
 
+/**
+ * Full /predict response. {@code attributeImportances} is the JSON object serialized once
+ * per model (see {@link ModelImportancesDTO}) and written as is into every response.
+ */
 @Builder(toBuilder = true)
-public record PredictionResponseDTO(String prediction, Map<String, Double> probabilities, String topAttributeName, Double topAttributeScore,  Map<String, Double> attributeImportances) {
+public record PredictionResponseDTO(String prediction, Map<String, Double> probabilities, String topAttributeName, Double topAttributeScore,  RawValue attributeImportances, long modelVersion) {
 }
@@ -0,0 +1,13 @@
+package br.com.food.insecutiry.model.dto;
+
+import lombok.Builder;
+
+import java.util.Map;
+
+/**
+ * Lean /predict response, for callers that read the importances of {@code modelVersion}
+ * from {@code /models/current/importances} instead.
+ */
+@Builder(toBuilder = true)
+public record PredictionSummaryDTO(String prediction, Map<String, Double> probabilities, long modelVersion) {
+}
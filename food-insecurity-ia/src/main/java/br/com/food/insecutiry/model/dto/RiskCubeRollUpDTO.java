@@ -0,0 +1,28 @@
+package br.com.food.insecutiry.model.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+
+@Builder(toBuilder = true)
+public record RiskCubeRollUpDTO(
+  String source,
+  long modelVersion,
+  // dataset pontuado por um modelo que já não serve; rode o job de novo para atualizar
+  boolean stale,
+  String positiveClass,
+  List<String> groupBy,
+  Map<String, String> filters,
+  long totalCount,
+  List<Group> groups,
+  long elapsedMicros) {
+
+  public record Group(
+    Map<String, String> key,
+    long count,
+    long predictedPositive,
+    double positiveRate,
+    double meanProbability) {
+  }
+}
@@ -0,0 +1,26 @@
+package br.com.food.insecutiry.model.dto;
+
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+@Builder(toBuilder = true)
+public record TrainingJobDTO(
+  String id,
+  String datasetId,
+  String status,
+  String phase,
+  Map<String, Long> phaseTimingsMs,
+  Map<String, Long> phasePeakHeapMb,
+  Set<String> phasesSharingHeapPeak,
+  long bytesRead,
+  long legacyIoBytes,
+  Long modelVersion,
+  boolean modelCacheHit,
+  String error,
+  Instant createdAt,
+  Instant startedAt,
+  Instant finishedAt) {
+}
@@ -0,0 +1,12 @@
+package br.com.food.insecutiry.repository;
+
+import br.com.food.insecutiry.model.CalibrationReport;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CalibrationReportRepository extends MongoRepository<CalibrationReport, String> {
+  Optional<CalibrationReport> findByModelVersion(long modelVersion);
+}
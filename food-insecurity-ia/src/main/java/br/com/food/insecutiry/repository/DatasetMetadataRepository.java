@@ -1,10 +1,20 @@
 package br.com.food.insecutiry.repository;
 
 import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DatasetMetadataRepository extends MongoRepository<DatasetMetadata, String> {
-  DatasetMetadata findTopByOrderByIdDesc();
+  // base (sem parentId) enviado por último, contando reenvios de um base antigo;
+  // documentos anteriores ao uploadedAt ficam por último
+  DatasetMetadata findTopByParentIdIsNullOrderByUploadedAtDescIdDesc();
+
+  List<DatasetMetadata> findByParentIdOrderByIdAsc(String parentId);
+
+  // mesmo conteúdo no mesmo papel: base (parentId nulo) ou delta do mesmo base
+  DatasetMetadata findFirstByContentHashAndModeAndParentIdOrderByIdAsc(String contentHash, IngestMode mode, String parentId);
 }
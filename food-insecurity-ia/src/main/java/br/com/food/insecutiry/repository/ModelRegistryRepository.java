@@ -0,0 +1,19 @@
+package br.com.food.insecutiry.repository;
+
+import br.com.food.insecutiry.model.ModelRegistryEntry;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ModelRegistryRepository extends MongoRepository<ModelRegistryEntry, String> {
+  ModelRegistryEntry findTopByOrderByVersionDesc();
+
+  // projeção fechada: o poller lê só o número da versão, pelo índice de version
+  VersionOnly findFirstByOrderByVersionDesc();
+
+  interface VersionOnly {
+    long getVersion();
+  }
+
+  ModelRegistryEntry findTopByDatasetHashAndTrainingParamsOrderByVersionDesc(String datasetHash, String trainingParams);
+}
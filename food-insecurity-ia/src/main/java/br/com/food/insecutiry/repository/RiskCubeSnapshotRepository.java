@@ -0,0 +1,12 @@
+package br.com.food.insecutiry.repository;
+
+import br.com.food.insecutiry.model.RiskCubeSnapshot;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RiskCubeSnapshotRepository extends MongoRepository<RiskCubeSnapshot, String> {
+  List<RiskCubeSnapshot> findByInstanceId(String instanceId);
+}
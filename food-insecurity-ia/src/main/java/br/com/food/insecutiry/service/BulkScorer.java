@@ -0,0 +1,202 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.inference.HeaderMapping;
+import br.com.food.insecutiry.inference.RiskCube;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongConsumer;
+
+/**
+ * Scores a stream of dataset rows with one model snapshot and writes a CSV with the
+ * predicted class and the class probabilities of every row, in input order.
+ *
+ * Rows are mapped into the model layout chunk by chunk on the caller's thread. A full
+ * chunk is split into one partition per worker and scored on {@code pool}, each worker
+ * with its own {@link PredictionScorer}, while the caller parses and maps the next
+ * chunk into the other of two buffers. Results are written by the caller once the
+ * chunk completes, so the output needs no reordering.
+ *
+ * Not thread-safe: one caller feeds {@link #accept} and then calls {@link #finish}.
+ */
+public class BulkScorer {
+
+  private final ModelSnapshot snapshot;
+  private final Instances header;
+  private final HeaderMapping mapping;
+  private final Attribute sourceClass;
+  private final String[] sourceLabels; // rótulos verdadeiros já escapados para o CSV
+  private final String[] predictedLabels;
+  private final Executor pool;
+  private final int partitions;
+  private final int chunkRows;
+  private final Writer out;
+  private final FoodInsecurityMetrics metrics;
+  private final LongConsumer onRowsWritten;
+  private final RiskCube riskCube; // null: linhas não agregadas
+
+  private final Chunk[] buffers;
+  private Chunk filling;
+  private Chunk scoring;
+  private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+  private long rowsWritten;
+  private final StringBuilder line = new StringBuilder(128);
+
+  // linha mapeada, probabilidades e rótulo verdadeiro de cada linha do bloco
+  private final class Chunk {
+    final double[] values;
+    final double[] probs;
+    final int[] predicted;
+    final String[] labels;
+    int size;
+    long firstRow;
+
+    Chunk() {
+      values = new double[chunkRows * header.numAttributes()];
+      probs = new double[chunkRows * header.numClasses()];
+      predicted = new int[chunkRows];
+      labels = new String[chunkRows];
+    }
+  }
+
+  public BulkScorer(ModelSnapshot snapshot, Instances source, Executor pool, int partitions, int chunkRows,
+                    Writer out, FoodInsecurityMetrics metrics, LongConsumer onRowsWritten, RiskCube riskCube) throws IOException {
+    this.snapshot = snapshot;
+    this.header = snapshot.header();
+    this.mapping = HeaderMapping.between(source, header);
+    this.sourceClass = source.classIndex() < 0 ? null : source.classAttribute();
+    this.sourceLabels = sourceClass == null || !sourceClass.isNominal() ? null : csvLabels(sourceClass);
+    this.predictedLabels = csvLabels(header.classAttribute());
+    this.pool = pool;
+    this.partitions = Math.max(1, partitions);
+    this.chunkRows = chunkRows;
+    this.out = out;
+    this.metrics = metrics;
+    this.onRowsWritten = onRowsWritten;
+    this.riskCube = riskCube;
+    this.buffers = new Chunk[]{new Chunk(), new Chunk()};
+    this.filling = buffers[0];
+    writeHeader();
+  }
+
+  public HeaderMapping mapping() {
+    return mapping;
+  }
+
+  public void accept(Instance row) throws IOException {
+    int i = filling.size;
+    mapping.map(row, filling.values, i * header.numAttributes());
+    filling.labels[i] = sourceClass == null || row.isMissing(sourceClass) ? "?"
+      : sourceLabels != null ? sourceLabels[(int) row.value(sourceClass)] : CalibrationExportService.csvLabel(row.stringValue(sourceClass));
+    if (++filling.size == chunkRows) {
+      dispatch();
+    }
+  }
+
+  /** Scores and writes the remaining rows; returns the number of rows written. */
+  public long finish() throws IOException {
+    if (filling.size > 0) {
+      dispatch();
+    }
+    drain();
+    out.flush();
+    return rowsWritten;
+  }
+
+  // espera o bloco anterior, grava-o e manda o atual para o pool; o próximo bloco enche o outro buffer
+  private void dispatch() throws IOException {
+    drain();
+    Chunk chunk = filling;
+    chunk.firstRow = rowsWritten;
+    CompletableFuture<?>[] parts = new CompletableFuture<?>[Math.min(partitions, chunk.size)];
+    int perPart = (chunk.size + parts.length - 1) / parts.length;
+    for (int p = 0; p < parts.length; p++) {
+      int from = p * perPart;
+      int to = Math.min(chunk.size, from + perPart);
+      parts[p] = CompletableFuture.runAsync(() -> score(chunk, from, to), pool);
+    }
+    pending = CompletableFuture.allOf(parts);
+    scoring = chunk;
+    filling = chunk == buffers[0] ? buffers[1] : buffers[0];
+    filling.size = 0;
+  }
+
+  private void drain() throws IOException {
+    if (scoring == null) {
+      return;
+    }
+    try {
+      pending.join();
+    } catch (CompletionException e) {
+      throw new IllegalStateException("Falha ao pontuar o bloco a partir da linha " + scoring.firstRow + ": "
+        + e.getCause().getMessage(), e.getCause());
+    }
+    write(scoring);
+    metrics.recordBulkRows(scoring.size);
+    rowsWritten += scoring.size;
+    onRowsWritten.accept(rowsWritten);
+    scoring = null;
+  }
+
+  private void score(Chunk chunk, int from, int to) {
+    PredictionScorer scorer = new PredictionScorer(header, metrics);
+    int numAttributes = header.numAttributes();
+    int numClasses = header.numClasses();
+    try {
+      for (int i = from; i < to; i++) {
+        double[] dist = scorer.score(snapshot, chunk.values, i * numAttributes);
+        int best = 0;
+        for (int c = 0; c < numClasses; c++) {
+          chunk.probs[i * numClasses + c] = dist[c];
+          if (dist[c] > dist[best]) {
+            best = c;
+          }
+        }
+        chunk.predicted[i] = best;
+        if (riskCube != null) {
+          riskCube.record(chunk.values, i * numAttributes, dist);
+        }
+      }
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  private static String[] csvLabels(Attribute attribute) {
+    String[] labels = new String[attribute.numValues()];
+    for (int v = 0; v < labels.length; v++) {
+      labels[v] = CalibrationExportService.csvLabel(attribute.value(v));
+    }
+    return labels;
+  }
+
+  private void writeHeader() throws IOException {
+    line.setLength(0);
+    line.append("instance_index,true_label,prediction");
+    for (String label : predictedLabels) {
+      line.append(",prob_class_").append(label);
+    }
+    out.append(line).append('\n');
+  }
+
+  private void write(Chunk chunk) throws IOException {
+    int numClasses = header.numClasses();
+    for (int i = 0; i < chunk.size; i++) {
+      line.setLength(0);
+      line.append(chunk.firstRow + i).append(',').append(chunk.labels[i])
+        .append(',').append(predictedLabels[chunk.predicted[i]]);
+      for (int c = 0; c < numClasses; c++) {
+        line.append(',').append(chunk.probs[i * numClasses + c]);
+      }
+      out.append(line).append('\n');
+    }
+  }
+}
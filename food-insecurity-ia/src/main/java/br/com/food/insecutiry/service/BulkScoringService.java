@@ -0,0 +1,289 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.inference.RiskCube;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.BulkScoringJob;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.BulkScoringJobDTO;
+import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Scores a whole stored dataset with the current model and writes the predictions and
+ * class probabilities of every row to GridFS as a gzip CSV. Jobs run one at a time off
+ * the HTTP threads; within a job the rows stream from the dataset's ARFF and each chunk
+ * is scored across a dedicated CPU pool (see {@link BulkScorer}).
+ *
+ * The model snapshot is taken once per job, so a model swap during a run does not mix
+ * versions in one result file.
+ *
+ * Job progress lives in the replica running it. A finished result is found on any
+ * replica, and after a restart, through the {@code jobId} in its GridFS metadata; a job
+ * that is still running or failed elsewhere answers 404.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkScoringService {
+
+  public static final String CSV_CONTENT_TYPE = CalibrationExportService.CSV_CONTENT_TYPE;
+
+  private static final int WRITE_BUFFER = 64 * 1024;
+
+  private final WekaModelConfig wekaModelConfig;
+  private final DatasetMetadataRepository datasetMetadataRepository;
+  private final DatasetLoader datasetLoader;
+  private final MongoDatabaseFactory mongoDatabaseFactory;
+  private final GridFsTemplate gridFsTemplate;
+  private final FoodInsecurityMetrics metrics;
+  private final RiskCubeService riskCubeService;
+
+  private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "bulk-scoring-job"));
+  private final Map<String, BulkScoringJob> jobs = new ConcurrentHashMap<>();
+
+  @Value("${food-insecurity.bulk-scoring.parallelism:0}")
+  private int parallelism;
+
+  @Value("${food-insecurity.bulk-scoring.chunk-rows:16384}")
+  private int chunkRows;
+
+  @Value("${food-insecurity.bulk-scoring.max-queued:2}")
+  private int maxQueued;
+
+  @Value("${food-insecurity.bulk-scoring.job-history:100}")
+  private int jobHistory;
+
+  private ForkJoinPool scoringPool;
+  private Semaphore admissions;
+
+  @PostConstruct
+  public void init() {
+    // como no treino, por padrão deixa um core livre para as predições
+    int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    scoringPool = new ForkJoinPool(threads, pool -> {
+      ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      worker.setName("bulk-scoring-worker-" + worker.getPoolIndex());
+      return worker;
+    }, null, false);
+    admissions = new Semaphore(1 + maxQueued);
+  }
+
+  /**
+   * Queues a scoring run over {@code datasetId}. Answers 404 for an unknown dataset, 409
+   * when no model is loaded and 429 when the running job and the queue are full.
+   */
+  public BulkScoringJobDTO submit(String datasetId) {
+    DatasetMetadata datasetMeta = datasetMetadataRepository.findById(datasetId)
+      .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Dataset não encontrado: " + datasetId));
+    if (wekaModelConfig.getSnapshot() == null) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Nenhum modelo carregado para pontuar o dataset.");
+    }
+    if (!admissions.tryAcquire()) {
+      throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+        "Fila de pontuação cheia (" + maxQueued + " aguardando); tente novamente mais tarde.");
+    }
+    BulkScoringJob job = new BulkScoringJob(datasetId);
+    evictFinishedJobs();
+    jobs.put(job.getId(), job);
+    try {
+      jobExecutor.execute(() -> {
+        try {
+          run(job, datasetMeta);
+        } finally {
+          admissions.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      admissions.release();
+      jobs.remove(job.getId());
+      throw e;
+    }
+    log.info("Bulk scoring job {} queued for dataset {}", job.getId(), datasetId);
+    return toDto(job);
+  }
+
+  public BulkScoringJobDTO getJob(String id) {
+    BulkScoringJob job = jobs.get(id);
+    return job != null ? toDto(job) : toDto(id, findResult(id));
+  }
+
+  /** The result CSV of a finished job, read from GridFS as the caller consumes it. */
+  public GridFsResource openResult(String id) {
+    BulkScoringJob job = jobs.get(id);
+    if (job == null) {
+      return gridFsTemplate.getResource(findResult(id));
+    }
+    if (job.getStatus() != BulkScoringJob.Status.SUCCEEDED) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Job de pontuação " + id + " ainda sem resultado: " + job.getStatus());
+    }
+    GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(job.getResultGridFsId()))));
+    if (file == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Resultado do job de pontuação " + id + " não encontrado no GridFS.");
+    }
+    return gridFsTemplate.getResource(file);
+  }
+
+  // job de outra réplica ou de antes de um restart: só o resultado concluído está no GridFS
+  private GridFSFile findResult(String id) {
+    GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("metadata.jobId").is(id)));
+    if (file == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job de pontuação não encontrado: " + id);
+    }
+    return file;
+  }
+
+  private void run(BulkScoringJob job, DatasetMetadata datasetMeta) {
+    ModelSnapshot snapshot = wekaModelConfig.getSnapshot();
+    try {
+      if (snapshot == null) {
+        throw new IllegalStateException("Nenhum modelo carregado para pontuar o dataset.");
+      }
+      job.start(snapshot.version(), datasetLoader.arffLength(datasetMeta));
+
+      GridFSBucket bucket = GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase());
+      GridFSUploadOptions options = new GridFSUploadOptions().metadata(new Document("_contentType", CSV_CONTENT_TYPE)
+        .append("datasetId", datasetMeta.getId())
+        .append("modelVersion", snapshot.version())
+        .append("jobId", job.getId()));
+      GridFSUploadStream upload = bucket.openUploadStream(
+        "scores-" + datasetMeta.getId() + "-v" + snapshot.version() + ".csv.gz", options);
+      // o cubo do dataset recomeça a cada execução, para uma nova rodada não contar as linhas duas vezes
+      RiskCube riskCube = riskCubeService.resetDataset(datasetMeta.getId(), snapshot);
+      long rows;
+      // fechado só no sucesso: fechar o writer conclui o upload, e um arquivo parcial não deve ficar no GridFS
+      Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(upload, WRITE_BUFFER), StandardCharsets.UTF_8), WRITE_BUFFER);
+      try {
+        BulkScorer[] scorer = new BulkScorer[1];
+        datasetLoader.streamRows(datasetMeta, source -> {
+          try {
+            scorer[0] = new BulkScorer(snapshot, source, scoringPool, scoringPool.getParallelism(), chunkRows,
+              out, metrics, job::setRowsScored, riskCube);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          job.setUnmappedAttributes(scorer[0].mapping().unmapped());
+          if (!scorer[0].mapping().unmapped().isEmpty()) {
+            log.warn("Dataset {} sem os atributos {} do modelo v{}; pontuados como ausentes.",
+              datasetMeta.getId(), scorer[0].mapping().unmapped(), snapshot.version());
+          }
+        }, row -> {
+          try {
+            scorer[0].accept(row);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, job::setBytesRead);
+        rows = scorer[0] == null ? 0 : scorer[0].finish();
+        out.close();
+      } catch (IOException | RuntimeException e) {
+        upload.abort();
+        throw e;
+      }
+      ObjectId fileId = upload.getObjectId();
+      job.succeed(fileId.toHexString(), bucket.find(new Document("_id", fileId)).first().getLength());
+      log.info("Bulk scoring job {} finished: {} rows of dataset {} scored with model v{}, {} bytes written.",
+        job.getId(), rows, datasetMeta.getId(), snapshot.version(), job.getResultBytes());
+    } catch (Exception e) {
+      job.fail(e);
+      log.error("Bulk scoring job {} failed: {}", job.getId(), e.getMessage(), e);
+    }
+  }
+
+  private void evictFinishedJobs() {
+    if (jobs.size() < jobHistory) {
+      return;
+    }
+    jobs.values().stream()
+      .filter(j -> j.getFinishedAt() != null)
+      .sorted((a, b) -> a.getFinishedAt().compareTo(b.getFinishedAt()))
+      .limit(jobs.size() - jobHistory + 1L)
+      .forEach(j -> jobs.remove(j.getId()));
+  }
+
+  private BulkScoringJobDTO toDto(BulkScoringJob job) {
+    Double rowsPerSecond = null;
+    if (job.getStartedAt() != null) {
+      Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now();
+      long millis = Duration.between(job.getStartedAt(), end).toMillis();
+      rowsPerSecond = millis == 0 ? null : job.getRowsScored() * 1000.0 / millis;
+    }
+    return BulkScoringJobDTO.builder()
+      .id(job.getId())
+      .datasetId(job.getDatasetId())
+      .status(job.getStatus().name())
+      .modelVersion(job.getModelVersion())
+      .progress(job.progress())
+      .rowsScored(job.getRowsScored())
+      .bytesRead(job.getBytesRead())
+      .totalBytes(job.getTotalBytes())
+      .rowsPerSecond(rowsPerSecond)
+      .unmappedAttributes(job.getUnmappedAttributes())
+      .resultGridFsId(job.getResultGridFsId())
+      .resultBytes(job.getResultBytes())
+      .error(job.getError())
+      .createdAt(job.getCreatedAt())
+      .startedAt(job.getStartedAt())
+      .finishedAt(job.getFinishedAt())
+      .build();
+  }
+
+  // o que o arquivo guarda do job; linhas e atributos não mapeados ficaram na réplica que rodou
+  private BulkScoringJobDTO toDto(String id, GridFSFile file) {
+    Document metadata = file.getMetadata();
+    Number modelVersion = metadata == null ? null : metadata.get("modelVersion", Number.class);
+    return BulkScoringJobDTO.builder()
+      .id(id)
+      .datasetId(metadata == null ? null : metadata.getString("datasetId"))
+      .status(BulkScoringJob.Status.SUCCEEDED.name())
+      .modelVersion(modelVersion == null ? null : modelVersion.longValue())
+      .progress(1.0)
+      .resultGridFsId(file.getObjectId().toHexString())
+      .resultBytes(file.getLength())
+      .finishedAt(file.getUploadDate().toInstant())
+      .build();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    jobExecutor.shutdownNow();
+    scoringPool.shutdownNow();
+  }
+}
@@ -0,0 +1,137 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.CalibrationReport;
+import br.com.food.insecutiry.repository.CalibrationReportRepository;
+import br.com.food.insecutiry.training.HoldoutPredictions;
+import br.com.food.insecutiry.training.ReliabilityDiagram;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Publishes the holdout calibration of each trained model version: a gzip CSV with one
+ * row of class probabilities per holdout instance, streamed to GridFS chunk by chunk,
+ * and a {@link CalibrationReport} holding the reliability diagram.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CalibrationExportService {
+
+  public static final String CSV_CONTENT_TYPE = "application/gzip";
+
+  // classe tratada como positiva no diagrama de confiabilidade
+  private static final String POSITIVE_LABEL = "sim";
+  private static final int WRITE_BUFFER = 64 * 1024;
+
+  private final MongoDatabaseFactory mongoDatabaseFactory;
+  private final GridFsTemplate gridFsTemplate;
+  private final CalibrationReportRepository calibrationReportRepository;
+
+  /** Index of the class the reliability diagram is drawn for. */
+  public static int positiveClass(Instances header) {
+    return Math.max(0, header.classAttribute().indexOfValue(POSITIVE_LABEL));
+  }
+
+  public CalibrationReport export(long modelVersion, String datasetId, Instances header,
+                                  HoldoutPredictions predictions, ReliabilityDiagram diagram) throws IOException {
+    // o template não expõe upload por OutputStream; o bucket padrão é o mesmo ("fs")
+    GridFSBucket bucket = GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase());
+    GridFSUploadOptions options = new GridFSUploadOptions().metadata(new Document("_contentType", CSV_CONTENT_TYPE)
+      .append("modelVersion", modelVersion)
+      .append("datasetId", datasetId));
+    GridFSUploadStream upload = bucket.openUploadStream("calibration-v" + modelVersion + ".csv.gz", options);
+    // fechado só no sucesso: fechar o writer conclui o upload, e um arquivo parcial não deve ficar no GridFS
+    Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(upload, WRITE_BUFFER), StandardCharsets.UTF_8), WRITE_BUFFER);
+    try {
+      writeCsv(out, header.classAttribute(), predictions);
+      out.close();
+    } catch (IOException | RuntimeException e) {
+      upload.abort();
+      throw e;
+    }
+    ObjectId fileId = upload.getObjectId();
+
+    CalibrationReport report = CalibrationReport.builder()
+      .modelVersion(modelVersion)
+      .datasetId(datasetId)
+      .csvGridFsId(fileId.toHexString())
+      .csvBytes(bucket.find(new Document("_id", fileId)).first().getLength())
+      .rows(predictions.size())
+      .positiveClass(header.classAttribute().value(diagram.positiveClass()))
+      .brierScore(diagram.brierScore())
+      .expectedCalibrationError(diagram.expectedCalibrationError())
+      .bins(diagram.bins())
+      .createdAt(Instant.now())
+      .build();
+    calibrationReportRepository.save(report);
+    log.info("Calibragem do modelo v{} gravada: {} linhas, {} bytes, ECE {}.",
+      modelVersion, report.getRows(), report.getCsvBytes(), report.getExpectedCalibrationError());
+    return report;
+  }
+
+  public CalibrationReport getReport(long modelVersion) {
+    return calibrationReportRepository.findByModelVersion(modelVersion)
+      .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Calibragem não encontrada para o modelo v" + modelVersion));
+  }
+
+  /** The stored gzip CSV, read from GridFS as the caller consumes it. */
+  public GridFsResource openCsv(long modelVersion) {
+    CalibrationReport report = getReport(modelVersion);
+    GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(report.getCsvGridFsId()))));
+    if (file == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "CSV de calibragem do modelo v" + modelVersion + " não encontrado no GridFS.");
+    }
+    return gridFsTemplate.getResource(file);
+  }
+
+  /** A class label as a CSV field: separators and line breaks become underscores. */
+  static String csvLabel(String label) {
+    return label.replaceAll("[,\\n\\r]", "_");
+  }
+
+  static void writeCsv(Writer out, Attribute classAttribute, HoldoutPredictions predictions) throws IOException {
+    // rótulos escapados uma vez, como no cabeçalho
+    String[] labels = new String[classAttribute.numValues()];
+    StringBuilder line = new StringBuilder("instance_index,true_label");
+    for (int c = 0; c < classAttribute.numValues(); c++) {
+      labels[c] = csvLabel(classAttribute.value(c));
+      line.append(",prob_class_").append(labels[c]);
+    }
+    out.append(line).append('\n');
+
+    for (int i = 0; i < predictions.size(); i++) {
+      int label = predictions.label(i);
+      line.setLength(0);
+      line.append(i).append(',').append(label < 0 ? "?" : labels[label]);
+      for (int c = 0; c < predictions.numClasses(); c++) {
+        line.append(',').append(predictions.prob(i, c));
+      }
+      out.append(line).append('\n');
+    }
+  }
+}
@@ -0,0 +1,395 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.dataset.ColumnarDataset;
+import br.com.food.insecutiry.dataset.CountingInputStream;
+import br.com.food.insecutiry.dataset.ParallelArffParser;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import br.com.food.insecutiry.training.StratifiedReservoirSampler;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Parses a dataset straight from its GridFS stream, without copying it to a temp file.
+ * Training parses each dataset once and shares the result between its stages.
+ *
+ * The first load of a dataset, on the training executor, also stores a
+ * {@link ColumnarDataset} copy of it in GridFS; later loads read that copy and skip text
+ * parsing, and fall back to the ARFF when it is missing.
+ *
+ * An ARFF ingested from a local file is parsed from that file with
+ * {@link ParallelArffParser} while it is unchanged on disk; its GridFS copy is the fallback.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DatasetLoader {
+
+  private static final int READ_BUFFER = 1 << 16;
+  private static final int TRAINING_COPIES = 4;
+  private static final String COLUMNAR_CONTENT_TYPE = "application/x-food-insecurity-columnar";
+  private static final int PROGRESS_ROWS = 1000;
+  private static final LongConsumer NO_PROGRESS = bytes -> { };
+
+  private final GridFsTemplate gridFsTemplate;
+  private final DatasetMetadataRepository datasetMetadataRepository;
+  private final MongoTemplate mongoTemplate;
+  private final FoodInsecurityMetrics metrics;
+
+  @Value("${food-insecurity.parsing.threads:0}")
+  private int parsingThreads;
+
+  @Value("${food-insecurity.parsing.parallel-min-mb:64}")
+  private long parallelMinMb;
+
+  @Value("${food-insecurity.training.heap-budget-mb:0}")
+  private long heapBudgetMb;
+
+  /**
+   * Result of a load: the parsed dataset (class set to the last attribute), the bytes
+   * actually read and the length of the ARFF text it covers, which is what the former
+   * download-to-temp-file path was charged for.
+   */
+  public record LoadedDataset(Instances data, long bytesRead, long arffBytes) {
+
+    /**
+     * I/O the former path did for one parse of the same ARFF: the GridFS download, the
+     * write of the temp copy and {@code DataSource} re-reading it.
+     */
+    public long legacyIoBytes() {
+      return 3 * arffBytes;
+    }
+  }
+
+  /**
+   * Content hash of everything {@link #loadHistory} would read: the base hash when there
+   * are no deltas, otherwise a SHA-256 over the base and delta hashes in order. Empty when
+   * any of them was stored before datasets were hashed.
+   */
+  public Optional<String> historyHash(DatasetMetadata base) {
+    if (base.getContentHash() == null) {
+      return Optional.empty();
+    }
+    List<DatasetMetadata> deltas = datasetMetadataRepository.findByParentIdOrderByIdAsc(base.getId());
+    if (deltas.isEmpty()) {
+      return Optional.of(base.getContentHash());
+    }
+    MessageDigest sha256 = DatasetStore.sha256();
+    sha256.update(base.getContentHash().getBytes(StandardCharsets.US_ASCII));
+    for (DatasetMetadata delta : deltas) {
+      if (delta.getContentHash() == null) {
+        return Optional.empty();
+      }
+      sha256.update((byte) '\n');
+      sha256.update(delta.getContentHash().getBytes(StandardCharsets.US_ASCII));
+    }
+    return Optional.of(HexFormat.of().formatHex(sha256.digest()));
+  }
+
+  /**
+   * Loads a base dataset followed by every APPEND delta linked to it, in upload order,
+   * which is the full history a rebuild trains on.
+   */
+  public LoadedDataset loadHistory(DatasetMetadata base) throws IOException {
+    LoadedDataset loaded = load(base);
+    Instances data = loaded.data();
+    long bytesRead = loaded.bytesRead();
+    long arffBytes = loaded.arffBytes();
+    for (DatasetMetadata delta : datasetMetadataRepository.findByParentIdOrderByIdAsc(base.getId())) {
+      LoadedDataset deltaData = load(delta);
+      String mismatch = data.equalHeadersMsg(deltaData.data());
+      if (mismatch != null) {
+        throw new IllegalStateException("Delta " + delta.getId() + " incompatível com o dataset base: " + mismatch);
+      }
+      data.addAll(deltaData.data());
+      bytesRead += deltaData.bytesRead();
+      arffBytes += deltaData.arffBytes();
+    }
+    return new LoadedDataset(data, bytesRead, arffBytes);
+  }
+
+  /**
+   * Streams the base dataset and its deltas from the ARFF text and keeps a stratified
+   * sample sized so that training on it fits in {@code heapBudgetBytes}. The columnar
+   * artifact is not used here because it materializes every column.
+   */
+  public LoadedDataset loadSample(DatasetMetadata base, long heapBudgetBytes, Random random) throws IOException {
+    StratifiedReservoirSampler[] sampler = new StratifiedReservoirSampler[1];
+    long bytesRead = streamArff(base, structure -> {
+      int capacity = sampleCapacity(structure, heapBudgetBytes);
+      log.info("Amostragem estratificada: até {} instâncias por classe para {} MB de orçamento.", capacity, heapBudgetBytes >> 20);
+      sampler[0] = new StratifiedReservoirSampler(structure, capacity, random);
+    }, row -> sampler[0].offer(row), NO_PROGRESS);
+    for (DatasetMetadata delta : datasetMetadataRepository.findByParentIdOrderByIdAsc(base.getId())) {
+      bytesRead += streamArff(delta, structure -> {
+        String mismatch = sampler[0].header().equalHeadersMsg(structure);
+        if (mismatch != null) {
+          throw new IllegalStateException("Delta " + delta.getId() + " incompatível com o dataset base: " + mismatch);
+        }
+      }, row -> sampler[0].offer(row), NO_PROGRESS);
+    }
+    long rowsSeen = sampler[0].rowsSeen();
+    Instances sample = sampler[0].result();
+    log.info("Amostra de {} instâncias de {} lidas ({} bytes).", sample.numInstances(), rowsSeen, bytesRead);
+    return new LoadedDataset(sample, bytesRead, bytesRead);
+  }
+
+  /**
+   * Per-class reservoir size that fits the budget. Each row costs its instance, value
+   * array and list slot. While streaming the sampler holds up to one reservoir per class,
+   * and training then holds about {@link #TRAINING_COPIES} references to each sampled
+   * row (split, J48 working copy, CV fold), so the budget is divided by both.
+   */
+  static int sampleCapacity(Instances structure, long heapBudgetBytes) {
+    long bytesPerRow = 64 + 8L * structure.numAttributes();
+    long perClass = heapBudgetBytes / (bytesPerRow * TRAINING_COPIES * Math.max(1, structure.numClasses()));
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, perClass));
+  }
+
+  /**
+   * Loads one stored dataset, from its columnar artifact when there is one. Otherwise the
+   * ARFF is parsed and, outside heap-budget mode, the artifact is written from the parsed
+   * rows before returning, so this runs on the training executor and never on ingest.
+   */
+  public LoadedDataset load(DatasetMetadata datasetMeta) throws IOException {
+    if (datasetMeta.getColumnarGridFsId() == null && datasetMeta.getId() != null) {
+      // o documento do job pode ser anterior ao artefato gravado por outro job do mesmo dataset
+      datasetMetadataRepository.findById(datasetMeta.getId())
+        .map(DatasetMetadata::getColumnarGridFsId)
+        .ifPresent(datasetMeta::setColumnarGridFsId);
+    }
+    if (datasetMeta.getColumnarGridFsId() != null) {
+      Optional<LoadedDataset> columnar = loadColumnar(datasetMeta);
+      if (columnar.isPresent()) {
+        return columnar.get();
+      }
+    }
+    LoadedDataset parsed = parseArff(datasetMeta);
+    if (!skipColumnar(datasetMeta)) {
+      storeColumnar(datasetMeta, parsed.data());
+    }
+    return parsed;
+  }
+
+  private Optional<LoadedDataset> loadColumnar(DatasetMetadata datasetMeta) {
+    GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(datasetMeta.getColumnarGridFsId()))));
+    if (file == null) {
+      log.warn("Artefato colunar {} do dataset {} não encontrado; relendo o ARFF.", datasetMeta.getColumnarGridFsId(), datasetMeta.getId());
+      return Optional.empty();
+    }
+    try (CountingInputStream in = new CountingInputStream(gridFsTemplate.getResource(file).getInputStream())) {
+      Instances data = ColumnarDataset.read(new BufferedInputStream(in, READ_BUFFER)).toInstances();
+      long bytesRead = in.getCount();
+      metrics.recordGridFsBytesRead(bytesRead);
+      long arffBytes = arffLength(datasetMeta);
+      log.info("Dataset {} lido do artefato colunar: {} instâncias, {} bytes (ARFF de {} bytes)",
+        datasetMeta.getFilename(), data.numInstances(), bytesRead, arffBytes);
+      return Optional.of(new LoadedDataset(data, bytesRead, arffBytes));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Falha ao ler artefato colunar do dataset {}: {}; relendo o ARFF.", datasetMeta.getId(), e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  // com orçamento de heap o treino amostra do ARFF e não lê o artefato, que exigiria o dataset inteiro em memória
+  private boolean skipColumnar(DatasetMetadata datasetMeta) {
+    return datasetMeta.getId() == null || heapBudgetMb > 0;
+  }
+
+  // falhas aqui não afetam o treino: a próxima carga volta a usar o ARFF
+  private void storeColumnar(DatasetMetadata datasetMeta, Instances data) {
+    Path tmp = null;
+    try {
+      tmp = Files.createTempFile("columnar-", ".bin");
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), READ_BUFFER)) {
+        ColumnarDataset.write(data, out);
+      }
+      ObjectId fileId;
+      try (InputStream in = Files.newInputStream(tmp)) {
+        fileId = gridFsTemplate.store(in, datasetMeta.getFilename() + ".columnar", COLUMNAR_CONTENT_TYPE);
+      }
+      // só o campo do artefato: o documento pode ter mudado desde que foi lido
+      mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(datasetMeta.getId())),
+        Update.update("columnarGridFsId", fileId.toHexString()), DatasetMetadata.class);
+      datasetMeta.setColumnarGridFsId(fileId.toHexString());
+      log.info("Artefato colunar do dataset {} gravado: {} bytes", datasetMeta.getId(), Files.size(tmp));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Falha ao gravar artefato colunar do dataset {}: {}", datasetMeta.getId(), e.getMessage());
+    } finally {
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+          // arquivo temporário, o SO limpa
+        }
+      }
+    }
+  }
+
+  private LoadedDataset parseArff(DatasetMetadata datasetMeta) throws IOException {
+    Optional<Path> local = localFile(datasetMeta);
+    if (local.isPresent()) {
+      Optional<LoadedDataset> parsed = parseFile(datasetMeta, local.get(), Files.size(local.get()));
+      if (parsed.isPresent()) {
+        return parsed.get();
+      }
+    }
+    if (threads() > 1) {
+      GridFsResource resource = resolve(datasetMeta);
+      if (resource.exists() && resource.contentLength() >= parallelMinMb << 20) {
+        Optional<LoadedDataset> parsed = parseInParallel(datasetMeta, resource);
+        if (parsed.isPresent()) {
+          return parsed.get();
+        }
+      }
+    }
+    Instances[] data = new Instances[1];
+    long bytesRead = streamArff(datasetMeta, structure -> data[0] = structure, row -> data[0].add(row), NO_PROGRESS);
+    data[0].compactify();
+
+    log.info("Dataset {} lido do GridFS em uma passada: {} bytes", datasetMeta.getFilename(), bytesRead);
+    return new LoadedDataset(data[0], bytesRead, bytesRead);
+  }
+
+  /**
+   * The file a local ingest read, when it is still on disk with the modification time it
+   * had then; the GridFS copy is read otherwise.
+   */
+  Optional<Path> localFile(DatasetMetadata datasetMeta) {
+    if (datasetMeta.getLocalPath() == null || datasetMeta.getLocalModifiedAt() == null) {
+      return Optional.empty();
+    }
+    Path file = Path.of(datasetMeta.getLocalPath());
+    try {
+      if (Files.isRegularFile(file) && DatasetStore.lastModified(file).equals(datasetMeta.getLocalModifiedAt())) {
+        return Optional.of(file);
+      }
+      log.info("Arquivo local {} do dataset {} mudou ou não existe mais; lendo a cópia do GridFS.", file, datasetMeta.getId());
+    } catch (IOException e) {
+      log.warn("Falha ao verificar o arquivo local {} do dataset {}: {}; lendo a cópia do GridFS.", file, datasetMeta.getId(), e.getMessage());
+    }
+    return Optional.empty();
+  }
+
+  // arquivos grandes: cópia temporária local, mapeada e lida em paralelo
+  private Optional<LoadedDataset> parseInParallel(DatasetMetadata datasetMeta, GridFsResource resource) throws IOException {
+    Path tmp = Files.createTempFile("dataset-", ".arff");
+    try {
+      long bytesRead;
+      try (CountingInputStream in = new CountingInputStream(resource.getInputStream())) {
+        Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        bytesRead = in.getCount();
+      }
+      metrics.recordGridFsBytesRead(bytesRead);
+      return parseFile(datasetMeta, tmp, bytesRead);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private Optional<LoadedDataset> parseFile(DatasetMetadata datasetMeta, Path file, long bytesRead) throws IOException {
+    try {
+      long start = System.nanoTime();
+      Instances data = ParallelArffParser.parse(file, threads());
+      log.info("Dataset {} lido em paralelo de {} ({} threads): {} instâncias, {} bytes em {} ms",
+        datasetMeta.getFilename(), file, threads(), data.numInstances(), bytesRead, (System.nanoTime() - start) / 1_000_000);
+      return Optional.of(new LoadedDataset(data, bytesRead, bytesRead));
+    } catch (ParallelArffParser.UnsupportedArffException e) {
+      log.info("Dataset {} fora do subconjunto do parser paralelo ({}); lendo em sequência.", datasetMeta.getFilename(), e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Streams the rows of one stored dataset from its ARFF, never holding more than the
+   * row being handed over, whatever the dataset size. {@code onBytesRead} gets the
+   * bytes read so far every few rows, for progress against {@link #arffLength}.
+   * Returns the bytes read.
+   */
+  public long streamRows(DatasetMetadata datasetMeta, Consumer<Instances> onHeader, Consumer<Instance> onRow,
+                         LongConsumer onBytesRead) throws IOException {
+    return streamArff(datasetMeta, onHeader, onRow, onBytesRead);
+  }
+
+  public long arffLength(DatasetMetadata datasetMeta) throws IOException {
+    return resolve(datasetMeta).contentLength();
+  }
+
+  private int threads() {
+    return parsingThreads > 0 ? parsingThreads : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Reads the ARFF row by row from GridFS. {@code onHeader} gets the structure (class set
+   * to the last attribute) before the first row; rows are handed to {@code onRow} as
+   * they are parsed. Returns the bytes read.
+   */
+  private long streamArff(DatasetMetadata datasetMeta, Consumer<Instances> onHeader, Consumer<Instance> onRow,
+                          LongConsumer onBytesRead) throws IOException {
+    GridFsResource resource = resolve(datasetMeta);
+    try (
+      CountingInputStream in = new CountingInputStream(resource.getInputStream());
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER)
+    ) {
+      ArffReader arff = new ArffReader(reader, 1000);
+      Instances structure = arff.getStructure();
+      structure.setClassIndex(structure.numAttributes() - 1);
+      onHeader.accept(structure);
+      Instance inst;
+      long rows = 0;
+      while ((inst = arff.readInstance(structure)) != null) {
+        onRow.accept(inst);
+        if (++rows % PROGRESS_ROWS == 0) {
+          onBytesRead.accept(in.getCount());
+        }
+      }
+      long bytesRead = in.getCount();
+      metrics.recordGridFsBytesRead(bytesRead);
+      return bytesRead;
+    }
+  }
+
+  // por id quando disponível: deltas diários costumam repetir o nome do arquivo
+  private GridFsResource resolve(DatasetMetadata datasetMeta) {
+    if (datasetMeta.getGridFsId() != null) {
+      GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(datasetMeta.getGridFsId()))));
+      if (file != null) {
+        return gridFsTemplate.getResource(file);
+      }
+    }
+    return gridFsTemplate.getResource(datasetMeta.getFilename());
+  }
+}
@@ -0,0 +1,138 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed storage of uploaded datasets. The SHA-256 of the ARFF is computed
+ * while it streams into GridFS; when a dataset with the same content already exists in
+ * the same role (base, or delta of the same base) the new copy is dropped and the
+ * existing metadata is returned instead. The unique {@code content_dedup} index settles
+ * concurrent identical uploads: the one that loses the insert returns the winner.
+ *
+ * A re-uploaded base becomes the latest base again ({@code uploadedAt}), so APPEND
+ * deltas that follow attach to it.
+ *
+ * Only the GridFS write happens here, on the caller's thread; the columnar artifact is
+ * built by the first training job that loads the dataset (see {@link DatasetLoader}).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DatasetStore {
+
+  private final GridFsTemplate gridFsTemplate;
+  private final DatasetMetadataRepository datasetMetadataRepository;
+  private final MongoTemplate mongoTemplate;
+
+  public record StoredDataset(DatasetMetadata metadata, boolean duplicate) {
+  }
+
+  public StoredDataset store(InputStream in, String filename, String contentType, IngestMode mode, String parentId) throws IOException {
+    return store(in, filename, contentType, mode, parentId, null);
+  }
+
+  /**
+   * Stores a file read from the local disk. Its path and modification time are recorded
+   * on the metadata so that training can parse the file itself while it is unchanged,
+   * with the GridFS copy as the fallback.
+   */
+  public StoredDataset storeLocal(Path file, IngestMode mode, String parentId) throws IOException {
+    LocalSource source = new LocalSource(file.toAbsolutePath().toString(), lastModified(file));
+    try (InputStream in = Files.newInputStream(file)) {
+      return store(in, file.getFileName().toString(), "application/arff", mode, parentId, source);
+    }
+  }
+
+  // precisão do Mongo: a comparação no treino usa o mesmo arredondamento
+  static Instant lastModified(Path file) throws IOException {
+    return Files.getLastModifiedTime(file).toInstant().truncatedTo(ChronoUnit.MILLIS);
+  }
+
+  private record LocalSource(String path, Instant modifiedAt) {
+  }
+
+  private StoredDataset store(InputStream in, String filename, String contentType, IngestMode mode, String parentId,
+                              LocalSource local) throws IOException {
+    MessageDigest sha256 = sha256();
+    ObjectId fileId;
+    try (DigestInputStream digesting = new DigestInputStream(in, sha256)) {
+      fileId = gridFsTemplate.store(digesting, filename, contentType);
+    }
+    String contentHash = HexFormat.of().formatHex(sha256.digest());
+
+    DatasetMetadata existing = datasetMetadataRepository.findFirstByContentHashAndModeAndParentIdOrderByIdAsc(contentHash, mode, parentId);
+    if (existing != null) {
+      return duplicate(existing, fileId, filename, local);
+    }
+
+    DatasetMetadata metadata = DatasetMetadata.builder()
+      .filename(filename)
+      .gridFsId(fileId.toHexString())
+      .mode(mode)
+      .parentId(parentId)
+      .contentHash(contentHash)
+      .uploadedAt(Instant.now())
+      .localPath(local == null ? null : local.path())
+      .localModifiedAt(local == null ? null : local.modifiedAt())
+      .build();
+    try {
+      datasetMetadataRepository.insert(metadata);
+    } catch (DuplicateKeyException e) {
+      // upload idêntico concorrente gravou primeiro: o índice único content_dedup decide
+      DatasetMetadata winner = datasetMetadataRepository.findFirstByContentHashAndModeAndParentIdOrderByIdAsc(contentHash, mode, parentId);
+      if (winner == null) {
+        throw e;
+      }
+      return duplicate(winner, fileId, filename, local);
+    }
+    return new StoredDataset(metadata, false);
+  }
+
+  // o reenvio renova uploadedAt: um base antigo reenviado volta a ser o alvo dos próximos deltas
+  // um reenvio local com o mesmo conteúdo passa a ser a cópia local lida pelo treino
+  private StoredDataset duplicate(DatasetMetadata existing, ObjectId fileId, String filename, LocalSource local) {
+    gridFsTemplate.delete(Query.query(Criteria.where("_id").is(fileId)));
+    Instant now = Instant.now();
+    Update update = Update.update("uploadedAt", now);
+    if (local != null) {
+      update.set("localPath", local.path()).set("localModifiedAt", local.modifiedAt());
+      existing.setLocalPath(local.path());
+      existing.setLocalModifiedAt(local.modifiedAt());
+    }
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(existing.getId())), update, DatasetMetadata.class);
+    existing.setUploadedAt(now);
+    log.info("Upload de {} idêntico ao dataset {} ({}); cópia descartada.", filename, existing.getId(), existing.getContentHash());
+    return new StoredDataset(existing, true);
+  }
+
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 indisponível na JVM", e);
+    }
+  }
+}
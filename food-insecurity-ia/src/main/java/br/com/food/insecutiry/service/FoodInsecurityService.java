@@ -2,27 +2,42 @@ package br.com.food.insecutiry.service;
 
 
 import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.inference.FeatureEncoder;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
 import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.model.dto.BatchPredictionResultDTO;
 import br.com.food.insecutiry.model.dto.DatasetInfoDTO;
 import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
 import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import br.com.food.insecutiry.model.dto.PredictionSummaryDTO;
 import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.bson.types.ObjectId;
-import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import weka.classifiers.Classifier;
-import weka.core.DenseInstance;
-import weka.core.Instance;
+import org.springframework.web.server.ResponseStatusException;
 import weka.core.Instances;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
 
 
 @RequiredArgsConstructor
@@ -30,32 +45,174 @@ import java.util.Optional;
 @Service
 public class FoodInsecurityService {
   private final DatasetMetadataRepository datasetMetadataRepository;
-  private final GridFsTemplate gridFsTemplate;
+  private final DatasetStore datasetStore;
   private final WekaModelConfig wekaModelConfig;
+  private final TrainingJobService trainingJobService;
+  private final ObjectMapper objectMapper;
+  private final FoodInsecurityMetrics metrics;
+  private final RiskCubeService riskCubeService;
 
-  public PredictionResponseDTO predict(PredictionRequestDTO req) throws Exception {
-    Classifier model = wekaModelConfig.getModel();
-    if (model == null) {
-      throw new IllegalStateException("Prediction model is not available. Please upload a dataset and train the model first.");
+  @Value("${food-insecurity.batch.chunk-size:512}")
+  private int batchChunkSize;
+
+  @Value("${food-insecurity.coalescing.enabled:false}")
+  private boolean coalescingEnabled;
+
+  @Value("${food-insecurity.coalescing.window-micros:1000}")
+  private long coalescingWindowMicros;
+
+  @Value("${food-insecurity.coalescing.max-batch:64}")
+  private int coalescingMaxBatch;
+
+  @Value("${food-insecurity.coalescing.dispatchers:1}")
+  private int coalescingDispatchers;
+
+  @Value("${food-insecurity.coalescing.queue-capacity:4096}")
+  private int coalescingQueueCapacity;
+
+  // buffers de instância reutilizados por thread (um por worker)
+  private final ThreadLocal<PredictionScorer> scorers = new ThreadLocal<>();
+
+  private PredictionCoalescer coalescer;
+
+  private volatile ImportancesPayload importances;
+
+  @PostConstruct
+  public void init() {
+    if (coalescingEnabled) {
+      coalescer = new PredictionCoalescer(coalescingMaxBatch, coalescingWindowMicros, coalescingDispatchers,
+        coalescingQueueCapacity, this::scoreCoalesced, metrics);
     }
+  }
 
-    Instances structure = wekaModelConfig.getStructure();
-    if (structure == null) {
-      throw new IllegalStateException("Dataset structure not available.");
+  @PreDestroy
+  public void shutdown() {
+    if (coalescer != null) {
+      coalescer.close();
     }
+  }
 
-    // cria instância
-    Instance inst = new DenseInstance(structure.numAttributes());
-    inst.setDataset(new Instances(structure)); // usar cópia leve para thread-safety
-    String salarioRange = mapSalaryToRange(req.salario());
-    if (salarioRange == null) inst.setMissing(0); else inst.setValue(0, salarioRange);
-    inst.setValue(1, req.estado());
-    inst.setValue(2, req.cor());
-    inst.setValue(3, req.escolaridade());
+  public PredictionResponseDTO predict(PredictionRequestDTO req) throws Exception {
+    // com coalescing o pedido espera o lote; fila cheia cai no caminho direto
+    CompletableFuture<PredictionResponseDTO> coalesced = coalescer == null ? null : coalescer.submit(req);
+    if (coalesced != null) {
+      try {
+        return coalesced.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof Exception cause ? cause : e;
+      }
+    }
+
+    ModelSnapshot snapshot = requireSnapshot();
 
     // obtém distribuição de probabilidades por classe (ex: [0.9, 0.1])
-    double[] dist = model.distributionForInstance(inst);
+    double[] dist = score(scorerFor(snapshot.header()), snapshot, req);
+    return toResponse(dist, snapshot);
+  }
 
+  /** {@link #predict} without the importance section; see {@link #currentImportances()}. */
+  public PredictionSummaryDTO predictSummary(PredictionRequestDTO req) throws Exception {
+    PredictionResponseDTO full = predict(req);
+    return PredictionSummaryDTO.builder()
+      .prediction(full.prediction())
+      .probabilities(full.probabilities())
+      .modelVersion(full.modelVersion())
+      .build();
+  }
+
+  /**
+   * Scores a JSON array or NDJSON stream of requests, writing one NDJSON line per row as
+   * soon as its chunk is scored. Only one chunk of rows is held in memory at a time.
+   */
+  public void predictBatch(InputStream in, OutputStream out) throws IOException {
+    try (
+      MappingIterator<PredictionRequestDTO> rows = objectMapper.readerFor(PredictionRequestDTO.class).readValues(in);
+      SequenceWriter writer = objectMapper.writerFor(BatchPredictionResultDTO.class).withRootValueSeparator("\n").writeValues(out)
+    ) {
+      List<PredictionRequestDTO> chunk = new ArrayList<>(batchChunkSize);
+      long offset = 0;
+      while (rows.hasNextValue()) {
+        chunk.add(rows.nextValue());
+        if (chunk.size() == batchChunkSize) {
+          writeChunk(chunk, offset, writer);
+          offset += chunk.size();
+          chunk.clear();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        writeChunk(chunk, offset, writer);
+        offset += chunk.size();
+      }
+      metrics.recordBatchSize(offset);
+    }
+  }
+
+  private void writeChunk(List<PredictionRequestDTO> chunk, long offset, SequenceWriter writer) throws IOException {
+    // snapshot lido uma vez por bloco para manter o bloco consistente
+    ModelSnapshot snapshot = requireSnapshot();
+
+    BatchPredictionResultDTO[] results = new BatchPredictionResultDTO[chunk.size()];
+    IntStream.range(0, chunk.size()).parallel().forEach(i -> {
+      long index = offset + i;
+      try {
+        double[] dist = score(scorerFor(snapshot.header()), snapshot, chunk.get(i));
+        results[i] = new BatchPredictionResultDTO(index, toResponse(dist, snapshot), null);
+      } catch (Exception e) {
+        results[i] = new BatchPredictionResultDTO(index, null, e.getMessage());
+      }
+    });
+
+    for (BatchPredictionResultDTO result : results) {
+      writer.write(result);
+    }
+    writer.flush();
+  }
+
+  // roda na thread do dispatcher: um snapshot e um buffer de instância para o lote inteiro
+  private void scoreCoalesced(List<PredictionCoalescer.Pending> batch) {
+    ModelSnapshot snapshot = requireSnapshot();
+    PredictionScorer scorer = scorerFor(snapshot.header());
+    for (PredictionCoalescer.Pending pending : batch) {
+      try {
+        pending.result().complete(toResponse(score(scorer, snapshot, pending.request()), snapshot));
+      } catch (Exception e) {
+        pending.result().completeExceptionally(e);
+      }
+    }
+  }
+
+  // toda predição servida entra no cubo de risco, com a linha já codificada pelo scorer
+  private double[] score(PredictionScorer scorer, ModelSnapshot snapshot, PredictionRequestDTO req) throws Exception {
+    double[] dist = scorer.score(snapshot, req);
+    if (riskCubeService != null) {
+      riskCubeService.record(snapshot, scorer.getValues(), dist);
+    }
+    return dist;
+  }
+
+  private PredictionScorer scorerFor(Instances structure) {
+    // threads virtuais vivem uma requisição: o ThreadLocal só acumularia mapas por thread
+    if (Thread.currentThread().isVirtual()) {
+      return new PredictionScorer(structure, metrics);
+    }
+    PredictionScorer scorer = scorers.get();
+    if (scorer == null || scorer.getHeader() != structure) {
+      scorer = new PredictionScorer(structure, metrics);
+      scorers.set(scorer);
+    }
+    return scorer;
+  }
+
+  private ModelSnapshot requireSnapshot() {
+    ModelSnapshot snapshot = wekaModelConfig.getSnapshot();
+    if (snapshot == null) {
+      throw new IllegalStateException("Prediction model is not available. Please upload a dataset and train the model first.");
+    }
+    return snapshot;
+  }
+
+  private PredictionResponseDTO toResponse(double[] dist, ModelSnapshot snapshot) {
+    Instances structure = snapshot.header();
     // mapeia para rótulos e percentuais
     Map<String, Double> percentages = new LinkedHashMap<>();
     for (int i = 0; i < dist.length; i++) {
@@ -69,42 +226,70 @@ public class FoodInsecurityService {
     for (int i = 1; i < dist.length; i++) if (dist[i] > dist[bestIdx]) bestIdx = i;
     String predictedClass = structure.classAttribute().value(bestIdx);
 
-    Optional<Map.Entry<String, Double>> topAttr = wekaModelConfig.getTopAttribute();
+    ImportancesPayload importances = importancesFor(snapshot);
 
     return PredictionResponseDTO.builder()
       .probabilities(percentages)
       .prediction(predictedClass)
-      .topAttributeName(topAttr.map(Map.Entry::getKey).orElse(null))
-      .topAttributeScore(topAttr.map(Map.Entry::getValue).orElse(null))
-      .attributeImportances(wekaModelConfig.getAttributeImportances())
+      .topAttributeName(importances.topAttributeName())
+      .topAttributeScore(importances.topAttributeScore())
+      .attributeImportances(importances.attributeImportances())
+      .modelVersion(snapshot.version())
       .build();
   }
 
-  public DatasetInfoDTO uploadDataset(MultipartFile file) throws IOException {
-    ObjectId fileId = gridFsTemplate.store(file.getInputStream(), Objects.requireNonNull(file.getOriginalFilename()));
-    DatasetMetadata metadata = DatasetMetadata.builder()
-      .filename(file.getOriginalFilename())
-      .gridFsId(fileId.toHexString())
-      .build();
-    datasetMetadataRepository.save(metadata);
+  /** Importance section of the current model, for the cacheable importances endpoint. */
+  public ImportancesPayload currentImportances() {
+    ModelSnapshot snapshot = wekaModelConfig.getSnapshot();
+    if (snapshot == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Nenhum modelo carregado.");
+    }
+    return importancesFor(snapshot);
+  }
 
-    wekaModelConfig.trainModelFromDataset(metadata);
+  // resolvida uma vez por snapshot; duas threads na troca de modelo podem montar a mesma seção, sem prejuízo
+  private ImportancesPayload importancesFor(ModelSnapshot snapshot) {
+    ImportancesPayload cached = importances;
+    if (cached != null && cached.snapshot() == snapshot) {
+      return cached;
+    }
+    try {
+      cached = ImportancesPayload.of(snapshot, objectMapper);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+    importances = cached;
+    return cached;
+  }
+
+  public DatasetInfoDTO uploadDataset(MultipartFile file, IngestMode mode) throws IOException {
+    String parentId = null;
+    if (mode == IngestMode.APPEND) {
+      DatasetMetadata base = datasetMetadataRepository.findTopByParentIdIsNullOrderByUploadedAtDescIdDesc();
+      if (base == null) {
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Nenhum dataset base para anexar o delta.");
+      }
+      parentId = base.getId();
+    }
 
-    return new DatasetInfoDTO(metadata.getId(), metadata.getFilename());
+    // vaga na fila de treino antes de gravar: fila cheia responde 429 sem tocar no GridFS
+    try (TrainingJobService.Admission admission = trainingJobService.admit()) {
+      // reenvio do mesmo ARFF reaproveita o dataset; o job encontra o modelo no cache do registro
+      DatasetStore.StoredDataset stored = datasetStore.store(
+        file.getInputStream(), Objects.requireNonNull(file.getOriginalFilename()), null, mode, parentId);
+      DatasetMetadata metadata = stored.metadata();
+      if (stored.duplicate() && mode == IngestMode.APPEND) {
+        // delta reenviado (retry de ETL): já aplicado ou na fila, um segundo job o contaria duas vezes
+        return new DatasetInfoDTO(metadata.getId(), metadata.getFilename(), null);
+      }
+
+      TrainingJob job = trainingJobService.submit(metadata, admission);
+
+      return new DatasetInfoDTO(metadata.getId(), metadata.getFilename(), job.getId());
+    }
   }
 
-  private String mapSalaryToRange(Double salary) {
-    if (salary == null) return null;
-    double s = salary;
-    if (s >= 422 && s <= 999) return "422-999";
-    if (s >= 810 && s <= 1300) return "810-1300";
-    if (s >= 1500 && s <= 3000) return "1500-3000";
-    if (s >= 0 && s <= 499) return "0-499";
-    if (s >= 500 && s <= 999) return "500-999";
-    if (s >= 1000 && s <= 1499) return "1000-1499";
-    if (s >= 1500 && s <= 1999) return "1500-1999";
-    if (s >= 2000 && s <= 2499) return "2000-2499";
-    if (s >= 2500 && s <= 2999) return "2500-2999";
-    return "3000-50000";
+  static String mapSalaryToRange(Double salary) {
+    return salary == null ? null : FeatureEncoder.SALARY_RANGES.label(salary);
   }
 }
@@ -0,0 +1,45 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.ModelImportancesDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * The importance section of one model snapshot, resolved and serialized once: the top
+ * attribute, the importances object embedded raw in every full /predict response, and
+ * the body and ETag of {@code /models/current/importances}.
+ */
+public record ImportancesPayload(
+  ModelSnapshot snapshot,
+  String topAttributeName,
+  Double topAttributeScore,
+  RawValue attributeImportances,
+  byte[] body,
+  String etag) {
+
+  public static ImportancesPayload of(ModelSnapshot snapshot, ObjectMapper objectMapper) throws JsonProcessingException {
+    Optional<Map.Entry<String, Double>> top = snapshot.topAttribute();
+    String topName = top.map(Map.Entry::getKey).orElse(null);
+    Double topScore = top.map(Map.Entry::getValue).orElse(null);
+    // SerializedString guarda os bytes UTF-8 na primeira escrita e os reaproveita nas seguintes
+    RawValue embedded = new RawValue(new SerializedString(objectMapper.writeValueAsString(snapshot.attributeImportances())));
+    byte[] body = objectMapper.writeValueAsBytes(ModelImportancesDTO.builder()
+      .modelVersion(snapshot.version())
+      .topAttributeName(topName)
+      .topAttributeScore(topScore)
+      .attributeImportances(snapshot.attributeImportances())
+      .build());
+    // versão + hash do conteúdo: réplicas servindo o mesmo modelo respondem o mesmo ETag
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    String etag = "\"v" + snapshot.version() + "-" + Long.toHexString(crc.getValue()) + "\"";
+    return new ImportancesPayload(snapshot, topName, topScore, embedded, body, etag);
+  }
+}
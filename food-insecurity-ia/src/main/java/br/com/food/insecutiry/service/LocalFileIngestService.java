@@ -1,44 +1,54 @@
 package br.com.food.insecutiry.service;
 
-import br.com.food.insecutiry.config.WekaModelConfig;
 import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.model.dto.DatasetInfoDTO;
 import br.com.food.insecutiry.repository.DatasetMetadataRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.mongodb.gridfs.GridFsTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 
 @Service
 @RequiredArgsConstructor
 public class LocalFileIngestService {
 
-  private final GridFsTemplate gridFsTemplate;
+  private final DatasetStore datasetStore;
   private final DatasetMetadataRepository datasetMetadataRepository;
-  private final WekaModelConfig wekaModelConfig;
+  private final TrainingJobService trainingJobService;
 
 
-  // salva arquivo local no GridFS e cria entrada em DatasetMetadata
-  public void saveLocalFileToDb(String localPath) {
+  // salva arquivo local no GridFS e cria entrada em DatasetMetadata com o caminho de origem
+  public DatasetInfoDTO saveLocalFileToDb(String localPath, IngestMode mode) {
     try {
       File file = new File(localPath);
       if (!file.exists() || !file.isFile()) {
         throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Arquivo local não encontrado: " + localPath);
       }
 
-      String filename = file.getName();
-      try (InputStream is = new FileInputStream(file)) {
-        gridFsTemplate.store(is, filename, "application/arff");
+      String parentId = null;
+      if (mode == IngestMode.APPEND) {
+        DatasetMetadata base = findLatestDataset();
+        if (base == null) {
+          throw new ResponseStatusException(HttpStatus.CONFLICT, "Nenhum dataset base para anexar o delta.");
+        }
+        parentId = base.getId();
       }
 
-      DatasetMetadata meta = new DatasetMetadata();
-      meta.setFilename(filename);
-      datasetMetadataRepository.save(meta);
-      wekaModelConfig.trainModelFromDataset(meta);
+      try (TrainingJobService.Admission admission = trainingJobService.admit()) {
+        // o caminho fica no metadata: o treino parseia o próprio arquivo em paralelo
+        DatasetStore.StoredDataset stored = datasetStore.storeLocal(file.toPath(), mode, parentId);
+        DatasetMetadata meta = stored.metadata();
+        if (stored.duplicate() && mode == IngestMode.APPEND) {
+          // delta reenviado (retry de ETL): já aplicado ou na fila, um segundo job o contaria duas vezes
+          return new DatasetInfoDTO(meta.getId(), meta.getFilename(), null);
+        }
+        TrainingJob job = trainingJobService.submit(meta, admission);
+        return new DatasetInfoDTO(meta.getId(), meta.getFilename(), job.getId());
+      }
     } catch (ResponseStatusException rse) {
       throw rse;
     } catch (Exception e) {
@@ -47,6 +57,6 @@ public class LocalFileIngestService {
   }
 
   public DatasetMetadata findLatestDataset() {
-    return datasetMetadataRepository.findTopByOrderByIdDesc();
+    return datasetMetadataRepository.findTopByParentIdIsNullOrderByUploadedAtDescIdDesc();
   }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@code model} health contributor, part of the readiness group
+ * ({@code /actuator/health/readiness}): out of service until {@link ModelStartupService}
+ * has a warm model serving. Boot's own readiness state turns on with the application
+ * and is left alone; the group is up only when both are.
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelHealthIndicator implements HealthIndicator {
+
+  private final ModelStartupService modelStartupService;
+  private final WekaModelConfig wekaModelConfig;
+
+  @Override
+  public Health health() {
+    ModelSnapshot snapshot = wekaModelConfig.getSnapshot();
+    Health.Builder health = modelStartupService.isReady() ? Health.up() : Health.outOfService();
+    if (snapshot != null) {
+      health.withDetail("modelVersion", snapshot.version());
+    }
+    if (!modelStartupService.isReady()) {
+      health.withDetail("reason", !wekaModelConfig.isStartupLoadComplete() ? "loading"
+        : snapshot == null ? "no model" : "warming up");
+    }
+    return health.build();
+  }
+}
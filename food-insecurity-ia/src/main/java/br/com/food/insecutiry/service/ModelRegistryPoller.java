@@ -0,0 +1,37 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps every instance serving the latest registered model. A model trained on another
+ * instance is noticed on the next poll, loaded once from GridFS, warmed up and swapped in.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelRegistryPoller {
+
+  private final WekaModelConfig wekaModelConfig;
+
+  @Value("${food-insecurity.registry.poll.enabled:true}")
+  private boolean enabled;
+
+  @Scheduled(initialDelayString = "${food-insecurity.registry.poll.interval-ms:5000}",
+    fixedDelayString = "${food-insecurity.registry.poll.interval-ms:5000}")
+  public void poll() {
+    // enquanto a carga de startup lê o mesmo artefato, o poller não o carrega uma segunda vez
+    if (!enabled || !wekaModelConfig.isStartupLoadComplete()) {
+      return;
+    }
+    try {
+      wekaModelConfig.refreshFromRegistry();
+    } catch (Exception e) {
+      log.warn("Falha ao atualizar o modelo a partir do registro: {}", e.getMessage());
+    }
+  }
+}
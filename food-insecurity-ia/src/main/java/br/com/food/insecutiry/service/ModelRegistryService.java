@@ -0,0 +1,149 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.ModelArtifact;
+import br.com.food.insecutiry.model.ModelRegistryEntry;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.ModelVersionCounter;
+import br.com.food.insecutiry.model.TrainingMetrics;
+import br.com.food.insecutiry.repository.ModelRegistryRepository;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * Versioned store of trained models shared by every instance of the service. Each entry
+ * points at one serialized {@link ModelArtifact} in GridFS, so a starting pod loads the
+ * current model with one read instead of retraining.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelRegistryService {
+
+  private static final String ARTIFACT_CONTENT_TYPE = "application/x-weka-model";
+  private static final String VERSION_COUNTER_ID = "model_version";
+
+  private final ModelRegistryRepository modelRegistryRepository;
+  private final GridFsTemplate gridFsTemplate;
+  private final MongoTemplate mongoTemplate;
+
+  public record RegisteredModel(ModelRegistryEntry entry, ModelArtifact artifact) {
+  }
+
+  /** What a trained model is a pure function of: the dataset content and the training settings. */
+  public record CacheKey(String datasetHash, String trainingParams) {
+  }
+
+  /**
+   * Allocates a version no other instance gets, with one {@code $inc} on the counter
+   * document. The counter is first raised to {@code floor} and to the latest registered
+   * version, so it starts above a registry filled before it existed and above versions
+   * this instance published locally.
+   */
+  public long nextVersion(long floor) {
+    Query counter = Query.query(Criteria.where("_id").is(VERSION_COUNTER_ID));
+    long registered = latestVersion().orElse(0L);
+    mongoTemplate.upsert(counter, new Update().max("value", Math.max(floor, registered)), ModelVersionCounter.class);
+    ModelVersionCounter allocated = mongoTemplate.findAndModify(counter, new Update().inc("value", 1),
+      FindAndModifyOptions.options().upsert(true).returnNew(true), ModelVersionCounter.class);
+    return allocated.getValue();
+  }
+
+  public ModelRegistryEntry register(ModelSnapshot snapshot, TrainingMetrics metrics) throws Exception {
+    return register(snapshot, metrics, null);
+  }
+
+  /** Registers the model; with a {@code cacheKey} a later job on the same input finds it in {@link #findCached}. */
+  public ModelRegistryEntry register(ModelSnapshot snapshot, TrainingMetrics metrics, CacheKey cacheKey) throws Exception {
+    ModelArtifact artifact = new ModelArtifact(
+      snapshot.classifier(),
+      snapshot.header(),
+      new LinkedHashMap<>(snapshot.attributeImportances()),
+      snapshot.incrementalModel());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    weka.core.SerializationHelper.write(bytes, artifact);
+    ObjectId fileId = gridFsTemplate.store(
+      new ByteArrayInputStream(bytes.toByteArray()), "model-v" + snapshot.version() + ".bin", ARTIFACT_CONTENT_TYPE);
+
+    ModelRegistryEntry entry = ModelRegistryEntry.builder()
+      .version(snapshot.version())
+      .datasetId(snapshot.datasetId())
+      .algorithm(snapshot.classifier().getClass().getName())
+      .artifactGridFsId(fileId.toHexString())
+      .metrics(metrics)
+      .deltasApplied(snapshot.deltasApplied())
+      .datasetHash(cacheKey == null ? null : cacheKey.datasetHash())
+      .trainingParams(cacheKey == null ? null : cacheKey.trainingParams())
+      .createdAt(Instant.now())
+      .build();
+    modelRegistryRepository.save(entry);
+    log.info("Model version {} registered ({} bytes).", entry.getVersion(), bytes.size());
+    return entry;
+  }
+
+  public Optional<ModelRegistryEntry> findCached(CacheKey cacheKey) {
+    return Optional.ofNullable(modelRegistryRepository.findTopByDatasetHashAndTrainingParamsOrderByVersionDesc(
+      cacheKey.datasetHash(), cacheKey.trainingParams()));
+  }
+
+  /**
+   * Registers {@code cached} again as {@code version}, pointing at the same GridFS artifact,
+   * so the cached model becomes the latest one for every instance without a second copy.
+   */
+  public ModelRegistryEntry promote(ModelRegistryEntry cached, long version, String datasetId) {
+    ModelRegistryEntry entry = cached.toBuilder()
+      .id(null)
+      .version(version)
+      .datasetId(datasetId)
+      .createdAt(Instant.now())
+      .build();
+    modelRegistryRepository.save(entry);
+    log.info("Model version {} registered from cached version {}.", version, cached.getVersion());
+    return entry;
+  }
+
+  /** Latest registered version, reading nothing but the version field. */
+  public Optional<Long> latestVersion() {
+    return Optional.ofNullable(modelRegistryRepository.findFirstByOrderByVersionDesc())
+      .map(ModelRegistryRepository.VersionOnly::getVersion);
+  }
+
+  public Optional<ModelRegistryEntry> latestEntry() {
+    return Optional.ofNullable(modelRegistryRepository.findTopByOrderByVersionDesc());
+  }
+
+  public Optional<RegisteredModel> loadLatest() throws Exception {
+    Optional<ModelRegistryEntry> latest = latestEntry();
+    if (latest.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(new RegisteredModel(latest.get(), readArtifact(latest.get())));
+  }
+
+  public ModelArtifact readArtifact(ModelRegistryEntry entry) throws Exception {
+    GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(entry.getArtifactGridFsId()))));
+    if (file == null) {
+      throw new IOException("Artefato do modelo v" + entry.getVersion() + " não encontrado no GridFS.");
+    }
+    try (InputStream in = gridFsTemplate.getResource(file).getInputStream()) {
+      return (ModelArtifact) weka.core.SerializationHelper.read(in);
+    }
+  }
+}
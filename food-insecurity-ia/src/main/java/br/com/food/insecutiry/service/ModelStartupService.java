@@ -0,0 +1,173 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.inference.FeatureEncoder;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the model off the startup path and gates readiness on it. The context finishes
+ * starting without waiting for the registry, GridFS or a retrain; the load then runs on
+ * its own thread, and {@link ModelHealthIndicator} keeps the readiness group out of
+ * service until a model is serving and a prewarm pass of synthetic requests has run
+ * through {@link FoodInsecurityService#predict}, so the first real requests hit compiled code.
+ *
+ * When startup finds no model, readiness turns on with the first model published later,
+ * unless {@code ready-without-model} lets an empty instance take the first upload.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelStartupService {
+
+  private final WekaModelConfig wekaModelConfig;
+  private final FoodInsecurityService foodInsecurityService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final RiskCubeService riskCubeService;
+
+  @Value("${food-insecurity.startup.ready-without-model:false}")
+  private boolean readyWithoutModel;
+
+  @Value("${food-insecurity.startup.prewarm.requests:20000}")
+  private int prewarmRequests;
+
+  @Value("${food-insecurity.startup.prewarm.max-seconds:30}")
+  private long prewarmMaxSeconds;
+
+  private final AtomicBoolean warming = new AtomicBoolean();
+  private volatile boolean ready;
+
+  @PostConstruct
+  public void init() {
+    wekaModelConfig.addPublishListener(this::onModelPublished);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    Thread loader = new Thread(this::loadAndPrewarm, "model-startup");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  /** Whether a warm model is serving, or none is needed; read by {@link ModelHealthIndicator}. */
+  public boolean isReady() {
+    return ready;
+  }
+
+  private void loadAndPrewarm() {
+    try {
+      long start = System.nanoTime();
+      wekaModelConfig.loadAtStartup();
+      ModelSnapshot loaded = wekaModelConfig.getSnapshot();
+      log.info("Startup model load finished in {} ms: {}.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        loaded == null ? "no model" : "version " + loaded.version());
+      if (loaded != null) {
+        warmUpAndAccept(loaded);
+      } else if (readyWithoutModel) {
+        accept();
+      } else {
+        log.warn("No model to serve; readiness stays off until one is trained or registered.");
+      }
+    } catch (Throwable e) {
+      // falha fora do tratamento do loadAtStartup (ex.: OutOfMemoryError): a réplica deve ser reiniciada
+      log.error("Startup model load failed: {}", e.getMessage(), e);
+      AvailabilityChangeEvent.publish(eventPublisher, this, LivenessState.BROKEN);
+    }
+  }
+
+  // primeiro modelo publicado depois de um startup sem modelo (treino ou poller do registro)
+  private void onModelPublished(ModelSnapshot published) {
+    if (!ready && wekaModelConfig.isStartupLoadComplete()) {
+      warmUpAndAccept(published);
+    }
+  }
+
+  private void warmUpAndAccept(ModelSnapshot snapshot) {
+    if (!warming.compareAndSet(false, true)) {
+      return;
+    }
+    prewarm(snapshot);
+    accept();
+  }
+
+  private void accept() {
+    ready = true;
+    log.info("Instance is ready to serve predictions.");
+  }
+
+  // requisições sintéticas pelo mesmo caminho do /predict (coalescer, scorer, encoder, resposta)
+  private void prewarm(ModelSnapshot snapshot) {
+    if (prewarmRequests <= 0) {
+      return;
+    }
+    PredictionRequestDTO[] requests = syntheticRequests(snapshot.header(), Math.min(prewarmRequests, 1024), new Random(42));
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(prewarmMaxSeconds);
+    int done = 0;
+    int failed = 0;
+    // tráfego sintético fora do cubo de risco
+    try (RiskCubeService.Pause pause = riskCubeService.pauseRecording()) {
+      for (; done < prewarmRequests && System.nanoTime() < deadline; done++) {
+        try {
+          foodInsecurityService.predict(requests[done % requests.length]);
+        } catch (Exception e) {
+          failed++;
+        }
+      }
+    }
+    log.info("Prewarm of model version {}: {} synthetic predictions in {} ms ({} failed).",
+      snapshot.version(), done, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed);
+  }
+
+  // valores sorteados do próprio header, para percorrer os ramos da árvore e não só um caminho
+  static PredictionRequestDTO[] syntheticRequests(Instances header, int count, Random random) {
+    Attribute estado = header.attribute(FeatureEncoder.ESTADO);
+    Attribute cor = header.attribute(FeatureEncoder.COR);
+    Attribute escolaridade = header.attribute(FeatureEncoder.ESCOLARIDADE);
+    PredictionRequestDTO[] requests = new PredictionRequestDTO[count];
+    for (int i = 0; i < count; i++) {
+      requests[i] = PredictionRequestDTO.builder()
+        .salario(random.nextDouble() * 6000)
+        .estado(randomLabel(estado, random))
+        .cor(randomLabel(cor, random))
+        .escolaridade(randomEscolaridade(escolaridade, random))
+        .build();
+    }
+    return requests;
+  }
+
+  private static String randomLabel(Attribute att, Random random) {
+    return att == null || !att.isNominal() || att.numValues() == 0 ? null : att.value(random.nextInt(att.numValues()));
+  }
+
+  private static Integer randomEscolaridade(Attribute att, Random random) {
+    if (att == null) {
+      return null;
+    }
+    if (!att.isNominal()) {
+      return random.nextInt(20);
+    }
+    String label = randomLabel(att, random);
+    try {
+      return label == null ? null : Integer.valueOf(label);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
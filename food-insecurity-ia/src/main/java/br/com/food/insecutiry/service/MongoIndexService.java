@@ -0,0 +1,65 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.CalibrationReport;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.ModelRegistryEntry;
+import br.com.food.insecutiry.model.RiskCubeSnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Creates the indexes declared on the documents ({@code @Indexed}, {@code @CompoundIndex}),
+ * which Spring Boot leaves to the application: auto-index creation is off by default.
+ * The unique ones back guarantees of the services (one registry entry per model version,
+ * one dataset per content hash and role).
+ *
+ * Runs on the scheduler, not on the startup path, so an unreachable Mongo does not hold
+ * the context; collections whose indexes could not be created are retried on the next
+ * run. A unique index that existing documents violate is only logged, since retrying
+ * cannot fix it: the duplicates have to be removed by hand.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MongoIndexService {
+
+  private static final List<Class<?>> DOCUMENTS = List.of(
+    DatasetMetadata.class, ModelRegistryEntry.class, CalibrationReport.class, RiskCubeSnapshot.class);
+
+  private final MongoTemplate mongoTemplate;
+
+  private final Set<Class<?>> pending = new CopyOnWriteArraySet<>(DOCUMENTS);
+
+  @Scheduled(initialDelay = 0, fixedDelayString = "${food-insecurity.mongo.index-retry-ms:30000}")
+  public void ensureIndexes() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+    for (Class<?> document : pending) {
+      IndexOperations indexOps = mongoTemplate.indexOps(document);
+      try {
+        resolver.resolveIndexFor(document).forEach(indexOps::ensureIndex);
+        pending.remove(document);
+        log.info("Índices de {} garantidos.", mongoTemplate.getCollectionName(document));
+      } catch (DataIntegrityViolationException e) {
+        pending.remove(document);
+        log.error("Índice único de {} não criado: há documentos duplicados ({}). Remova-os e reinicie a instância.",
+          mongoTemplate.getCollectionName(document), e.getMessage());
+      } catch (DataAccessException e) {
+        log.warn("Índices de {} não criados, nova tentativa em breve: {}", mongoTemplate.getCollectionName(document), e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Micro-batches single predictions. Concurrent callers enqueue their request and wait on
+ * a future; dispatcher threads collect requests until the batch is full or the window
+ * since its first request has passed, and hand the batch to {@code scoreBatch}, which
+ * scores it against one snapshot with the dispatcher's own scorer buffer.
+ *
+ * When the queue is full {@link #submit} returns null and the caller scores inline, so
+ * a burst larger than the queue adds no latency beyond the direct path.
+ */
+@Slf4j
+public class PredictionCoalescer implements AutoCloseable {
+
+  public record Pending(PredictionRequestDTO request, CompletableFuture<PredictionResponseDTO> result, long enqueuedNanos) {
+  }
+
+  private final int maxBatch;
+  private final long windowNanos;
+  private final Consumer<List<Pending>> scoreBatch;
+  private final FoodInsecurityMetrics metrics;
+  private final BlockingQueue<Pending> queue;
+  private final List<Thread> dispatchers = new ArrayList<>();
+  private volatile boolean running = true;
+
+  public PredictionCoalescer(int maxBatch, long windowMicros, int dispatcherThreads, int queueCapacity,
+                             Consumer<List<Pending>> scoreBatch, FoodInsecurityMetrics metrics) {
+    this.maxBatch = maxBatch;
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    this.scoreBatch = scoreBatch;
+    this.metrics = metrics;
+    this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    for (int i = 0; i < dispatcherThreads; i++) {
+      // threads de plataforma: cada uma mantém seu PredictionScorer entre lotes
+      Thread dispatcher = new Thread(this::dispatch, "predict-coalescer-" + i);
+      dispatcher.setDaemon(true);
+      dispatcher.start();
+      dispatchers.add(dispatcher);
+    }
+    log.info("Coalescing de predições ativo: lotes de até {} em janelas de {} µs, {} dispatcher(s).",
+      maxBatch, windowMicros, dispatcherThreads);
+  }
+
+  /** Enqueues the request, or returns null when the queue is full or the coalescer is closed. */
+  public CompletableFuture<PredictionResponseDTO> submit(PredictionRequestDTO request) {
+    Pending pending = new Pending(request, new CompletableFuture<>(), System.nanoTime());
+    if (!running || !queue.offer(pending)) {
+      return null;
+    }
+    // close() pode ter esvaziado a fila entre a checagem e o offer: sem dispatcher, o pedido
+    // ficaria pendurado. Se ainda está na fila, o chamador pontua direto; se saiu, quem o
+    // retirou (close ou um dispatcher) completa o future
+    if (!running && queue.remove(pending)) {
+      return null;
+    }
+    return pending.result();
+  }
+
+  private void dispatch() {
+    List<Pending> batch = new ArrayList<>(maxBatch);
+    while (running) {
+      try {
+        Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        // a janela conta a partir do primeiro pedido do lote, não do momento em que foi retirado
+        long deadline = first.enqueuedNanos() + windowNanos;
+        queue.drainTo(batch, maxBatch - batch.size());
+        while (batch.size() < maxBatch) {
+          long remaining = deadline - System.nanoTime();
+          Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          queue.drainTo(batch, maxBatch - batch.size());
+        }
+        score(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        batch.forEach(p -> p.result().completeExceptionally(closed()));
+        break;
+      } finally {
+        batch.clear();
+      }
+    }
+    failQueued();
+  }
+
+  private void score(List<Pending> batch) {
+    long dequeued = System.nanoTime();
+    for (Pending pending : batch) {
+      metrics.recordCoalescerWait(dequeued - pending.enqueuedNanos());
+    }
+    metrics.recordCoalescedBatch(batch.size());
+    try {
+      scoreBatch.accept(batch);
+    } catch (RuntimeException e) {
+      batch.forEach(p -> p.result().completeExceptionally(e));
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    dispatchers.forEach(Thread::interrupt);
+    failQueued();
+  }
+
+  private void failQueued() {
+    for (Pending pending; (pending = queue.poll()) != null; ) {
+      pending.result().completeExceptionally(closed());
+    }
+  }
+
+  private static IllegalStateException closed() {
+    return new IllegalStateException("Prediction coalescer is shutting down.");
+  }
+}
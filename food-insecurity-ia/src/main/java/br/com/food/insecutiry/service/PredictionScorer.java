@@ -0,0 +1,91 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.inference.DecisionTree;
+import br.com.food.insecutiry.inference.PredictionLookupTable;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics.ScoringPath;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Per-worker scoring buffer. Holds a reference to the shared, read-only header and a
+ * preallocated instance whose value array is rewritten on every request, so scoring
+ * a row does not copy the header nor allocate a new instance.
+ *
+ * Not thread-safe: each worker thread must own its scorer.
+ */
+public class PredictionScorer {
+
+  private final Instances header;
+  private final FoodInsecurityMetrics metrics;
+  private final double[] values;
+  private final DenseInstance instance;
+  private final double[] dist;
+  private ScoringPath path; // caminho da última classificação, para as métricas
+
+  public PredictionScorer(Instances header, FoodInsecurityMetrics metrics) {
+    this.header = header;
+    this.metrics = metrics;
+    this.values = new double[header.numAttributes()];
+    // o encoder só escreve os atributos da requisição; os demais, e a classe, ficam ausentes
+    Arrays.fill(values, Utils.missingValue());
+    // DenseInstance keeps a reference to the array, writes below are visible to the classifier
+    this.instance = new DenseInstance(1.0, values);
+    this.instance.setDataset(header);
+    this.dist = new double[header.numClasses()];
+  }
+
+  public Instances getHeader() {
+    return header;
+  }
+
+  /** The row last scored, in the model's value layout; overwritten by the next call. */
+  public double[] getValues() {
+    return values;
+  }
+
+  /**
+   * Scores through the lookup table or the compiled tree when available, otherwise
+   * through Weka. Those fast paths return this scorer's own buffer, valid until the
+   * next call.
+   */
+  public double[] score(ModelSnapshot snapshot, PredictionRequestDTO req) throws Exception {
+    long start = System.nanoTime();
+    snapshot.encoder().encode(req, values);
+    long encoded = System.nanoTime();
+    double[] result = classify(snapshot);
+    metrics.recordPredict(encoded - start, System.nanoTime() - encoded, path);
+    return result;
+  }
+
+  /**
+   * Scores a row already in the model's value layout, read from
+   * {@code rows[offset, offset + numAttributes)}. Same buffer contract as the request
+   * overload; no per-request metrics are recorded.
+   */
+  public double[] score(ModelSnapshot snapshot, double[] rows, int offset) throws Exception {
+    System.arraycopy(rows, offset, values, 0, values.length);
+    return classify(snapshot);
+  }
+
+  private double[] classify(ModelSnapshot snapshot) throws Exception {
+    PredictionLookupTable lookupTable = snapshot.lookupTable();
+    if (lookupTable != null && lookupTable.lookup(values, dist)) {
+      path = ScoringPath.LOOKUP;
+      return dist;
+    }
+    DecisionTree compiledTree = snapshot.compiledTree();
+    if (compiledTree != null) {
+      compiledTree.distribution(values, dist);
+      path = ScoringPath.COMPILED;
+      return dist;
+    }
+    path = ScoringPath.WEKA;
+    return snapshot.classifier().distributionForInstance(instance);
+  }
+}
@@ -0,0 +1,487 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.inference.RiskCube;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.RiskCubeSnapshot;
+import br.com.food.insecutiry.model.dto.RiskCubeRollUpDTO;
+import br.com.food.insecutiry.repository.RiskCubeSnapshotRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import weka.core.Instances;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a {@link RiskCube} of predicted insecurity per source: live predictions, and each
+ * dataset scored in bulk (reset on every run of that dataset, so reruns do not double
+ * count). Dashboards roll them up through {@link #rollUp} instead of replaying /predict.
+ *
+ * The live cube follows the serving model. Rows scored by a new model open a cube on its
+ * header, even before the publish listener runs; the replaced cube keeps taking the rows
+ * still in flight on the old model, and what it holds is re-scored with the new model
+ * and added to the live cube, at the swap and again on the snapshot schedule until a
+ * grace period has passed. Re-scoring is exact for /predict, whose only inputs are the
+ * cube dimensions. Dataset cubes are left alone: their rows carried other attributes, so
+ * they keep the model version that scored them and roll up as stale until the bulk job
+ * reruns. Each replica saves its cubes to Mongo periodically and restores them when the
+ * first model is published.
+ *
+ * {@code max-memory-mb} bounds the stripes of all cubes together: the live one plus up to
+ * {@code max-datasets} bulk ones each get an equal share, and a cube takes fewer stripes
+ * when its cells would not fit its share on every stripe. A replaced live cube is held
+ * on top of that until its grace period is over.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RiskCubeService {
+
+  public static final String PREDICT_SOURCE = "predict";
+
+  private final WekaModelConfig wekaModelConfig;
+  private final RiskCubeSnapshotRepository riskCubeSnapshotRepository;
+  private final TrainingLeaseService trainingLeaseService;
+  private final FoodInsecurityMetrics metrics;
+
+  @Value("${food-insecurity.risk-cube.enabled:true}")
+  private boolean enabled;
+
+  @Value("${food-insecurity.risk-cube.dimensions:estado,cor,escolaridade,salario}")
+  private List<String> dimensions;
+
+  @Value("${food-insecurity.risk-cube.stripes:0}")
+  private int stripes;
+
+  @Value("${food-insecurity.risk-cube.numeric-levels:21}")
+  private int numericLevels;
+
+  @Value("${food-insecurity.risk-cube.max-cells:2000000}")
+  private long maxCells;
+
+  @Value("${food-insecurity.risk-cube.max-memory-mb:256}")
+  private long maxMemoryMb;
+
+  @Value("${food-insecurity.risk-cube.max-datasets:16}")
+  private int maxDatasets;
+
+  @Value("${food-insecurity.risk-cube.query-max-staleness-ms:1000}")
+  private long queryMaxStalenessMs;
+
+  // cubo e a versão do modelo cujas probabilidades ele soma; trocado inteiro a cada rebuild
+  private static final class SourceCube {
+    final RiskCube cube;
+    final long modelVersion;
+    volatile long savedTotal = -1;
+
+    SourceCube(RiskCube cube, long modelVersion) {
+      this.cube = cube;
+      this.modelVersion = modelVersion;
+    }
+  }
+
+  // cubo de /predict substituído numa troca de modelo; absorbed = o que já foi somado ao cubo vivo
+  private static final class Retiring {
+    final SourceCube source;
+    final long retiredAtNanos = System.nanoTime();
+    RiskCube.Cells absorbed;
+
+    Retiring(SourceCube source) {
+      this.source = source;
+    }
+  }
+
+  // pedidos que pegaram o modelo antigo antes da troca terminam em milissegundos
+  private static final long RETIRE_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final Map<String, SourceCube> cubes = new ConcurrentHashMap<>();
+  private final List<Retiring> retiring = new CopyOnWriteArrayList<>();
+  private final Object liveLock = new Object();
+  private volatile Instances unfitHeader; // header cujo cubo não cabe: linhas ignoradas sem tentar de novo
+  private final Deque<String> datasetOrder = new ArrayDeque<>(); // guardado pelo monitor do serviço
+  private final AtomicInteger paused = new AtomicInteger();
+  private boolean restored;
+
+  /** Stops aggregation until closed, for synthetic traffic such as the startup prewarm. */
+  public final class Pause implements AutoCloseable {
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    private Pause() {
+      paused.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+      if (open.compareAndSet(true, false)) {
+        paused.decrementAndGet();
+      }
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    if (enabled) {
+      wekaModelConfig.addPublishListener(this::onModelPublished);
+    }
+  }
+
+  public Pause pauseRecording() {
+    return new Pause();
+  }
+
+  /** Adds one /predict row, in {@code snapshot}'s value layout, to the live cube. */
+  public void record(ModelSnapshot snapshot, double[] values, double[] dist) {
+    if (!enabled || paused.get() > 0) {
+      return;
+    }
+    SourceCube entry = cubes.get(PREDICT_SOURCE);
+    if (entry == null || entry.cube.header() != snapshot.header()) {
+      entry = cubeFor(snapshot);
+    }
+    if (entry != null) {
+      entry.cube.record(values, 0, dist);
+    }
+  }
+
+  // linha de outro modelo que o do cubo vivo: um que está saindo (pedido em voo na troca) ou
+  // um que acabou de ser publicado, antes de o listener de publicação rodar
+  private SourceCube cubeFor(ModelSnapshot snapshot) {
+    if (snapshot.header() == unfitHeader) {
+      return null;
+    }
+    for (Retiring old : retiring) {
+      if (old.source.cube.header() == snapshot.header()) {
+        return old.source;
+      }
+    }
+    return swapLive(snapshot);
+  }
+
+  /**
+   * Makes {@code next} the model of the live cube, retiring the current one, unless the
+   * live cube already belongs to it or to a newer model. Returns the live cube when it is
+   * {@code next}'s, null otherwise.
+   */
+  private SourceCube swapLive(ModelSnapshot next) {
+    synchronized (liveLock) {
+      SourceCube live = cubes.get(PREDICT_SOURCE);
+      if (live != null && (live.cube.header() == next.header() || live.modelVersion > next.version())) {
+        return live.cube.header() == next.header() ? live : null;
+      }
+      RiskCube cube = newCube(next, 0);
+      if (live != null) {
+        retiring.add(new Retiring(live));
+      }
+      if (cube == null) {
+        unfitHeader = next.header();
+        cubes.remove(PREDICT_SOURCE);
+        return null;
+      }
+      SourceCube fresh = new SourceCube(cube, next.version());
+      cubes.put(PREDICT_SOURCE, fresh);
+      return fresh;
+    }
+  }
+
+  /**
+   * Fresh cube for a bulk run of {@code datasetId}, replacing the previous run's; null
+   * when disabled or the header does not fit. The cube stays on {@code snapshot}'s model
+   * through later swaps and rolls up as stale once another model serves.
+   */
+  public synchronized RiskCube resetDataset(String datasetId, ModelSnapshot snapshot) {
+    if (!enabled || PREDICT_SOURCE.equals(datasetId)) {
+      return null;
+    }
+    RiskCube cube = newCube(snapshot, 0);
+    if (cube == null) {
+      return null;
+    }
+    cubes.put(datasetId, new SourceCube(cube, snapshot.version()));
+    datasetOrder.remove(datasetId);
+    datasetOrder.addLast(datasetId);
+    while (datasetOrder.size() > maxDatasets) {
+      String evicted = datasetOrder.removeFirst();
+      cubes.remove(evicted);
+      try {
+        riskCubeSnapshotRepository.deleteById(snapshotId(evicted));
+      } catch (Exception e) {
+        log.warn("Failed deleting risk cube snapshot of dataset {}: {}", evicted, e.getMessage());
+      }
+    }
+    return cube;
+  }
+
+  /**
+   * Totals of {@code source} ({@link #PREDICT_SOURCE} or a bulk-scored dataset id) grouped
+   * by {@code groupBy} over the cells matching {@code filters}. Reads a merge of the
+   * stripes at most {@code query-max-staleness-ms} old. A dataset cube scored by a model
+   * that no longer serves is returned with {@code stale} set.
+   */
+  public RiskCubeRollUpDTO rollUp(String source, List<String> groupBy, Map<String, String> filters) {
+    SourceCube entry = cubes.get(source);
+    if (entry == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cubo de risco não encontrado para a fonte: " + source);
+    }
+    long start = System.nanoTime();
+    RiskCube.RollUp rollUp;
+    try {
+      rollUp = entry.cube.rollUp(entry.cube.cells(TimeUnit.MILLISECONDS.toNanos(queryMaxStalenessMs)), groupBy, filters);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    List<RiskCubeRollUpDTO.Group> groups = new ArrayList<>(rollUp.groups().size());
+    for (RiskCube.Group group : rollUp.groups()) {
+      Map<String, String> key = new LinkedHashMap<>();
+      for (int g = 0; g < groupBy.size(); g++) {
+        key.put(groupBy.get(g), group.labels().get(g));
+      }
+      groups.add(new RiskCubeRollUpDTO.Group(key, group.count(), group.predictedPositive(),
+        group.positiveRate(), group.meanProbability()));
+    }
+    ModelSnapshot serving = wekaModelConfig.getSnapshot();
+    return RiskCubeRollUpDTO.builder()
+      .source(source)
+      .modelVersion(entry.modelVersion)
+      .stale(!PREDICT_SOURCE.equals(source) && serving != null && serving.version() != entry.modelVersion)
+      .positiveClass(entry.cube.header().classAttribute().value(CalibrationExportService.positiveClass(entry.cube.header())))
+      .groupBy(rollUp.groupBy())
+      .filters(filters)
+      .totalCount(rollUp.totalCount())
+      .groups(groups)
+      .elapsedMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start))
+      .build();
+  }
+
+  @Scheduled(initialDelayString = "${food-insecurity.risk-cube.snapshot-interval-ms:60000}",
+    fixedDelayString = "${food-insecurity.risk-cube.snapshot-interval-ms:60000}")
+  public void saveSnapshots() {
+    settleRetiring();
+    cubes.forEach((source, entry) -> {
+      try {
+        RiskCube.Cells cells = entry.cube.cells(0);
+        if (cells.totalCount() == entry.savedTotal) {
+          return;
+        }
+        riskCubeSnapshotRepository.save(toDocument(source, entry, cells));
+        entry.savedTotal = cells.totalCount();
+      } catch (Exception e) {
+        log.warn("Failed saving risk cube {}: {}", source, e.getMessage());
+      }
+    });
+  }
+
+  private synchronized void onModelPublished(ModelSnapshot next) {
+    long start = System.nanoTime();
+    if (!restored) {
+      restored = true;
+      restore(next);
+    }
+    // /predict pode já ter aberto o cubo do modelo novo; um listener atrasado de um modelo já
+    // substituído não mexe em nada, o do modelo seguinte faz a passada
+    SourceCube live = swapLive(next);
+    if (live != null) {
+      settleRetiring(live, next);
+    }
+    log.info("Risk cube of /predict moved to model version {} in {} ms: {} over {}, {} stripes, {} MB.", next.version(),
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), cubes.keySet(),
+      live == null ? List.of() : live.cube.dimensions().stream().map(RiskCube.Dimension::name).toList(),
+      live == null ? 0 : live.cube.stripes(),
+      cubes.values().stream().mapToLong(c -> c.cube.bytes()).sum() >> 20);
+  }
+
+  // cubos salvos por esta réplica antes de reiniciar; só com instance-id fixo eles são achados
+  private void restore(ModelSnapshot next) {
+    List<RiskCubeSnapshot> saved;
+    try {
+      saved = riskCubeSnapshotRepository.findByInstanceId(trainingLeaseService.getInstanceId());
+    } catch (Exception e) {
+      log.warn("Failed reading saved risk cubes: {}", e.getMessage());
+      return;
+    }
+    for (RiskCubeSnapshot doc : saved) {
+      if (!PREDICT_SOURCE.equals(doc.getSource()) && datasetOrder.size() >= maxDatasets) {
+        continue;
+      }
+      List<RiskCube.Dimension> sourceDimensions = doc.getDimensions().stream()
+        .map(d -> new RiskCube.Dimension(d.getName(), d.getLabels()))
+        .toList();
+      int sourceCells = sourceDimensions.stream().mapToInt(d -> d.labels().size() + 1).reduce(1, Math::multiplyExact);
+      long[] counts = new long[sourceCells];
+      long[] positives = new long[sourceCells];
+      long[] probSums = new long[sourceCells];
+      for (int i = 0; doc.getCells() != null && i < doc.getCells().length; i++) {
+        counts[doc.getCells()[i]] = doc.getCounts()[i];
+        positives[doc.getCells()[i]] = doc.getPositives()[i];
+        probSums[doc.getCells()[i]] = doc.getProbSums()[i];
+      }
+      RiskCube.Cells cells = new RiskCube.Cells(counts, positives, probSums, doc.getTotalCount());
+      if (PREDICT_SOURCE.equals(doc.getSource())) {
+        SourceCube live = swapLive(next);
+        if (live == null) {
+          continue;
+        }
+        absorbInto(live.cube, sourceDimensions, cells, next, doc.getModelVersion() != live.modelVersion);
+      } else {
+        // dataset: só muda de dicionário, as probabilidades continuam as do modelo que o pontuou
+        RiskCube cube = newCube(next, 0);
+        if (cube == null) {
+          continue;
+        }
+        absorbInto(cube, sourceDimensions, cells, next, false);
+        cubes.put(doc.getSource(), new SourceCube(cube, doc.getModelVersion()));
+        datasetOrder.addLast(doc.getSource());
+      }
+      log.info("Restored risk cube {} ({} rows, model version {}).", doc.getSource(), doc.getTotalCount(), doc.getModelVersion());
+    }
+  }
+
+  // passada agendada: o que os cubos aposentados receberam desde a troca
+  private synchronized void settleRetiring() {
+    SourceCube live = cubes.get(PREDICT_SOURCE);
+    ModelSnapshot serving = wekaModelConfig.getSnapshot();
+    if (!retiring.isEmpty() && live != null && serving != null && serving.header() == live.cube.header()) {
+      settleRetiring(live, serving);
+    }
+  }
+
+  /**
+   * Adds to the live cube, re-scored with its model, what each retired cube took since
+   * the last pass. A retired cube is dropped after the first pass that starts once its
+   * grace period is over; rows that reach it later are lost.
+   */
+  private void settleRetiring(SourceCube live, ModelSnapshot liveSnapshot) {
+    for (Retiring old : retiring) {
+      boolean expired = System.nanoTime() - old.retiredAtNanos > RETIRE_GRACE_NANOS;
+      RiskCube.Cells now = old.source.cube.cells(-1);
+      RiskCube.Cells delta = minus(now, old.absorbed);
+      if (delta.totalCount() != 0) {
+        absorbInto(live.cube, old.source.cube.dimensions(), delta, liveSnapshot, old.source.modelVersion != live.modelVersion);
+      }
+      old.absorbed = now;
+      if (expired) {
+        retiring.remove(old);
+      }
+    }
+  }
+
+  private static RiskCube.Cells minus(RiskCube.Cells now, RiskCube.Cells before) {
+    if (before == null) {
+      return now;
+    }
+    long[] counts = now.counts().clone();
+    long[] positives = now.positives().clone();
+    long[] probSums = now.probSums().clone();
+    for (int c = 0; c < counts.length; c++) {
+      counts[c] -= before.counts()[c];
+      positives[c] -= before.positives()[c];
+      probSums[c] -= before.probSums()[c];
+    }
+    return new RiskCube.Cells(counts, positives, probSums, now.totalCount() - before.totalCount());
+  }
+
+  /**
+   * Adds {@code source}'s cells to {@code target}, a cube on {@code snapshot}'s header,
+   * first re-scored with {@code snapshot} when {@code rescore} is set. The re-score runs
+   * on a one-stripe staging cube, so {@code target} can keep taking writes.
+   */
+  private void absorbInto(RiskCube target, List<RiskCube.Dimension> sourceDimensions, RiskCube.Cells source,
+                          ModelSnapshot snapshot, boolean rescore) {
+    RiskCube staging = rescore ? newCube(snapshot, 1) : target;
+    if (staging == null) {
+      return;
+    }
+    long[] counts = source.counts();
+    for (int c = 0; c < counts.length; c++) {
+      if (counts[c] != 0) {
+        staging.absorb(sourceDimensions, c, counts[c], source.positives()[c], source.probSums()[c]);
+      }
+    }
+    if (!rescore) {
+      return;
+    }
+    PredictionScorer scorer = new PredictionScorer(snapshot.header(), metrics);
+    try {
+      staging.rescore(values -> scorer.score(snapshot, values, 0));
+    } catch (Exception e) {
+      log.warn("Failed re-scoring the risk cube with model version {}: {}", snapshot.version(), e.getMessage());
+    }
+    RiskCube.Cells rescored = staging.cells(-1);
+    for (int c = 0; c < rescored.counts().length; c++) {
+      if (rescored.counts()[c] != 0) {
+        target.absorb(staging.dimensions(), c, rescored.counts()[c], rescored.positives()[c], rescored.probSums()[c]);
+      }
+    }
+  }
+
+  // stripeCount 0 = o configurado
+  private RiskCube newCube(ModelSnapshot snapshot, int stripeCount) {
+    int count = stripeCount > 0 ? stripeCount : stripes > 0 ? stripes : 2 * Runtime.getRuntime().availableProcessors();
+    long cubeBytes = (maxMemoryMb << 20) / (1 + maxDatasets);
+    try {
+      return RiskCube.forHeader(snapshot.header(), dimensions, numericLevels,
+        CalibrationExportService.positiveClass(snapshot.header()), count, maxCells, cubeBytes);
+    } catch (IllegalArgumentException e) {
+      log.warn("Risk cube disabled for model version {}: {}", snapshot.version(), e.getMessage());
+      return null;
+    }
+  }
+
+  private RiskCubeSnapshot toDocument(String source, SourceCube entry, RiskCube.Cells cells) {
+    int occupied = 0;
+    for (long count : cells.counts()) {
+      if (count != 0) {
+        occupied++;
+      }
+    }
+    int[] index = new int[occupied];
+    long[] counts = new long[occupied];
+    long[] positives = new long[occupied];
+    long[] probSums = new long[occupied];
+    for (int c = 0, i = 0; c < cells.counts().length; c++) {
+      if (cells.counts()[c] != 0) {
+        index[i] = c;
+        counts[i] = cells.counts()[c];
+        positives[i] = cells.positives()[c];
+        probSums[i] = cells.probSums()[c];
+        i++;
+      }
+    }
+    return RiskCubeSnapshot.builder()
+      .id(snapshotId(source))
+      .instanceId(trainingLeaseService.getInstanceId())
+      .source(source)
+      .modelVersion(entry.modelVersion)
+      .dimensions(entry.cube.dimensions().stream()
+        .map(d -> new RiskCubeSnapshot.DimensionLabels(d.name(), d.labels()))
+        .toList())
+      .cells(index)
+      .counts(counts)
+      .positives(positives)
+      .probSums(probSums)
+      .totalCount(cells.totalCount())
+      .savedAt(Instant.now())
+      .build();
+  }
+
+  private String snapshotId(String source) {
+    return trainingLeaseService.getInstanceId() + ":" + source;
+  }
+}
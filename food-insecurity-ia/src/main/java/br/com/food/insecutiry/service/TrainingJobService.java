@@ -0,0 +1,210 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.model.dto.TrainingJobDTO;
+import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs training off the HTTP threads, one job at a time on a dedicated executor, and
+ * keeps the latest jobs around for the status endpoint. Each job first takes the
+ * cluster-wide training lease, so replicas train one after the other.
+ *
+ * Admission is bounded: the running job plus {@code max-queued} waiting ones. Callers
+ * take an {@link Admission} before uploading the dataset, so a full queue answers 429
+ * before any bytes reach GridFS.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrainingJobService {
+
+  private final WekaModelConfig wekaModelConfig;
+  private final DatasetMetadataRepository datasetMetadataRepository;
+  private final FoodInsecurityMetrics metrics;
+  private final TrainingLeaseService trainingLeaseService;
+
+  private final ExecutorService trainingExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "training-job"));
+  private final Map<String, TrainingJob> jobs = new ConcurrentHashMap<>();
+
+  @Value("${food-insecurity.training.job-history:100}")
+  private int jobHistory;
+
+  @Value("${food-insecurity.training.max-queued:2}")
+  private int maxQueued;
+
+  private Semaphore admissions;
+
+  /**
+   * Slot in the training queue. Released on close unless a job was submitted with it,
+   * in which case the job releases it when it finishes.
+   */
+  public final class Admission implements AutoCloseable {
+    private final AtomicBoolean held = new AtomicBoolean(true);
+
+    private void handOff() {
+      if (!held.compareAndSet(true, false)) {
+        throw new IllegalStateException("Admission already used or released.");
+      }
+    }
+
+    @Override
+    public void close() {
+      if (held.compareAndSet(true, false)) {
+        admissions.release();
+      }
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    admissions = new Semaphore(1 + maxQueued);
+    metrics.bindTrainingQueue(() -> 1 + maxQueued - admissions.availablePermits());
+  }
+
+  /** Takes a queue slot or answers 429 when the running job and the queue are full. */
+  public Admission admit() {
+    return tryAdmit().orElseThrow(() -> {
+      metrics.recordTrainingRejected();
+      return new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+        "Fila de treino cheia (" + maxQueued + " aguardando); tente novamente mais tarde.");
+    });
+  }
+
+  public Optional<Admission> tryAdmit() {
+    return admissions.tryAcquire() ? Optional.of(new Admission()) : Optional.empty();
+  }
+
+  public TrainingJob submit(DatasetMetadata datasetMeta, Admission admission) {
+    admission.handOff();
+    TrainingJob job = new TrainingJob(datasetMeta.getId(), metrics::phaseEnded);
+    evictFinishedJobs();
+    jobs.put(job.getId(), job);
+    try {
+      trainingExecutor.execute(() -> {
+        try {
+          run(job, datasetMeta);
+        } finally {
+          admissions.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      admissions.release();
+      jobs.remove(job.getId());
+      throw e;
+    }
+    log.info("Training job {} queued for dataset {}", job.getId(), datasetMeta.getId());
+    return job;
+  }
+
+  public TrainingJobDTO getJob(String id) {
+    TrainingJob job = jobs.get(id);
+    if (job == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Training job não encontrado: " + id);
+    }
+    return toDto(job);
+  }
+
+  /**
+   * Periodic full J48 rebuild over the base dataset plus its deltas, only when deltas
+   * were applied since the last rebuild.
+   */
+  @Scheduled(cron = "${food-insecurity.training.rebuild-cron:0 0 3 * * *}")
+  public void rebuildIfDeltasApplied() {
+    ModelSnapshot current = wekaModelConfig.getSnapshot();
+    if (current == null || current.deltasApplied() == 0) {
+      return;
+    }
+    datasetMetadataRepository.findById(current.datasetId()).ifPresent(base -> {
+      Optional<Admission> admission = tryAdmit();
+      if (admission.isEmpty()) {
+        log.info("Scheduled rebuild skipped: training queue is full.");
+        return;
+      }
+      log.info("Scheduled rebuild: {} deltas applied since the last full training.", current.deltasApplied());
+      submit(base, admission.get());
+    });
+  }
+
+  private void run(TrainingJob job, DatasetMetadata datasetMeta) {
+    job.start();
+    // um treino por vez no cluster: as outras réplicas recebem o modelo pelo poller do registro
+    long leaseStart = job.beginPhase("lease");
+    try (TrainingLeaseService.Lease lease = trainingLeaseService.await()) {
+      lease.onLost(() -> job.abort("lease de treino perdido para outra instância"));
+      job.endPhase("lease", leaseStart);
+      try {
+        // outra réplica pode ter publicado um modelo enquanto este job esperava: o delta parte dele
+        wekaModelConfig.refreshFromRegistry();
+      } catch (Exception e) {
+        log.warn("Falha ao atualizar o modelo antes do treino: {}", e.getMessage());
+      }
+      ModelSnapshot trained = datasetMeta.getMode() == IngestMode.APPEND
+        ? wekaModelConfig.applyDelta(datasetMeta, job)
+        : wekaModelConfig.trainModelFromDataset(datasetMeta, job);
+      job.succeed(trained.version());
+      log.info("Training job {} finished: model version {}", job.getId(), trained.version());
+    } catch (Exception e) {
+      job.fail(e);
+      log.error("Training job {} failed: {}", job.getId(), e.getMessage(), e);
+    }
+  }
+
+  private void evictFinishedJobs() {
+    if (jobs.size() < jobHistory) {
+      return;
+    }
+    jobs.values().stream()
+      .filter(j -> j.getFinishedAt() != null)
+      .sorted((a, b) -> a.getFinishedAt().compareTo(b.getFinishedAt()))
+      .limit(jobs.size() - jobHistory + 1L)
+      .forEach(j -> jobs.remove(j.getId()));
+  }
+
+  private TrainingJobDTO toDto(TrainingJob job) {
+    return TrainingJobDTO.builder()
+      .id(job.getId())
+      .datasetId(job.getDatasetId())
+      .status(job.getStatus().name())
+      .phase(job.getPhase())
+      .phaseTimingsMs(Map.copyOf(job.getPhaseTimingsMs()))
+      .phasePeakHeapMb(Map.copyOf(job.getPhasePeakHeapMb()))
+      .phasesSharingHeapPeak(Set.copyOf(job.getPhasesSharingHeapPeak()))
+      .bytesRead(job.getBytesRead())
+      .legacyIoBytes(job.getLegacyIoBytes())
+      .modelVersion(job.getModelVersion())
+      .modelCacheHit(job.isModelCacheHit())
+      .error(job.getError())
+      .createdAt(job.getCreatedAt())
+      .startedAt(job.getStartedAt())
+      .finishedAt(job.getFinishedAt())
+      .build();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    trainingExecutor.shutdownNow();
+  }
+}
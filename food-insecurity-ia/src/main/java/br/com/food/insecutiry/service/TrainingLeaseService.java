@@ -0,0 +1,218 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.TrainingLease;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cluster-wide training lease in a single Mongo document, so only one instance trains at
+ * a time and the others pick the result up from the model registry.
+ *
+ * Acquiring is one findAndModify that takes the document when it is free, expired or
+ * already ours, upserting it the first time; when another instance holds it the upsert
+ * hits the duplicate {@code _id} and the attempt fails. The holder renews the expiry in
+ * the background until it closes the lease, so a crashed instance frees it after
+ * {@code ttl}. Without Mongo no lease is handed out: {@link #tryAcquire} throws and
+ * {@link #await} keeps retrying, so two instances never train on an unconfirmed lease.
+ *
+ * A renewal that finds the document taken by another instance, or that keeps failing
+ * until the lease has expired, marks it lost and runs the callback given to
+ * {@link Lease#onLost}; the training job uses it to abort before publishing.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrainingLeaseService {
+
+  private static final String LEASE_ID = "training";
+
+  private final MongoTemplate mongoTemplate;
+
+  private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "training-lease-heartbeat");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // vazio = host + pid + sufixo aleatório; fixe por réplica para reconhecer o dono nos logs
+  @Value("${food-insecurity.instance-id:}")
+  private String configuredInstanceId;
+
+  @Value("${food-insecurity.training.lease.ttl-seconds:60}")
+  private long ttlSeconds;
+
+  @Value("${food-insecurity.training.lease.retry-seconds:5}")
+  private long retrySeconds;
+
+  @Value("${food-insecurity.training.lease.max-wait-minutes:120}")
+  private long maxWaitMinutes;
+
+  private String instanceId;
+
+  @PostConstruct
+  public void init() {
+    instanceId = configuredInstanceId == null || configuredInstanceId.isBlank()
+      ? ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8)
+      : configuredInstanceId;
+    log.info("Instância {} no lease de treino.", instanceId);
+  }
+
+  /** This replica's id: {@code food-insecurity.instance-id}, or pid@host plus a random suffix. */
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  /** Held lease; closing it stops the renewal and frees the document. */
+  public final class Lease implements AutoCloseable {
+    private final ScheduledFuture<?> heartbeat;
+    private volatile Instant expiresAt;
+    private volatile boolean lost;
+    private volatile Runnable onLost = () -> { };
+
+    private Lease(Instant expiresAt) {
+      this.expiresAt = expiresAt;
+      long period = Math.max(1, ttlSeconds / 3);
+      this.heartbeat = heartbeats.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.SECONDS);
+    }
+
+    /** Runs {@code callback} once if the lease is lost, right away if it already was. */
+    public void onLost(Runnable callback) {
+      onLost = callback;
+      if (lost) {
+        callback.run();
+      }
+    }
+
+    public boolean isLost() {
+      return lost;
+    }
+
+    private void renew() {
+      Instant next = Instant.now().plusSeconds(ttlSeconds);
+      try {
+        UpdateResult result = mongoTemplate.updateFirst(owned(), Update.update("expiresAt", next), TrainingLease.class);
+        if (result.getMatchedCount() == 0) {
+          lose("expirou e outra instância assumiu");
+        } else {
+          expiresAt = next;
+        }
+      } catch (RuntimeException e) {
+        if (Instant.now().isAfter(expiresAt)) {
+          lose("sem renovar desde " + expiresAt + ": " + e.getMessage());
+        } else {
+          log.warn("Falha ao renovar o lease de treino, nova tentativa antes de {}: {}", expiresAt, e.getMessage());
+        }
+      }
+    }
+
+    private void lose(String reason) {
+      if (lost) {
+        return;
+      }
+      lost = true;
+      heartbeat.cancel(false);
+      log.error("Lease de treino perdido ({}); o treino em curso será abortado.", reason);
+      onLost.run();
+    }
+
+    @Override
+    public void close() {
+      heartbeat.cancel(false);
+      if (lost) {
+        return;
+      }
+      try {
+        mongoTemplate.remove(owned(), TrainingLease.class);
+      } catch (RuntimeException e) {
+        log.warn("Falha ao liberar o lease de treino; expira em {} s: {}", ttlSeconds, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * The lease if it is free, expired or already ours; empty while another instance holds
+   * it. Mongo errors propagate: without confirmation there is no lease.
+   */
+  public Optional<Lease> tryAcquire() {
+    Instant now = Instant.now();
+    Instant expiresAt = now.plusSeconds(ttlSeconds);
+    Query free = Query.query(Criteria.where("_id").is(LEASE_ID)
+      .orOperator(Criteria.where("expiresAt").lt(now), Criteria.where("owner").is(instanceId)));
+    Update take = new Update()
+      .set("owner", instanceId)
+      .set("acquiredAt", now)
+      .set("expiresAt", expiresAt);
+    try {
+      mongoTemplate.findAndModify(free, take, FindAndModifyOptions.options().upsert(true).returnNew(true), TrainingLease.class);
+    } catch (DuplicateKeyException e) {
+      return Optional.empty();
+    }
+    return Optional.of(new Lease(expiresAt));
+  }
+
+  /**
+   * Waits for the lease, retrying every {@code retry-seconds}, up to {@code max-wait-minutes};
+   * Mongo errors are retried the same way.
+   */
+  public Lease await() throws InterruptedException, TimeoutException {
+    long deadline = System.nanoTime() + Duration.ofMinutes(maxWaitMinutes).toNanos();
+    boolean logged = false;
+    DataAccessException lastError = null;
+    while (true) {
+      try {
+        Optional<Lease> lease = tryAcquire();
+        if (lease.isPresent()) {
+          return lease.get();
+        }
+        lastError = null;
+        if (!logged) {
+          log.info("Outra instância está treinando; aguardando o lease de treino.");
+          logged = true;
+        }
+      } catch (DataAccessException e) {
+        lastError = e;
+        log.warn("Lease de treino indisponível, nova tentativa em {} s: {}", retrySeconds, e.getMessage());
+      }
+      if (System.nanoTime() > deadline) {
+        TimeoutException timeout = new TimeoutException(lastError == null
+          ? "Outra instância segura o lease de treino há mais de " + maxWaitMinutes + " min."
+          : "Lease de treino indisponível há mais de " + maxWaitMinutes + " min.");
+        timeout.initCause(lastError);
+        throw timeout;
+      }
+      TimeUnit.SECONDS.sleep(retrySeconds);
+    }
+  }
+
+  private Query owned() {
+    return Query.query(Criteria.where("_id").is(LEASE_ID).and("owner").is(instanceId));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    heartbeats.shutdownNow();
+  }
+}
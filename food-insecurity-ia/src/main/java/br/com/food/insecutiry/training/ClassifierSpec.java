@@ -0,0 +1,52 @@
+package br.com.food.insecutiry.training;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Utils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A classifier named as on the Weka command line, e.g. {@code "J48 -C 0.1"} or
+ * {@code "weka.classifiers.trees.RandomForest -I 50"}. The common algorithms can be
+ * given by their simple name. Instances with the same name, class and options are equal.
+ *
+ * Classes named in the options (e.g. RandomForest's {@code -W}) resolve only with the
+ * {@code weka.test.maventest} property that {@code Application.main} sets.
+ */
+public record ClassifierSpec(String name, String className, List<String> options) {
+
+  private static final Map<String, String> ALIASES = Map.of(
+    "J48", "weka.classifiers.trees.J48",
+    "RandomForest", "weka.classifiers.trees.RandomForest",
+    "RandomTree", "weka.classifiers.trees.RandomTree",
+    "HoeffdingTree", "weka.classifiers.trees.HoeffdingTree",
+    "NaiveBayes", "weka.classifiers.bayes.NaiveBayes",
+    "Logistic", "weka.classifiers.functions.Logistic");
+
+  public static ClassifierSpec parse(String spec) {
+    try {
+      String[] parts = Utils.splitOptions(spec.trim());
+      if (parts.length == 0) {
+        throw new IllegalArgumentException("Classificador vazio.");
+      }
+      String className = ALIASES.getOrDefault(parts[0], parts[0]);
+      ClassifierSpec parsed = new ClassifierSpec(spec.trim(), className, List.of(parts).subList(1, parts.length));
+      parsed.newClassifier(); // falha já na configuração se a classe ou as opções forem inválidas
+      return parsed;
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Classificador inválido '" + spec + "': " + e.getMessage(), e);
+    }
+  }
+
+  /** A fresh, untrained instance; {@code forName} consumes the options, so it gets its own array. */
+  public Classifier newClassifier() throws Exception {
+    return AbstractClassifier.forName(className, options.toArray(String[]::new));
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
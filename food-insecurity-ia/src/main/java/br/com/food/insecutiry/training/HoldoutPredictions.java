@@ -0,0 +1,41 @@
+package br.com.food.insecutiry.training;
+
+/**
+ * Class distributions of the holdout rows, in row order, kept in one flat array so the
+ * calibration export can run after the scoring pass without holding the test set or
+ * boxed rows.
+ */
+public class HoldoutPredictions {
+
+  private final int numClasses;
+  private final double[] probs;  // linha * numClasses + classe
+  private final int[] labels;    // -1 quando o rótulo está ausente
+  private int size;
+
+  public HoldoutPredictions(int capacity, int numClasses) {
+    this.numClasses = numClasses;
+    this.probs = new double[capacity * numClasses];
+    this.labels = new int[capacity];
+  }
+
+  public void add(double[] dist, int label) {
+    System.arraycopy(dist, 0, probs, size * numClasses, numClasses);
+    labels[size++] = label;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int numClasses() {
+    return numClasses;
+  }
+
+  public int label(int row) {
+    return labels[row];
+  }
+
+  public double prob(int row, int c) {
+    return probs[row * numClasses + c];
+  }
+}
@@ -0,0 +1,274 @@
+package br.com.food.insecutiry.training;
+
+import br.com.food.insecutiry.inference.CompiledTree;
+import br.com.food.insecutiry.inference.TreeCompiler;
+import br.com.food.insecutiry.model.CandidateMetrics;
+import lombok.extern.slf4j.Slf4j;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cross-validates several candidate classifiers on the same folds, concurrently, and
+ * picks the one with the best score.
+ *
+ * The score is the chosen metric minus {@code latencyPenalty} for every doubling of
+ * per-row serving latency over the fastest candidate, so a slower model has to earn its
+ * cost. Latency is measured on the path that would serve the model: the compiled tree
+ * when the candidate compiles, Weka otherwise.
+ *
+ * Folds are queued candidate by candidate and at most {@code maxInFlight} of them are on
+ * the pool at once; each finished fold hands its slot to the next one. Once the
+ * wall-clock or the total CPU budget is spent, nothing more is submitted, the queued
+ * folds are skipped and their candidates reported as over budget. Folds already training
+ * are not interrupted (Weka does not check for it), so at most {@code maxInFlight} of them
+ * finish in the background.
+ */
+@Slf4j
+public final class ModelSelection {
+
+  public enum Metric { KAPPA, F_MEASURE }
+
+  public enum Status { COMPLETE, OVER_BUDGET, FAILED }
+
+  public record Budget(Duration wallClock, Duration cpu) {
+  }
+
+  public record Result(Optional<ClassifierSpec> winner, List<CandidateMetrics> candidates) {
+  }
+
+  private static final int LATENCY_ROWS = 2000;
+  private static final int LATENCY_PASSES = 5;
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private ModelSelection() {
+  }
+
+  public static Result run(List<ClassifierSpec> candidates, Instances data, int numFolds, Random random,
+                           Executor pool, int maxInFlight, Budget budget, Metric metric,
+                           double latencyPenalty) throws Exception {
+    Instances cvData = new Instances(data);
+    cvData.randomize(random);
+    if (cvData.classAttribute().isNominal()) {
+      cvData.stratify(numFolds);
+    }
+    // folds cortados uma vez, na ordem, e compartilhados (somente leitura) por todos os candidatos
+    Instances[] train = new Instances[numFolds];
+    Instances[] test = new Instances[numFolds];
+    for (int f = 0; f < numFolds; f++) {
+      train[f] = cvData.trainCV(numFolds, f, random);
+      test[f] = cvData.testCV(numFolds, f);
+    }
+
+    long deadline = System.nanoTime() + budget.wallClock().toNanos();
+    long cpuBudget = budget.cpu().toNanos();
+    AtomicLong cpuUsed = new AtomicLong();
+    List<List<CompletableFuture<TrainedFold>>> folds = new ArrayList<>(candidates.size());
+    Deque<FoldTask> queue = new ArrayDeque<>();
+    for (ClassifierSpec candidate : candidates) {
+      List<CompletableFuture<TrainedFold>> perFold = new ArrayList<>(numFolds);
+      for (int f = 0; f < numFolds; f++) {
+        CompletableFuture<TrainedFold> result = new CompletableFuture<>();
+        queue.addLast(new FoldTask(candidate, train[f], result));
+        perFold.add(result);
+      }
+      folds.add(perFold);
+    }
+    new Waves(queue, pool, () -> System.nanoTime() > deadline || cpuUsed.get() > cpuBudget, cpuUsed)
+      .start(maxInFlight);
+
+    List<CandidateMetrics> results = new ArrayList<>(candidates.size());
+    List<Classifier> servingProbes = new ArrayList<>(candidates.size());
+    for (int c = 0; c < candidates.size(); c++) {
+      Evaluation eval = new Evaluation(data);
+      Status status = Status.COMPLETE;
+      long trainCpu = 0;
+      Classifier probe = null;
+      for (int f = 0; f < numFolds && status == Status.COMPLETE; f++) {
+        try {
+          TrainedFold trained = folds.get(c).get(f).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+          if (trained == null) {
+            status = Status.OVER_BUDGET;
+            break;
+          }
+          trainCpu += trained.cpuNanos();
+          eval.setPriors(train[f]);
+          eval.evaluateModel(trained.model(), test[f]);
+          if (f == 0) {
+            probe = trained.model();
+          }
+        } catch (TimeoutException e) {
+          status = Status.OVER_BUDGET;
+        } catch (Exception e) {
+          Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+          log.warn("Candidato {} falhou: {}", candidates.get(c), cause.getMessage());
+          status = Status.FAILED;
+        }
+      }
+      servingProbes.add(status == Status.COMPLETE ? probe : null);
+      results.add(CandidateMetrics.builder()
+        .algorithm(candidates.get(c).name())
+        .status(status.name())
+        .accuracy(status == Status.COMPLETE ? eval.pctCorrect() : null)
+        .kappa(status == Status.COMPLETE ? eval.kappa() : null)
+        .fMeasure(status == Status.COMPLETE ? eval.weightedFMeasure() : null)
+        .trainCpuMs(TimeUnit.NANOSECONDS.toMillis(trainCpu))
+        .build());
+    }
+
+    // latência medida depois do CV, na thread do chamador, um candidato por vez
+    double fastest = Double.MAX_VALUE;
+    for (int c = 0; c < candidates.size(); c++) {
+      Classifier probe = servingProbes.get(c);
+      if (probe != null) {
+        double latency = servingLatencyNanos(probe, test[0]);
+        results.get(c).setLatencyNanos(latency);
+        fastest = Math.min(fastest, latency);
+      }
+    }
+
+    ClassifierSpec winner = null;
+    double best = Double.NEGATIVE_INFINITY;
+    for (int c = 0; c < candidates.size(); c++) {
+      CandidateMetrics result = results.get(c);
+      if (result.getLatencyNanos() == null) {
+        continue;
+      }
+      double value = metric == Metric.KAPPA ? result.getKappa() : result.getFMeasure();
+      double score = value - latencyPenalty * Utils.log2(Math.max(result.getLatencyNanos(), 1) / Math.max(fastest, 1));
+      result.setScore(score);
+      if (score > best) {
+        best = score;
+        winner = candidates.get(c);
+      }
+    }
+
+    log.info("=== Seleção de Modelo ({} folds, métrica {}, penalidade de latência {}) ===", numFolds, metric, latencyPenalty);
+    results.stream()
+      .sorted(Comparator.comparing(CandidateMetrics::getScore, Comparator.nullsLast(Comparator.reverseOrder())))
+      .forEach(r -> log.info("{}: {} kappa={} F={} latência={} ns/linha CPU={} ms score={}",
+        r.getAlgorithm(), r.getStatus(), r.getKappa(), r.getFMeasure(), r.getLatencyNanos(), r.getTrainCpuMs(), r.getScore()));
+    return new Result(Optional.ofNullable(winner), results);
+  }
+
+  private record TrainedFold(Classifier model, long cpuNanos) {
+  }
+
+  private record FoldTask(ClassifierSpec candidate, Instances train, CompletableFuture<TrainedFold> result) {
+  }
+
+  // cada fold que termina libera a vaga para o próximo da fila, enquanto houver orçamento
+  private static final class Waves {
+    private final Deque<FoldTask> queue;
+    private final Executor pool;
+    private final BooleanSupplier exhausted;
+    private final AtomicLong cpuUsed;
+
+    private Waves(Deque<FoldTask> queue, Executor pool, BooleanSupplier exhausted, AtomicLong cpuUsed) {
+      this.queue = queue;
+      this.pool = pool;
+      this.exhausted = exhausted;
+      this.cpuUsed = cpuUsed;
+    }
+
+    private void start(int maxInFlight) {
+      for (int i = 0; i < Math.max(1, maxInFlight); i++) {
+        next();
+      }
+    }
+
+    private void next() {
+      FoldTask task;
+      synchronized (queue) {
+        if (exhausted.getAsBoolean()) {
+          queue.forEach(skipped -> skipped.result().complete(null));
+          queue.clear();
+          return;
+        }
+        task = queue.pollFirst();
+      }
+      if (task == null) {
+        return;
+      }
+      try {
+        pool.execute(() -> train(task));
+      } catch (RejectedExecutionException e) {
+        task.result().completeExceptionally(e);
+        next();
+      }
+    }
+
+    private void train(FoldTask task) {
+      long cpuStart = cpuTime();
+      try {
+        Classifier model = task.candidate().newClassifier();
+        model.buildClassifier(task.train());
+        task.result().complete(new TrainedFold(model, cpuTime() - cpuStart));
+      } catch (Exception e) {
+        task.result().completeExceptionally(e);
+      } catch (Error e) {
+        task.result().completeExceptionally(e);
+        throw e;
+      } finally {
+        cpuUsed.addAndGet(cpuTime() - cpuStart);
+        next();
+      }
+    }
+  }
+
+  // menor tempo por linha entre algumas passadas sobre o fold de teste
+  private static double servingLatencyNanos(Classifier model, Instances test) throws Exception {
+    int rows = Math.min(LATENCY_ROWS, test.numInstances());
+    if (rows == 0) {
+      return Double.NaN;
+    }
+    Optional<CompiledTree> compiled = TreeCompiler.compile(model, test);
+    double[][] features = new double[rows][];
+    Instance[] instances = new Instance[rows];
+    for (int i = 0; i < rows; i++) {
+      instances[i] = (Instance) test.instance(i).copy();
+      instances[i].setDataset(test);
+      instances[i].setClassMissing();
+      features[i] = instances[i].toDoubleArray();
+    }
+    double[] out = new double[test.numClasses()];
+    long best = Long.MAX_VALUE;
+    for (int pass = 0; pass < LATENCY_PASSES; pass++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < rows; i++) {
+        if (compiled.isPresent()) {
+          compiled.get().distribution(features[i], out);
+        } else {
+          model.distributionForInstance(instances[i]);
+        }
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / rows;
+  }
+
+  private static long cpuTime() {
+    return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+}
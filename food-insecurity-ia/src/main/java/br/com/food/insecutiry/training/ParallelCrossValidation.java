@@ -0,0 +1,75 @@
+package br.com.food.insecutiry.training;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * k-fold cross-validation that trains the folds concurrently and still matches
+ * {@link Evaluation#crossValidateModel} exactly for the same {@link Random}.
+ *
+ * The folds are cut on the calling thread, in order, because {@code trainCV} consumes
+ * the shared random; only {@code buildClassifier} runs on the pool. Models are then
+ * evaluated in fold order. At most {@code maxInFlight} training folds are held at once,
+ * which bounds the extra memory to that many fold copies.
+ */
+public final class ParallelCrossValidation {
+
+  private ParallelCrossValidation() {
+  }
+
+  private record Fold(int index, Instances train, CompletableFuture<Classifier> model) {
+  }
+
+  public static Evaluation run(Classifier template, Instances data, int numFolds, Random random,
+                               Executor pool, int maxInFlight) throws Exception {
+    Evaluation eval = new Evaluation(data);
+
+    Instances cvData = new Instances(data);
+    cvData.randomize(random);
+    if (cvData.classAttribute().isNominal()) {
+      cvData.stratify(numFolds);
+    }
+
+    Deque<Fold> pending = new ArrayDeque<>();
+    for (int i = 0; i < numFolds; i++) {
+      while (pending.size() >= Math.max(1, maxInFlight)) {
+        evaluate(eval, cvData, numFolds, pending.removeFirst());
+      }
+      Instances train = cvData.trainCV(numFolds, i, random);
+      Classifier copy = AbstractClassifier.makeCopy(template);
+      CompletableFuture<Classifier> model = CompletableFuture.supplyAsync(() -> {
+        try {
+          copy.buildClassifier(train);
+          return copy;
+        } catch (Exception e) {
+          throw new CompletionException(e);
+        }
+      }, pool);
+      pending.addLast(new Fold(i, train, model));
+    }
+    while (!pending.isEmpty()) {
+      evaluate(eval, cvData, numFolds, pending.removeFirst());
+    }
+    return eval;
+  }
+
+  private static void evaluate(Evaluation eval, Instances cvData, int numFolds, Fold fold) throws Exception {
+    Classifier model;
+    try {
+      model = fold.model().join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof Exception cause ? cause : e;
+    }
+    eval.setPriors(fold.train());
+    eval.evaluateModel(model, cvData.testCV(numFolds, fold.index()));
+  }
+}
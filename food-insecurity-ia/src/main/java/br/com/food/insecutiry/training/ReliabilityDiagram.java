@@ -0,0 +1,89 @@
+package br.com.food.insecutiry.training;
+
+import br.com.food.insecutiry.model.CalibrationReport.ReliabilityBin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reliability diagram of one class, aggregated one prediction at a time.
+ *
+ * The predicted probability of {@code positiveClass} falls into one of {@code numBins}
+ * equal-width bins. Each bin keeps its count, the sum of predicted probabilities and the
+ * number of rows that really were of that class, so the holdout scoring pass feeds it
+ * without keeping the predictions. Rows with a missing label are ignored.
+ */
+public class ReliabilityDiagram {
+
+  private final int positiveClass;
+  private final long[] counts;
+  private final double[] predictedSums;
+  private final long[] positives;
+  private double brierSum;
+  private long total;
+
+  public ReliabilityDiagram(int numBins, int positiveClass) {
+    if (numBins < 1) {
+      throw new IllegalArgumentException("O diagrama de confiabilidade precisa de ao menos um bin: " + numBins);
+    }
+    this.positiveClass = positiveClass;
+    this.counts = new long[numBins];
+    this.predictedSums = new double[numBins];
+    this.positives = new long[numBins];
+  }
+
+  public void add(double[] dist, int label) {
+    if (label < 0) {
+      return;
+    }
+    double p = dist[positiveClass];
+    double observed = label == positiveClass ? 1 : 0;
+    // p == 1.0 cai no último bin
+    int bin = Math.min((int) (p * counts.length), counts.length - 1);
+    counts[bin]++;
+    predictedSums[bin] += p;
+    positives[bin] += (long) observed;
+    brierSum += (p - observed) * (p - observed);
+    total++;
+  }
+
+  public int positiveClass() {
+    return positiveClass;
+  }
+
+  public long total() {
+    return total;
+  }
+
+  public double brierScore() {
+    return total == 0 ? Double.NaN : brierSum / total;
+  }
+
+  /** Count-weighted mean gap between predicted probability and observed rate. */
+  public double expectedCalibrationError() {
+    if (total == 0) {
+      return Double.NaN;
+    }
+    double ece = 0;
+    for (int b = 0; b < counts.length; b++) {
+      if (counts[b] > 0) {
+        ece += Math.abs(predictedSums[b] - positives[b]) / total;
+      }
+    }
+    return ece;
+  }
+
+  public List<ReliabilityBin> bins() {
+    List<ReliabilityBin> bins = new ArrayList<>(counts.length);
+    for (int b = 0; b < counts.length; b++) {
+      bins.add(ReliabilityBin.builder()
+        .lower((double) b / counts.length)
+        .upper((double) (b + 1) / counts.length)
+        .count(counts[b])
+        .meanPredicted(counts[b] == 0 ? null : predictedSums[b] / counts[b])
+        .observedRate(counts[b] == 0 ? null : (double) positives[b] / counts[b])
+        .build());
+    }
+    return bins;
+  }
+}
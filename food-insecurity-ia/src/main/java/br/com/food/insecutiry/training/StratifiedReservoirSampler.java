@@ -0,0 +1,87 @@
+package br.com.food.insecutiry.training;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Uniform sample of at most {@code capacity} rows from a stream of unknown length,
+ * keeping the class proportions of the stream.
+ *
+ * Each class has its own reservoir (Algorithm R) of up to {@code capacity} rows, so no
+ * class is underrepresented however the stream is ordered. {@link #result} then keeps
+ * from each reservoir its share of {@code capacity}. While streaming at most
+ * {@code numClasses * capacity} rows are held. Rows with a missing class are dropped,
+ * as J48 would drop them.
+ */
+public class StratifiedReservoirSampler {
+
+  private final Instances header;
+  private final int capacity;
+  private final Random random;
+  private final List<List<Instance>> reservoirs;
+  private final long[] seen;
+
+  public StratifiedReservoirSampler(Instances header, int capacity, Random random) {
+    this.header = header;
+    this.capacity = capacity;
+    this.random = random;
+    this.reservoirs = new ArrayList<>(header.numClasses());
+    for (int c = 0; c < header.numClasses(); c++) {
+      reservoirs.add(new ArrayList<>());
+    }
+    this.seen = new long[header.numClasses()];
+  }
+
+  public void offer(Instance row) {
+    if (row.classIsMissing()) {
+      return;
+    }
+    int c = (int) row.classValue();
+    List<Instance> reservoir = reservoirs.get(c);
+    long n = ++seen[c];
+    if (reservoir.size() < capacity) {
+      reservoir.add(row);
+    } else {
+      long slot = (long) (random.nextDouble() * n);
+      if (slot < capacity) {
+        reservoir.set((int) slot, row);
+      }
+    }
+  }
+
+  public Instances header() {
+    return header;
+  }
+
+  public long rowsSeen() {
+    long total = 0;
+    for (long s : seen) total += s;
+    return total;
+  }
+
+  /** The sample, with the header's attributes; releases the reservoirs. */
+  public Instances result() {
+    long total = rowsSeen();
+    Instances sample = new Instances(header, (int) Math.min(capacity, total));
+    for (int c = 0; c < reservoirs.size(); c++) {
+      List<Instance> reservoir = reservoirs.get(c);
+      int keep = total <= capacity
+        ? reservoir.size()
+        : (int) Math.min(reservoir.size(), (long) capacity * seen[c] / total);
+      // Fisher-Yates parcial: os primeiros 'keep' formam uma amostra uniforme do reservatório
+      for (int i = 0; i < keep; i++) {
+        int j = i + random.nextInt(reservoir.size() - i);
+        Instance tmp = reservoir.get(i);
+        reservoir.set(i, reservoir.get(j));
+        reservoir.set(j, tmp);
+        sample.add(reservoir.get(i));
+      }
+      reservoirs.set(c, new ArrayList<>());
+    }
+    return sample;
+  }
+}
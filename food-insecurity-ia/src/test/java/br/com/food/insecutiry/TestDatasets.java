@@ -0,0 +1,95 @@
+package br.com.food.insecutiry;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixtures shared by the tests: the sample ARFF under {@code src/test/resources/datasets}
+ * (training schema, with missing values and states that never occur) and a grid of
+ * instances covering every nominal value, missing included.
+ */
+public final class TestDatasets {
+
+  public static final String SAMPLE = "/datasets/food-insecurity-sample.arff";
+
+  // valores de escolaridade nos pontos de corte, entre eles e fora da faixa dos dados
+  private static final double[] ESCOLARIDADES = {-1, 0, 1, 2, 3, 4, 5, 7.5, 8, 8.5, 10, 11, 12, 15, 16, 20, 100};
+
+  private TestDatasets() {
+  }
+
+  public static Instances sample() {
+    try (InputStream in = TestDatasets.class.getResourceAsStream(SAMPLE)) {
+      if (in == null) {
+        throw new IllegalStateException("Fixture not found: " + SAMPLE);
+      }
+      Instances data = new Instances(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+      data.setClassIndex(data.numAttributes() - 1);
+      return data;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Every combination of the non-class attributes of {@code header}: each nominal value
+   * plus missing, and for numeric attributes a spread of values plus missing. The class
+   * is left missing, as in a prediction request.
+   */
+  public static Instances grid(Instances header) {
+    List<double[]> axes = new ArrayList<>();
+    for (int a = 0; a < header.numAttributes(); a++) {
+      if (a == header.classIndex()) {
+        axes.add(new double[]{Utils.missingValue()});
+      } else if (header.attribute(a).isNominal()) {
+        double[] values = new double[header.attribute(a).numValues() + 1];
+        for (int v = 0; v < values.length - 1; v++) {
+          values[v] = v;
+        }
+        values[values.length - 1] = Utils.missingValue();
+        axes.add(values);
+      } else {
+        double[] values = new double[ESCOLARIDADES.length + 1];
+        System.arraycopy(ESCOLARIDADES, 0, values, 0, ESCOLARIDADES.length);
+        values[values.length - 1] = Utils.missingValue();
+        axes.add(values);
+      }
+    }
+    Instances grid = new Instances(header, 0);
+    int[] digits = new int[axes.size()];
+    while (true) {
+      double[] row = new double[axes.size()];
+      for (int a = 0; a < row.length; a++) {
+        row[a] = axes.get(a)[digits[a]];
+      }
+      Instance inst = new DenseInstance(1.0, row);
+      inst.setDataset(grid);
+      grid.add(inst);
+      int a = digits.length - 1;
+      for (; a >= 0 && ++digits[a] == axes.get(a).length; a--) {
+        digits[a] = 0;
+      }
+      if (a < 0) {
+        return grid;
+      }
+    }
+  }
+
+  /** The encoded values of {@code inst}, class set to missing. */
+  public static double[] features(Instance inst) {
+    double[] features = inst.toDoubleArray();
+    features[inst.classIndex()] = Utils.missingValue();
+    return features;
+  }
+}
@@ -0,0 +1,78 @@
+package br.com.food.insecutiry.dataset;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarDatasetTest {
+
+  @Test
+  void roundTripsTheSampleDataset() throws Exception {
+    Instances data = TestDatasets.sample();
+    // o sample só tem faltantes nominais: um numérico faltante também
+    data.instance(0).setMissing(data.attribute("escolaridade"));
+
+    assertSameRows(roundTrip(data), data);
+  }
+
+  @Test
+  void roundTripsWideNominalsMissingValuesAndWeights() throws Exception {
+    List<String> codes = new ArrayList<>();
+    for (int v = 0; v < 300; v++) {
+      codes.add("m" + v);
+    }
+    ArrayList<Attribute> attributes = new ArrayList<>(List.of(
+      new Attribute("municipio", codes),
+      new Attribute("renda"),
+      new Attribute("classe", List.of("sim", "nao"))));
+    Instances data = new Instances("wide", attributes, 0);
+    data.setClassIndex(2);
+    double missing = Utils.missingValue();
+    data.add(new DenseInstance(1.0, new double[]{0, 1.5, 0}));
+    data.add(new DenseInstance(2.5, new double[]{299, missing, 1}));
+    data.add(new DenseInstance(1.0, new double[]{missing, -3.25, missing}));
+    data.add(new DenseInstance(0.5, new double[]{200, 0, 0}));
+
+    Instances read = roundTrip(data);
+
+    assertSameRows(read, data);
+    assertThat(read.attribute(0).numValues()).isEqualTo(300);
+  }
+
+  @Test
+  void rejectsContentThatIsNotColumnar() {
+    assertThatThrownBy(() -> ColumnarDataset.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})))
+      .isInstanceOf(IOException.class);
+  }
+
+  private static Instances roundTrip(Instances data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ColumnarDataset.write(data, out);
+    return ColumnarDataset.read(new ByteArrayInputStream(out.toByteArray())).toInstances();
+  }
+
+  private static void assertSameRows(Instances actual, Instances expected) {
+    assertThat(actual.equalHeadersMsg(expected)).isNull();
+    assertThat(actual.relationName()).isEqualTo(expected.relationName());
+    assertThat(actual.classIndex()).isEqualTo(expected.classIndex());
+    assertThat(actual.numInstances()).isEqualTo(expected.numInstances());
+    for (int row = 0; row < expected.numInstances(); row++) {
+      // containsExactly compara com equals de Double: NaN (faltante) casa com NaN
+      assertThat(actual.instance(row).toDoubleArray()).as("row %d", row)
+        .containsExactly(expected.instance(row).toDoubleArray());
+      assertThat(actual.instance(row).weight()).as("weight of row %d", row).isEqualTo(expected.instance(row).weight());
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package br.com.food.insecutiry.dataset;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelArffParserTest {
+
+  // quotes, escapes, comments, blank and CRLF lines, spaces around commas, missing values, no final newline
+  private static final String EDGE_CASES = String.join("\n",
+    "% comentário antes do cabeçalho",
+    "@relation 'edge cases'",
+    "",
+    "@attribute 'nome do estado' {'São Paulo','Rio, RJ','D\\'Ávila',simples}",
+    "@attribute renda numeric",
+    "@ATTRIBUTE classe {sim,nao}",
+    "",
+    "@DATA",
+    "'São Paulo',1000,sim",
+    "  'Rio, RJ' , 2.5e3 , nao  ",
+    "% comentário no meio dos dados",
+    "",
+    "'D\\'Ávila',?,sim\r",
+    "\"Rio, RJ\",-0.125,?\r",
+    "?,?,?",
+    "simples,\t42\t,nao",
+    "simples,7,sim");
+
+  @TempDir
+  Path dir;
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 4, 8})
+  void matchesArffReaderOnTheSample(int threads) throws Exception {
+    Path file = dir.resolve("sample.arff");
+    try (InputStream in = TestDatasets.class.getResourceAsStream(TestDatasets.SAMPLE)) {
+      Files.copy(in, file);
+    }
+
+    assertSameRows(ParallelArffParser.parse(file, threads), readSequentially(file));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 4, 8})
+  void matchesArffReaderOnEdgeCases(int threads) throws Exception {
+    Path file = Files.writeString(dir.resolve("edge.arff"), EDGE_CASES, StandardCharsets.UTF_8);
+
+    Instances parsed = ParallelArffParser.parse(file, threads);
+
+    assertThat(parsed.numInstances()).isEqualTo(7);
+    assertSameRows(parsed, readSequentially(file));
+  }
+
+  /** Several MB of data, so the file is cut into chunks whose bounds fall inside any kind of row. */
+  @ParameterizedTest
+  @ValueSource(ints = {2, 4, 8})
+  void matchesArffReaderAcrossChunkBounds(int threads) throws Exception {
+    String edge = EDGE_CASES.replace("\r", "");
+    int data = edge.indexOf("@DATA\n") + "@DATA\n".length();
+    StringBuilder text = new StringBuilder(edge.substring(0, data));
+    String rows = edge.substring(data) + "\r\n";
+    while (text.length() < 6 << 20) {
+      text.append(rows);
+    }
+    Path file = Files.writeString(dir.resolve("big.arff"), text, StandardCharsets.UTF_8);
+
+    assertSameRows(ParallelArffParser.parse(file, threads), readSequentially(file));
+  }
+
+  @Test
+  void rejectsSparseRowsSoTheCallerFallsBack() throws Exception {
+    Path file = Files.writeString(dir.resolve("sparse.arff"), String.join("\n",
+      "@relation sparse",
+      "@attribute a numeric",
+      "@attribute b numeric",
+      "@attribute classe {sim,nao}",
+      "@data",
+      "{0 1, 2 sim}",
+      ""), StandardCharsets.UTF_8);
+
+    assertUnsupportedButReadableByArffReader(file);
+  }
+
+  @Test
+  void rejectsInstanceWeightsSoTheCallerFallsBack() throws Exception {
+    Path file = Files.writeString(dir.resolve("weighted.arff"), String.join("\n",
+      "@relation weighted",
+      "@attribute a numeric",
+      "@attribute classe {sim,nao}",
+      "@data",
+      "1,sim,{2}",
+      ""), StandardCharsets.UTF_8);
+
+    assertUnsupportedButReadableByArffReader(file);
+  }
+
+  @Test
+  void rejectsStringAttributesSoTheCallerFallsBack() throws Exception {
+    Path file = Files.writeString(dir.resolve("string.arff"), String.join("\n",
+      "@relation strings",
+      "@attribute nome string",
+      "@attribute classe {sim,nao}",
+      "@data",
+      "'qualquer',sim",
+      ""), StandardCharsets.UTF_8);
+
+    assertUnsupportedButReadableByArffReader(file);
+  }
+
+  @Test
+  void failsOnUndeclaredNominalValue() throws Exception {
+    Path file = Files.writeString(dir.resolve("bad.arff"), String.join("\n",
+      "@relation bad",
+      "@attribute classe {sim,nao}",
+      "@data",
+      "talvez",
+      ""), StandardCharsets.UTF_8);
+
+    assertThatThrownBy(() -> ParallelArffParser.parse(file, 2))
+      .isInstanceOf(IOException.class)
+      .isNotInstanceOf(ParallelArffParser.UnsupportedArffException.class)
+      .hasMessageContaining("talvez");
+  }
+
+  private static void assertUnsupportedButReadableByArffReader(Path file) throws IOException {
+    assertThatThrownBy(() -> ParallelArffParser.parse(file, 2))
+      .isInstanceOf(ParallelArffParser.UnsupportedArffException.class);
+    assertThat(readSequentially(file).numInstances()).isEqualTo(1);
+  }
+
+  private static Instances readSequentially(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      Instances data = new ArffReader(reader).getData();
+      data.setClassIndex(data.numAttributes() - 1);
+      return data;
+    }
+  }
+
+  private static void assertSameRows(Instances actual, Instances expected) {
+    assertThat(actual.equalHeadersMsg(expected)).isNull();
+    assertThat(actual.classIndex()).isEqualTo(expected.classIndex());
+    assertThat(actual.numInstances()).isEqualTo(expected.numInstances());
+    for (int row = 0; row < expected.numInstances(); row++) {
+      assertThat(actual.instance(row).toDoubleArray()).as("row %d", row)
+        .containsExactly(expected.instance(row).toDoubleArray());
+      assertThat(actual.instance(row).weight()).isEqualTo(expected.instance(row).weight());
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.TestDatasets;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import org.junit.jupiter.api.Test;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import static br.com.food.insecutiry.inference.RangeBinningTest.mapSalaryToRange;
+import static br.com.food.insecutiry.inference.RangeBinningTest.salaryProbes;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FeatureEncoderTest {
+
+  @Test
+  void writesTheSameValuesAsWekaLookups() {
+    Instances header = TestDatasets.sample();
+    FeatureEncoder encoder = FeatureEncoder.compile(header);
+    for (double salary : salaryProbes()) {
+      PredictionRequestDTO req = PredictionRequestDTO.builder().salario(salary).estado("SP").cor("Parda").escolaridade(8).build();
+      double[] values = new double[header.numAttributes()];
+      encoder.encode(req, values);
+
+      assertThat(values[header.attribute(FeatureEncoder.SALARIO).index()])
+        .isEqualTo(header.attribute(FeatureEncoder.SALARIO).indexOfValue(mapSalaryToRange(salary)));
+      assertThat(values[header.attribute(FeatureEncoder.ESTADO).index()]).isEqualTo(header.attribute(FeatureEncoder.ESTADO).indexOfValue("SP"));
+      assertThat(values[header.attribute(FeatureEncoder.COR).index()]).isEqualTo(header.attribute(FeatureEncoder.COR).indexOfValue("Parda"));
+      assertThat(values[header.attribute(FeatureEncoder.ESCOLARIDADE).index()]).isEqualTo(8);
+    }
+  }
+
+  @Test
+  void leavesAbsentFieldsMissingAndRejectsUnknownLabels() {
+    Instances header = TestDatasets.sample();
+    FeatureEncoder encoder = FeatureEncoder.compile(header);
+    double[] values = new double[header.numAttributes()];
+    encoder.encode(PredictionRequestDTO.builder().build(), values);
+    for (int attIndex : encoder.inputAttributes()) {
+      assertThat(Utils.isMissingValue(values[attIndex])).isTrue();
+    }
+
+    assertThatThrownBy(() -> encoder.encode(PredictionRequestDTO.builder().estado("XX").build(), values))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("XX");
+  }
+}
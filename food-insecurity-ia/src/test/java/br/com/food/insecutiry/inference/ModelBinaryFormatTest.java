@@ -0,0 +1,104 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ModelBinaryFormatTest {
+
+  private static final double TOLERANCE = 1e-12;
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void roundTripsHeaderImportancesAndTree() throws Exception {
+    Instances data = TestDatasets.sample();
+    // árvore funda, com folhas vazias e splits nominais e numéricos
+    J48 j48 = TreeCompilerTest.train(data, true);
+    CompiledTree compiled = TreeCompiler.compile(j48, data).orElseThrow();
+    Map<String, Double> importances = new LinkedHashMap<>();
+    importances.put("escolaridade", 0.25);
+    importances.put("estado", 0.125);
+    importances.put("salário (R$)", 0.0);
+    Path file = dir.resolve("model.bin");
+
+    ModelBinaryFormat.write(file, 42, "dataset-1", data, importances, compiled);
+    ModelBinaryFormat.LoadedModel loaded = ModelBinaryFormat.map(file);
+
+    assertThat(loaded.version()).isEqualTo(42);
+    assertThat(loaded.datasetId()).isEqualTo("dataset-1");
+    assertThat(loaded.header().equalHeadersMsg(data)).isNull();
+    assertThat(loaded.header().relationName()).isEqualTo(data.relationName());
+    assertThat(loaded.header().classIndex()).isEqualTo(data.classIndex());
+    assertThat(loaded.attributeImportances()).containsExactlyEntriesOf(importances);
+    assertThat(loaded.tree()).isInstanceOf(MappedCompiledTree.class);
+    assertThat(loaded.tree().numNodes()).isEqualTo(compiled.numNodes());
+    assertThat(loaded.tree().numClasses()).isEqualTo(compiled.numClasses());
+    assertThat(Files.exists(dir.resolve("model.bin.tmp"))).isFalse();
+
+    for (Instance inst : TestDatasets.grid(data)) {
+      double[] features = TestDatasets.features(inst);
+      double[] mapped = loaded.tree().distribution(features);
+      assertThat(mapped).as("%s", inst).containsExactly(compiled.distribution(features));
+      double[] expected = j48.distributionForInstance(inst);
+      for (int c = 0; c < expected.length; c++) {
+        assertThat(mapped[c]).as("class %d of %s", c, inst).isCloseTo(expected[c], within(TOLERANCE));
+      }
+    }
+  }
+
+  @Test
+  void roundTripsANullDatasetId() throws Exception {
+    Instances data = TestDatasets.sample();
+    CompiledTree compiled = TreeCompiler.compile(TreeCompilerTest.train(data, false), data).orElseThrow();
+    Path file = dir.resolve("model.bin");
+
+    ModelBinaryFormat.write(file, 1, null, data, Map.of(), compiled);
+
+    assertThat(ModelBinaryFormat.map(file).datasetId()).isNull();
+    assertThat(ModelBinaryFormat.map(file).attributeImportances()).isEmpty();
+  }
+
+  @Test
+  void rejectsAWrongMagicOrFormatVersion() throws Exception {
+    Instances data = TestDatasets.sample();
+    CompiledTree compiled = TreeCompiler.compile(TreeCompilerTest.train(data, false), data).orElseThrow();
+    Path file = dir.resolve("model.bin");
+    ModelBinaryFormat.write(file, 1, "dataset-1", data, Map.of(), compiled);
+    byte[] original = Files.readAllBytes(file);
+
+    Path badMagic = dir.resolve("bad-magic.bin");
+    Files.write(badMagic, withInt(original, 0, 0xCAFEBABE));
+    Path badVersion = dir.resolve("bad-version.bin");
+    Files.write(badVersion, withInt(original, 4, 2));
+    Path truncated = dir.resolve("truncated.bin");
+    Files.write(truncated, new byte[]{0x46, 0x49});
+
+    assertThatThrownBy(() -> ModelBinaryFormat.map(badMagic)).isInstanceOf(IOException.class)
+      .hasMessageContaining("não é um modelo binário");
+    assertThatThrownBy(() -> ModelBinaryFormat.map(badVersion)).isInstanceOf(IOException.class)
+      .hasMessageContaining("Versão de formato");
+    assertThatThrownBy(() -> ModelBinaryFormat.map(truncated)).isInstanceOf(IOException.class);
+  }
+
+  private static byte[] withInt(byte[] content, int position, int value) {
+    byte[] copy = content.clone();
+    ByteBuffer.wrap(copy).putInt(position, value);
+    return copy;
+  }
+}
@@ -0,0 +1,60 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PredictionLookupTableTest {
+
+  private static final double TOLERANCE = 1e-12;
+  private static final long MAX_CELLS = 1_000_000;
+
+  @Test
+  void lookupMatchesJ48OnEveryCombination() throws Exception {
+    Instances data = TestDatasets.sample();
+    for (boolean deep : new boolean[]{false, true}) {
+      J48 j48 = TreeCompilerTest.train(data, deep);
+      CompiledTree compiled = TreeCompiler.compile(j48, data).orElseThrow();
+      int[] inputs = FeatureEncoder.compile(data).inputAttributes();
+      PredictionLookupTable table = PredictionLookupTable.build(data, compiled, inputs, MAX_CELLS).orElseThrow();
+
+      double[] out = new double[data.numClasses()];
+      for (Instance inst : TestDatasets.grid(data)) {
+        assertThat(table.lookup(TestDatasets.features(inst), out)).isTrue();
+        double[] expected = j48.distributionForInstance(inst);
+        for (int c = 0; c < expected.length; c++) {
+          assertThat(out[c]).as("class %d of %s (deep=%s)", c, inst, deep).isCloseTo(expected[c], within(TOLERANCE));
+        }
+      }
+    }
+  }
+
+  @Test
+  void rejectsNominalIndexOutsideTheHeader() throws Exception {
+    Instances data = TestDatasets.sample();
+    CompiledTree compiled = TreeCompiler.compile(TreeCompilerTest.train(data, false), data).orElseThrow();
+    PredictionLookupTable table = PredictionLookupTable.build(data, compiled,
+      FeatureEncoder.compile(data).inputAttributes(), MAX_CELLS).orElseThrow();
+
+    double[] features = TestDatasets.features(data.instance(0));
+    features[data.attribute(FeatureEncoder.ESTADO).index()] = data.attribute(FeatureEncoder.ESTADO).numValues();
+    double[] out = {-1, -1};
+
+    assertThat(table.lookup(features, out)).isFalse();
+    assertThat(out).containsExactly(-1, -1);
+  }
+
+  @Test
+  void isNotBuiltPastMaxCells() throws Exception {
+    Instances data = TestDatasets.sample();
+    CompiledTree compiled = TreeCompiler.compile(TreeCompilerTest.train(data, false), data).orElseThrow();
+
+    // 11 salários x 28 estados já passam de 300 células
+    assertThat(PredictionLookupTable.build(data, compiled, FeatureEncoder.compile(data).inputAttributes(), 300)).isEmpty();
+  }
+}
@@ -0,0 +1,86 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import weka.core.Attribute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeBinningTest {
+
+  // mapeamento original do FoodInsecurityService, que SALARY_RANGES substituiu
+  static String mapSalaryToRange(double s) {
+    if (s >= 422 && s <= 999) return "422-999";
+    if (s >= 810 && s <= 1300) return "810-1300";
+    if (s >= 1500 && s <= 3000) return "1500-3000";
+    if (s >= 0 && s <= 499) return "0-499";
+    if (s >= 500 && s <= 999) return "500-999";
+    if (s >= 1000 && s <= 1499) return "1000-1499";
+    if (s >= 1500 && s <= 1999) return "1500-1999";
+    if (s >= 2000 && s <= 2499) return "2000-2499";
+    if (s >= 2500 && s <= 2999) return "2500-2999";
+    return "3000-50000";
+  }
+
+  private static final double[] EDGES = {0, 422, 499, 500, 810, 999, 1000, 1300, 1499, 1500, 1999, 2000, 2499, 2500,
+    2999, 3000, 50000};
+
+  @Test
+  void salaryBandsMatchTheIfChainAroundEveryEdge() {
+    for (double value : salaryProbes()) {
+      assertThat(FeatureEncoder.SALARY_RANGES.label(value)).as("salary %s", value).isEqualTo(mapSalaryToRange(value));
+    }
+  }
+
+  @Test
+  void salaryBandsMatchTheIfChainOnAWholeRange() {
+    for (double value = -100; value <= 6000; value += 0.25) {
+      assertThat(FeatureEncoder.SALARY_RANGES.label(value)).as("salary %s", value).isEqualTo(mapSalaryToRange(value));
+    }
+  }
+
+  @Test
+  void indexedAgreesWithLabel() {
+    Attribute salario = TestDatasets.sample().attribute(FeatureEncoder.SALARIO);
+    RangeBinning.Indexed indexed = FeatureEncoder.SALARY_RANGES.indexed(salario::indexOfValue);
+    for (double value : salaryProbes()) {
+      assertThat(indexed.index(value)).as("salary %s", value)
+        .isEqualTo(salario.indexOfValue(FeatureEncoder.SALARY_RANGES.label(value)));
+    }
+    assertThat(indexed.index(Double.NaN)).isEqualTo(salario.indexOfValue("3000-50000"));
+  }
+
+  @Test
+  void overlappingRangesKeepPriorityOrder() {
+    RangeBinning binning = RangeBinning.of(List.of(
+      new RangeBinning.Range(10, 20, "a"),
+      new RangeBinning.Range(0, 30, "b"),
+      new RangeBinning.Range(15, 40, "c")), "fallback");
+
+    assertThat(binning.label(-0.0)).isEqualTo("b");
+    assertThat(binning.label(9.999)).isEqualTo("b");
+    assertThat(binning.label(10)).isEqualTo("a");
+    assertThat(binning.label(20)).isEqualTo("a");
+    assertThat(binning.label(Math.nextUp(20.0))).isEqualTo("b");
+    assertThat(binning.label(30)).isEqualTo("b");
+    assertThat(binning.label(Math.nextUp(30.0))).isEqualTo("c");
+    assertThat(binning.label(40)).isEqualTo("c");
+    assertThat(binning.label(Math.nextUp(40.0))).isEqualTo("fallback");
+    assertThat(binning.label(-1)).isEqualTo("fallback");
+    assertThat(binning.label(Double.NaN)).isEqualTo("fallback");
+  }
+
+  // cada borda, os vizinhos em ulp e frações dos dois lados
+  static List<Double> salaryProbes() {
+    List<Double> probes = new ArrayList<>(List.of(-0.0, -1.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+      Double.MAX_VALUE, -Double.MAX_VALUE));
+    for (double edge : EDGES) {
+      probes.addAll(List.of(edge, Math.nextDown(edge), Math.nextUp(edge), edge - 0.5, edge + 0.5,
+        Math.nextUp(edge + 1), Math.nextDown(edge + 1), edge + 1));
+    }
+    return probes;
+  }
+}
@@ -0,0 +1,87 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RiskCubeTest {
+
+  private static final List<String> DIMENSIONS = List.of("estado", "cor", "escolaridade", "salario");
+
+  @Test
+  void numericDimensionIsBinnedInIntegerLevels() {
+    Instances data = TestDatasets.sample();
+    RiskCube cube = RiskCube.forHeader(new Instances(data, 0), DIMENSIONS, 10, 0, 1, 2_000_000, Long.MAX_VALUE);
+    Map<String, Long> expected = new HashMap<>();
+    for (int row = 0; row < data.numInstances(); row++) {
+      double value = data.instance(row).value(data.attribute("escolaridade"));
+      String label = Double.isNaN(value) ? RiskCube.MISSING_LABEL : value >= 10 ? ">=10" : Integer.toString((int) value);
+      expected.merge(label, 1L, Long::sum);
+      cube.record(data.instance(row).toDoubleArray(), 0, new double[]{0.5, 0.5});
+    }
+    cube.record(new double[]{0, 0, 0, -3, 0}, 0, new double[]{0.5, 0.5});
+    expected.put("<0", 1L);
+
+    RiskCube.Dimension escolaridade = cube.dimensions().get(2);
+    assertThat(escolaridade.name()).isEqualTo("escolaridade");
+    assertThat(escolaridade.labels()).startsWith("<0", "0", "1").endsWith("9", ">=10").hasSize(12);
+
+    Map<String, Long> counts = new HashMap<>();
+    for (RiskCube.Group group : cube.rollUp(cube.cells(-1), List.of("escolaridade"), Map.of()).groups()) {
+      counts.put(group.labels().get(0), group.count());
+    }
+    assertThat(counts).isEqualTo(expected);
+  }
+
+  @Test
+  void rescoreScoresNumericLevelsAtARepresentativeValue() throws Exception {
+    Instances header = new Instances(TestDatasets.sample(), 0);
+    RiskCube cube = RiskCube.forHeader(header, List.of("escolaridade"), 10, 0, 1, 2_000_000, Long.MAX_VALUE);
+    for (double value : new double[]{-3, 0, 4.5, 9.99, 10, 16}) {
+      cube.record(new double[]{0, 0, 0, value, 0}, 0, new double[]{0.5, 0.5});
+    }
+    List<Double> scored = new ArrayList<>();
+    cube.rescore(values -> {
+      scored.add(values[3]);
+      return new double[]{1, 0};
+    });
+
+    assertThat(scored).containsExactly(-1.0, 0.0, 4.0, 9.0, 10.0);
+  }
+
+  @Test
+  void skipsDimensionsItCannotBin() {
+    Instances header = new Instances(TestDatasets.sample(), 0);
+
+    RiskCube withoutLevels = RiskCube.forHeader(header, DIMENSIONS, 0, 0, 1, 2_000_000, Long.MAX_VALUE);
+    RiskCube unknown = RiskCube.forHeader(header, List.of("estado", "renda", "inseguranca"), 10, 0, 1, 2_000_000, Long.MAX_VALUE);
+
+    assertThat(withoutLevels.dimensions()).extracting(RiskCube.Dimension::name).containsExactly("estado", "cor", "salario");
+    assertThat(unknown.dimensions()).extracting(RiskCube.Dimension::name).containsExactly("estado");
+  }
+
+  @Test
+  void stripesShrinkToTheByteBudget() {
+    Instances header = new Instances(TestDatasets.sample(), 0);
+    long stripeBytes = (long) RiskCube.forHeader(header, DIMENSIONS, 21, 0, 1, 2_000_000, Long.MAX_VALUE).cells()
+      * RiskCube.BYTES_PER_CELL;
+
+    RiskCube unbounded = RiskCube.forHeader(header, DIMENSIONS, 21, 0, 12, 2_000_000, Long.MAX_VALUE);
+    RiskCube bounded = RiskCube.forHeader(header, DIMENSIONS, 21, 0, 12, 2_000_000, 3 * stripeBytes);
+
+    assertThat(unbounded.stripes()).isEqualTo(16);
+    assertThat(bounded.stripes()).isEqualTo(2);
+    assertThat(bounded.bytes()).isEqualTo(2 * stripeBytes);
+    assertThatThrownBy(() -> RiskCube.forHeader(header, DIMENSIONS, 21, 0, 12, 2_000_000, stripeBytes - 1))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("bytes");
+  }
+}
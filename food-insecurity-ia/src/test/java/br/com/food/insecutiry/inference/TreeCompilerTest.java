@@ -0,0 +1,76 @@
+package br.com.food.insecutiry.inference;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.Test;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TreeCompilerTest {
+
+  private static final double TOLERANCE = 1e-12;
+
+  @Test
+  void compiledTreeMatchesJ48OnTrainingRows() throws Exception {
+    Instances data = TestDatasets.sample();
+    J48 j48 = train(data, false);
+
+    CompiledTree compiled = TreeCompiler.compile(j48, data).orElseThrow();
+
+    for (Instance inst : data) {
+      assertSameDistribution(compiled, j48, inst);
+    }
+    assertThat(TreeCompiler.isEquivalent(compiled, j48, data)).isTrue();
+  }
+
+  @Test
+  void compiledTreeMatchesJ48WithMissingValuesAndEmptyLeaves() throws Exception {
+    Instances data = TestDatasets.sample();
+    // sem poda e com folhas de uma instância: árvore funda, com splits em estado
+    J48 j48 = train(data, true);
+    // AP, RR e TO não aparecem no treino: um split em estado deixa esses filhos vazios
+    assertThat(j48.toString()).contains("(0.0)");
+
+    CompiledTree compiled = TreeCompiler.compile(j48, data).orElseThrow();
+
+    Instances grid = TestDatasets.grid(data);
+    for (Instance inst : grid) {
+      assertSameDistribution(compiled, j48, inst);
+    }
+  }
+
+  @Test
+  void refusesWhatItCannotReproduce() throws Exception {
+    Instances data = TestDatasets.sample();
+    J48 laplace = new J48();
+    laplace.setUseLaplace(true);
+    laplace.buildClassifier(data);
+    Logistic logistic = new Logistic();
+    logistic.buildClassifier(data);
+
+    assertThat(TreeCompiler.compile(laplace, data)).isEmpty();
+    assertThat(TreeCompiler.compile(logistic, data)).isEmpty();
+  }
+
+  static J48 train(Instances data, boolean deep) throws Exception {
+    J48 j48 = new J48();
+    if (deep) {
+      j48.setUnpruned(true);
+      j48.setMinNumObj(1);
+    }
+    j48.buildClassifier(data);
+    return j48;
+  }
+
+  private static void assertSameDistribution(DecisionTree tree, J48 j48, Instance inst) throws Exception {
+    double[] expected = j48.distributionForInstance(inst);
+    double[] actual = tree.distribution(TestDatasets.features(inst));
+    for (int c = 0; c < expected.length; c++) {
+      assertThat(actual[c]).as("class %d of %s", c, inst).isCloseTo(expected[c], within(TOLERANCE));
+    }
+  }
+}
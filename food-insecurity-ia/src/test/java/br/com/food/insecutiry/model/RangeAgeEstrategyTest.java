@@ -0,0 +1,32 @@
+package br.com.food.insecutiry.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeAgeEstrategyTest {
+
+  // cadeia de predicados original, que a busca binária substituiu
+  private static String originalFromAge(Integer age) {
+    if (age != null && age <= 17) return "0-17";
+    if (age != null && age <= 29) return "18-29";
+    if (age != null && age <= 44) return "30-44";
+    if (age != null && age <= 59) return "45-59";
+    if (age != null && age > 59) return "60+";
+    return "0-17";
+  }
+
+  @Test
+  void matchesThePredicateChainOnEveryAge() {
+    for (int age = -10; age <= 150; age++) {
+      assertThat(RangeAgeEstrategy.fromAge(age)).as("age %d", age).isEqualTo(originalFromAge(age));
+    }
+  }
+
+  @Test
+  void matchesThePredicateChainAtTheExtremes() {
+    for (Integer age : new Integer[]{null, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MAX_VALUE}) {
+      assertThat(RangeAgeEstrategy.fromAge(age)).as("age %s", age).isEqualTo(originalFromAge(age));
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.TestDatasets;
+import br.com.food.insecutiry.inference.TreeCompiler;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkScorerTest {
+
+  private static final FoodInsecurityMetrics METRICS = new FoodInsecurityMetrics(new SimpleMeterRegistry());
+
+  private static ForkJoinPool pool;
+  private static Instances data;
+  private static J48 j48;
+
+  @BeforeAll
+  static void train() throws Exception {
+    pool = new ForkJoinPool(4);
+    data = TestDatasets.sample();
+    j48 = new J48();
+    j48.buildClassifier(data);
+  }
+
+  @AfterAll
+  static void stopPool() {
+    pool.shutdownNow();
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "1, 1000000, true",
+    "3, 7, true",
+    "4, 64, true",
+    "7, 5, false",
+    "2, 1, false"})
+  void writesEveryRowInInputOrderWithTheDirectScorersProbabilities(int partitions, int chunkRows, boolean compiled) throws Exception {
+    Instances header = new Instances(data, 0);
+    ModelSnapshot snapshot = ModelSnapshot.builder()
+      .version(3)
+      .header(header)
+      .classifier(j48)
+      .compiledTree(compiled ? TreeCompiler.compile(j48, header).orElseThrow() : null)
+      .build();
+    StringWriter out = new StringWriter();
+    AtomicLong rowsWritten = new AtomicLong();
+
+    BulkScorer scorer = new BulkScorer(snapshot, data, pool, partitions, chunkRows, out, METRICS, rowsWritten::set, null);
+    for (Instance row : data) {
+      scorer.accept(row);
+    }
+    long rows = scorer.finish();
+
+    assertThat(rows).isEqualTo(data.numInstances());
+    assertThat(rowsWritten).hasValue(data.numInstances());
+    List<String> lines = out.toString().lines().toList();
+    assertThat(lines).hasSize(data.numInstances() + 1);
+    assertThat(lines.get(0)).isEqualTo("instance_index,true_label,prediction,prob_class_"
+      + header.classAttribute().value(0) + ",prob_class_" + header.classAttribute().value(1));
+
+    PredictionScorer direct = new PredictionScorer(header, METRICS);
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance row = data.instance(i);
+      double[] expected = direct.score(snapshot, TestDatasets.features(row), 0).clone();
+      String[] fields = lines.get(i + 1).split(",");
+      assertThat(fields[0]).isEqualTo(Long.toString(i));
+      assertThat(fields[1]).isEqualTo(row.classIsMissing() ? "?" : row.stringValue(data.classIndex()));
+      assertThat(fields[2]).isEqualTo(header.classAttribute().value(argMax(expected)));
+      for (int c = 0; c < expected.length; c++) {
+        assertThat(Double.parseDouble(fields[3 + c])).as("row %d class %d", i, c).isEqualTo(expected[c]);
+      }
+    }
+  }
+
+  private static int argMax(double[] dist) {
+    int best = 0;
+    for (int c = 1; c < dist.length; c++) {
+      if (dist[c] > dist[best]) {
+        best = c;
+      }
+    }
+    return best;
+  }
+}
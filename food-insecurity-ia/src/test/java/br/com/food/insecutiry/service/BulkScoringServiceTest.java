@@ -0,0 +1,67 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.dto.BulkScoringJobDTO;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkScoringServiceTest {
+
+  private final GridFsTemplate gridFsTemplate = mock(GridFsTemplate.class);
+  private final BulkScoringService service = new BulkScoringService(null, null, null, null, gridFsTemplate,
+    new FoodInsecurityMetrics(new SimpleMeterRegistry()), null);
+
+  @Test
+  void aJobRunByAnotherReplicaIsFoundByTheJobIdOfItsResult() {
+    ObjectId fileId = new ObjectId();
+    Date uploaded = new Date();
+    GridFSFile file = new GridFSFile(new BsonObjectId(fileId), "scores-ds-1-v4.csv.gz", 1234, 255 * 1024, uploaded,
+      new Document("datasetId", "ds-1").append("modelVersion", 4L).append("jobId", "job-1"));
+    when(gridFsTemplate.findOne(argThat(query -> isJobQuery(query, "job-1")))).thenReturn(file);
+    GridFsResource resource = mock(GridFsResource.class);
+    when(gridFsTemplate.getResource(file)).thenReturn(resource);
+
+    BulkScoringJobDTO job = service.getJob("job-1");
+
+    assertThat(job.status()).isEqualTo("SUCCEEDED");
+    assertThat(job.datasetId()).isEqualTo("ds-1");
+    assertThat(job.modelVersion()).isEqualTo(4L);
+    assertThat(job.progress()).isEqualTo(1.0);
+    assertThat(job.resultGridFsId()).isEqualTo(fileId.toHexString());
+    assertThat(job.resultBytes()).isEqualTo(1234);
+    assertThat(job.finishedAt()).isEqualTo(uploaded.toInstant());
+    assertThat(service.openResult("job-1")).isSameAs(resource);
+  }
+
+  @Test
+  void anUnknownJobWithoutAResultIsNotFound() {
+    when(gridFsTemplate.findOne(any(Query.class))).thenReturn(null);
+
+    assertThatThrownBy(() -> service.getJob("job-2")).isInstanceOfSatisfying(ResponseStatusException.class,
+      e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+    assertThatThrownBy(() -> service.openResult("job-2")).isInstanceOfSatisfying(ResponseStatusException.class,
+      e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+  }
+
+  private static boolean isJobQuery(Query query, String jobId) {
+    return query != null && jobId.equals(query.getQueryObject().get("metadata.jobId"));
+  }
+}
@@ -0,0 +1,32 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.training.HoldoutPredictions;
+import org.junit.jupiter.api.Test;
+import weka.core.Attribute;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CalibrationExportServiceTest {
+
+  @Test
+  void csvEscapesClassLabelsInTheHeaderAndInTrueLabel() throws Exception {
+    Attribute classe = new Attribute("inseguranca", List.of("sim, grave", "nao\r\nrisco"));
+    HoldoutPredictions predictions = new HoldoutPredictions(3, 2);
+    predictions.add(new double[]{0.75, 0.25}, 0);
+    predictions.add(new double[]{0.125, 0.875}, 1);
+    predictions.add(new double[]{0.5, 0.5}, -1);
+    StringWriter out = new StringWriter();
+
+    CalibrationExportService.writeCsv(out, classe, predictions);
+
+    assertThat(out.toString().split("\n", -1)).containsExactly(
+      "instance_index,true_label,prob_class_sim_ grave,prob_class_nao__risco",
+      "0,sim_ grave,0.75,0.25",
+      "1,nao__risco,0.125,0.875",
+      "2,?,0.5,0.5",
+      "");
+  }
+}
@@ -0,0 +1,97 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DatasetLoaderTest {
+
+  private static final String HEADER = String.join("\n",
+    "@relation local",
+    "@attribute escolaridade numeric",
+    "@attribute inseguranca {sim,nao}",
+    "@data",
+    "");
+
+  @TempDir
+  Path dir;
+
+  private final GridFsTemplate gridFsTemplate = mock(GridFsTemplate.class);
+  private final DatasetLoader loader = new DatasetLoader(gridFsTemplate, mock(DatasetMetadataRepository.class),
+    mock(MongoTemplate.class), new FoodInsecurityMetrics(new SimpleMeterRegistry()));
+
+  @BeforeEach
+  void init() throws Exception {
+    ReflectionTestUtils.setField(loader, "parsingThreads", 2);
+    ReflectionTestUtils.setField(loader, "parallelMinMb", 64L);
+    // a cópia do GridFS tem uma linha só: distingue de onde o dataset veio
+    GridFsResource resource = mock(GridFsResource.class);
+    when(resource.getInputStream()).thenAnswer(call ->
+      new ByteArrayInputStream((HEADER + "1,nao\n").getBytes(StandardCharsets.UTF_8)));
+    when(gridFsTemplate.getResource(anyString())).thenReturn(resource);
+  }
+
+  @Test
+  void anUnchangedLocalFileIsParsedInsteadOfTheGridFsCopy() throws Exception {
+    Path file = Files.writeString(dir.resolve("base.arff"), HEADER + "8,sim\n12,nao\n3,sim\n");
+
+    DatasetLoader.LoadedDataset loaded = loader.load(local(file));
+
+    assertThat(loaded.data().numInstances()).isEqualTo(3);
+    assertThat(loaded.data().classIndex()).isEqualTo(1);
+    assertThat(loaded.bytesRead()).isEqualTo(Files.size(file));
+    verify(gridFsTemplate, never()).getResource(anyString());
+  }
+
+  @Test
+  void aChangedOrMissingLocalFileFallsBackToGridFs() throws Exception {
+    Path file = Files.writeString(dir.resolve("base.arff"), HEADER + "8,sim\n12,nao\n3,sim\n");
+    DatasetMetadata meta = local(file);
+    Files.setLastModifiedTime(file, FileTime.from(meta.getLocalModifiedAt().plusSeconds(60)));
+
+    assertThat(loader.load(meta).data().numInstances()).isEqualTo(1);
+
+    Files.delete(file);
+    assertThat(loader.load(meta).data().numInstances()).isEqualTo(1);
+  }
+
+  @Test
+  void anUploadWithoutALocalPathReadsGridFs() throws Exception {
+    DatasetMetadata meta = DatasetMetadata.builder().filename("upload.arff").mode(IngestMode.FULL).uploadedAt(Instant.now()).build();
+
+    assertThat(loader.load(meta).data().numInstances()).isEqualTo(1);
+  }
+
+  // sem id: o teste não grava artefato colunar
+  private static DatasetMetadata local(Path file) throws Exception {
+    return DatasetMetadata.builder()
+      .filename(file.getFileName().toString())
+      .mode(IngestMode.FULL)
+      .localPath(file.toString())
+      .localModifiedAt(DatasetStore.lastModified(file))
+      .build();
+  }
+}
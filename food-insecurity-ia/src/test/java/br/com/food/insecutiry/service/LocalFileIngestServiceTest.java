@@ -0,0 +1,80 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.TrainingJob;
+import br.com.food.insecutiry.model.dto.DatasetInfoDTO;
+import br.com.food.insecutiry.repository.DatasetMetadataRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LocalFileIngestServiceTest {
+
+  @TempDir
+  Path dir;
+
+  private final GridFsTemplate gridFsTemplate = mock(GridFsTemplate.class);
+  private final DatasetMetadataRepository repository = mock(DatasetMetadataRepository.class);
+  private final TrainingJobService trainingJobService = mock(TrainingJobService.class);
+  private final LocalFileIngestService service = new LocalFileIngestService(
+    new DatasetStore(gridFsTemplate, repository, mock(MongoTemplate.class)), repository, trainingJobService);
+
+  @Test
+  void sameDeltaUploadedTwiceIsTrainedOnce() throws Exception {
+    Path delta = Files.writeString(dir.resolve("delta.arff"), String.join("\n",
+      "@relation delta",
+      "@attribute escolaridade numeric",
+      "@attribute inseguranca {sim,nao}",
+      "@data",
+      "8,sim",
+      ""));
+    DatasetMetadata base = DatasetMetadata.builder().id("base").mode(IngestMode.FULL).build();
+    AtomicReference<DatasetMetadata> stored = new AtomicReference<>();
+    when(repository.findTopByParentIdIsNullOrderByUploadedAtDescIdDesc()).thenReturn(base);
+    when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString())).thenAnswer(call -> {
+      call.getArgument(0, InputStream.class).transferTo(OutputStream.nullOutputStream());
+      return new ObjectId();
+    });
+    when(repository.findFirstByContentHashAndModeAndParentIdOrderByIdAsc(anyString(), eq(IngestMode.APPEND), eq("base")))
+      .thenAnswer(call -> stored.get());
+    when(repository.insert(any(DatasetMetadata.class))).thenAnswer(call -> {
+      DatasetMetadata metadata = call.getArgument(0);
+      metadata.setId("delta-1");
+      stored.set(metadata);
+      return metadata;
+    });
+    when(trainingJobService.submit(any(), any())).thenReturn(new TrainingJob("delta-1"));
+
+    DatasetInfoDTO first = service.saveLocalFileToDb(delta.toString(), IngestMode.APPEND);
+    DatasetInfoDTO retried = service.saveLocalFileToDb(delta.toString(), IngestMode.APPEND);
+
+    assertThat(first.id()).isEqualTo("delta-1");
+    assertThat(stored.get().getLocalPath()).isEqualTo(delta.toAbsolutePath().toString());
+    assertThat(stored.get().getLocalModifiedAt()).isEqualTo(DatasetStore.lastModified(delta));
+    assertThat(first.trainingJobId()).isNotNull();
+    assertThat(retried.id()).isEqualTo("delta-1");
+    assertThat(retried.trainingJobId()).isNull();
+    verify(trainingJobService, times(1)).submit(any(), any());
+    verify(repository, times(1)).insert(any(DatasetMetadata.class));
+    verify(gridFsTemplate, times(1)).delete(any(Query.class)); // cópia do reenvio descartada
+  }
+}
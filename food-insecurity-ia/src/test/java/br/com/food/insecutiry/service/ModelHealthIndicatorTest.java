@@ -0,0 +1,52 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ModelHealthIndicatorTest {
+
+  private final ModelStartupService startup = mock(ModelStartupService.class);
+  private final WekaModelConfig config = mock(WekaModelConfig.class);
+  private final ModelHealthIndicator indicator = new ModelHealthIndicator(startup, config);
+  private final ModelSnapshot snapshot = mock(ModelSnapshot.class);
+
+  @Test
+  void outOfServiceWhileTheStartupLoadRuns() {
+    Health health = indicator.health();
+
+    assertThat(health.getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    assertThat(health.getDetails()).containsEntry("reason", "loading");
+  }
+
+  @Test
+  void outOfServiceWithoutAModelOrWhileWarmingUp() {
+    when(config.isStartupLoadComplete()).thenReturn(true);
+    assertThat(indicator.health().getDetails()).containsEntry("reason", "no model");
+
+    when(snapshot.version()).thenReturn(7L);
+    when(config.getSnapshot()).thenReturn(snapshot);
+    Health warming = indicator.health();
+    assertThat(warming.getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    assertThat(warming.getDetails()).containsEntry("reason", "warming up").containsEntry("modelVersion", 7L);
+  }
+
+  @Test
+  void upOnceTheModelIsWarm() {
+    when(config.isStartupLoadComplete()).thenReturn(true);
+    when(snapshot.version()).thenReturn(7L);
+    when(config.getSnapshot()).thenReturn(snapshot);
+    when(startup.isReady()).thenReturn(true);
+
+    Health health = indicator.health();
+
+    assertThat(health.getStatus()).isEqualTo(Status.UP);
+    assertThat(health.getDetails()).containsOnlyKeys("modelVersion");
+  }
+}
@@ -0,0 +1,163 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.dto.PredictionRequestDTO;
+import br.com.food.insecutiry.model.dto.PredictionResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PredictionCoalescerTest {
+
+  private static final long LONG_WINDOW_MICROS = TimeUnit.SECONDS.toMicros(30);
+
+  private final BlockingQueue<Integer> batchSizes = new LinkedBlockingQueue<>();
+  private PredictionCoalescer coalescer;
+
+  @AfterEach
+  void close() {
+    if (coalescer != null) {
+      coalescer.close();
+    }
+  }
+
+  @Test
+  void flushesAsSoonAsTheBatchIsFull() throws Exception {
+    coalescer = coalescer(3, LONG_WINDOW_MICROS, 16, PredictionCoalescerTest::answerWithState);
+
+    List<CompletableFuture<PredictionResponseDTO>> results = List.of(
+      coalescer.submit(request("SP")), coalescer.submit(request("RJ")), coalescer.submit(request("MG")));
+
+    // a janela de 30 s não chega a correr: o lote sai ao completar 3 pedidos
+    assertThat(batchSizes.poll(5, TimeUnit.SECONDS)).isEqualTo(3);
+    assertThat(results).extracting(r -> r.get(5, TimeUnit.SECONDS).prediction()).containsExactly("SP", "RJ", "MG");
+  }
+
+  @Test
+  void flushesAPartialBatchWhenTheWindowCloses() throws Exception {
+    coalescer = coalescer(64, TimeUnit.MILLISECONDS.toMicros(20), 16, PredictionCoalescerTest::answerWithState);
+
+    CompletableFuture<PredictionResponseDTO> result = coalescer.submit(request("BA"));
+
+    assertThat(batchSizes.poll(5, TimeUnit.SECONDS)).isEqualTo(1);
+    assertThat(result.get(5, TimeUnit.SECONDS).prediction()).isEqualTo("BA");
+  }
+
+  @Test
+  void returnsNullWhenTheQueueIsFull() throws Exception {
+    CountDownLatch scoring = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    coalescer = coalescer(1, 0, 1, batch -> {
+      scoring.countDown();
+      await(release);
+      answerWithState(batch);
+    });
+
+    CompletableFuture<PredictionResponseDTO> first = coalescer.submit(request("SP"));
+    assertThat(scoring.await(5, TimeUnit.SECONDS)).isTrue();
+    // o dispatcher está preso no primeiro lote: o segundo ocupa a única vaga da fila
+    CompletableFuture<PredictionResponseDTO> second = coalescer.submit(request("RJ"));
+
+    assertThat(second).isNotNull();
+    assertThat(coalescer.submit(request("MG"))).isNull();
+
+    release.countDown();
+    assertThat(first.get(5, TimeUnit.SECONDS).prediction()).isEqualTo("SP");
+    assertThat(second.get(5, TimeUnit.SECONDS).prediction()).isEqualTo("RJ");
+  }
+
+  @Test
+  void completesEachRequestWithItsOwnOutcome() throws Exception {
+    coalescer = coalescer(2, LONG_WINDOW_MICROS, 16, batch -> batch.forEach(pending -> {
+      if (pending.request().estado() == null) {
+        pending.result().completeExceptionally(new IllegalArgumentException("estado ausente"));
+      } else {
+        pending.result().complete(response(pending.request().estado()));
+      }
+    }));
+
+    CompletableFuture<PredictionResponseDTO> valid = coalescer.submit(request("PE"));
+    CompletableFuture<PredictionResponseDTO> invalid = coalescer.submit(request(null));
+
+    assertThat(valid.get(5, TimeUnit.SECONDS).prediction()).isEqualTo("PE");
+    assertThatThrownBy(() -> invalid.join()).isInstanceOf(CompletionException.class)
+      .hasCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void failsTheWholeBatchWhenScoringThrows() {
+    IllegalStateException failure = new IllegalStateException("modelo indisponível");
+    coalescer = coalescer(2, LONG_WINDOW_MICROS, 16, batch -> {
+      throw failure;
+    });
+
+    CompletableFuture<PredictionResponseDTO> a = coalescer.submit(request("SP"));
+    CompletableFuture<PredictionResponseDTO> b = coalescer.submit(request("RJ"));
+
+    assertThatThrownBy(a::join).hasCause(failure);
+    assertThatThrownBy(b::join).hasCause(failure);
+  }
+
+  @Test
+  void closeFailsQueuedRequestsAndRejectsNewOnes() throws Exception {
+    CountDownLatch scoring = new CountDownLatch(1);
+    coalescer = coalescer(1, 0, 16, batch -> {
+      scoring.countDown();
+      // ocupa o dispatcher até o close() interrompê-lo
+      await(new CountDownLatch(1));
+      answerWithState(batch);
+    });
+
+    CompletableFuture<PredictionResponseDTO> inFlight = coalescer.submit(request("SP"));
+    assertThat(scoring.await(5, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<PredictionResponseDTO> queued = coalescer.submit(request("RJ"));
+
+    coalescer.close();
+
+    assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    // o lote em curso termina normalmente; nenhum future fica pendurado
+    assertThat(inFlight.get(5, TimeUnit.SECONDS).prediction()).isEqualTo("SP");
+    // fechado, o chamador pontua direto em vez de esperar um dispatcher que não existe mais
+    assertThat(coalescer.submit(request("MG"))).isNull();
+  }
+
+  private PredictionCoalescer coalescer(int maxBatch, long windowMicros, int queueCapacity,
+                                        Consumer<List<PredictionCoalescer.Pending>> scoreBatch) {
+    return new PredictionCoalescer(maxBatch, windowMicros, 1, queueCapacity, batch -> {
+      batchSizes.add(batch.size());
+      scoreBatch.accept(batch);
+    }, new FoodInsecurityMetrics(new SimpleMeterRegistry()));
+  }
+
+  private static void answerWithState(List<PredictionCoalescer.Pending> batch) {
+    batch.forEach(pending -> pending.result().complete(response(pending.request().estado())));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static PredictionRequestDTO request(String estado) {
+    return PredictionRequestDTO.builder().salario(1500.0).estado(estado).cor("parda").escolaridade(2).build();
+  }
+
+  private static PredictionResponseDTO response(String prediction) {
+    return PredictionResponseDTO.builder().prediction(prediction).build();
+  }
+}
@@ -0,0 +1,157 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.TestDatasets;
+import br.com.food.insecutiry.config.WekaModelConfig;
+import br.com.food.insecutiry.inference.DecisionTree;
+import br.com.food.insecutiry.inference.RiskCube;
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.ModelSnapshot;
+import br.com.food.insecutiry.model.dto.RiskCubeRollUpDTO;
+import br.com.food.insecutiry.repository.RiskCubeSnapshotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import weka.core.Instances;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RiskCubeServiceTest {
+
+  private final Instances data = TestDatasets.sample();
+  private final WekaModelConfig config = mock(WekaModelConfig.class);
+  private final RiskCubeService service = new RiskCubeService(config, mock(RiskCubeSnapshotRepository.class),
+    mock(TrainingLeaseService.class), new FoodInsecurityMetrics(new SimpleMeterRegistry()));
+  private Consumer<ModelSnapshot> publishListener;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void init() {
+    ReflectionTestUtils.setField(service, "enabled", true);
+    ReflectionTestUtils.setField(service, "dimensions", List.of("estado", "cor", "escolaridade", "salario"));
+    ReflectionTestUtils.setField(service, "stripes", 2);
+    ReflectionTestUtils.setField(service, "numericLevels", 21);
+    ReflectionTestUtils.setField(service, "maxCells", 2_000_000L);
+    ReflectionTestUtils.setField(service, "maxMemoryMb", 256L);
+    ReflectionTestUtils.setField(service, "maxDatasets", 16);
+    ReflectionTestUtils.setField(service, "queryMaxStalenessMs", 0L);
+    service.init();
+    ArgumentCaptor<Consumer<ModelSnapshot>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(config).addPublishListener(listener.capture());
+    publishListener = listener.getValue();
+  }
+
+  @Test
+  void predictRowsAroundASwapEndUpRescoredInTheNewCube() {
+    ModelSnapshot v1 = snapshot(1, 0.8);
+    ModelSnapshot v2 = snapshot(2, 0.1);
+    publish(v1);
+    recordRows(v1, 0, 3);
+
+    // v2 já serve, o listener ainda não rodou: as linhas dele não podem se perder
+    when(config.getSnapshot()).thenReturn(v2);
+    recordRows(v2, 3, 2);
+    // pedido em voo que pegou v1 antes da troca
+    recordRows(v1, 5, 1);
+    publishListener.accept(v2);
+
+    RiskCubeRollUpDTO rollUp = service.rollUp(RiskCubeService.PREDICT_SOURCE, List.of(), Map.of());
+    assertThat(rollUp.totalCount()).isEqualTo(6);
+    assertThat(rollUp.modelVersion()).isEqualTo(2);
+    assertThat(rollUp.stale()).isFalse();
+    assertMeanProbability(rollUp, 0.1);
+
+    // retardatário depois da passada da troca: entra na passada agendada
+    recordRows(v1, 6, 1);
+    service.saveSnapshots();
+
+    rollUp = service.rollUp(RiskCubeService.PREDICT_SOURCE, List.of(), Map.of());
+    assertThat(rollUp.totalCount()).isEqualTo(7);
+    assertMeanProbability(rollUp, 0.1);
+  }
+
+  @Test
+  void datasetCubesKeepTheModelThatScoredThemAndTurnStale() {
+    ModelSnapshot v1 = snapshot(1, 0.8);
+    ModelSnapshot v2 = snapshot(2, 0.1);
+    publish(v1);
+    RiskCube dataset = service.resetDataset("dataset-1", v1);
+    for (int row = 0; row < 10; row++) {
+      dataset.record(data.instance(row).toDoubleArray(), 0, distribution(v1.header(), 0.8));
+    }
+
+    RiskCubeRollUpDTO before = service.rollUp("dataset-1", List.of(), Map.of());
+    assertThat(before.stale()).isFalse();
+
+    publish(v2);
+
+    RiskCubeRollUpDTO after = service.rollUp("dataset-1", List.of(), Map.of());
+    assertThat(after.modelVersion()).isEqualTo(1);
+    assertThat(after.stale()).isTrue();
+    assertThat(after.totalCount()).isEqualTo(10);
+    // sem re-pontuar: as linhas tinham atributos que o cubo não guarda
+    assertMeanProbability(after, 0.8);
+    assertThat(service.rollUp(RiskCubeService.PREDICT_SOURCE, List.of(), Map.of()).stale()).isFalse();
+  }
+
+  private void publish(ModelSnapshot snapshot) {
+    when(config.getSnapshot()).thenReturn(snapshot);
+    publishListener.accept(snapshot);
+  }
+
+  private void recordRows(ModelSnapshot snapshot, int from, int count) {
+    for (int row = from; row < from + count; row++) {
+      service.record(snapshot, data.instance(row).toDoubleArray(), distribution(snapshot.header(), snapshot.version() == 1 ? 0.8 : 0.1));
+    }
+  }
+
+  private static void assertMeanProbability(RiskCubeRollUpDTO rollUp, double expected) {
+    assertThat(rollUp.groups()).isNotEmpty().allSatisfy(group ->
+      assertThat(group.meanProbability()).isCloseTo(expected, within(1e-6)));
+  }
+
+  // modelo constante: cada versão dá a mesma probabilidade da classe positiva a qualquer linha
+  private ModelSnapshot snapshot(long version, double positive) {
+    Instances header = new Instances(data, 0);
+    double[] dist = distribution(header, positive);
+    DecisionTree tree = new DecisionTree() {
+      @Override
+      public int numClasses() {
+        return dist.length;
+      }
+
+      @Override
+      public int numNodes() {
+        return 1;
+      }
+
+      @Override
+      public double[] splitPoints(int attIndex) {
+        return new double[0];
+      }
+
+      @Override
+      public void distribution(double[] features, double[] out) {
+        System.arraycopy(dist, 0, out, 0, dist.length);
+      }
+    };
+    return ModelSnapshot.builder().version(version).header(header).compiledTree(tree).build();
+  }
+
+  private static double[] distribution(Instances header, double positive) {
+    double[] dist = new double[header.numClasses()];
+    int positiveClass = CalibrationExportService.positiveClass(header);
+    dist[positiveClass] = positive;
+    dist[1 - positiveClass] = 1 - positive;
+    return dist;
+  }
+}
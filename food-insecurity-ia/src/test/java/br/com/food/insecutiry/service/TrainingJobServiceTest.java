@@ -0,0 +1,99 @@
+package br.com.food.insecutiry.service;
+
+import br.com.food.insecutiry.metrics.FoodInsecurityMetrics;
+import br.com.food.insecutiry.model.DatasetMetadata;
+import br.com.food.insecutiry.model.IngestMode;
+import br.com.food.insecutiry.model.TrainingJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrainingJobServiceTest {
+
+  private static final int MAX_QUEUED = 2;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final TrainingLeaseService leaseService = mock(TrainingLeaseService.class);
+  private final TrainingJobService service = new TrainingJobService(
+    null, null, new FoodInsecurityMetrics(registry), leaseService);
+
+  @BeforeEach
+  void init() {
+    ReflectionTestUtils.setField(service, "jobHistory", 100);
+    ReflectionTestUtils.setField(service, "maxQueued", MAX_QUEUED);
+    service.init();
+  }
+
+  @AfterEach
+  void shutdown() {
+    service.shutdown();
+  }
+
+  @Test
+  void admitsTheRunningJobPlusMaxQueuedThenAnswers429() {
+    TrainingJobService.Admission first = service.admit();
+    for (int i = 0; i < MAX_QUEUED; i++) {
+      service.admit();
+    }
+
+    assertRejected();
+    assertThat(registry.get("food.insecurity.training.queue").gauge().value()).isEqualTo(1 + MAX_QUEUED);
+
+    // fechar duas vezes devolve uma vaga só
+    first.close();
+    first.close();
+    service.admit();
+    assertRejected();
+  }
+
+  @Test
+  void aSubmittedJobHoldsItsSlotUntilItFinishes() throws Exception {
+    CountDownLatch leaseRequested = new CountDownLatch(1);
+    CountDownLatch giveUp = new CountDownLatch(1);
+    when(leaseService.await()).thenAnswer(invocation -> {
+      leaseRequested.countDown();
+      giveUp.await(5, TimeUnit.SECONDS);
+      throw new TimeoutException("lease de treino ocupado");
+    });
+
+    TrainingJobService.Admission admission = service.admit();
+    TrainingJob job = service.submit(DatasetMetadata.builder().id("base-1").mode(IngestMode.FULL).build(), admission);
+    assertThat(leaseRequested.await(5, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < MAX_QUEUED; i++) {
+      service.admit();
+    }
+
+    // a vaga passou para o job: o close do chamador (try-with-resources) não a devolve
+    admission.close();
+    assertRejected();
+
+    giveUp.countDown();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (service.tryAdmit().isEmpty()) {
+      assertThat(System.nanoTime()).as("slot released after the job ended").isLessThan(deadline);
+      Thread.sleep(10);
+    }
+    assertThat(service.getJob(job.getId()).status()).isEqualTo("FAILED");
+  }
+
+  private void assertRejected() {
+    double rejectedBefore = registry.get("food.insecurity.training.rejected").counter().count();
+    assertThatThrownBy(service::admit)
+      .isInstanceOfSatisfying(ResponseStatusException.class,
+        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+    assertThat(registry.get("food.insecurity.training.rejected").counter().count()).isEqualTo(rejectedBefore + 1);
+  }
+}
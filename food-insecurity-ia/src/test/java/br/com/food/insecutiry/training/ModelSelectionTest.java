@@ -0,0 +1,136 @@
+package br.com.food.insecutiry.training;
+
+import br.com.food.insecutiry.TestDatasets;
+import br.com.food.insecutiry.model.CandidateMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelSelectionTest {
+
+  static {
+    // como em Application.main: sem ela o ClassDiscovery do Weka falha no class loader do Java 9+
+    System.setProperty("weka.test.maventest", "true");
+  }
+
+  private static final ModelSelection.Budget GENEROUS = new ModelSelection.Budget(Duration.ofMinutes(10), Duration.ofMinutes(10));
+  private static final ClassifierSpec DEFAULT = ClassifierSpec.parse("J48");
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void startPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void stopPool() {
+    pool.shutdownNow();
+  }
+
+  /** A candidate whose training always throws, as a misconfigured or out-of-memory one would. */
+  public static class FailingClassifier extends AbstractClassifier {
+    @Override
+    public void buildClassifier(Instances data) {
+      throw new IllegalStateException("treino quebrado");
+    }
+
+    @Override
+    public double classifyInstance(Instance instance) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  void picksTheBestScoringCandidateWithAGenerousBudget() throws Exception {
+    List<ClassifierSpec> candidates = List.of(
+      ClassifierSpec.parse("J48"), ClassifierSpec.parse("NaiveBayes"), ClassifierSpec.parse("weka.classifiers.rules.ZeroR"));
+
+    ModelSelection.Result result = run(candidates, GENEROUS);
+
+    assertThat(result.candidates()).extracting(CandidateMetrics::getStatus).containsOnly("COMPLETE");
+    assertThat(result.candidates()).allSatisfy(c -> {
+      assertThat(c.getLatencyNanos()).isPositive();
+      // sem penalidade de latência o score é a própria métrica
+      assertThat(c.getScore()).isEqualTo(c.getKappa());
+    });
+    CandidateMetrics best = result.candidates().stream().max(Comparator.comparing(CandidateMetrics::getScore)).orElseThrow();
+    assertThat(result.winner()).map(ClassifierSpec::name).contains(best.getAlgorithm());
+    // ZeroR sempre responde a classe majoritária: kappa 0, nunca o vencedor num dataset com estrutura
+    assertThat(result.candidates().get(2).getKappa()).isZero();
+    assertThat(result.winner()).isNotEqualTo(candidates.get(2));
+  }
+
+  @Test
+  void aSpentBudgetLeavesEveryCandidateOverBudgetAndTheDefaultIsKept() throws Exception {
+    List<ClassifierSpec> candidates = List.of(ClassifierSpec.parse("J48 -C 0.1"), ClassifierSpec.parse("NaiveBayes"));
+
+    ModelSelection.Result result = run(candidates, new ModelSelection.Budget(Duration.ofNanos(1), Duration.ofNanos(1)));
+
+    assertThat(result.candidates()).extracting(CandidateMetrics::getStatus).containsOnly("OVER_BUDGET");
+    assertThat(result.candidates()).allSatisfy(c -> {
+      assertThat(c.getKappa()).isNull();
+      assertThat(c.getScore()).isNull();
+    });
+    assertThat(result.winner()).isEmpty();
+    // como em WekaModelConfig: sem vencedor, treina o algoritmo configurado
+    assertThat(result.winner().orElse(DEFAULT)).isEqualTo(DEFAULT);
+  }
+
+  @Test
+  void aCandidateWhoseTrainingThrowsIsReportedFailed() throws Exception {
+    ClassifierSpec failing = ClassifierSpec.parse(FailingClassifier.class.getName());
+
+    ModelSelection.Result result = run(List.of(failing, DEFAULT), GENEROUS);
+
+    assertThat(result.candidates()).extracting(CandidateMetrics::getStatus).containsExactly("FAILED", "COMPLETE");
+    assertThat(result.candidates().get(0).getScore()).isNull();
+    assertThat(result.winner()).contains(DEFAULT);
+  }
+
+  @Test
+  void specsWithTheSameNameClassAndOptionsAreEqual() throws Exception {
+    ClassifierSpec alias = ClassifierSpec.parse("J48 -C 0.1 -M 5");
+
+    assertThat(alias).isEqualTo(ClassifierSpec.parse(" J48 -C 0.1 -M 5 "));
+    assertThat(alias).hasSameHashCodeAs(ClassifierSpec.parse("J48 -C 0.1 -M 5"));
+    assertThat(alias).isNotEqualTo(ClassifierSpec.parse("J48 -C 0.2 -M 5"));
+    assertThat(alias.className()).isEqualTo("weka.classifiers.trees.J48");
+    assertThat(alias.options()).containsExactly("-C", "0.1", "-M", "5");
+
+    // forName consome as opções: cada instância nova tem que sair com a configuração completa
+    J48 first = (J48) alias.newClassifier();
+    J48 second = (J48) alias.newClassifier();
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getConfidenceFactor()).isEqualTo(0.1f);
+    assertThat(second.getMinNumObj()).isEqualTo(5);
+  }
+
+  @Test
+  void rejectsUnknownClassifiersAndOptions() {
+    assertThatThrownBy(() -> ClassifierSpec.parse("   ")).isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("Classificador inválido");
+    assertThatThrownBy(() -> ClassifierSpec.parse("NoSuchClassifier")).isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("NoSuchClassifier");
+    assertThatThrownBy(() -> ClassifierSpec.parse("J48 -Z 3")).isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("J48 -Z 3");
+  }
+
+  private static ModelSelection.Result run(List<ClassifierSpec> candidates, ModelSelection.Budget budget) throws Exception {
+    Instances data = TestDatasets.sample();
+    return ModelSelection.run(candidates, data, 5, new Random(1), pool, 4, budget, ModelSelection.Metric.KAPPA, 0);
+  }
+}
@@ -0,0 +1,56 @@
+package br.com.food.insecutiry.training;
+
+import br.com.food.insecutiry.TestDatasets;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelCrossValidationTest {
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void startPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void stopPool() {
+    pool.shutdownNow();
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "j48, 10, 1, 1",
+    "j48, 10, 42, 3",
+    "j48, 5, 7, 10",
+    "naive-bayes, 10, 1, 4"})
+  void matchesSerialCrossValidateModel(String algorithm, int folds, long seed, int maxInFlight) throws Exception {
+    Instances data = TestDatasets.sample();
+
+    Evaluation serial = new Evaluation(data);
+    serial.crossValidateModel(classifier(algorithm), data, folds, new Random(seed));
+    Evaluation parallel = ParallelCrossValidation.run(classifier(algorithm), data, folds, new Random(seed), pool, maxInFlight);
+
+    assertThat(parallel.pctCorrect()).isEqualTo(serial.pctCorrect());
+    assertThat(parallel.kappa()).isEqualTo(serial.kappa());
+    assertThat(parallel.rootMeanSquaredError()).isEqualTo(serial.rootMeanSquaredError());
+    assertThat(parallel.weightedAreaUnderROC()).isEqualTo(serial.weightedAreaUnderROC());
+    assertThat(parallel.confusionMatrix()).isDeepEqualTo(serial.confusionMatrix());
+  }
+
+  private static Classifier classifier(String algorithm) {
+    return "j48".equals(algorithm) ? new J48() : new NaiveBayes();
+  }
+}
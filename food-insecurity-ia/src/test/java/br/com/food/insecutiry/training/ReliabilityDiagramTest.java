@@ -0,0 +1,67 @@
+package br.com.food.insecutiry.training;
+
+import br.com.food.insecutiry.model.CalibrationReport.ReliabilityBin;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ReliabilityDiagramTest {
+
+  private static final double EPS = 1e-12;
+
+  @Test
+  void binsBrierAndEceMatchAHandComputedExample() {
+    ReliabilityDiagram diagram = new ReliabilityDiagram(4, 1);
+    add(diagram, 0.1, 0);   // bin 0
+    add(diagram, 0.2, 1);   // bin 0
+    add(diagram, 0.6, 1);   // bin 2
+    add(diagram, 1.0, 1);   // p == 1.0: último bin, não um quinto
+    add(diagram, 0.75, 0);  // limite inferior do bin 3
+    add(diagram, 0.5, -1);  // rótulo ausente: fora de tudo
+
+    assertThat(diagram.total()).isEqualTo(5);
+    // (0.01 + 0.64 + 0.16 + 0 + 0.5625) / 5
+    assertThat(diagram.brierScore()).isCloseTo(0.2745, within(EPS));
+    // (|0.3 - 1| + |0.6 - 1| + |1.75 - 1|) / 5
+    assertThat(diagram.expectedCalibrationError()).isCloseTo(0.37, within(EPS));
+
+    List<ReliabilityBin> bins = diagram.bins();
+    assertThat(bins).hasSize(4);
+    assertThat(bins).extracting(ReliabilityBin::getLower).containsExactly(0.0, 0.25, 0.5, 0.75);
+    assertThat(bins).extracting(ReliabilityBin::getUpper).containsExactly(0.25, 0.5, 0.75, 1.0);
+    assertThat(bins).extracting(ReliabilityBin::getCount).containsExactly(2L, 0L, 1L, 2L);
+    assertThat(bins.get(0).getMeanPredicted()).isCloseTo(0.15, within(EPS));
+    assertThat(bins.get(0).getObservedRate()).isEqualTo(0.5);
+    assertThat(bins.get(1).getMeanPredicted()).isNull();
+    assertThat(bins.get(1).getObservedRate()).isNull();
+    assertThat(bins.get(2).getMeanPredicted()).isCloseTo(0.6, within(EPS));
+    assertThat(bins.get(2).getObservedRate()).isEqualTo(1.0);
+    assertThat(bins.get(3).getMeanPredicted()).isCloseTo(0.875, within(EPS));
+    assertThat(bins.get(3).getObservedRate()).isEqualTo(0.5);
+  }
+
+  @Test
+  void anEmptyDiagramHasNoScores() {
+    ReliabilityDiagram diagram = new ReliabilityDiagram(10, 0);
+    add(diagram, 0.3, -1);
+
+    assertThat(diagram.total()).isZero();
+    assertThat(diagram.brierScore()).isNaN();
+    assertThat(diagram.expectedCalibrationError()).isNaN();
+    assertThat(diagram.bins()).extracting(ReliabilityBin::getCount).containsOnly(0L);
+  }
+
+  @Test
+  void needsAtLeastOneBin() {
+    assertThatThrownBy(() -> new ReliabilityDiagram(0, 0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  // distribuição binária com p na classe positiva (1)
+  private static void add(ReliabilityDiagram diagram, double p, int label) {
+    diagram.add(new double[]{1 - p, p}, label);
+  }
+}